@@ -5,6 +5,8 @@ import uvicorn
 from datetime import datetime
 from pathlib import Path
 import shutil
+import tempfile
+import urllib.request
 
 from app.config import settings
 from app.schemas.analisis_schema import (
@@ -69,17 +71,25 @@ async def analizar_imagen(request: AnalizarImagenRequest):
                 detail="Modelo no entrenado"
             )
 
-        if not Path(request.imagen_path).exists():
-            raise HTTPException(
-                status_code=status.HTTP_404_NOT_FOUND,
-                detail=f"Imagen no encontrada: {request.imagen_path}"
+        # Con almacenamiento S3, recepcion manda una URL firmada en vez de una ruta del volumen compartido
+        es_url = request.imagen_path.startswith(("http://", "https://"))
+        imagen_path = descargar_imagen(request.imagen_path) if es_url else request.imagen_path
+
+        try:
+            if not Path(imagen_path).exists():
+                raise HTTPException(
+                    status_code=status.HTTP_404_NOT_FOUND,
+                    detail=f"Imagen no encontrada: {request.imagen_path}"
+                )
+
+            resultado = analisis_service.analizar_imagen(
+                imagen_path=imagen_path,
+                multimedia_id=str(request.multimedia_id) if request.multimedia_id else None,
+                incidente_id=str(request.incidente_id) if request.incidente_id else None
             )
-
-        resultado = analisis_service.analizar_imagen(
-            imagen_path=request.imagen_path,
-            multimedia_id=str(request.multimedia_id) if request.multimedia_id else None,
-            incidente_id=str(request.incidente_id) if request.incidente_id else None
-        )
+        finally:
+            if es_url:
+                Path(imagen_path).unlink(missing_ok=True)
 
         return resultado
 
@@ -92,6 +102,20 @@ async def analizar_imagen(request: AnalizarImagenRequest):
         )
 
 
+def descargar_imagen(url: str) -> str:
+    """Descarga la imagen de una URL (firmada) a un archivo temporal y devuelve su ruta"""
+    try:
+        with urllib.request.urlopen(url, timeout=30) as respuesta, \
+                tempfile.NamedTemporaryFile(delete=False, suffix=".img") as destino:
+            shutil.copyfileobj(respuesta, destino)
+            return destino.name
+    except OSError as e:
+        raise HTTPException(
+            status_code=status.HTTP_404_NOT_FOUND,
+            detail=f"No se pudo descargar la imagen: {e}"
+        )
+
+
 @app.post("/api/ml/analizar-imagen-upload", response_model=AnalizarImagenResponse)
 async def analizar_imagen_upload(file: UploadFile = File(...)):
     """Analiza una imagen subida directamente"""
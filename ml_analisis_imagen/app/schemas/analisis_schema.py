@@ -15,7 +15,7 @@ class CalidadImagen(str, Enum):
 
 class AnalizarImagenRequest(BaseModel):
     """Request para analizar imagen"""
-    imagen_path: str = Field(..., description="Ruta de la imagen a analizar")
+    imagen_path: str = Field(..., description="Ruta de la imagen a analizar, o URL (firmada) para descargarla")
     multimedia_id: Optional[UUID4] = Field(None, description="ID del multimedia")
     incidente_id: Optional[UUID4] = Field(None, description="ID del incidente")
 
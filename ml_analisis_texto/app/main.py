@@ -1,6 +1,7 @@
 from fastapi import FastAPI, HTTPException, status
 from fastapi.middleware.cors import CORSMiddleware
 from fastapi.responses import JSONResponse
+import time
 import uvicorn
 from datetime import datetime
 
@@ -8,6 +9,8 @@ from app.config import settings
 from app.schemas.analisis_schema import (
     AnalizarTextoRequest,
     AnalizarTextoResponse,
+    AnalizarTextoLoteRequest,
+    AnalizarTextoLoteResponse,
     HealthCheckResponse,
     ReentrenarRequest,
     ReentrenarResponse
@@ -159,6 +162,57 @@ async def analizar_texto(request: AnalizarTextoRequest):
         )
 
 
+@app.post(
+    "/api/ml/analizar-texto-lote",
+    response_model=AnalizarTextoLoteResponse,
+    status_code=status.HTTP_200_OK,
+    tags=["Análisis"]
+)
+async def analizar_texto_lote(request: AnalizarTextoLoteRequest):
+    """
+    Analiza varios textos en una sola llamada.
+
+    El backend agrupa los textos pendientes (micro-batching) y los envía juntos;
+    el modelo vectoriza y predice el lote completo de una vez.
+
+    Args:
+        request: Lista de textos con su ID de incidente
+
+    Returns:
+        AnalizarTextoLoteResponse con un resultado (o error) por item, en el mismo orden
+
+    Raises:
+        503: Si el modelo no está cargado
+        500: Si ocurre un error inesperado
+    """
+    try:
+        if not analisis_service.model_loaded:
+            raise HTTPException(
+                status_code=status.HTTP_503_SERVICE_UNAVAILABLE,
+                detail="El modelo no está entrenado. Por favor entrena el modelo primero llamando a /api/ml/reentrenar"
+            )
+
+        start_time = time.time()
+
+        resultados = analisis_service.analizar_lote([
+            (item.texto, str(item.incidente_id) if item.incidente_id else None)
+            for item in request.items
+        ])
+
+        return AnalizarTextoLoteResponse(
+            resultados=resultados,
+            tiempo_procesamiento_ms=int((time.time() - start_time) * 1000)
+        )
+
+    except HTTPException:
+        raise
+    except Exception as e:
+        raise HTTPException(
+            status_code=status.HTTP_500_INTERNAL_SERVER_ERROR,
+            detail=f"Error inesperado al analizar lote de textos: {str(e)}"
+        )
+
+
 @app.post(
     "/api/ml/reentrenar",
     response_model=ReentrenarResponse,
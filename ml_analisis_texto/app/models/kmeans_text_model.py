@@ -142,52 +142,71 @@ class KMeansTextAnalyzer:
         Returns:
             Dict con análisis completo
         """
+        return self.predict_batch([text], preprocessed)[0]
+
+    def predict_batch(self, texts: List[str], preprocessed: bool = False) -> List[Dict]:
+        """
+        Predice varios textos en una sola pasada: se vectoriza la matriz completa
+        y se calculan clusters y distancias de una vez
+
+        Args:
+            texts: Textos a analizar
+            preprocessed: Si los textos ya están preprocesados
+
+        Returns:
+            Lista de dicts con el análisis de cada texto, en el mismo orden
+        """
         if not self.is_trained:
             raise ValueError("El modelo no ha sido entrenado. Llama a train() primero.")
 
-        # Vectorizar texto
-        X = self.vectorizer.transform([text])
-
-        # Predecir cluster
-        cluster_id = self.kmeans.predict(X)[0]
+        # Vectorizar todos los textos
+        X = self.vectorizer.transform(texts)
 
-        # Obtener prioridad
-        prioridad = self.cluster_to_priority.get(cluster_id, 3)
+        # Predecir clusters
+        cluster_ids = self.kmeans.predict(X)
 
         # Calcular distancias a todos los centroides
-        distances = self.kmeans.transform(X)[0]
+        distances = self.kmeans.transform(X)
 
         # Calcular probabilidades (inverso de distancias normalizadas)
         inv_distances = 1 / (distances + 1e-10)
-        probabilities = inv_distances / inv_distances.sum()
+        probabilities = inv_distances / inv_distances.sum(axis=1, keepdims=True)
 
-        # Confianza (probabilidad del cluster asignado)
-        confidence = float(probabilities[cluster_id])
-
-        # Distribución de probabilidades por cluster
-        prob_distribution = {
-            f"cluster_{i}": float(probabilities[i])
-            for i in range(self.n_clusters)
-        }
-
-        # Categorías detectadas (basado en términos TF-IDF más importantes)
         feature_names = self.vectorizer.get_feature_names_out()
-        feature_scores = X.toarray()[0]
-        top_features_idx = feature_scores.argsort()[-10:][::-1]
-        top_features = [feature_names[i] for i in top_features_idx if feature_scores[i] > 0]
-
-        categorias = self._classify_categories(top_features)
-
-        return {
-            "cluster_id": int(cluster_id),
-            "prioridad_calculada": prioridad,
-            "nivel_gravedad": prioridad,  # Por ahora, mismo valor
-            "tipo_incidente_predicho": self.cluster_labels.get(cluster_id, "Desconocido"),
-            "score_confianza": confidence,
-            "probabilidades_categorias": prob_distribution,
-            "categorias_detectadas": categorias,
-            "top_features": top_features
-        }
+        resultados = []
+
+        for fila, cluster_id in enumerate(cluster_ids):
+            # Obtener prioridad
+            prioridad = self.cluster_to_priority.get(cluster_id, 3)
+
+            # Confianza (probabilidad del cluster asignado)
+            confidence = float(probabilities[fila][cluster_id])
+
+            # Distribución de probabilidades por cluster
+            prob_distribution = {
+                f"cluster_{i}": float(probabilities[fila][i])
+                for i in range(self.n_clusters)
+            }
+
+            # Categorías detectadas (basado en términos TF-IDF más importantes)
+            feature_scores = X[fila].toarray()[0]
+            top_features_idx = feature_scores.argsort()[-10:][::-1]
+            top_features = [feature_names[i] for i in top_features_idx if feature_scores[i] > 0]
+
+            categorias = self._classify_categories(top_features)
+
+            resultados.append({
+                "cluster_id": int(cluster_id),
+                "prioridad_calculada": prioridad,
+                "nivel_gravedad": prioridad,  # Por ahora, mismo valor
+                "tipo_incidente_predicho": self.cluster_labels.get(cluster_id, "Desconocido"),
+                "score_confianza": confidence,
+                "probabilidades_categorias": prob_distribution,
+                "categorias_detectadas": categorias,
+                "top_features": top_features
+            })
+
+        return resultados
 
     def _classify_categories(self, features: List[str]) -> Dict[str, float]:
         """Clasifica en categorías predefinidas basado en features"""
@@ -3,10 +3,14 @@ from typing import Dict, List, Optional
 from datetime import datetime
 from decimal import Decimal
 
+# Límites de largo del texto; en los lotes se validan por item
+TEXTO_MIN_CARACTERES = 10
+TEXTO_MAX_CARACTERES = 5000
+
 
 class AnalizarTextoRequest(BaseModel):
     """Request para analizar texto de incidente"""
-    texto: str = Field(..., min_length=10, max_length=5000, description="Descripción del incidente")
+    texto: str = Field(..., min_length=TEXTO_MIN_CARACTERES, max_length=TEXTO_MAX_CARACTERES, description="Descripción del incidente")
     incidente_id: Optional[UUID4] = Field(None, description="ID del incidente (opcional)")
 
 
@@ -64,6 +68,30 @@ class AnalizarTextoResponse(BaseModel):
         }
 
 
+class AnalizarTextoLoteItemRequest(BaseModel):
+    """Texto dentro de un lote. El largo se valida por item para no rechazar el lote completo"""
+    texto: str = Field(..., description="Descripción del incidente")
+    incidente_id: Optional[UUID4] = Field(None, description="ID del incidente (opcional)")
+
+
+class AnalizarTextoLoteRequest(BaseModel):
+    """Request para analizar varios textos en una sola llamada"""
+    items: List[AnalizarTextoLoteItemRequest] = Field(..., min_length=1, max_length=100, description="Textos a analizar")
+
+
+class AnalizarTextoLoteItem(BaseModel):
+    """Resultado de un texto dentro de un lote: análisis o error, nunca ambos"""
+    incidente_id: Optional[UUID4] = Field(None, description="ID del incidente del request")
+    resultado: Optional[AnalizarTextoResponse] = Field(None, description="Análisis del texto")
+    error: Optional[str] = Field(None, description="Motivo por el que no se pudo analizar el texto")
+
+
+class AnalizarTextoLoteResponse(BaseModel):
+    """Response del análisis por lotes, en el mismo orden que los items del request"""
+    resultados: List[AnalizarTextoLoteItem]
+    tiempo_procesamiento_ms: int = Field(..., description="Tiempo total de procesamiento del lote en ms")
+
+
 class HealthCheckResponse(BaseModel):
     """Response del health check"""
     status: str = Field(..., description="Estado del servicio")
@@ -1,12 +1,17 @@
 import time
 from datetime import datetime
 from decimal import Decimal
-from typing import Dict, Optional
+from typing import Dict, List, Optional, Tuple
 from pathlib import Path
 
 from app.models.kmeans_text_model import KMeansTextAnalyzer
 from app.utils.text_preprocessing import TextPreprocessor
-from app.schemas.analisis_schema import AnalizarTextoResponse
+from app.schemas.analisis_schema import (
+    AnalizarTextoResponse,
+    AnalizarTextoLoteItem,
+    TEXTO_MIN_CARACTERES,
+    TEXTO_MAX_CARACTERES,
+)
 from app.config import settings
 
 
@@ -56,14 +61,8 @@ class AnalisisTextoService:
 
         start_time = time.time()
 
-        # 1. Extraer palabras clave críticas del texto original
-        palabras_clave = self.preprocessor.extract_critical_keywords(texto)
-
-        # 2. Extraer entidades médicas
-        entidades_medicas = self.preprocessor.extract_medical_entities(texto)
-
-        # 3. Preprocesar texto
-        texto_procesado = self.preprocessor.preprocess(texto, apply_stemming=True)
+        # 1-3. Palabras clave, entidades médicas y texto preprocesado
+        palabras_clave, entidades_medicas, texto_procesado = self._preparar(texto)
 
         # 4. Predecir con el modelo
         prediccion = self.model.predict(texto_procesado)
@@ -71,14 +70,72 @@ class AnalisisTextoService:
         # 5. Calcular tiempo de procesamiento
         tiempo_ms = int((time.time() - start_time) * 1000)
 
-        # 6. Ajustar prioridad según palabras clave críticas (boost)
+        # 6-7. Ajustar prioridad y construir response
+        return self._construir_response(prediccion, palabras_clave, entidades_medicas, tiempo_ms)
+
+    def analizar_lote(self, items: List[Tuple[str, Optional[str]]]) -> List[AnalizarTextoLoteItem]:
+        """
+        Analiza varios textos vectorizándolos juntos en una sola predicción del modelo.
+        Un texto inválido no invalida el lote: su item vuelve con el error.
+
+        Args:
+            items: Pares (texto, incidente_id)
+
+        Returns:
+            Un AnalizarTextoLoteItem por texto, en el mismo orden
+        """
+        if not self.model_loaded:
+            raise ValueError("El modelo no está entrenado. Por favor entrena el modelo primero.")
+
+        start_time = time.time()
+
+        resultados: List[Optional[AnalizarTextoLoteItem]] = [None] * len(items)
+        preparados = []
+
+        for i, (texto, incidente_id) in enumerate(items):
+            if not texto or len(texto.strip()) < TEXTO_MIN_CARACTERES:
+                resultados[i] = AnalizarTextoLoteItem(
+                    incidente_id=incidente_id,
+                    error=f"El texto debe tener al menos {TEXTO_MIN_CARACTERES} caracteres"
+                )
+                continue
+            if len(texto) > TEXTO_MAX_CARACTERES:
+                resultados[i] = AnalizarTextoLoteItem(
+                    incidente_id=incidente_id,
+                    error=f"El texto no puede superar los {TEXTO_MAX_CARACTERES} caracteres"
+                )
+                continue
+            preparados.append((i, incidente_id, *self._preparar(texto)))
+
+        if preparados:
+            predicciones = self.model.predict_batch([p[4] for p in preparados])
+            # El tiempo de inferencia se reparte entre los textos del lote
+            tiempo_ms = int((time.time() - start_time) * 1000 / len(preparados))
+
+            for (i, incidente_id, palabras_clave, entidades_medicas, _), prediccion in zip(preparados, predicciones):
+                resultados[i] = AnalizarTextoLoteItem(
+                    incidente_id=incidente_id,
+                    resultado=self._construir_response(prediccion, palabras_clave, entidades_medicas, tiempo_ms)
+                )
+
+        return resultados
+
+    def _preparar(self, texto: str) -> Tuple[list, Dict, str]:
+        """Extrae palabras clave críticas y entidades médicas, y preprocesa el texto"""
+        palabras_clave = self.preprocessor.extract_critical_keywords(texto)
+        entidades_medicas = self.preprocessor.extract_medical_entities(texto)
+        texto_procesado = self.preprocessor.preprocess(texto, apply_stemming=True)
+        return palabras_clave, entidades_medicas, texto_procesado
+
+    def _construir_response(self, prediccion: Dict, palabras_clave: list, entidades_medicas: Dict,
+                            tiempo_ms: int) -> AnalizarTextoResponse:
+        """Ajusta la prioridad según palabras clave críticas (boost) y construye el response"""
         prioridad_ajustada = self._ajustar_prioridad_por_keywords(
             prediccion["prioridad_calculada"],
             palabras_clave
         )
 
-        # 7. Construir response
-        response = AnalizarTextoResponse(
+        return AnalizarTextoResponse(
             prioridad_calculada=prioridad_ajustada,
             nivel_gravedad=self._calcular_nivel_gravedad(palabras_clave, prioridad_ajustada),
             tipo_incidente_predicho=prediccion["tipo_incidente_predicho"],
@@ -93,8 +150,6 @@ class AnalisisTextoService:
             fecha_analisis=datetime.now()
         )
 
-        return response
-
     def _ajustar_prioridad_por_keywords(self, prioridad_base: int, palabras_clave: list) -> int:
         """
         Ajusta la prioridad según palabras clave críticas encontradas
@@ -0,0 +1,95 @@
+package com.recepcion.recepcion.almacen;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Objetos como archivos bajo un directorio raíz ({@code app.multimedia.upload-dir}).
+ * Con varios nodos, el directorio tiene que estar compartido entre todos.
+ * <p>
+ * Compatibilidad: las filas anteriores al almacén guardaban la ruta completa del archivo
+ * (p. ej. {@code uploads/<uuid>.jpg}); una clave absoluta o que ya empieza con la raíz se usa tal cual.
+ */
+public class AlmacenLocal implements AlmacenObjetos {
+
+    private final Path raiz;
+
+    public AlmacenLocal(Path raiz) {
+        this.raiz = raiz.normalize();
+    }
+
+    @Override
+    public void guardar(String clave, Path origen) throws IOException {
+        Path destino = resolver(clave);
+        Files.createDirectories(destino.getParent());
+        try {
+            Files.move(origen, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Origen en otro sistema de archivos: se copia junto al destino y se mueve desde ahí
+            Path temporal = destino.resolveSibling(destino.getFileName() + ".parte");
+            Files.copy(origen, temporal, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(origen);
+        }
+    }
+
+    @Override
+    public boolean existe(String clave) {
+        return Files.exists(resolver(clave));
+    }
+
+    @Override
+    public long tamano(String clave) throws IOException {
+        return Files.size(resolver(clave));
+    }
+
+    @Override
+    public InputStream leer(String clave) throws IOException {
+        return Files.newInputStream(resolver(clave));
+    }
+
+    @Override
+    public InputStream leerRango(String clave, long inicio, long fin) throws IOException {
+        SeekableByteChannel canal = Files.newByteChannel(resolver(clave));
+        try {
+            canal.position(inicio);
+        } catch (IOException e) {
+            canal.close();
+            throw e;
+        }
+        return new StreamAcotado(Channels.newInputStream(canal), fin - inicio + 1);
+    }
+
+    @Override
+    public void eliminar(String clave) throws IOException {
+        Files.deleteIfExists(resolver(clave));
+    }
+
+    @Override
+    public Optional<URI> urlFirmada(String clave, Duration validez) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Path> rutaLocal(String clave) {
+        return Optional.of(resolver(clave));
+    }
+
+    private Path resolver(String clave) {
+        Path ruta = Paths.get(clave).normalize();
+        if (ruta.isAbsolute() || ruta.startsWith(raiz)) {
+            return ruta;
+        }
+        return raiz.resolve(ruta);
+    }
+}
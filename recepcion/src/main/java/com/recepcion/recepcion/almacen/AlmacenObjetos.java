@@ -0,0 +1,59 @@
+package com.recepcion.recepcion.almacen;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Dónde se guardan físicamente los archivos (imágenes originales y miniaturas).
+ * Los objetos se identifican por una clave relativa con {@code /} como separador
+ * (p. ej. {@code blobs/ab/cd/<sha256>.jpg}); es lo que queda guardado en la base de datos.
+ * <p>
+ * Implementaciones: {@link AlmacenLocal} (un directorio, compartido entre nodos si hay más de uno)
+ * y {@link AlmacenS3} (S3 o compatibles como MinIO, sin disco compartido).
+ * Se elige con {@code app.multimedia.almacenamiento.tipo}.
+ */
+public interface AlmacenObjetos {
+
+    /**
+     * Guarda el archivo local {@code origen} bajo {@code clave}, reemplazando lo que hubiera.
+     * El origen se consume: después de la llamada puede ya no existir.
+     */
+    void guardar(String clave, Path origen) throws IOException;
+
+    boolean existe(String clave) throws IOException;
+
+    /**
+     * @throws java.nio.file.NoSuchFileException si el objeto no existe
+     */
+    long tamano(String clave) throws IOException;
+
+    /**
+     * Contenido completo del objeto. El llamador cierra el stream.
+     */
+    InputStream leer(String clave) throws IOException;
+
+    /**
+     * Bytes {@code inicio} a {@code fin} (ambos inclusive) del objeto. El llamador cierra el stream.
+     */
+    InputStream leerRango(String clave, long inicio, long fin) throws IOException;
+
+    /**
+     * Borra el objeto si existe
+     */
+    void eliminar(String clave) throws IOException;
+
+    /**
+     * URL temporal para descargar el objeto directamente del almacén, sin pasar por recepcion.
+     * Vacío si el almacén no la soporta (el archivo se sirve desde esta aplicación).
+     */
+    Optional<URI> urlFirmada(String clave, Duration validez);
+
+    /**
+     * Ruta del objeto en el disco de este nodo, si está en uno (permite servirlo por sendfile)
+     */
+    Optional<Path> rutaLocal(String clave);
+}
@@ -0,0 +1,192 @@
+package com.recepcion.recepcion.almacen;
+
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Objetos en un bucket de S3 o compatible (MinIO, Ceph, R2...). No necesita disco compartido entre nodos:
+ * los archivos se sirven redirigiendo a una URL firmada y el servicio ML los descarga con esa misma URL.
+ * <p>
+ * Los archivos de más de {@code umbralMultipart} bytes se suben por partes de {@code tamanoParte}:
+ * cada parte se reintenta por separado y nunca se carga el archivo entero en memoria.
+ */
+@Slf4j
+public class AlmacenS3 implements AlmacenObjetos, AutoCloseable {
+
+    // Mínimo de S3 para todas las partes menos la última
+    public static final long TAMANO_PARTE_MINIMO = 5L * 1024 * 1024;
+
+    private final S3Client s3;
+    private final S3Presigner presigner;
+    private final String bucket;
+    private final long umbralMultipart;
+    private final long tamanoParte;
+
+    public AlmacenS3(S3Client s3, S3Presigner presigner, String bucket, long umbralMultipart, long tamanoParte) {
+        this.s3 = s3;
+        this.presigner = presigner;
+        this.bucket = bucket;
+        this.tamanoParte = Math.max(tamanoParte, TAMANO_PARTE_MINIMO);
+        this.umbralMultipart = Math.max(umbralMultipart, this.tamanoParte);
+    }
+
+    @Override
+    public void guardar(String clave, Path origen) throws IOException {
+        long tamano = Files.size(origen);
+        try {
+            if (tamano > umbralMultipart) {
+                subirPorPartes(clave, origen, tamano);
+            } else {
+                s3.putObject(b -> b.bucket(bucket).key(clave).contentLength(tamano), RequestBody.fromFile(origen));
+            }
+        } catch (SdkException e) {
+            throw new IOException("Error al guardar " + clave + " en S3", e);
+        }
+        Files.deleteIfExists(origen);
+    }
+
+    @Override
+    public boolean existe(String clave) throws IOException {
+        return cabecera(clave).isPresent();
+    }
+
+    @Override
+    public long tamano(String clave) throws IOException {
+        return cabecera(clave)
+                .orElseThrow(() -> new NoSuchFileException(clave))
+                .contentLength();
+    }
+
+    @Override
+    public InputStream leer(String clave) throws IOException {
+        return obtener(clave, null);
+    }
+
+    @Override
+    public InputStream leerRango(String clave, long inicio, long fin) throws IOException {
+        return obtener(clave, "bytes=" + inicio + "-" + fin);
+    }
+
+    @Override
+    public void eliminar(String clave) throws IOException {
+        try {
+            s3.deleteObject(b -> b.bucket(bucket).key(clave));
+        } catch (SdkException e) {
+            throw new IOException("Error al eliminar " + clave + " de S3", e);
+        }
+    }
+
+    @Override
+    public Optional<URI> urlFirmada(String clave, Duration validez) {
+        try {
+            return Optional.of(presigner.presignGetObject(b -> b
+                    .signatureDuration(validez)
+                    .getObjectRequest(g -> g.bucket(bucket).key(clave))).url().toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("URL firmada inválida para " + clave, e);
+        }
+    }
+
+    @Override
+    public Optional<Path> rutaLocal(String clave) {
+        return Optional.empty();
+    }
+
+    @Override
+    public void close() {
+        presigner.close();
+        s3.close();
+    }
+
+    // ==================== MÉTODOS PRIVADOS ====================
+
+    private void subirPorPartes(String clave, Path origen, long tamano) {
+        String uploadId = s3.createMultipartUpload(b -> b.bucket(bucket).key(clave)).uploadId();
+        try {
+            List<CompletedPart> partes = new ArrayList<>();
+            int numero = 1;
+            for (long inicio = 0; inicio < tamano; inicio += tamanoParte, numero++) {
+                long desde = inicio;
+                long largo = Math.min(tamanoParte, tamano - inicio);
+                int numeroParte = numero;
+                // El SDK pide un stream nuevo en cada reintento: se vuelve a abrir el archivo en el offset de la parte
+                String etag = s3.uploadPart(b -> b.bucket(bucket).key(clave).uploadId(uploadId)
+                                .partNumber(numeroParte).contentLength(largo),
+                        RequestBody.fromContentProvider(() -> abrirParte(origen, desde, largo), largo,
+                                "application/octet-stream")).eTag();
+                partes.add(CompletedPart.builder().partNumber(numeroParte).eTag(etag).build());
+            }
+            s3.completeMultipartUpload(b -> b.bucket(bucket).key(clave).uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(partes).build()));
+            log.debug("{} subido a S3 en {} partes", clave, partes.size());
+        } catch (RuntimeException e) {
+            // Sin esto las partes ya subidas quedan ocupando espacio en el bucket
+            try {
+                s3.abortMultipartUpload(b -> b.bucket(bucket).key(clave).uploadId(uploadId));
+            } catch (SdkException abortando) {
+                e.addSuppressed(abortando);
+            }
+            throw e;
+        }
+    }
+
+    private static InputStream abrirParte(Path origen, long inicio, long largo) {
+        try {
+            SeekableByteChannel canal = Files.newByteChannel(origen);
+            canal.position(inicio);
+            return new StreamAcotado(Channels.newInputStream(canal), largo);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Optional<HeadObjectResponse> cabecera(String clave) throws IOException {
+        try {
+            return Optional.of(s3.headObject(b -> b.bucket(bucket).key(clave)));
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return Optional.empty();
+            }
+            throw new IOException("Error al consultar " + clave + " en S3", e);
+        } catch (SdkException e) {
+            throw new IOException("Error al consultar " + clave + " en S3", e);
+        }
+    }
+
+    private InputStream obtener(String clave, String rango) throws IOException {
+        try {
+            GetObjectRequest request = GetObjectRequest.builder().bucket(bucket).key(clave).range(rango).build();
+            return s3.getObject(request);
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                throw new NoSuchFileException(clave);
+            }
+            throw new IOException("Error al leer " + clave + " de S3", e);
+        } catch (SdkException e) {
+            throw new IOException("Error al leer " + clave + " de S3", e);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.recepcion.recepcion.almacen;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Resource de Spring sobre un objeto del almacén: cada {@link #getInputStream()} lo vuelve a abrir,
+ * así sirve para respuestas con Range igual que un FileSystemResource
+ */
+public class RecursoAlmacenado extends AbstractResource {
+
+    private final AlmacenObjetos almacen;
+    private final String clave;
+    private final long tamano;
+
+    public RecursoAlmacenado(AlmacenObjetos almacen, String clave, long tamano) {
+        this.almacen = almacen;
+        this.clave = clave;
+        this.tamano = tamano;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return almacen.leer(clave);
+    }
+
+    @Override
+    public long contentLength() {
+        return tamano;
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public String getFilename() {
+        return clave.substring(clave.lastIndexOf('/') + 1);
+    }
+
+    @Override
+    public String getDescription() {
+        return "Objeto almacenado [" + clave + "]";
+    }
+}
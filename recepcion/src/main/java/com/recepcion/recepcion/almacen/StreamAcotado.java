@@ -0,0 +1,59 @@
+package com.recepcion.recepcion.almacen;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stream que entrega como máximo {@code restantes} bytes del stream envuelto
+ */
+class StreamAcotado extends FilterInputStream {
+
+    private long restantes;
+
+    StreamAcotado(InputStream entrada, long limite) {
+        super(entrada);
+        this.restantes = limite;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (restantes <= 0) {
+            return -1;
+        }
+        int leido = super.read();
+        if (leido != -1) {
+            restantes--;
+        }
+        return leido;
+    }
+
+    @Override
+    public int read(byte[] buffer, int desde, int cantidad) throws IOException {
+        if (restantes <= 0) {
+            return -1;
+        }
+        int leidos = super.read(buffer, desde, (int) Math.min(cantidad, restantes));
+        if (leidos > 0) {
+            restantes -= leidos;
+        }
+        return leidos;
+    }
+
+    @Override
+    public long skip(long cantidad) throws IOException {
+        long saltados = super.skip(Math.min(cantidad, restantes));
+        restantes -= saltados;
+        return saltados;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(super.available(), restantes);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
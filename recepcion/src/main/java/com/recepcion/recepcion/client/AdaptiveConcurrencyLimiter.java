@@ -0,0 +1,167 @@
+package com.recepcion.recepcion.client;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Límite adaptativo de llamadas simultáneas a un servicio ML (AIMD).
+ * <ul>
+ *     <li>Aumento aditivo: cada respuesta a tiempo con el límite en uso suma 1/límite,
+ *     es decir +1 por cada "ventana" de llamadas sanas</li>
+ *     <li>Reducción multiplicativa: si la latencia suavizada (media móvil exponencial) supera
+ *     {@code latenciaObjetivoMs}, o hay un 5xx o timeout, el límite se multiplica por
+ *     {@link #FACTOR_REDUCCION}, como máximo una vez por ventana</li>
+ * </ul>
+ * Las llamadas que exceden el límite esperan hasta {@code esperaMaximaMs} y después se rechazan con
+ * {@link MlServicioNoDisponibleException}, lo que aplaza el job en vez de gastar un intento.
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    static final double FACTOR_REDUCCION = 0.75;
+    // Peso de cada muestra en la latencia suavizada: una respuesta lenta aislada no reduce el límite
+    private static final double PESO_MUESTRA = 0.1;
+
+    private final String nombre;
+    private final int minimo;
+    private final int maximo;
+    private final long latenciaObjetivoNanos;
+    private final long esperaMaximaNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hayCupo = lock.newCondition();
+    private final AtomicLong rechazadas = new AtomicLong();
+
+    private double limite;
+    private int enVuelo;
+    private double latenciaSuavizadaNanos;
+    // Las llamadas iniciadas antes de la última reducción ya no vuelven a reducir
+    private long ultimaReduccion;
+
+    public AdaptiveConcurrencyLimiter(String nombre, int inicial, int minimo, int maximo,
+                                      long latenciaObjetivoMs, long esperaMaximaMs) {
+        this.nombre = nombre;
+        this.minimo = Math.max(1, minimo);
+        this.maximo = Math.max(this.minimo, maximo);
+        this.limite = Math.min(this.maximo, Math.max(this.minimo, inicial));
+        this.latenciaObjetivoNanos = TimeUnit.MILLISECONDS.toNanos(latenciaObjetivoMs);
+        this.esperaMaximaNanos = TimeUnit.MILLISECONDS.toNanos(esperaMaximaMs);
+        this.ultimaReduccion = System.nanoTime();
+    }
+
+    /**
+     * Toma un lugar para una llamada, esperando como máximo {@code esperaMaximaMs}.
+     * El permiso debe liberarse siempre con {@link Permiso#liberar()}.
+     *
+     * @throws MlServicioNoDisponibleException si no se liberó lugar a tiempo
+     */
+    public Permiso adquirir() {
+        lock.lock();
+        try {
+            long restante = esperaMaximaNanos;
+            while (enVuelo >= (int) limite) {
+                if (restante <= 0) {
+                    rechazadas.incrementAndGet();
+                    throw new MlServicioNoDisponibleException(String.format(
+                            "Límite de concurrencia de %s alcanzado (%d llamadas en curso)", nombre, enVuelo));
+                }
+                restante = hayCupo.awaitNanos(restante);
+            }
+            enVuelo++;
+            return new Permiso(System.nanoTime(), enVuelo);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MlServicioNoDisponibleException("Espera de cupo en " + nombre + " interrumpida");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void liberar(Permiso permiso) {
+        long ahora = System.nanoTime();
+        long latencia = ahora - permiso.inicio;
+
+        lock.lock();
+        try {
+            enVuelo--;
+            latenciaSuavizadaNanos = latenciaSuavizadaNanos == 0
+                    ? latencia
+                    : latenciaSuavizadaNanos * (1 - PESO_MUESTRA) + latencia * PESO_MUESTRA;
+
+            if (permiso.sobrecarga || latenciaSuavizadaNanos > latenciaObjetivoNanos) {
+                if (permiso.inicio >= ultimaReduccion) {
+                    double anterior = limite;
+                    limite = Math.max(minimo, limite * FACTOR_REDUCCION);
+                    ultimaReduccion = ahora;
+                    log.debug("Límite de {} reducido de {} a {}", nombre, (int) anterior, (int) limite);
+                }
+            } else if (permiso.enVueloAlAdquirir * 2 >= (int) limite) {
+                // Solo crece si el límite se está usando: con poca carga no hay evidencia de que sobre capacidad
+                limite = Math.min(maximo, limite + 1.0 / limite);
+            }
+            hayCupo.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimite() {
+        lock.lock();
+        try {
+            return (int) limite;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getEnVuelo() {
+        lock.lock();
+        try {
+            return enVuelo;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRechazadas() {
+        return rechazadas.get();
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    /**
+     * Lugar ocupado por una llamada en curso
+     */
+    public class Permiso {
+
+        private final long inicio;
+        private final int enVueloAlAdquirir;
+        private boolean sobrecarga;
+        private boolean liberado;
+
+        private Permiso(long inicio, int enVueloAlAdquirir) {
+            this.inicio = inicio;
+            this.enVueloAlAdquirir = enVueloAlAdquirir;
+        }
+
+        /**
+         * La llamada terminó con 5xx, timeout o error de conexión: señal de sobrecarga
+         */
+        public void marcarSobrecarga() {
+            sobrecarga = true;
+        }
+
+        public void liberar() {
+            if (!liberado) {
+                liberado = true;
+                AdaptiveConcurrencyLimiter.this.liberar(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.recepcion.recepcion.client;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Circuit breaker simple para las llamadas a un servicio ML.
+ * <ul>
+ *     <li>CLOSED: las llamadas pasan; tras {@code umbralFallos} fallos consecutivos se abre</li>
+ *     <li>OPEN: las llamadas se rechazan sin tocar la red durante {@code esperaAbiertoMs}</li>
+ *     <li>HALF_OPEN: se deja pasar una sola llamada de prueba; si funciona se cierra, si falla se vuelve a abrir</li>
+ * </ul>
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum Estado {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String nombre;
+    private final int umbralFallos;
+    private final long esperaAbiertoMs;
+
+    private Estado estado = Estado.CLOSED;
+    private int fallosConsecutivos;
+    private long abiertoDesde;
+    private boolean pruebaEnCurso;
+    // Hilo al que se autorizó la llamada de prueba en curso
+    private Thread duenoPrueba;
+
+    public CircuitBreaker(String nombre, int umbralFallos, long esperaAbiertoMs) {
+        this.nombre = nombre;
+        this.umbralFallos = umbralFallos;
+        this.esperaAbiertoMs = esperaAbiertoMs;
+    }
+
+    /**
+     * Indica si se puede realizar una llamada. En HALF_OPEN solo autoriza una llamada a la vez.
+     */
+    public synchronized boolean permiteLlamada() {
+        if (estado == Estado.OPEN && System.currentTimeMillis() - abiertoDesde >= esperaAbiertoMs) {
+            cambiarEstado(Estado.HALF_OPEN);
+        }
+
+        return switch (estado) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (pruebaEnCurso) {
+                    yield false;
+                }
+                pruebaEnCurso = true;
+                duenoPrueba = Thread.currentThread();
+                yield true;
+            }
+        };
+    }
+
+    public synchronized void registrarExito() {
+        fallosConsecutivos = 0;
+        pruebaEnCurso = false;
+        duenoPrueba = null;
+        if (estado != Estado.CLOSED) {
+            cambiarEstado(Estado.CLOSED);
+        }
+    }
+
+    public synchronized void registrarFallo() {
+        fallosConsecutivos++;
+        pruebaEnCurso = false;
+        duenoPrueba = null;
+        if (estado == Estado.HALF_OPEN || fallosConsecutivos >= umbralFallos) {
+            abiertoDesde = System.currentTimeMillis();
+            if (estado != Estado.OPEN) {
+                cambiarEstado(Estado.OPEN);
+            }
+        }
+    }
+
+    /**
+     * Libera la llamada de prueba autorizada a este hilo si terminó sin registrar éxito ni fallo
+     * (p. ej. se rechazó por falta de cupo antes de llegar a la red). Sin esto el circuito quedaría
+     * en HALF_OPEN rechazando todo. Se llama siempre en un finally tras {@link #permiteLlamada()}.
+     */
+    public synchronized void liberarPrueba() {
+        if (pruebaEnCurso && duenoPrueba == Thread.currentThread()) {
+            pruebaEnCurso = false;
+            duenoPrueba = null;
+        }
+    }
+
+    public synchronized Estado getEstado() {
+        return estado;
+    }
+
+    public synchronized int getFallosConsecutivos() {
+        return fallosConsecutivos;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    private void cambiarEstado(Estado nuevo) {
+        log.warn("Circuit breaker {}: {} -> {} (fallos consecutivos: {})", nombre, estado, nuevo, fallosConsecutivos);
+        estado = nuevo;
+    }
+}
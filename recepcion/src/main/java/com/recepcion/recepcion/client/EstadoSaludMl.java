@@ -0,0 +1,13 @@
+package com.recepcion.recepcion.client;
+
+import java.time.LocalDateTime;
+
+/**
+ * Resultado de un health check a un servicio ML
+ */
+public record EstadoSaludMl(boolean disponible, String modeloVersion, LocalDateTime fechaVerificacion) {
+
+    public static EstadoSaludMl noDisponible() {
+        return new EstadoSaludMl(false, null, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,90 @@
+package com.recepcion.recepcion.client;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Mantiene en memoria el estado de salud de los servicios ML.
+ * Los health checks se hacen en segundo plano cada {@code ml.salud.intervalo-ms}, de modo que
+ * el flujo de análisis solo consulta un valor cacheado en vez de hacer un GET extra por análisis.
+ */
+@Component
+@Slf4j
+public class MlHealthMonitor {
+
+    private final MlTextoClient mlTextoClient;
+    private final MlImagenClient mlImagenClient;
+
+    // null hasta el primer chequeo: mientras tanto se asume disponible y decide el circuit breaker
+    private volatile EstadoSaludMl saludTexto;
+    private volatile EstadoSaludMl saludImagen;
+
+    public MlHealthMonitor(MlTextoClient mlTextoClient, MlImagenClient mlImagenClient, MeterRegistry meterRegistry) {
+        this.mlTextoClient = mlTextoClient;
+        this.mlImagenClient = mlImagenClient;
+
+        registrarGaugeCircuito(meterRegistry, "texto", mlTextoClient.getCircuitBreaker());
+        registrarGaugeCircuito(meterRegistry, "imagen", mlImagenClient.getCircuitBreaker());
+    }
+
+    @Scheduled(fixedDelayString = "${ml.salud.intervalo-ms:5000}")
+    public void actualizar() {
+        saludTexto = registrarCambio("texto", saludTexto, mlTextoClient.consultarSalud());
+        saludImagen = registrarCambio("imagen", saludImagen, mlImagenClient.consultarSalud());
+    }
+
+    /**
+     * Indica si se debe intentar un análisis de texto: el último health check fue positivo
+     * y el circuit breaker no está abierto
+     */
+    public boolean textoDisponible() {
+        return disponible(saludTexto, mlTextoClient.getCircuitBreaker());
+    }
+
+    /**
+     * Indica si se debe intentar un análisis de imagen
+     */
+    public boolean imagenDisponible() {
+        return disponible(saludImagen, mlImagenClient.getCircuitBreaker());
+    }
+
+    public EstadoSaludMl getSaludTexto() {
+        return saludTexto;
+    }
+
+    public EstadoSaludMl getSaludImagen() {
+        return saludImagen;
+    }
+
+    private boolean disponible(EstadoSaludMl salud, CircuitBreaker circuitBreaker) {
+        return (salud == null || salud.disponible())
+                && circuitBreaker.getEstado() != CircuitBreaker.Estado.OPEN;
+    }
+
+    private EstadoSaludMl registrarCambio(String servicio, EstadoSaludMl anterior, EstadoSaludMl actual) {
+        boolean antesDisponible = anterior == null || anterior.disponible();
+        if (antesDisponible != actual.disponible()) {
+            if (actual.disponible()) {
+                log.info("Servicio ML de {} disponible de nuevo (modelo {})", servicio, actual.modeloVersion());
+            } else {
+                log.warn("Servicio ML de {} no disponible", servicio);
+            }
+        }
+        return actual;
+    }
+
+    private void registrarGaugeCircuito(MeterRegistry meterRegistry, String servicio, CircuitBreaker circuitBreaker) {
+        // 0 = CLOSED, 1 = HALF_OPEN, 2 = OPEN
+        Gauge.builder("ml.circuito.estado", circuitBreaker, cb -> switch (cb.getEstado()) {
+                    case CLOSED -> 0;
+                    case HALF_OPEN -> 1;
+                    case OPEN -> 2;
+                })
+                .tag("servicio", servicio)
+                .description("Estado del circuit breaker del servicio ML")
+                .register(meterRegistry);
+    }
+}
@@ -3,6 +3,7 @@ package com.recepcion.recepcion.client;
 import com.recepcion.recepcion.dto.ml.AnalizarImagenRequest;
 import com.recepcion.recepcion.dto.ml.AnalizarImagenResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Component;
@@ -10,6 +11,7 @@ import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Component
@@ -17,14 +19,21 @@ import java.util.UUID;
 public class MlImagenClient {
 
     private final RestTemplate restTemplate;
-    private final String mlImagenBaseUrl;
+    private final CircuitBreaker circuitBreaker;
+    private final AdaptiveConcurrencyLimiter limitador;
+    private final MlReplicas replicas;
 
     public MlImagenClient(
-            RestTemplate restTemplate,
-            @Value("${ml.imagen.base-url:http://localhost:8002}") String mlImagenBaseUrl
+            @Qualifier("mlImagenRestTemplate") RestTemplate restTemplate,
+            @Value("${ml.circuito.umbral-fallos:5}") int umbralFallos,
+            @Value("${ml.circuito.espera-abierto-ms:30000}") long esperaAbiertoMs,
+            @Qualifier("mlImagenLimitador") AdaptiveConcurrencyLimiter limitador,
+            @Qualifier("mlImagenReplicas") MlReplicas replicas
     ) {
         this.restTemplate = restTemplate;
-        this.mlImagenBaseUrl = mlImagenBaseUrl;
+        this.circuitBreaker = new CircuitBreaker("ml-imagen", umbralFallos, esperaAbiertoMs);
+        this.limitador = limitador;
+        this.replicas = replicas;
     }
 
     /**
@@ -38,8 +47,34 @@ public class MlImagenClient {
      */
     public AnalizarImagenResponse analizarImagen(String imagenPath, UUID multimediaId, UUID incidenteId)
             throws MlServiceException {
-        String url = mlImagenBaseUrl + "/api/ml/analizar-imagen";
+        return analizarImagen(imagenPath, multimediaId, incidenteId, false);
+    }
+
+    /**
+     * Analiza una imagen en la réplica menos cargada del servicio ML
+     *
+     * @param urgente si hay varias réplicas y la primera tarda más que el p95, se envía una copia a otra
+     * @throws MlServiceException si el servicio ML falla
+     */
+    public AnalizarImagenResponse analizarImagen(String imagenPath, UUID multimediaId, UUID incidenteId,
+                                                 boolean urgente) throws MlServiceException {
+        if (!circuitBreaker.permiteLlamada()) {
+            throw new MlServicioNoDisponibleException("Circuit breaker abierto para el servicio ML de imagen");
+        }
+
+        try {
+            return replicas.ejecutar(urgente, replica -> analizarImagenEn(replica, imagenPath, multimediaId, incidenteId));
+        } finally {
+            // Si no llegó a la red (sin cupo en el limitador, interrumpida) no registró resultado
+            circuitBreaker.liberarPrueba();
+        }
+    }
+
+    private AnalizarImagenResponse analizarImagenEn(MlReplicas.Replica replica, String imagenPath,
+                                                    UUID multimediaId, UUID incidenteId) throws MlServiceException {
+        String url = replica.getUrl() + "/api/ml/analizar-imagen";
 
+        AdaptiveConcurrencyLimiter.Permiso permiso = limitador.adquirir();
         try {
             log.info("Llamando al servicio ML de imagen: {}", url);
 
@@ -65,34 +100,74 @@ public class MlImagenClient {
             );
 
             if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
+                circuitBreaker.registrarExito();
+                replica.registrarExito();
                 log.info("Análisis de imagen completado. Es accidente: {}, Severidad: {}",
                         response.getBody().getEsImagenAccidente(),
                         response.getBody().getNivelGravedadVisual());
                 return response.getBody();
             } else {
+                circuitBreaker.registrarFallo();
+                replica.registrarFallo();
                 throw new MlServiceException("Respuesta inválida del servicio ML de imagen");
             }
 
+        } catch (MlServiceException e) {
+            throw e;
         } catch (HttpClientErrorException e) {
+            // El servicio respondió: un 4xx es un problema de la petición, no de disponibilidad
+            circuitBreaker.registrarExito();
+            replica.registrarExito();
             log.error("Error del cliente HTTP al llamar ML imagen: {} - {}",
                     e.getStatusCode(), e.getResponseBodyAsString());
             throw new MlServiceException("Error del servicio ML de imagen: " + e.getMessage(), e);
         } catch (RestClientException e) {
+            if (MlReplicas.cancelada()) {
+                // Abortada porque otra réplica respondió antes: no es un fallo de esta réplica
+                throw new MlServiceException("Llamada a ML imagen cancelada: otra réplica respondió antes", e);
+            }
+            permiso.marcarSobrecarga();
+            circuitBreaker.registrarFallo();
+            replica.registrarFallo();
             log.error("Error de conexión con servicio ML de imagen: {}", e.getMessage());
             throw new MlServiceException("No se pudo conectar con el servicio ML de imagen", e);
         } catch (Exception e) {
+            if (MlReplicas.cancelada()) {
+                // Abortada porque otra réplica respondió antes: no es un fallo de esta réplica
+                throw new MlServiceException("Llamada a ML imagen cancelada: otra réplica respondió antes", e);
+            }
+            permiso.marcarSobrecarga();
+            circuitBreaker.registrarFallo();
+            replica.registrarFallo();
             log.error("Error inesperado al analizar imagen: {}", e.getMessage(), e);
             throw new MlServiceException("Error inesperado en análisis de imagen", e);
+        } finally {
+            permiso.liberar();
         }
     }
 
     /**
-     * Verifica el estado del servicio ML de imagen
+     * Consulta el endpoint de salud del servicio ML de imagen.
+     * Lo invoca periódicamente {@link MlHealthMonitor}; el flujo de análisis no debe llamarlo directamente.
      *
-     * @return true si el servicio está disponible y el modelo está cargado
+     * Cada réplica que no responde sana sale del reparto hasta el siguiente health check exitoso.
+     *
+     * @return estado de la primera réplica sana, o no disponible si ninguna lo está
      */
-    public boolean isServiceHealthy() {
-        String url = mlImagenBaseUrl + "/api/ml/salud";
+    public EstadoSaludMl consultarSalud() {
+        EstadoSaludMl estado = EstadoSaludMl.noDisponible();
+        for (MlReplicas.Replica replica : replicas.getReplicas()) {
+            EstadoSaludMl salud = consultarSalud(replica);
+            replica.registrarSalud(salud.disponible());
+            if (salud.disponible() && !estado.disponible()) {
+                estado = salud;
+            }
+        }
+        return estado;
+    }
+
+    private EstadoSaludMl consultarSalud(MlReplicas.Replica replica) {
+        String url = replica.getUrl() + "/api/ml/salud";
 
         try {
             ResponseEntity<HealthCheckResponse> response = restTemplate.getForEntity(
@@ -100,16 +175,36 @@ public class MlImagenClient {
                     HealthCheckResponse.class
             );
 
-            return response.getStatusCode() == HttpStatus.OK &&
-                   response.getBody() != null &&
-                   response.getBody().isModelLoaded();
+            HealthCheckResponse body = response.getBody();
+            boolean disponible = response.getStatusCode() == HttpStatus.OK &&
+                    body != null &&
+                    body.isModelLoaded();
+
+            return new EstadoSaludMl(disponible, body != null ? body.getModelVersion() : null, LocalDateTime.now());
 
         } catch (Exception e) {
-            log.warn("Servicio ML de imagen no disponible: {}", e.getMessage());
-            return false;
+            log.warn("Réplica {} del servicio ML de imagen no disponible: {}", replica.getUrl(), e.getMessage());
+            return EstadoSaludMl.noDisponible();
         }
     }
 
+    /**
+     * Verifica el estado del servicio ML de imagen
+     *
+     * @return true si el servicio está disponible y el modelo está cargado
+     */
+    public boolean isServiceHealthy() {
+        return consultarSalud().disponible();
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public MlReplicas getReplicas() {
+        return replicas;
+    }
+
     /**
      * Exception custom para errores del servicio ML
      */
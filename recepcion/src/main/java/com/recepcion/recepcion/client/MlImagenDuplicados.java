@@ -0,0 +1,111 @@
+package com.recepcion.recepcion.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.recepcion.recepcion.util.HashPerceptual;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Índice en memoria de los hashes perceptuales de imágenes analizadas recientemente.
+ * Permite reutilizar el análisis ML de una foto casi idéntica (a
+ * {@code ml.imagen.dedup.distancia-maxima} bits o menos) en vez de volver a enviarla al servicio.
+ */
+@Component
+public class MlImagenDuplicados {
+
+    private final boolean habilitado;
+    private final int distanciaMaxima;
+    private final Cache<Long, UUID> analizadas;
+
+    private final Counter reutilizadas;
+    private final Counter nuevas;
+
+    public MlImagenDuplicados(
+            @Value("${ml.imagen.dedup.enabled:true}") boolean habilitado,
+            @Value("${ml.imagen.dedup.distancia-maxima:6}") int distanciaMaxima,
+            @Value("${ml.imagen.dedup.max-entradas:5000}") long maxEntradas,
+            @Value("${ml.imagen.dedup.ttl-horas:24}") long ttlHoras,
+            MeterRegistry meterRegistry) {
+        this.habilitado = habilitado;
+        this.distanciaMaxima = distanciaMaxima;
+        this.analizadas = Caffeine.newBuilder()
+                .maximumSize(maxEntradas)
+                .expireAfterWrite(Duration.ofHours(ttlHoras))
+                .build();
+
+        this.reutilizadas = Counter.builder("ml.imagen.dedup")
+                .tag("resultado", "reutilizado")
+                .description("Imágenes cuyo análisis se tomó de una imagen casi idéntica")
+                .register(meterRegistry);
+        this.nuevas = Counter.builder("ml.imagen.dedup")
+                .tag("resultado", "nuevo")
+                .description("Imágenes sin duplicado reciente, enviadas al servicio ML")
+                .register(meterRegistry);
+        Gauge.builder("ml.imagen.dedup.indice", analizadas, Cache::estimatedSize)
+                .description("Hashes de imágenes analizadas en el índice")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Busca la imagen analizada más parecida dentro de la distancia configurada.
+     * Recorre el índice completo: con unos pocos miles de entradas son solo XOR y bitCount.
+     *
+     * @return ID de la multimedia cuyo análisis se puede reutilizar
+     */
+    public Optional<UUID> buscarSimilar(Long hash) {
+        if (!habilitado || hash == null) {
+            return Optional.empty();
+        }
+
+        UUID mejor = null;
+        int mejorDistancia = distanciaMaxima + 1;
+        for (Map.Entry<Long, UUID> entrada : analizadas.asMap().entrySet()) {
+            int distancia = HashPerceptual.distancia(hash, entrada.getKey());
+            if (distancia < mejorDistancia) {
+                mejor = entrada.getValue();
+                mejorDistancia = distancia;
+                if (distancia == 0) {
+                    break;
+                }
+            }
+        }
+        return Optional.ofNullable(mejor);
+    }
+
+    /**
+     * Registra una imagen recién analizada por el servicio ML
+     */
+    public void registrar(Long hash, UUID multimediaId) {
+        if (habilitado && hash != null) {
+            analizadas.put(hash, multimediaId);
+        }
+    }
+
+    /**
+     * Quita una imagen del índice, por ejemplo cuando se elimina
+     */
+    public void olvidar(UUID multimediaId) {
+        analizadas.asMap().values().removeIf(multimediaId::equals);
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    public void contarReutilizada() {
+        reutilizadas.increment();
+    }
+
+    public void contarNueva() {
+        nuevas.increment();
+    }
+}
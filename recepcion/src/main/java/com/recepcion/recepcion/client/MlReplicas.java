@@ -0,0 +1,404 @@
+package com.recepcion.recepcion.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Réplicas de un servicio ML y reparto de llamadas entre ellas (balanceo en el cliente).
+ * <ul>
+ *     <li>Cada llamada va a la réplica disponible con menos llamadas en curso</li>
+ *     <li>Una réplica con {@code fallosExpulsion} fallos consecutivos, o que no pasa el health check,
+ *     queda fuera del reparto durante {@code expulsionMs}. Las dos causas se llevan por separado:
+ *     un health check sano no acorta una expulsión por fallos</li>
+ *     <li>Cobertura (hedging): en llamadas urgentes, si la primera réplica no respondió al llegar al
+ *     p95 de las latencias recientes, se envía la misma petición a otra réplica y gana la primera
+ *     respuesta exitosa. La petición perdedora se aborta. Los intentos corren en un pool acotado a
+ *     {@code hilosCoberturaMaximos}: sin cupo, la llamada va sin cobertura en el hilo de quien llama</li>
+ * </ul>
+ */
+@Slf4j
+public class MlReplicas {
+
+    private static final int VENTANA_LATENCIAS = 200;
+    // Con menos muestras el p95 no es confiable y no se cubre
+    private static final int MUESTRAS_MINIMAS = 20;
+
+    private final String nombre;
+    private final List<Replica> replicas;
+    private final int fallosExpulsion;
+    private final long expulsionMs;
+    private final boolean coberturaHabilitada;
+    private final long coberturaMinimaMs;
+    private final ExecutorService coberturas;
+    // Un permiso por intento en curso en el pool: acota los hilos y las peticiones HTTP extra
+    private final Semaphore cupoCoberturas;
+
+    private final long[] latencias = new long[VENTANA_LATENCIAS];
+    private int siguienteLatencia;
+    private int cantidadLatencias;
+
+    private final AtomicLong coberturasEnviadas = new AtomicLong();
+    private final AtomicLong coberturasGanadoras = new AtomicLong();
+    private final AtomicLong coberturasSinCupo = new AtomicLong();
+
+    private static final ThreadLocal<Intento> INTENTO_ACTUAL = new ThreadLocal<>();
+
+    /**
+     * @param urls                   URLs base de las réplicas, separadas por coma
+     * @param hilosCoberturaMaximos intentos simultáneos en el pool de coberturas (cada llamada cubierta usa hasta dos)
+     */
+    public MlReplicas(String nombre, String urls, int fallosExpulsion, long expulsionMs,
+                      boolean coberturaHabilitada, long coberturaMinimaMs, int hilosCoberturaMaximos) {
+        this.nombre = nombre;
+        this.replicas = Arrays.stream(urls.split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .map(url -> new Replica(url.endsWith("/") ? url.substring(0, url.length() - 1) : url))
+                .toList();
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("No hay URLs configuradas para " + nombre);
+        }
+        this.fallosExpulsion = Math.max(1, fallosExpulsion);
+        this.expulsionMs = expulsionMs;
+        this.coberturaHabilitada = coberturaHabilitada;
+        this.coberturaMinimaMs = coberturaMinimaMs;
+        this.coberturas = Executors.newCachedThreadPool(new CustomizableThreadFactory(nombre + "-cobertura-"));
+        this.cupoCoberturas = new Semaphore(Math.max(2, hilosCoberturaMaximos));
+    }
+
+    /**
+     * Ejecuta la llamada en la réplica elegida. Con {@code cubrir} (incidentes urgentes) y más de
+     * una réplica, envía una copia a otra réplica si la primera tarda más que el p95 observado.
+     */
+    public <T, E extends Exception> T ejecutar(boolean cubrir, Llamada<T, E> llamada) throws E {
+        long umbralMs = cubrir && coberturaHabilitada && replicas.size() > 1 ? umbralCoberturaMs() : -1;
+        if (umbralMs < 0) {
+            return intentar(elegir(null), llamada);
+        }
+
+        Replica primera = elegir(null);
+        if (!cupoCoberturas.tryAcquire()) {
+            coberturasSinCupo.incrementAndGet();
+            return intentar(primera, llamada);
+        }
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+        AtomicInteger intentosPendientes = new AtomicInteger(1);
+        lanzar(primera, llamada, resultado, intentosPendientes, false);
+
+        try {
+            try {
+                return resultado.get(umbralMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                Replica segunda = elegir(primera);
+                if (segunda != null && !resultado.isDone()) {
+                    if (cupoCoberturas.tryAcquire()) {
+                        intentosPendientes.incrementAndGet();
+                        coberturasEnviadas.incrementAndGet();
+                        log.debug("{}: {} no respondió en {} ms, se cubre con {}",
+                                nombre, primera.getUrl(), umbralMs, segunda.getUrl());
+                        lanzar(segunda, llamada, resultado, intentosPendientes, true);
+                    } else {
+                        coberturasSinCupo.incrementAndGet();
+                    }
+                }
+                // El intento que pierde se aborta en cuanto el otro responde
+                return resultado.get();
+            }
+        } catch (ExecutionException e) {
+            throw MlReplicas.<E>relanzar(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MlServicioNoDisponibleException("Llamada a " + nombre + " interrumpida");
+        }
+    }
+
+    /**
+     * Lanza un intento en el pool de coberturas; quien llama ya tomó su permiso de {@code cupoCoberturas}
+     */
+    private <T, E extends Exception> void lanzar(Replica replica, Llamada<T, E> llamada, CompletableFuture<T> resultado,
+                                                 AtomicInteger intentosPendientes, boolean esCobertura) {
+        Intento intento = new Intento();
+        // Cuando hay ganador, el intento que no terminó pierde: se aborta su petición HTTP
+        resultado.whenComplete((valor, error) -> intento.cancelar());
+        try {
+            coberturas.execute(() -> {
+                INTENTO_ACTUAL.set(intento);
+                try {
+                    T valor = intentar(replica, llamada);
+                    intento.terminar();
+                    if (resultado.complete(valor) && esCobertura) {
+                        coberturasGanadoras.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    intento.terminar();
+                    // Solo falla el resultado cuando fallaron todos los intentos lanzados
+                    if (intentosPendientes.decrementAndGet() == 0) {
+                        resultado.completeExceptionally(e);
+                    }
+                } finally {
+                    INTENTO_ACTUAL.remove();
+                    cupoCoberturas.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            cupoCoberturas.release();
+            if (intentosPendientes.decrementAndGet() == 0) {
+                resultado.completeExceptionally(
+                        new MlServicioNoDisponibleException("Pool de coberturas de " + nombre + " detenido"));
+            }
+        }
+    }
+
+    /**
+     * Registra cómo abortar la petición HTTP del intento que corre en este hilo. Lo llama la fábrica de
+     * requests del RestTemplate; fuera de un intento cubierto no hace nada.
+     */
+    public static void alCancelar(Runnable abortar) {
+        Intento intento = INTENTO_ACTUAL.get();
+        if (intento != null) {
+            intento.registrarAbortar(abortar);
+        }
+    }
+
+    /**
+     * Si el intento de este hilo se canceló porque otra réplica respondió antes. Su error no es
+     * un fallo de la réplica ni del servicio y no se debe registrar como tal.
+     */
+    public static boolean cancelada() {
+        Intento intento = INTENTO_ACTUAL.get();
+        return intento != null && intento.isCancelado();
+    }
+
+    private <T, E extends Exception> T intentar(Replica replica, Llamada<T, E> llamada) throws E {
+        replica.enCurso.incrementAndGet();
+        long inicio = System.nanoTime();
+        try {
+            T valor = llamada.llamar(replica);
+            registrarLatencia(System.nanoTime() - inicio);
+            return valor;
+        } finally {
+            replica.enCurso.decrementAndGet();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Exception> E relanzar(Throwable causa) {
+        if (causa instanceof RuntimeException runtimeEx) {
+            throw runtimeEx;
+        }
+        if (causa instanceof Error error) {
+            throw error;
+        }
+        // Los intentos solo pueden lanzar E o excepciones no verificadas
+        return (E) causa;
+    }
+
+    /**
+     * Réplica disponible con menos llamadas en curso (empates al azar).
+     * Si todas están expulsadas se usa igual la menos cargada: el circuit breaker decide si el servicio está caído.
+     *
+     * @param excluida réplica que no se debe elegir; con exclusión devuelve null si no hay otra disponible
+     */
+    Replica elegir(Replica excluida) {
+        Replica elegida = menosCargada(excluida, true);
+        if (elegida == null && excluida == null) {
+            elegida = menosCargada(null, false);
+        }
+        return elegida;
+    }
+
+    private Replica menosCargada(Replica excluida, boolean soloDisponibles) {
+        int inicio = ThreadLocalRandom.current().nextInt(replicas.size());
+        Replica elegida = null;
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((inicio + i) % replicas.size());
+            if (replica == excluida || (soloDisponibles && !replica.isDisponible())) {
+                continue;
+            }
+            if (elegida == null || replica.getEnCurso() < elegida.getEnCurso()) {
+                elegida = replica;
+            }
+        }
+        return elegida;
+    }
+
+    private synchronized void registrarLatencia(long nanos) {
+        latencias[siguienteLatencia] = nanos;
+        siguienteLatencia = (siguienteLatencia + 1) % VENTANA_LATENCIAS;
+        cantidadLatencias = Math.min(cantidadLatencias + 1, VENTANA_LATENCIAS);
+    }
+
+    /**
+     * p95 de las últimas latencias exitosas, o -1 si todavía no hay suficientes muestras
+     */
+    synchronized long umbralCoberturaMs() {
+        if (cantidadLatencias < MUESTRAS_MINIMAS) {
+            return -1;
+        }
+        long[] ordenadas = Arrays.copyOf(latencias, cantidadLatencias);
+        Arrays.sort(ordenadas);
+        long p95 = ordenadas[(int) Math.ceil(cantidadLatencias * 0.95) - 1];
+        return Math.max(coberturaMinimaMs, TimeUnit.NANOSECONDS.toMillis(p95));
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    public long getDisponibles() {
+        return replicas.stream().filter(Replica::isDisponible).count();
+    }
+
+    public long getCoberturasEnviadas() {
+        return coberturasEnviadas.get();
+    }
+
+    public long getCoberturasGanadoras() {
+        return coberturasGanadoras.get();
+    }
+
+    public long getCoberturasSinCupo() {
+        return coberturasSinCupo.get();
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public void cerrar() {
+        coberturas.shutdown();
+    }
+
+    /**
+     * Una llamada HTTP contra la URL base de una réplica
+     */
+    @FunctionalInterface
+    public interface Llamada<T, E extends Exception> {
+        T llamar(Replica replica) throws E;
+    }
+
+    /**
+     * Un intento de una llamada cubierta. Se cancela cuando otro intento ya entregó el resultado.
+     */
+    private static final class Intento {
+
+        private boolean terminado;
+        private boolean cancelado;
+        private Runnable abortar;
+
+        synchronized void terminar() {
+            terminado = true;
+        }
+
+        void cancelar() {
+            Runnable accion;
+            synchronized (this) {
+                if (terminado || cancelado) {
+                    return;
+                }
+                cancelado = true;
+                accion = abortar;
+            }
+            if (accion != null) {
+                accion.run();
+            }
+        }
+
+        void registrarAbortar(Runnable accion) {
+            synchronized (this) {
+                abortar = accion;
+                if (!cancelado) {
+                    return;
+                }
+            }
+            accion.run();
+        }
+
+        synchronized boolean isCancelado() {
+            return cancelado;
+        }
+    }
+
+    /**
+     * Instancia de un servicio ML con su carga y estado de expulsión
+     */
+    public class Replica {
+
+        private final String url;
+        private final AtomicInteger enCurso = new AtomicInteger();
+        private int fallosConsecutivos;
+        // Las dos causas por separado: un health check sano solo levanta la suya
+        private long expulsadaPorFallosHasta;
+        private long expulsadaPorSaludHasta;
+
+        private Replica(String url) {
+            this.url = url;
+        }
+
+        /**
+         * La réplica respondió (incluye 4xx: la petición era inválida, no la réplica)
+         */
+        public synchronized void registrarExito() {
+            fallosConsecutivos = 0;
+        }
+
+        /**
+         * 5xx, timeout o error de conexión
+         */
+        public synchronized void registrarFallo() {
+            fallosConsecutivos++;
+            long ahora = System.currentTimeMillis();
+            if (fallosConsecutivos >= fallosExpulsion && ahora >= expulsadaPorFallosHasta) {
+                expulsadaPorFallosHasta = ahora + expulsionMs;
+                log.warn("Réplica {} de {} fuera del reparto durante {} ms: {} fallos consecutivos",
+                        url, nombre, expulsionMs, fallosConsecutivos);
+            }
+        }
+
+        /**
+         * Resultado del health check periódico. Si la réplica había salido por el health check,
+         * vuelve al reparto en cuanto responde sana; si salió por fallos cumple la expulsión completa.
+         */
+        public synchronized void registrarSalud(boolean saludable) {
+            long ahora = System.currentTimeMillis();
+            if (saludable) {
+                if (expulsadaPorSaludHasta > ahora) {
+                    expulsadaPorSaludHasta = 0;
+                    log.info("Réplica {} de {} pasa el health check{}", url, nombre,
+                            isDisponible() ? " y vuelve al reparto" : ", sigue expulsada por fallos");
+                }
+            } else if (ahora >= expulsadaPorSaludHasta) {
+                expulsadaPorSaludHasta = ahora + expulsionMs;
+                log.warn("Réplica {} de {} fuera del reparto durante {} ms: health check fallido",
+                        url, nombre, expulsionMs);
+            }
+        }
+
+        public synchronized boolean isDisponible() {
+            long ahora = System.currentTimeMillis();
+            return ahora >= expulsadaPorFallosHasta && ahora >= expulsadaPorSaludHasta;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public int getEnCurso() {
+            return enCurso.get();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.recepcion.recepcion.client;
+
+/**
+ * El servicio ML no está disponible (health check fallido o circuit breaker abierto).
+ * No es un fallo del trabajo: quien lo recibe debe aplazarlo y reintentarlo más tarde.
+ */
+public class MlServicioNoDisponibleException extends RuntimeException {
+
+    public MlServicioNoDisponibleException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,228 @@
+package com.recepcion.recepcion.client;
+
+import com.recepcion.recepcion.dto.ml.AnalizarTextoLoteResponse;
+import com.recepcion.recepcion.dto.ml.AnalizarTextoRequest;
+import com.recepcion.recepcion.dto.ml.AnalizarTextoResponse;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+/**
+ * Agrupa los análisis de texto pendientes (micro-batching) y los envía al servicio ML
+ * en una sola llamada a /api/ml/analizar-texto-lote.
+ * <p>
+ * Un lote se envía cuando junta {@code ml.texto.batch.max-items} textos o cuando el primero
+ * lleva {@code ml.texto.batch.linger-ms} esperando, lo que ocurra antes. Cada llamador queda
+ * bloqueado hasta recibir el resultado de su propio texto.
+ * <p>
+ * Si el servicio ML no expone el endpoint de lotes se vuelve a llamadas individuales y se
+ * reintenta el endpoint pasado {@code ml.texto.batch.reintento-endpoint-ms}. Los textos más largos
+ * de lo que el servicio ML acepta también van por llamada individual, para que su rechazo no
+ * arrastre al resto del lote.
+ */
+@Component
+@Slf4j
+public class MlTextoBatcher {
+
+    // Límites del servicio ML (AnalizarTextoLoteRequest / AnalizarTextoRequest)
+    static final int LOTE_MAX_ITEMS = 100;
+    static final int TEXTO_MAX_CARACTERES = 5000;
+
+    private final MlTextoClient mlTextoClient;
+    private final boolean habilitado;
+    private final int maxItems;
+    private final long lingerMs;
+    private final long timeoutMs;
+    private final long reintentoEndpointMs;
+
+    private final ScheduledExecutorService temporizador;
+    private final ExecutorService envios;
+
+    private final DistributionSummary tamanoLote;
+    private final Timer esperaLote;
+    private final Timer llamadaLote;
+
+    private final List<Pendiente> pendientes = new ArrayList<>();
+    private ScheduledFuture<?> vaciadoProgramado;
+    private volatile long loteNoSoportadoHasta;
+
+    public MlTextoBatcher(
+            MlTextoClient mlTextoClient,
+            @Value("${ml.texto.batch.enabled:true}") boolean habilitado,
+            @Value("${ml.texto.batch.max-items:16}") int maxItems,
+            @Value("${ml.texto.batch.linger-ms:20}") long lingerMs,
+            @Value("${ml.texto.batch.envios-concurrentes:4}") int enviosConcurrentes,
+            @Value("${ml.texto.batch.timeout-ms:35000}") long timeoutMs,
+            @Value("${ml.texto.batch.reintento-endpoint-ms:300000}") long reintentoEndpointMs,
+            MeterRegistry meterRegistry) {
+        if (maxItems < 1 || maxItems > LOTE_MAX_ITEMS) {
+            throw new IllegalArgumentException("ml.texto.batch.max-items debe estar entre 1 y " + LOTE_MAX_ITEMS
+                    + " (límite del servicio ML), es " + maxItems);
+        }
+        this.mlTextoClient = mlTextoClient;
+        this.habilitado = habilitado;
+        this.maxItems = maxItems;
+        this.lingerMs = lingerMs;
+        this.timeoutMs = timeoutMs;
+        this.reintentoEndpointMs = reintentoEndpointMs;
+
+        this.temporizador = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("ml-texto-linger-"));
+        this.envios = Executors.newFixedThreadPool(enviosConcurrentes, new CustomizableThreadFactory("ml-texto-lote-"));
+
+        this.tamanoLote = DistributionSummary.builder("ml.texto.lote.tamano")
+                .description("Textos enviados por llamada al endpoint de lotes")
+                .register(meterRegistry);
+        this.esperaLote = Timer.builder("ml.texto.lote.espera")
+                .description("Tiempo que un texto espera en el batcher antes de enviarse")
+                .register(meterRegistry);
+        this.llamadaLote = Timer.builder("ml.texto.lote.llamada")
+                .description("Duración de la llamada HTTP de un lote al servicio ML de texto")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Analiza un texto a través del lote en curso. Bloquea hasta tener el resultado.
+     *
+     * @throws MlTextoClient.MlServiceException si el servicio ML falla o no analiza este texto
+     */
+    public AnalizarTextoResponse analizar(String texto, UUID incidenteId) throws MlTextoClient.MlServiceException {
+        if (!habilitado || System.currentTimeMillis() < loteNoSoportadoHasta
+                || (texto != null && texto.length() > TEXTO_MAX_CARACTERES)) {
+            return mlTextoClient.analizarTexto(texto, incidenteId);
+        }
+
+        CompletableFuture<AnalizarTextoResponse> resultado = encolar(
+                AnalizarTextoRequest.builder().texto(texto).incidenteId(incidenteId).build());
+
+        try {
+            return resultado.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof MlTextoClient.LoteNoSoportadoException) {
+                return mlTextoClient.analizarTexto(texto, incidenteId);
+            }
+            if (causa instanceof MlTextoClient.MlServiceException mlEx) {
+                throw mlEx;
+            }
+            if (causa instanceof RuntimeException runtimeEx) {
+                throw runtimeEx;
+            }
+            throw new MlTextoClient.MlServiceException("Error inesperado en análisis de texto por lote", causa);
+        } catch (TimeoutException e) {
+            throw new MlTextoClient.MlServiceException("Tiempo de espera agotado para el lote de texto del incidente " + incidenteId, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MlTextoClient.MlServiceException("Análisis de texto interrumpido", e);
+        }
+    }
+
+    private CompletableFuture<AnalizarTextoResponse> encolar(AnalizarTextoRequest request) {
+        Pendiente pendiente = new Pendiente(request, new CompletableFuture<>(), System.nanoTime());
+        List<Pendiente> lote = null;
+
+        synchronized (this) {
+            pendientes.add(pendiente);
+            if (pendientes.size() >= maxItems) {
+                lote = tomarLote();
+            } else if (pendientes.size() == 1) {
+                vaciadoProgramado = temporizador.schedule(this::vaciarPorTiempo, lingerMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (lote != null) {
+            despachar(lote);
+        }
+        return pendiente.resultado();
+    }
+
+    private void vaciarPorTiempo() {
+        List<Pendiente> lote;
+        synchronized (this) {
+            if (pendientes.isEmpty()) {
+                return;
+            }
+            lote = tomarLote();
+        }
+        despachar(lote);
+    }
+
+    // Debe llamarse con el monitor tomado
+    private List<Pendiente> tomarLote() {
+        if (vaciadoProgramado != null) {
+            vaciadoProgramado.cancel(false);
+            vaciadoProgramado = null;
+        }
+        List<Pendiente> lote = new ArrayList<>(pendientes);
+        pendientes.clear();
+        return lote;
+    }
+
+    private void despachar(List<Pendiente> lote) {
+        try {
+            envios.execute(() -> enviar(lote));
+        } catch (RejectedExecutionException e) {
+            lote.forEach(p -> p.resultado().completeExceptionally(
+                    new MlTextoClient.MlServiceException("Batcher de texto detenido", e)));
+        }
+    }
+
+    private void enviar(List<Pendiente> lote) {
+        long ahora = System.nanoTime();
+        lote.forEach(p -> esperaLote.record(ahora - p.encolado(), TimeUnit.NANOSECONDS));
+        tamanoLote.record(lote.size());
+
+        List<AnalizarTextoRequest> requests = lote.stream().map(Pendiente::request).toList();
+
+        try {
+            List<AnalizarTextoLoteResponse.Item> items = llamadaLote.recordCallable(
+                    () -> mlTextoClient.analizarTextoLote(requests));
+
+            for (int i = 0; i < lote.size(); i++) {
+                AnalizarTextoLoteResponse.Item item = items.get(i);
+                CompletableFuture<AnalizarTextoResponse> resultado = lote.get(i).resultado();
+
+                if (item.getResultado() != null) {
+                    resultado.complete(item.getResultado());
+                } else {
+                    resultado.completeExceptionally(new MlTextoClient.MlServiceException(
+                            "El servicio ML no analizó el texto: " + item.getError()));
+                }
+            }
+            log.debug("Lote de {} textos analizado", lote.size());
+
+        } catch (MlTextoClient.LoteNoSoportadoException e) {
+            loteNoSoportadoHasta = System.currentTimeMillis() + reintentoEndpointMs;
+            log.warn("{}. Se usarán llamadas individuales durante {} ms", e.getMessage(), reintentoEndpointMs);
+            lote.forEach(p -> p.resultado().completeExceptionally(e));
+        } catch (Exception e) {
+            lote.forEach(p -> p.resultado().completeExceptionally(e));
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        List<Pendiente> lote;
+        synchronized (this) {
+            lote = tomarLote();
+        }
+        lote.forEach(p -> p.resultado().completeExceptionally(
+                new MlTextoClient.MlServiceException("Batcher de texto detenido")));
+        temporizador.shutdown();
+        envios.shutdown();
+    }
+
+    private record Pendiente(AnalizarTextoRequest request,
+                             CompletableFuture<AnalizarTextoResponse> resultado,
+                             long encolado) {
+    }
+}
@@ -0,0 +1,150 @@
+package com.recepcion.recepcion.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.recepcion.recepcion.dto.ml.AnalizarTextoResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Cache de resultados del análisis ML de texto.
+ * La clave es el SHA-256 del texto normalizado más la versión del modelo, así un mensaje
+ * reenviado varias veces (o el mismo reporte por Telegram y WhatsApp) se analiza una sola vez.
+ * Cuando el servicio ML reporta otra versión de modelo la cache se vacía.
+ */
+@Component
+@Slf4j
+public class MlTextoCache {
+
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+    private static final Pattern NO_ALFANUMERICO = Pattern.compile("[^a-z0-9\\s.]");
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+
+    private final MlHealthMonitor mlHealthMonitor;
+    private final boolean habilitado;
+    private final Cache<String, AnalizarTextoResponse> resultados;
+
+    private volatile String versionModelo;
+
+    @Autowired
+    public MlTextoCache(
+            MlHealthMonitor mlHealthMonitor,
+            @Value("${ml.texto.cache.enabled:true}") boolean habilitado,
+            @Value("${ml.texto.cache.max-entradas:10000}") long maxEntradas,
+            @Value("${ml.texto.cache.ttl-minutos:60}") long ttlMinutos,
+            MeterRegistry meterRegistry) {
+        this(mlHealthMonitor, habilitado, maxEntradas, ttlMinutos, meterRegistry, Ticker.systemTicker());
+    }
+
+    /**
+     * Con un reloj propio, para verificar el vencimiento sin esperar
+     */
+    MlTextoCache(MlHealthMonitor mlHealthMonitor, boolean habilitado, long maxEntradas, long ttlMinutos,
+                 MeterRegistry meterRegistry, Ticker ticker) {
+        this.mlHealthMonitor = mlHealthMonitor;
+        this.habilitado = habilitado;
+        this.resultados = Caffeine.newBuilder()
+                .maximumSize(maxEntradas)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutos))
+                .ticker(ticker)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, resultados, "ml.texto.resultados");
+    }
+
+    /**
+     * Busca un análisis previo del mismo texto con la versión de modelo vigente
+     */
+    public Optional<AnalizarTextoResponse> buscar(String texto) {
+        String version = versionVigente();
+        if (!habilitado || version == null || texto == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(resultados.getIfPresent(clave(texto, version)));
+    }
+
+    /**
+     * Guarda el análisis bajo la versión de modelo que lo produjo.
+     * Una respuesta sin prioridad calculada es un análisis incompleto y no se guarda.
+     */
+    public void guardar(String texto, AnalizarTextoResponse response) {
+        if (response == null || response.getPrioridadCalculada() == null) {
+            return;
+        }
+        String version = response.getModeloVersion() != null ? response.getModeloVersion() : versionVigente();
+        if (!habilitado || version == null || texto == null) {
+            return;
+        }
+        resultados.put(clave(texto, version), response);
+    }
+
+    public long tamano() {
+        // Aplica los desalojos por tamaño y vencimiento pendientes antes de contar
+        resultados.cleanUp();
+        return resultados.estimatedSize();
+    }
+
+    /**
+     * Versión informada por el último health check. Si cambió, las entradas anteriores ya no
+     * se pueden usar y se liberan.
+     */
+    private String versionVigente() {
+        EstadoSaludMl salud = mlHealthMonitor.getSaludTexto();
+        String version = salud != null ? salud.modeloVersion() : null;
+
+        if (version != null && !Objects.equals(version, versionModelo)) {
+            synchronized (this) {
+                if (!Objects.equals(version, versionModelo)) {
+                    if (versionModelo != null) {
+                        log.info("Modelo de texto cambió de {} a {}, se invalida la cache de resultados",
+                                versionModelo, version);
+                        resultados.invalidateAll();
+                    }
+                    versionModelo = version;
+                }
+            }
+        }
+        return version;
+    }
+
+    private static String clave(String texto, String version) {
+        return sha256(normalizar(texto)) + ":" + version;
+    }
+
+    /**
+     * Misma normalización básica que aplica el servicio ML antes de vectorizar:
+     * minúsculas, sin tildes, sin signos y con espacios colapsados
+     */
+    static String normalizar(String texto) {
+        String normalizado = Normalizer.normalize(texto.toLowerCase(Locale.ROOT), Normalizer.Form.NFKD);
+        normalizado = DIACRITICOS.matcher(normalizado).replaceAll("");
+        normalizado = NO_ALFANUMERICO.matcher(normalizado).replaceAll(" ");
+        return ESPACIOS.matcher(normalizado).replaceAll(" ").trim();
+    }
+
+    private static String sha256(String texto) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(texto.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.recepcion.recepcion.client;
 
+import com.recepcion.recepcion.dto.ml.AnalizarTextoLoteRequest;
+import com.recepcion.recepcion.dto.ml.AnalizarTextoLoteResponse;
 import com.recepcion.recepcion.dto.ml.AnalizarTextoRequest;
 import com.recepcion.recepcion.dto.ml.AnalizarTextoResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Component;
@@ -10,6 +13,8 @@ import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 
 @Component
@@ -17,14 +22,21 @@ import java.util.UUID;
 public class MlTextoClient {
 
     private final RestTemplate restTemplate;
-    private final String mlTextoBaseUrl;
+    private final CircuitBreaker circuitBreaker;
+    private final AdaptiveConcurrencyLimiter limitador;
+    private final MlReplicas replicas;
 
     public MlTextoClient(
-            RestTemplate restTemplate,
-            @Value("${ml.texto.base-url:http://localhost:8001}") String mlTextoBaseUrl
+            @Qualifier("mlTextoRestTemplate") RestTemplate restTemplate,
+            @Value("${ml.circuito.umbral-fallos:5}") int umbralFallos,
+            @Value("${ml.circuito.espera-abierto-ms:30000}") long esperaAbiertoMs,
+            @Qualifier("mlTextoLimitador") AdaptiveConcurrencyLimiter limitador,
+            @Qualifier("mlTextoReplicas") MlReplicas replicas
     ) {
         this.restTemplate = restTemplate;
-        this.mlTextoBaseUrl = mlTextoBaseUrl;
+        this.circuitBreaker = new CircuitBreaker("ml-texto", umbralFallos, esperaAbiertoMs);
+        this.limitador = limitador;
+        this.replicas = replicas;
     }
 
     /**
@@ -36,8 +48,33 @@ public class MlTextoClient {
      * @throws MlServiceException si el servicio ML falla
      */
     public AnalizarTextoResponse analizarTexto(String texto, UUID incidenteId) throws MlServiceException {
-        String url = mlTextoBaseUrl + "/api/ml/analizar-texto";
+        return analizarTexto(texto, incidenteId, false);
+    }
+
+    /**
+     * Analiza el texto de un incidente en la réplica menos cargada del servicio ML
+     *
+     * @param urgente si hay varias réplicas y la primera tarda más que el p95, se envía una copia a otra
+     * @throws MlServiceException si el servicio ML falla
+     */
+    public AnalizarTextoResponse analizarTexto(String texto, UUID incidenteId, boolean urgente) throws MlServiceException {
+        if (!circuitBreaker.permiteLlamada()) {
+            throw new MlServicioNoDisponibleException("Circuit breaker abierto para el servicio ML de texto");
+        }
+
+        try {
+            return replicas.ejecutar(urgente, replica -> analizarTextoEn(replica, texto, incidenteId));
+        } finally {
+            // Si no llegó a la red (sin cupo en el limitador, interrumpida) no registró resultado
+            circuitBreaker.liberarPrueba();
+        }
+    }
+
+    private AnalizarTextoResponse analizarTextoEn(MlReplicas.Replica replica, String texto, UUID incidenteId)
+            throws MlServiceException {
+        String url = replica.getUrl() + "/api/ml/analizar-texto";
 
+        AdaptiveConcurrencyLimiter.Permiso permiso = limitador.adquirir();
         try {
             log.info("Llamando al servicio ML de texto: {}", url);
             log.info("Texto a analizar: '{}'", texto);
@@ -66,32 +103,162 @@ public class MlTextoClient {
             );
 
             if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
+                circuitBreaker.registrarExito();
+                replica.registrarExito();
                 log.info("Análisis de texto completado exitosamente. Prioridad: {}",
                         response.getBody().getPrioridadCalculada());
                 return response.getBody();
             } else {
+                circuitBreaker.registrarFallo();
+                replica.registrarFallo();
                 throw new MlServiceException("Respuesta inválida del servicio ML de texto");
             }
 
+        } catch (MlServiceException e) {
+            throw e;
         } catch (HttpClientErrorException e) {
+            // El servicio respondió: un 4xx es un problema de la petición, no de disponibilidad
+            circuitBreaker.registrarExito();
+            replica.registrarExito();
             log.error("Error del cliente HTTP al llamar ML texto: {} - {}", e.getStatusCode(), e.getResponseBodyAsString());
             throw new MlServiceException("Error del servicio ML de texto: " + e.getMessage(), e);
         } catch (RestClientException e) {
+            if (MlReplicas.cancelada()) {
+                // Abortada porque otra réplica respondió antes: no es un fallo de esta réplica
+                throw new MlServiceException("Llamada a ML texto cancelada: otra réplica respondió antes", e);
+            }
+            permiso.marcarSobrecarga();
+            circuitBreaker.registrarFallo();
+            replica.registrarFallo();
             log.error("Error de conexión con servicio ML de texto: {}", e.getMessage());
             throw new MlServiceException("No se pudo conectar con el servicio ML de texto", e);
         } catch (Exception e) {
+            if (MlReplicas.cancelada()) {
+                // Abortada porque otra réplica respondió antes: no es un fallo de esta réplica
+                throw new MlServiceException("Llamada a ML texto cancelada: otra réplica respondió antes", e);
+            }
+            permiso.marcarSobrecarga();
+            circuitBreaker.registrarFallo();
+            replica.registrarFallo();
             log.error("Error inesperado al analizar texto: {}", e.getMessage(), e);
             throw new MlServiceException("Error inesperado en análisis de texto", e);
+        } finally {
+            permiso.liberar();
         }
     }
 
     /**
-     * Verifica el estado del servicio ML de texto
+     * Analiza varios textos en una sola llamada al endpoint de lotes del servicio ML.
+     * Cuenta como una única llamada para el circuit breaker.
      *
-     * @return true si el servicio está disponible y el modelo está cargado
+     * @param items textos a analizar con su ID de incidente
+     * @return un resultado (análisis o error) por item, en el mismo orden
+     * @throws LoteNoSoportadoException si el servicio ML no expone el endpoint de lotes
+     * @throws MlServiceException si el servicio ML falla
      */
-    public boolean isServiceHealthy() {
-        String url = mlTextoBaseUrl + "/api/ml/salud";
+    public List<AnalizarTextoLoteResponse.Item> analizarTextoLote(List<AnalizarTextoRequest> items) throws MlServiceException {
+        if (!circuitBreaker.permiteLlamada()) {
+            throw new MlServicioNoDisponibleException("Circuit breaker abierto para el servicio ML de texto");
+        }
+
+        try {
+            return replicas.ejecutar(false, replica -> analizarTextoLoteEn(replica, items));
+        } finally {
+            // Si no llegó a la red (sin cupo en el limitador, interrumpida) no registró resultado
+            circuitBreaker.liberarPrueba();
+        }
+    }
+
+    private List<AnalizarTextoLoteResponse.Item> analizarTextoLoteEn(MlReplicas.Replica replica,
+                                                                     List<AnalizarTextoRequest> items)
+            throws MlServiceException {
+        String url = replica.getUrl() + "/api/ml/analizar-texto-lote";
+
+        AdaptiveConcurrencyLimiter.Permiso permiso = limitador.adquirir();
+        try {
+            log.debug("Llamando al servicio ML de texto por lote: {} ({} textos)", url, items.size());
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+
+            HttpEntity<AnalizarTextoLoteRequest> entity = new HttpEntity<>(new AnalizarTextoLoteRequest(items), headers);
+
+            ResponseEntity<AnalizarTextoLoteResponse> response = restTemplate.exchange(
+                    url,
+                    HttpMethod.POST,
+                    entity,
+                    AnalizarTextoLoteResponse.class
+            );
+
+            AnalizarTextoLoteResponse body = response.getBody();
+            if (response.getStatusCode() == HttpStatus.OK && body != null && body.getResultados() != null
+                    && body.getResultados().size() == items.size()) {
+                circuitBreaker.registrarExito();
+                replica.registrarExito();
+                return body.getResultados();
+            } else {
+                circuitBreaker.registrarFallo();
+                replica.registrarFallo();
+                throw new MlServiceException("Respuesta inválida del servicio ML de texto por lote");
+            }
+
+        } catch (MlServiceException e) {
+            throw e;
+        } catch (HttpClientErrorException e) {
+            circuitBreaker.registrarExito();
+            replica.registrarExito();
+            if (e.getStatusCode() == HttpStatus.NOT_FOUND || e.getStatusCode() == HttpStatus.METHOD_NOT_ALLOWED) {
+                throw new LoteNoSoportadoException("El servicio ML de texto no expone " + url);
+            }
+            log.error("Error del cliente HTTP al llamar ML texto por lote: {} - {}", e.getStatusCode(), e.getResponseBodyAsString());
+            throw new MlServiceException("Error del servicio ML de texto: " + e.getMessage(), e);
+        } catch (RestClientException e) {
+            if (MlReplicas.cancelada()) {
+                // Abortada porque otra réplica respondió antes: no es un fallo de esta réplica
+                throw new MlServiceException("Llamada a ML texto cancelada: otra réplica respondió antes", e);
+            }
+            permiso.marcarSobrecarga();
+            circuitBreaker.registrarFallo();
+            replica.registrarFallo();
+            log.error("Error de conexión con servicio ML de texto: {}", e.getMessage());
+            throw new MlServiceException("No se pudo conectar con el servicio ML de texto", e);
+        } catch (Exception e) {
+            if (MlReplicas.cancelada()) {
+                // Abortada porque otra réplica respondió antes: no es un fallo de esta réplica
+                throw new MlServiceException("Llamada a ML texto cancelada: otra réplica respondió antes", e);
+            }
+            permiso.marcarSobrecarga();
+            circuitBreaker.registrarFallo();
+            replica.registrarFallo();
+            log.error("Error inesperado al analizar lote de textos: {}", e.getMessage(), e);
+            throw new MlServiceException("Error inesperado en análisis de texto por lote", e);
+        } finally {
+            permiso.liberar();
+        }
+    }
+
+    /**
+     * Consulta el endpoint de salud del servicio ML de texto.
+     * Lo invoca periódicamente {@link MlHealthMonitor}; el flujo de análisis no debe llamarlo directamente.
+     *
+     * Cada réplica que no responde sana sale del reparto hasta el siguiente health check exitoso.
+     *
+     * @return estado de la primera réplica sana, o no disponible si ninguna lo está
+     */
+    public EstadoSaludMl consultarSalud() {
+        EstadoSaludMl estado = EstadoSaludMl.noDisponible();
+        for (MlReplicas.Replica replica : replicas.getReplicas()) {
+            EstadoSaludMl salud = consultarSalud(replica);
+            replica.registrarSalud(salud.disponible());
+            if (salud.disponible() && !estado.disponible()) {
+                estado = salud;
+            }
+        }
+        return estado;
+    }
+
+    private EstadoSaludMl consultarSalud(MlReplicas.Replica replica) {
+        String url = replica.getUrl() + "/api/ml/salud";
 
         try {
             ResponseEntity<HealthCheckResponse> response = restTemplate.getForEntity(
@@ -99,16 +266,36 @@ public class MlTextoClient {
                     HealthCheckResponse.class
             );
 
-            return response.getStatusCode() == HttpStatus.OK &&
-                   response.getBody() != null &&
-                   response.getBody().isModelLoaded();
+            HealthCheckResponse body = response.getBody();
+            boolean disponible = response.getStatusCode() == HttpStatus.OK &&
+                    body != null &&
+                    body.isModelLoaded();
+
+            return new EstadoSaludMl(disponible, body != null ? body.getModelVersion() : null, LocalDateTime.now());
 
         } catch (Exception e) {
-            log.warn("Servicio ML de texto no disponible: {}", e.getMessage());
-            return false;
+            log.warn("Réplica {} del servicio ML de texto no disponible: {}", replica.getUrl(), e.getMessage());
+            return EstadoSaludMl.noDisponible();
         }
     }
 
+    /**
+     * Verifica el estado del servicio ML de texto
+     *
+     * @return true si el servicio está disponible y el modelo está cargado
+     */
+    public boolean isServiceHealthy() {
+        return consultarSalud().disponible();
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public MlReplicas getReplicas() {
+        return replicas;
+    }
+
     /**
      * Exception custom para errores del servicio ML
      */
@@ -122,6 +309,15 @@ public class MlTextoClient {
         }
     }
 
+    /**
+     * El servicio ML desplegado no tiene el endpoint de lotes (versión anterior)
+     */
+    public static class LoteNoSoportadoException extends MlServiceException {
+        public LoteNoSoportadoException(String message) {
+            super(message);
+        }
+    }
+
     /**
      * DTO interno para health check
      */
@@ -0,0 +1,75 @@
+package com.recepcion.recepcion.config;
+
+import com.recepcion.recepcion.almacen.AlmacenLocal;
+import com.recepcion.recepcion.almacen.AlmacenObjetos;
+import com.recepcion.recepcion.almacen.AlmacenS3;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.net.URI;
+import java.nio.file.Paths;
+
+/**
+ * Almacén de los archivos multimedia, según app.multimedia.almacenamiento.tipo:
+ * <ul>
+ *   <li>{@code local} (por defecto): directorio app.multimedia.upload-dir</li>
+ *   <li>{@code s3}: bucket de S3 o compatible (app.multimedia.almacenamiento.s3.*). Con endpoint
+ *       apunta a MinIO u otro compatible; sin credenciales usa la cadena por defecto de AWS
+ *       (variables de entorno, perfil, rol de la instancia).</li>
+ * </ul>
+ */
+@Configuration
+@Slf4j
+public class AlmacenConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.multimedia.almacenamiento.tipo", havingValue = "local", matchIfMissing = true)
+    public AlmacenObjetos almacenLocal(@Value("${app.multimedia.upload-dir:uploads}") String uploadDir) {
+        log.info("Archivos multimedia en el directorio local {}", Paths.get(uploadDir).toAbsolutePath());
+        return new AlmacenLocal(Paths.get(uploadDir));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.multimedia.almacenamiento.tipo", havingValue = "s3")
+    public AlmacenObjetos almacenS3(
+            @Value("${app.multimedia.almacenamiento.s3.endpoint:}") String endpoint,
+            @Value("${app.multimedia.almacenamiento.s3.region:us-east-1}") String region,
+            @Value("${app.multimedia.almacenamiento.s3.bucket}") String bucket,
+            @Value("${app.multimedia.almacenamiento.s3.access-key:}") String accessKey,
+            @Value("${app.multimedia.almacenamiento.s3.secret-key:}") String secretKey,
+            @Value("${app.multimedia.almacenamiento.s3.path-style:false}") boolean pathStyle,
+            @Value("${app.multimedia.almacenamiento.s3.umbral-multipart-bytes:16777216}") long umbralMultipart,
+            @Value("${app.multimedia.almacenamiento.s3.tamano-parte-bytes:8388608}") long tamanoParte) {
+        AwsCredentialsProvider credenciales = accessKey.isBlank()
+                ? DefaultCredentialsProvider.builder().build()
+                : StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+        S3Configuration configuracion = S3Configuration.builder().pathStyleAccessEnabled(pathStyle).build();
+
+        var cliente = S3Client.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credenciales)
+                .serviceConfiguration(configuracion);
+        var presigner = S3Presigner.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credenciales)
+                .serviceConfiguration(configuracion);
+        if (!endpoint.isBlank()) {
+            cliente.endpointOverride(URI.create(endpoint));
+            presigner.endpointOverride(URI.create(endpoint));
+        }
+
+        log.info("Archivos multimedia en el bucket S3 {} ({})", bucket, endpoint.isBlank() ? region : endpoint);
+        return new AlmacenS3(cliente.build(), presigner.build(), bucket, umbralMultipart, tamanoParte);
+    }
+}
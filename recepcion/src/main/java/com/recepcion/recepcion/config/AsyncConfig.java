@@ -2,15 +2,20 @@ package com.recepcion.recepcion.config;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableAsync
+@EnableScheduling
 @Slf4j
 public class AsyncConfig implements AsyncConfigurer {
 
@@ -20,12 +25,85 @@ public class AsyncConfig implements AsyncConfigurer {
         executor.setCorePoolSize(5);
         executor.setMaxPoolSize(10);
         executor.setQueueCapacity(100);
-        executor.setThreadNamePrefix("ml-analysis-");
+        executor.setThreadNamePrefix("async-");
         executor.initialize();
         log.info("Configuración de Async habilitada con ThreadPool de 5-10 threads");
         return executor;
     }
 
+    /**
+     * Pool de workers de la cola persistente ml_job.
+     * Sin cola interna: el worker solo reclama jobs cuando hay threads libres.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor mlJobExecutor(@Value("${ml.jobs.workers:5}") int workers) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("ml-analysis-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        log.info("Pool de workers ML configurado con {} threads", workers);
+        return executor;
+    }
+
+    /**
+     * Pool compartido para el fan-out de análisis de un incidente (texto + imágenes en paralelo).
+     * El límite por incidente lo aplica el orquestador; si el pool se satura la tarea corre en el
+     * thread que la lanzó en vez de perderse.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor mlFanOutExecutor(@Value("${ml.fanout.pool-size:16}") int poolSize) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(poolSize * 4);
+        executor.setThreadNamePrefix("ml-fanout-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        log.info("Pool de fan-out ML configurado con {} threads", poolSize);
+        return executor;
+    }
+
+    /**
+     * Pool acotado para generar miniaturas. Si se llena se descarta la tarea: la miniatura
+     * se genera igual la primera vez que alguien la pida.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor miniaturaExecutor(@Value("${app.multimedia.miniaturas.workers:2}") int workers,
+                                                    @Value("${app.multimedia.miniaturas.cola:200}") int cola) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(cola);
+        executor.setThreadNamePrefix("miniaturas-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        log.info("Pool de miniaturas configurado con {} threads y cola de {}", workers, cola);
+        return executor;
+    }
+
+    /**
+     * Thread del reanálisis masivo: un lote a la vez, para no restarle capacidad al tráfico en vivo
+     */
+    @Bean
+    public ThreadPoolTaskExecutor reanalisisExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("ml-reanalisis-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
     @Override
     public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
         return (ex, method, params) -> {
@@ -0,0 +1,57 @@
+package com.recepcion.recepcion.config;
+
+import com.recepcion.recepcion.client.CircuitBreaker;
+import com.recepcion.recepcion.client.EstadoSaludMl;
+import com.recepcion.recepcion.client.MlHealthMonitor;
+import com.recepcion.recepcion.client.MlImagenClient;
+import com.recepcion.recepcion.client.MlReplicas;
+import com.recepcion.recepcion.client.MlTextoClient;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Endpoint de actuator (/actuator/ml) con el estado cacheado de los servicios ML
+ * y de sus circuit breakers y réplicas
+ */
+@Component
+@Endpoint(id = "ml")
+@RequiredArgsConstructor
+public class MlEndpoint {
+
+    private final MlHealthMonitor mlHealthMonitor;
+    private final MlTextoClient mlTextoClient;
+    private final MlImagenClient mlImagenClient;
+
+    @ReadOperation
+    public Map<String, Object> estado() {
+        Map<String, Object> estado = new LinkedHashMap<>();
+        estado.put("texto", describir(mlHealthMonitor.getSaludTexto(), mlHealthMonitor.textoDisponible(),
+                mlTextoClient.getCircuitBreaker(), mlTextoClient.getReplicas()));
+        estado.put("imagen", describir(mlHealthMonitor.getSaludImagen(), mlHealthMonitor.imagenDisponible(),
+                mlImagenClient.getCircuitBreaker(), mlImagenClient.getReplicas()));
+        return estado;
+    }
+
+    private Map<String, Object> describir(EstadoSaludMl salud, boolean disponible, CircuitBreaker circuitBreaker,
+                                          MlReplicas replicas) {
+        Map<String, Object> detalle = new LinkedHashMap<>();
+        detalle.put("disponible", disponible);
+        detalle.put("saludable", salud != null ? salud.disponible() : null);
+        detalle.put("modeloVersion", salud != null ? salud.modeloVersion() : null);
+        detalle.put("ultimaVerificacion", salud != null ? salud.fechaVerificacion() : null);
+        detalle.put("circuito", circuitBreaker.getEstado());
+        detalle.put("fallosConsecutivos", circuitBreaker.getFallosConsecutivos());
+        detalle.put("replicas", replicas.getReplicas().stream()
+                .map(replica -> Map.of(
+                        "url", replica.getUrl(),
+                        "disponible", replica.isDisponible(),
+                        "enCurso", replica.getEnCurso()))
+                .toList());
+        return detalle;
+    }
+}
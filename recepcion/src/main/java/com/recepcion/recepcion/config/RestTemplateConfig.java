@@ -1,22 +1,209 @@
 package com.recepcion.recepcion.config;
 
+import com.recepcion.recepcion.client.AdaptiveConcurrencyLimiter;
+import com.recepcion.recepcion.client.MlReplicas;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
-import java.time.Duration;
-
+/**
+ * Clientes HTTP de los servicios ML.
+ * Cada servicio tiene su propio pool de conexiones keep-alive (Apache HttpClient 5),
+ * con límites por ruta, timeouts separados de conexión, lectura y espera de pool,
+ * y métricas del pool en Micrometer (httpcomponents.httpclient.pool.*).
+ * Configuración en ml.texto.http.* y ml.imagen.http.*
+ * <p>
+ * Delante de cada cliente hay un {@link AdaptiveConcurrencyLimiter} (ml.texto.concurrencia.* y
+ * ml.imagen.concurrencia.*) que ajusta las llamadas simultáneas según la latencia observada,
+ * y las llamadas se reparten entre las réplicas de ml.texto.base-url / ml.imagen.base-url
+ * (URLs separadas por coma) con {@link MlReplicas}.
+ */
 @Configuration
+@Slf4j
 public class RestTemplateConfig {
 
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder) {
+    public CloseableHttpClient mlTextoHttpClient(Environment env, MeterRegistry meterRegistry) {
+        return crearHttpClient("ml-texto", "ml.texto.http", env, meterRegistry);
+    }
+
+    @Bean
+    public CloseableHttpClient mlImagenHttpClient(Environment env, MeterRegistry meterRegistry) {
+        return crearHttpClient("ml-imagen", "ml.imagen.http", env, meterRegistry);
+    }
+
+    @Bean
+    public RestTemplate mlTextoRestTemplate(
+            RestTemplateBuilder builder,
+            @Qualifier("mlTextoHttpClient") CloseableHttpClient httpClient) {
         return builder
-                .setConnectTimeout(Duration.ofSeconds(10))
-                .setReadTimeout(Duration.ofSeconds(30))
-                .requestFactory(SimpleClientHttpRequestFactory.class)
+                .requestFactory(() -> crearRequestFactory(httpClient))
+                .build();
+    }
+
+    @Bean
+    public RestTemplate mlImagenRestTemplate(
+            RestTemplateBuilder builder,
+            @Qualifier("mlImagenHttpClient") CloseableHttpClient httpClient) {
+        return builder
+                .requestFactory(() -> crearRequestFactory(httpClient))
+                .build();
+    }
+
+    /**
+     * Fábrica de requests que registra cada petición en {@link MlReplicas#alCancelar}, para
+     * abortar la petición perdedora de una llamada cubierta en cuanto la otra réplica responde
+     */
+    private HttpComponentsClientHttpRequestFactory crearRequestFactory(CloseableHttpClient httpClient) {
+        return new HttpComponentsClientHttpRequestFactory(httpClient) {
+            @Override
+            protected void postProcessHttpRequest(ClassicHttpRequest request) {
+                if (request instanceof Cancellable cancelable) {
+                    MlReplicas.alCancelar(cancelable::cancel);
+                }
+            }
+        };
+    }
+
+    @Bean
+    public AdaptiveConcurrencyLimiter mlTextoLimitador(Environment env, MeterRegistry meterRegistry) {
+        return crearLimitador("texto", "ml.texto.concurrencia", 2000L, env, meterRegistry);
+    }
+
+    @Bean
+    public AdaptiveConcurrencyLimiter mlImagenLimitador(Environment env, MeterRegistry meterRegistry) {
+        return crearLimitador("imagen", "ml.imagen.concurrencia", 5000L, env, meterRegistry);
+    }
+
+    @Bean(destroyMethod = "cerrar")
+    public MlReplicas mlTextoReplicas(Environment env, MeterRegistry meterRegistry) {
+        return crearReplicas("texto", "ml.texto", "http://localhost:8001", env, meterRegistry);
+    }
+
+    @Bean(destroyMethod = "cerrar")
+    public MlReplicas mlImagenReplicas(Environment env, MeterRegistry meterRegistry) {
+        return crearReplicas("imagen", "ml.imagen", "http://localhost:8002", env, meterRegistry);
+    }
+
+    private MlReplicas crearReplicas(String servicio, String prefijo, String urlPorDefecto,
+                                     Environment env, MeterRegistry meterRegistry) {
+        String urls = env.getProperty(prefijo + ".base-url", urlPorDefecto);
+        int fallosExpulsion = env.getProperty(prefijo + ".replicas.fallos-expulsion", Integer.class, 3);
+        long expulsionMs = env.getProperty(prefijo + ".replicas.expulsion-ms", Long.class, 30000L);
+        boolean cobertura = env.getProperty(prefijo + ".replicas.cobertura.enabled", Boolean.class, true);
+        long coberturaMinimaMs = env.getProperty(prefijo + ".replicas.cobertura.minimo-ms", Long.class, 100L);
+        int hilosCobertura = env.getProperty(prefijo + ".replicas.cobertura.max-hilos", Integer.class, 16);
+
+        MlReplicas replicas = new MlReplicas("ml-" + servicio, urls, fallosExpulsion, expulsionMs,
+                cobertura, coberturaMinimaMs, hilosCobertura);
+
+        Gauge.builder("ml.replicas.disponibles", replicas, MlReplicas::getDisponibles)
+                .tag("servicio", servicio)
+                .description("Réplicas del servicio ML dentro del reparto de llamadas")
+                .register(meterRegistry);
+        FunctionCounter.builder("ml.replicas.coberturas", replicas, MlReplicas::getCoberturasEnviadas)
+                .tag("servicio", servicio)
+                .tag("resultado", "enviada")
+                .description("Copias de llamadas urgentes enviadas a otra réplica al superar el p95")
+                .register(meterRegistry);
+        FunctionCounter.builder("ml.replicas.coberturas", replicas, MlReplicas::getCoberturasGanadoras)
+                .tag("servicio", servicio)
+                .tag("resultado", "ganadora")
+                .description("Copias que respondieron antes que la llamada original")
+                .register(meterRegistry);
+        FunctionCounter.builder("ml.replicas.coberturas", replicas, MlReplicas::getCoberturasSinCupo)
+                .tag("servicio", servicio)
+                .tag("resultado", "sin-cupo")
+                .description("Llamadas urgentes que fueron sin cobertura por falta de hilos en el pool")
+                .register(meterRegistry);
+
+        log.info("Servicio ml-{} con {} réplica(s): {}", servicio, replicas.getReplicas().size(),
+                replicas.getReplicas().stream().map(MlReplicas.Replica::getUrl).toList());
+        return replicas;
+    }
+
+    private AdaptiveConcurrencyLimiter crearLimitador(String servicio, String prefijo, long latenciaObjetivoPorDefecto,
+                                                      Environment env, MeterRegistry meterRegistry) {
+        int inicial = env.getProperty(prefijo + ".inicial", Integer.class, 10);
+        int minimo = env.getProperty(prefijo + ".minimo", Integer.class, 1);
+        int maximo = env.getProperty(prefijo + ".maximo", Integer.class, 50);
+        long latenciaObjetivoMs = env.getProperty(prefijo + ".latencia-objetivo-ms", Long.class, latenciaObjetivoPorDefecto);
+        long esperaMaximaMs = env.getProperty(prefijo + ".espera-maxima-ms", Long.class, 5000L);
+
+        AdaptiveConcurrencyLimiter limitador = new AdaptiveConcurrencyLimiter(
+                "ml-" + servicio, inicial, minimo, maximo, latenciaObjetivoMs, esperaMaximaMs);
+
+        Gauge.builder("ml.concurrencia.limite", limitador, AdaptiveConcurrencyLimiter::getLimite)
+                .tag("servicio", servicio)
+                .description("Llamadas simultáneas permitidas por el limitador adaptativo")
+                .register(meterRegistry);
+        Gauge.builder("ml.concurrencia.en_vuelo", limitador, AdaptiveConcurrencyLimiter::getEnVuelo)
+                .tag("servicio", servicio)
+                .description("Llamadas en curso al servicio ML")
+                .register(meterRegistry);
+        FunctionCounter.builder("ml.concurrencia.rechazadas", limitador, AdaptiveConcurrencyLimiter::getRechazadas)
+                .tag("servicio", servicio)
+                .description("Llamadas rechazadas por exceder el límite de concurrencia")
+                .register(meterRegistry);
+
+        log.info("Limitador de concurrencia ml-{}: inicial={} rango=[{}, {}] latencia objetivo={}ms",
+                servicio, inicial, minimo, maximo, latenciaObjetivoMs);
+        return limitador;
+    }
+
+    private CloseableHttpClient crearHttpClient(String nombre, String prefijo, Environment env,
+                                                MeterRegistry meterRegistry) {
+        int maxConexiones = env.getProperty(prefijo + ".max-conexiones", Integer.class, 50);
+        int maxConexionesPorRuta = env.getProperty(prefijo + ".max-conexiones-por-ruta", Integer.class, 20);
+        long connectTimeoutMs = env.getProperty(prefijo + ".connect-timeout-ms", Long.class, 2000L);
+        long readTimeoutMs = env.getProperty(prefijo + ".read-timeout-ms", Long.class, 30000L);
+        long poolTimeoutMs = env.getProperty(prefijo + ".pool-timeout-ms", Long.class, 1000L);
+        // uvicorn cierra conexiones inactivas a los 5s: mantenerlas menos tiempo evita reusar sockets cerrados
+        long keepAliveMs = env.getProperty(prefijo + ".keep-alive-ms", Long.class, 4000L);
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConexiones)
+                .setMaxConnPerRoute(maxConexionesPorRuta)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(1))
+                        .build())
+                .build();
+
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, nombre).bindTo(meterRegistry);
+
+        log.info("Cliente HTTP {} configurado: max {} conexiones ({} por ruta), timeouts connect={}ms read={}ms pool={}ms",
+                nombre, maxConexiones, maxConexionesPorRuta, connectTimeoutMs, readTimeoutMs, poolTimeoutMs);
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                .setKeepAliveStrategy((response, context) -> TimeValue.ofMilliseconds(keepAliveMs))
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(keepAliveMs))
                 .build();
     }
 }
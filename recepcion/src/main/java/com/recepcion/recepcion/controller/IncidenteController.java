@@ -3,9 +3,13 @@ package com.recepcion.recepcion.controller;
 import com.recepcion.recepcion.dto.request.ActualizarEstadoIncidenteRequest;
 import com.recepcion.recepcion.dto.request.ActualizarIncidenteRequest;
 import com.recepcion.recepcion.dto.request.CrearIncidenteRequest;
+import com.recepcion.recepcion.dto.request.CrearIncidentesLoteRequest;
 import com.recepcion.recepcion.dto.response.IncidenteDetalleResponse;
+import com.recepcion.recepcion.dto.response.IncidenteLoteResponse;
 import com.recepcion.recepcion.dto.response.IncidenteResponse;
 import com.recepcion.recepcion.entity.EstadoIncidente;
+import com.recepcion.recepcion.exception.SolicitanteObsoletoException;
+import com.recepcion.recepcion.service.IdempotenciaService;
 import com.recepcion.recepcion.service.IncidenteService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -33,21 +37,48 @@ import java.util.UUID;
 public class IncidenteController {
 
     private final IncidenteService incidenteService;
+    private final IdempotenciaService idempotenciaService;
 
     // ==================== CRUD BÁSICO ====================
 
     /**
      * Crear un nuevo incidente
      * POST /api/incidentes
+     * Con Idempotency-Key, un reintento devuelve la respuesta original sin crear otro incidente
      */
     @PostMapping
-    public ResponseEntity<IncidenteResponse> crear(@Valid @RequestBody CrearIncidenteRequest request) {
+    public ResponseEntity<IncidenteResponse> crear(
+            @Valid @RequestBody CrearIncidenteRequest request,
+            @RequestHeader(value = IdempotenciaService.HEADER, required = false) String idempotencyKey) {
         log.info("Creando nuevo incidente");
         log.info("Descripción recibida: '{}'", request.getDescripcionOriginal());
         log.info("Tipo incidente reportado: '{}'", request.getTipoIncidenteReportado());
         log.info("Solicitante teléfono: '{}'", request.getSolicitante() != null ? request.getSolicitante().getTelefono() : "null");
-        IncidenteResponse response = incidenteService.crear(request);
-        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        try {
+            return crearUnaVez(request, idempotencyKey);
+        } catch (SolicitanteObsoletoException e) {
+            // La transacción abortó y la entrada ya salió de la cache: el reintento pasa por el upsert
+            log.warn("{}, se reintenta el alta", e.getMessage());
+            return crearUnaVez(request, idempotencyKey);
+        }
+    }
+
+    private ResponseEntity<IncidenteResponse> crearUnaVez(CrearIncidenteRequest request, String idempotencyKey) {
+        return idempotenciaService.ejecutar("POST /incidentes", idempotencyKey, IncidenteResponse.class, () ->
+                ResponseEntity.status(HttpStatus.CREATED).body(incidenteService.crear(request)));
+    }
+
+    /**
+     * Crear varios incidentes en una sola llamada (reenvío de reportes encolados)
+     * POST /api/incidentes/lote
+     * 201 si se crearon todos, 207 si algún ítem fue rechazado (ver resultados)
+     */
+    @PostMapping("/lote")
+    public ResponseEntity<IncidenteLoteResponse> crearLote(@Valid @RequestBody CrearIncidentesLoteRequest request) {
+        log.info("Creando lote de {} incidentes", request.getIncidentes().size());
+        IncidenteLoteResponse response = incidenteService.crearLote(request.getIncidentes());
+        HttpStatus status = response.getRechazados() == 0 ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS;
+        return ResponseEntity.status(status).body(response);
     }
 
     /**
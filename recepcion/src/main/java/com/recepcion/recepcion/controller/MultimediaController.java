@@ -1,6 +1,9 @@
 package com.recepcion.recepcion.controller;
 
 import com.recepcion.recepcion.dto.response.MultimediaResponse;
+import com.recepcion.recepcion.exception.BadRequestException;
+import com.recepcion.recepcion.service.IdempotenciaService;
+import com.recepcion.recepcion.service.MiniaturaService;
 import com.recepcion.recepcion.service.MultimediaService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -8,15 +11,24 @@ import io.swagger.v3.oas.annotations.media.Content;
 ///import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.UUID;
 
@@ -31,11 +43,30 @@ import java.util.UUID;
 @Tag(name = "Multimedia", description = "Gestión de archivos multimedia")
 public class MultimediaController {
 
+    // Atributos con los que Tomcat entrega un archivo por sendfile al terminar la petición
+    private static final String SENDFILE_SOPORTADO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_ARCHIVO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIN = "org.apache.tomcat.sendfile.end";
+    // Por debajo de esto una escritura normal es igual de barata (mismo umbral que el DefaultServlet de Tomcat)
+    private static final long SENDFILE_TAMANO_MINIMO = 48 * 1024;
+
     private final MultimediaService multimediaService;
+    private final MiniaturaService miniaturaService;
+    private final IdempotenciaService idempotenciaService;
+
+    // Los archivos no cambian después de subidos: por defecto se cachean un año
+    @Value("${app.multimedia.cache-max-age-segundos:31536000}")
+    private long cacheMaxAgeSegundos;
+
+    // Con un almacén remoto (S3), redirigir a la URL firmada en vez de pasar los bytes por esta aplicación
+    @Value("${app.multimedia.almacenamiento.redirigir-descargas:true}")
+    private boolean redirigirDescargas;
 
     /**
      * Subir archivo multimedia a un incidente
      * POST /api/multimedia/incidente/{incidenteId}/subir
+     * Con Idempotency-Key, un reintento devuelve la respuesta original sin guardar el archivo otra vez
      */
     @Operation(summary = "Subir archivo multimedia",
                description = "Sube una imagen, audio o video asociado a un incidente")
@@ -45,11 +76,14 @@ public class MultimediaController {
             @Parameter(description = "Archivo a subir", content = @Content(mediaType = MediaType.MULTIPART_FORM_DATA_VALUE))
             @RequestParam("archivo") MultipartFile archivo,
             @Parameter(description = "Descripción del archivo") @RequestParam(value = "descripcion", required = false) String descripcion,
-            @Parameter(description = "Si es la imagen principal") @RequestParam(value = "esPrincipal", defaultValue = "false") Boolean esPrincipal) {
+            @Parameter(description = "Si es la imagen principal") @RequestParam(value = "esPrincipal", defaultValue = "false") Boolean esPrincipal,
+            @Parameter(description = "Clave para reintentar la subida sin duplicarla")
+            @RequestHeader(value = IdempotenciaService.HEADER, required = false) String idempotencyKey) {
         log.info("Subiendo archivo para incidente ID: {} - Archivo: {} - Tamaño: {} bytes",
                  incidenteId, archivo.getOriginalFilename(), archivo.getSize());
-        MultimediaResponse response = multimediaService.subirArchivo(incidenteId, archivo, descripcion, esPrincipal);
-        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        return idempotenciaService.ejecutar("POST /multimedia/incidente/" + incidenteId + "/subir", idempotencyKey,
+                MultimediaResponse.class, () -> ResponseEntity.status(HttpStatus.CREATED)
+                        .body(multimediaService.subirArchivo(incidenteId, archivo, descripcion, esPrincipal)));
     }
 
     /**
@@ -83,26 +117,18 @@ public class MultimediaController {
                description = "Sirve el archivo para visualización directa en navegador o consumo por servicios ML",
                responses = {
                    @ApiResponse(responseCode = "200", description = "Archivo encontrado",
-                       content = @Content(mediaType = "image/*"))
+                       content = @Content(mediaType = "image/*")),
+                   @ApiResponse(responseCode = "206", description = "Rango del archivo pedido con la cabecera Range"),
+                   @ApiResponse(responseCode = "302", description = "Redirección a una URL firmada del almacén (solo S3)"),
+                   @ApiResponse(responseCode = "304", description = "El cliente ya tiene esta versión (If-None-Match / If-Modified-Since)")
                })
     @GetMapping("/{id}/ver")
-    public ResponseEntity<byte[]> verArchivo(@Parameter(description = "ID del archivo") @PathVariable UUID id) {
+    public ResponseEntity<Resource> verArchivo(@Parameter(description = "ID del archivo") @PathVariable UUID id,
+                                               ServletWebRequest webRequest) {
         log.info("Sirviendo archivo multimedia ID: {}", id);
 
-        // Obtener información del archivo
-        MultimediaResponse info = multimediaService.buscarPorId(id);
-
-        // Obtener contenido del archivo
-        byte[] contenido = multimediaService.descargarArchivo(id);
-
-        // Determinar el tipo de contenido basado en la extensión
-        String contentType = determinarContentType(info.getNombreArchivo());
-
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + info.getNombreArchivo() + "\"")
-                .header(HttpHeaders.CACHE_CONTROL, "max-age=3600")
-                .body(contenido);
+        MultimediaService.Archivo archivo = multimediaService.obtenerArchivo(id);
+        return servirArchivo(archivo, ContentDisposition.inline(), webRequest);
     }
 
     /**
@@ -113,25 +139,58 @@ public class MultimediaController {
                description = "Descarga el archivo como attachment",
                responses = {
                    @ApiResponse(responseCode = "200", description = "Archivo descargado",
-                       content = @Content(mediaType = "application/octet-stream"))
+                       content = @Content(mediaType = "application/octet-stream")),
+                   @ApiResponse(responseCode = "206", description = "Rango del archivo pedido con la cabecera Range"),
+                   @ApiResponse(responseCode = "302", description = "Redirección a una URL firmada del almacén (solo S3)"),
+                   @ApiResponse(responseCode = "304", description = "El cliente ya tiene esta versión (If-None-Match / If-Modified-Since)")
                })
     @GetMapping("/{id}/descargar")
-    public ResponseEntity<byte[]> descargarArchivo(@Parameter(description = "ID del archivo") @PathVariable UUID id) {
+    public ResponseEntity<Resource> descargarArchivo(@Parameter(description = "ID del archivo") @PathVariable UUID id,
+                                                     ServletWebRequest webRequest) {
         log.info("Descargando archivo multimedia ID: {}", id);
 
-        // Obtener información del archivo
-        MultimediaResponse info = multimediaService.buscarPorId(id);
+        MultimediaService.Archivo archivo = multimediaService.obtenerArchivo(id);
+        return servirArchivo(archivo, ContentDisposition.attachment(), webRequest);
+    }
 
-        // Obtener contenido del archivo
-        byte[] contenido = multimediaService.descargarArchivo(id);
+    /**
+     * Ver miniatura de una imagen
+     * GET /api/multimedia/{id}/miniatura?tamano=PEQUENA
+     */
+    @Operation(summary = "Ver miniatura",
+               description = "Sirve la miniatura JPEG de una imagen (PEQUENA 160 px, MEDIANA 480 px, GRANDE 1024 px). "
+                       + "Si todavía no se generó, se encola su generación y se responde 503 con Retry-After",
+               responses = {
+                   @ApiResponse(responseCode = "200", description = "Miniatura encontrada",
+                       content = @Content(mediaType = MediaType.IMAGE_JPEG_VALUE)),
+                   @ApiResponse(responseCode = "304", description = "El cliente ya tiene esta versión (If-None-Match / If-Modified-Since)"),
+                   @ApiResponse(responseCode = "404", description = "El multimedia no existe"),
+                   @ApiResponse(responseCode = "503", description = "La miniatura se está generando: reintentar tras Retry-After")
+               })
+    @GetMapping("/{id}/miniatura")
+    public ResponseEntity<Resource> verMiniatura(@Parameter(description = "ID del archivo") @PathVariable UUID id,
+                                                 @Parameter(description = "Tamaño de la miniatura")
+                                                 @RequestParam(defaultValue = "PEQUENA") MiniaturaService.Tamano tamano,
+                                                 ServletWebRequest webRequest) {
+        log.debug("Sirviendo miniatura {} del multimedia ID: {}", tamano, id);
 
-        // Determinar el tipo de contenido basado en la extensión
-        String contentType = determinarContentType(info.getNombreArchivo());
+        MultimediaService.Archivo miniatura = miniaturaService.obtenerMiniatura(id, tamano);
+        return servirArchivo(miniatura, ContentDisposition.inline(), webRequest);
+    }
 
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + info.getNombreArchivo() + "\"")
-                .body(contenido);
+    /**
+     * Regenerar las miniaturas de una imagen
+     * POST /api/multimedia/{id}/miniaturas/regenerar
+     */
+    @Operation(summary = "Regenerar miniaturas",
+               description = "Vuelve a generar todos los tamaños de miniatura. Es idempotente")
+    @PostMapping("/{id}/miniaturas/regenerar")
+    public ResponseEntity<MultimediaResponse> regenerarMiniaturas(@PathVariable UUID id) {
+        log.info("Regenerando miniaturas del multimedia ID: {}", id);
+        if (miniaturaService.generar(id).isEmpty()) {
+            throw new BadRequestException("El archivo no es una imagen de la que se puedan generar miniaturas");
+        }
+        return ResponseEntity.ok(multimediaService.buscarPorId(id));
     }
 
     /**
@@ -169,6 +228,73 @@ public class MultimediaController {
 
     // ==================== MÉTODOS AUXILIARES ====================
 
+    /**
+     * Respuesta con el archivo en streaming.
+     * <ul>
+     *   <li>Validadores: ETag fuerte con el SHA-256 del contenido y Last-Modified con la fecha de subida.
+     *       Si el cliente ya tiene esa versión se responde 304 sin tocar el archivo.</li>
+     *   <li>Los archivos no cambian después de subidos: se cachean por mucho tiempo como inmutables.</li>
+     *   <li>Con cabecera Range, Spring responde 206 con las partes pedidas (descargas parciales o reanudadas).</li>
+     *   <li>Sin Range y sobre Tomcat, un archivo local se entrega por sendfile: el kernel lo copia al socket
+     *       sin pasar por el heap.</li>
+     *   <li>Si el almacén es remoto y da URLs firmadas, se redirige a ella: los bytes no pasan por esta aplicación
+     *       (el almacén atiende también los Range).</li>
+     * </ul>
+     */
+    private ResponseEntity<Resource> servirArchivo(MultimediaService.Archivo archivo,
+                                                   ContentDisposition.Builder disposicion,
+                                                   ServletWebRequest webRequest) {
+        String etag = archivo.hashContenido() != null ? "\"" + archivo.hashContenido() + "\"" : null;
+        long ultimaModificacion = archivo.fechaSubida() != null
+                ? archivo.fechaSubida().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : -1;
+        CacheControl cache = CacheControl.maxAge(Duration.ofSeconds(cacheMaxAgeSegundos)).immutable();
+
+        if (webRequest.checkNotModified(etag, ultimaModificacion)) {
+            // checkNotModified ya dejó el 304 con ETag y Last-Modified en la respuesta
+            webRequest.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, cache.getHeaderValue());
+            return null;
+        }
+
+        if (archivo.urlFirmada() != null && redirigirDescargas) {
+            // La URL vence: la redirección no se cachea, el contenido sí (en el almacén, con su propia URL)
+            return ResponseEntity.status(HttpStatus.FOUND)
+                    .location(archivo.urlFirmada())
+                    .cacheControl(CacheControl.noStore())
+                    .build();
+        }
+
+        HttpServletRequest request = webRequest.getRequest();
+        long tamano = archivo.tamanoBytes();
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(determinarContentType(archivo.nombreArchivo())))
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposicion
+                        .filename(archivo.nombreArchivo() != null ? archivo.nombreArchivo() : "archivo", StandardCharsets.UTF_8)
+                        .build().toString())
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .cacheControl(cache);
+        if (etag != null) {
+            respuesta.eTag(etag);
+        }
+        if (ultimaModificacion >= 0) {
+            respuesta.lastModified(ultimaModificacion);
+        }
+
+        if (archivo.ruta() != null && usarSendfile(tamano, request)) {
+            request.setAttribute(SENDFILE_ARCHIVO, archivo.ruta().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_INICIO, 0L);
+            request.setAttribute(SENDFILE_FIN, tamano);
+            return respuesta.contentLength(tamano).build();
+        }
+        return respuesta.body(archivo.contenido());
+    }
+
+    private boolean usarSendfile(long tamano, HttpServletRequest request) {
+        return Boolean.TRUE.equals(request.getAttribute(SENDFILE_SOPORTADO))
+                && request.getHeader(HttpHeaders.RANGE) == null
+                && tamano >= SENDFILE_TAMANO_MINIMO;
+    }
+
     /**
      * Determina el tipo de contenido basado en la extensión del archivo
      */
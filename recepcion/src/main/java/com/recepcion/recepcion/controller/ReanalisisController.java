@@ -0,0 +1,86 @@
+package com.recepcion.recepcion.controller;
+
+import com.recepcion.recepcion.dto.request.CrearReanalisisRequest;
+import com.recepcion.recepcion.dto.response.ReanalisisResponse;
+import com.recepcion.recepcion.service.ReanalisisService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Controlador REST para el reanálisis masivo con un modelo ML nuevo
+ * Base URL: /api/reanalisis
+ */
+@Slf4j
+@RestController
+@RequestMapping("/reanalisis")
+@RequiredArgsConstructor
+public class ReanalisisController {
+
+    private final ReanalisisService reanalisisService;
+
+    /**
+     * Crear un reanálisis
+     * POST /api/reanalisis
+     */
+    @PostMapping
+    public ResponseEntity<ReanalisisResponse> crear(@Valid @RequestBody CrearReanalisisRequest request) {
+        log.info("Creando reanálisis {} para la versión {}", request.getTipo(), request.getModeloVersion());
+        ReanalisisResponse response = reanalisisService.crear(request);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    /**
+     * Obtener un reanálisis con su avance y throughput
+     * GET /api/reanalisis/{id}
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<ReanalisisResponse> buscarPorId(@PathVariable UUID id) {
+        return ResponseEntity.ok(reanalisisService.buscarPorId(id));
+    }
+
+    /**
+     * Listar todos los reanálisis
+     * GET /api/reanalisis
+     */
+    @GetMapping
+    public ResponseEntity<List<ReanalisisResponse>> listarTodos() {
+        return ResponseEntity.ok(reanalisisService.listarTodos());
+    }
+
+    /**
+     * Pausar un reanálisis
+     * POST /api/reanalisis/{id}/pausar
+     */
+    @PostMapping("/{id}/pausar")
+    public ResponseEntity<ReanalisisResponse> pausar(@PathVariable UUID id) {
+        log.info("Pausando reanálisis {}", id);
+        return ResponseEntity.ok(reanalisisService.pausar(id));
+    }
+
+    /**
+     * Reanudar un reanálisis pausado
+     * POST /api/reanalisis/{id}/reanudar
+     */
+    @PostMapping("/{id}/reanudar")
+    public ResponseEntity<ReanalisisResponse> reanudar(@PathVariable UUID id) {
+        log.info("Reanudando reanálisis {}", id);
+        return ResponseEntity.ok(reanalisisService.reanudar(id));
+    }
+
+    /**
+     * Cancelar un reanálisis
+     * POST /api/reanalisis/{id}/cancelar
+     */
+    @PostMapping("/{id}/cancelar")
+    public ResponseEntity<ReanalisisResponse> cancelar(@PathVariable UUID id) {
+        log.info("Cancelando reanálisis {}", id);
+        return ResponseEntity.ok(reanalisisService.cancelar(id));
+    }
+}
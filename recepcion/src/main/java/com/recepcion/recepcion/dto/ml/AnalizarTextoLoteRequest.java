@@ -0,0 +1,16 @@
+package com.recepcion.recepcion.dto.ml;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalizarTextoLoteRequest {
+    private List<AnalizarTextoRequest> items;
+}
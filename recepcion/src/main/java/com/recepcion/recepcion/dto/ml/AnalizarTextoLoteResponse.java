@@ -0,0 +1,36 @@
+package com.recepcion.recepcion.dto.ml;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalizarTextoLoteResponse {
+    private List<Item> resultados;
+
+    @JsonProperty("tiempo_procesamiento_ms")
+    private Integer tiempoProcesamientoMs;
+
+    /**
+     * Resultado de un texto del lote: trae el análisis o el error, nunca ambos
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        @JsonProperty("incidente_id")
+        private UUID incidenteId;
+
+        private AnalizarTextoResponse resultado;
+
+        private String error;
+    }
+}
@@ -0,0 +1,23 @@
+package com.recepcion.recepcion.dto.request;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Varios reportes en una sola llamada (p. ej. la cola de un bot tras una caída).
+ * Los ítems no llevan @Valid: se validan uno por uno y los inválidos se informan sin rechazar el lote.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CrearIncidentesLoteRequest {
+
+    @NotEmpty(message = "El lote debe tener al menos un incidente")
+    private List<CrearIncidenteRequest> incidentes;
+}
@@ -0,0 +1,34 @@
+package com.recepcion.recepcion.dto.request;
+
+import com.recepcion.recepcion.entity.TipoMlJob;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CrearReanalisisRequest {
+
+    @NotNull(message = "El tipo de análisis es obligatorio")
+    private TipoMlJob tipo;
+
+    // Solo los análisis hechos con esta versión del modelo (vacío = cualquiera)
+    @Size(max = 50, message = "La versión del modelo no puede exceder 50 caracteres")
+    private String modeloVersion;
+
+    private LocalDateTime fechaDesde;
+
+    private LocalDateTime fechaHasta;
+
+    // Reanálisis por segundo (vacío = valor por defecto de la configuración)
+    @Positive(message = "La tasa debe ser mayor a cero")
+    private Double tasaPorSegundo;
+}
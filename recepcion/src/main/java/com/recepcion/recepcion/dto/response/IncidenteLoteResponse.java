@@ -0,0 +1,34 @@
+package com.recepcion.recepcion.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IncidenteLoteResponse {
+
+    private Integer creados;
+    private Integer rechazados;
+    // En el mismo orden que los ítems del request
+    private List<Resultado> resultados;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Resultado {
+
+        private Integer indice;
+        private Boolean creado;
+        private UUID incidenteId;
+        private Integer prioridadInicial;
+        private List<String> errores;
+    }
+}
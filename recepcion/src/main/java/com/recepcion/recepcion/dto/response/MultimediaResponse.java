@@ -23,6 +23,7 @@ public class MultimediaResponse {
     private TipoArchivo tipoArchivo;
     private String formatoArchivo;
     private Long tamanoBytes;
+    private String hashContenido;
     private String descripcion;
     private Boolean esPrincipal;
     private Boolean requiereAnalisisMl;
@@ -0,0 +1,34 @@
+package com.recepcion.recepcion.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReanalisisResponse {
+
+    private UUID id;
+    private String tipo;
+    private String modeloVersion;
+    private LocalDateTime fechaDesde;
+    private LocalDateTime fechaHasta;
+    private Double tasaPorSegundo;
+    private String estado;
+    private Long total;
+    private Long procesados;
+    private Long fallidos;
+    private Double porcentaje;
+    private Double itemsPorSegundo;
+    private String nodoReclamo;
+    private LocalDateTime fechaCreacion;
+    private LocalDateTime fechaInicio;
+    private LocalDateTime fechaUltimoCheckpoint;
+    private LocalDateTime fechaFinalizacion;
+}
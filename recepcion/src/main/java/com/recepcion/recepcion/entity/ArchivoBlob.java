@@ -0,0 +1,45 @@
+package com.recepcion.recepcion.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Archivo físico del almacenamiento direccionado por contenido. Varios multimedia con el mismo
+ * contenido comparten un blob; {@code referencias} cuenta cuántos lo usan y el archivo se borra
+ * cuando llega a cero.
+ */
+@Entity
+@Table(name = "archivo_blob", indexes = {
+        @Index(name = "idx_archivo_blob_huerfanos", columnList = "referencias, fecha_actualizacion")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ArchivoBlob {
+
+    // SHA-256 del contenido en hexadecimal
+    @Id
+    @Column(name = "hash", length = 64)
+    private String hash;
+
+    @Column(name = "ruta", nullable = false, length = 500)
+    private String ruta;
+
+    @Column(name = "tamano_bytes", nullable = false)
+    private Long tamanoBytes;
+
+    @Column(name = "referencias", nullable = false)
+    private Integer referencias;
+
+    @Column(name = "fecha_creacion", nullable = false)
+    private LocalDateTime fechaCreacion;
+
+    @Column(name = "fecha_actualizacion", nullable = false)
+    private LocalDateTime fechaActualizacion;
+}
@@ -0,0 +1,56 @@
+package com.recepcion.recepcion.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Solicitud identificada por un header Idempotency-Key. La primera la reserva EN_PROCESO y, en la misma
+ * transacción que crea el recurso, guarda la respuesta; los reintentos reciben esa respuesta sin volver
+ * a ejecutar nada. Se borra al vencer {@code fechaExpiracion}.
+ */
+@Entity
+@Table(name = "clave_idempotencia", indexes = {
+        @Index(name = "idx_clave_idempotencia_expiracion", columnList = "fecha_expiracion")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ClaveIdempotencia {
+
+    // Operación + clave del cliente, p. ej. "POST /incidentes 6f1c..."
+    @Id
+    @Column(name = "clave", length = 400)
+    private String clave;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado", nullable = false, length = 20)
+    private EstadoIdempotencia estado;
+
+    @Column(name = "status_http")
+    private Integer statusHttp;
+
+    // Cuerpo JSON de la respuesta original
+    @Column(name = "respuesta", columnDefinition = "TEXT")
+    private String respuesta;
+
+    // Solicitud que tiene la reserva; solo ella puede completarla o liberarla
+    @Column(name = "dueno")
+    private UUID dueno;
+
+    // Mientras esté EN_PROCESO, otra instancia solo la puede retomar pasada esta fecha (la primera murió)
+    @Column(name = "bloqueada_hasta", nullable = false)
+    private LocalDateTime bloqueadaHasta;
+
+    @Column(name = "fecha_creacion", nullable = false)
+    private LocalDateTime fechaCreacion;
+
+    @Column(name = "fecha_expiracion", nullable = false)
+    private LocalDateTime fechaExpiracion;
+}
@@ -0,0 +1,8 @@
+package com.recepcion.recepcion.entity;
+
+public enum EstadoIdempotencia {
+    // Reservada por la primera solicitud, que todavía se está ejecutando
+    EN_PROCESO,
+    // Ejecutada: la respuesta guardada se devuelve a los reintentos
+    COMPLETADA
+}
@@ -0,0 +1,10 @@
+package com.recepcion.recepcion.entity;
+
+public enum EstadoMlJob {
+    PENDIENTE,
+    PROCESANDO,
+    COMPLETADO,
+    ERROR,
+    // Análisis que el reconciliador dejó de reencolar tras agotar los reintentos: requiere revisión manual
+    DESCARTADO
+}
@@ -0,0 +1,9 @@
+package com.recepcion.recepcion.entity;
+
+public enum EstadoReanalisis {
+    PENDIENTE,
+    EN_CURSO,
+    PAUSADO,
+    COMPLETADO,
+    CANCELADO
+}
@@ -0,0 +1,97 @@
+package com.recepcion.recepcion.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Trabajo persistente de análisis ML.
+ * Los workers lo reclaman con FOR UPDATE SKIP LOCKED, por lo que sobrevive a reinicios
+ * y puede repartirse entre varias instancias del servicio.
+ */
+@Entity
+@Table(name = "ml_job", indexes = {
+        @Index(name = "idx_ml_job_reclamo", columnList = "estado, disponible_desde"),
+        @Index(name = "idx_ml_job_orden", columnList = "orden_reclamo"),
+        @Index(name = "idx_ml_job_referencia", columnList = "referencia_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MlJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tipo", nullable = false, length = 30)
+    private TipoMlJob tipo;
+
+    // ID del incidente (texto) o del multimedia (imagen)
+    @Column(name = "referencia_id", nullable = false)
+    private UUID referenciaId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado", nullable = false, length = 20)
+    private EstadoMlJob estado;
+
+    // 1 = más urgente ... 5 = menos urgente; se toma del incidente al encolar
+    @Column(name = "prioridad")
+    private Integer prioridad;
+
+    @Column(name = "intentos", nullable = false)
+    private Integer intentos;
+
+    // El job no se reclama antes de esta fecha (reintentos diferidos)
+    @Column(name = "disponible_desde", nullable = false)
+    private LocalDateTime disponibleDesde;
+
+    // Instancia que tiene reclamado el job y cuándo lo reclamó
+    @Column(name = "nodo_reclamo", length = 100)
+    private String nodoReclamo;
+
+    @Column(name = "fecha_reclamo")
+    private LocalDateTime fechaReclamo;
+
+    @Column(name = "fecha_creacion", nullable = false)
+    private LocalDateTime fechaCreacion;
+
+    /**
+     * Prioridad efectiva como instante: encolado + (prioridad - 1) x aging-segundos. Ordenar por este
+     * valor equivale a que la prioridad mejore un nivel por cada aging-segundos de espera, sin depender
+     * de la hora del poll, así que un índice lo puede servir.
+     */
+    // Con DEFAULT, al agregar la columna las filas existentes toman la hora de la migración
+    @Column(name = "orden_reclamo", nullable = false, columnDefinition = "TIMESTAMP NOT NULL DEFAULT NOW()")
+    private LocalDateTime ordenReclamo;
+
+    @Column(name = "fecha_finalizacion")
+    private LocalDateTime fechaFinalizacion;
+
+    @Column(name = "error_mensaje", columnDefinition = "TEXT")
+    private String errorMensaje;
+
+    @PrePersist
+    protected void onCreate() {
+        fechaCreacion = LocalDateTime.now();
+        if (estado == null) {
+            estado = EstadoMlJob.PENDIENTE;
+        }
+        if (intentos == null) {
+            intentos = 0;
+        }
+        if (prioridad == null) {
+            prioridad = 3;
+        }
+        if (disponibleDesde == null) {
+            disponibleDesde = fechaCreacion;
+        }
+    }
+}
@@ -45,6 +45,14 @@ public class Multimedia {
     @Column(name = "tamano_bytes")
     private Long tamanoBytes;
 
+    // dHash de 64 bits para detectar imágenes casi idénticas (null si no es imagen legible)
+    @Column(name = "hash_perceptual")
+    private Long hashPerceptual;
+
+    // SHA-256 del contenido en hexadecimal, calculado al guardar el archivo
+    @Column(name = "hash_contenido", length = 64)
+    private String hashContenido;
+
     // Metadatos
     @Column(name = "descripcion", columnDefinition = "TEXT")
     private String descripcion;
@@ -0,0 +1,109 @@
+package com.recepcion.recepcion.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Reanálisis masivo de incidentes o imágenes ya analizados (p. ej. tras reentrenar un modelo).
+ * Se procesa por lotes recorriendo las filas en orden (fecha, id); tras cada lote se guarda
+ * el checkpoint, así un reinicio retoma desde el último lote confirmado.
+ */
+@Entity
+@Table(name = "reanalisis_job", indexes = {
+        @Index(name = "idx_reanalisis_job_estado", columnList = "estado, fecha_creacion")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReanalisisJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tipo", nullable = false, length = 30)
+    private TipoMlJob tipo;
+
+    // Filtros: versión del modelo con la que se hizo el análisis y rango de fecha de reporte/subida
+    @Column(name = "modelo_version", length = 50)
+    private String modeloVersion;
+
+    @Column(name = "fecha_desde")
+    private LocalDateTime fechaDesde;
+
+    @Column(name = "fecha_hasta")
+    private LocalDateTime fechaHasta;
+
+    // Tope de reanálisis por segundo
+    @Column(name = "tasa_por_segundo", nullable = false)
+    private Double tasaPorSegundo;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado", nullable = false, length = 20)
+    private EstadoReanalisis estado;
+
+    // Filas que cumplían los filtros al crear el reanálisis
+    @Column(name = "total")
+    private Long total;
+
+    @Column(name = "procesados", nullable = false)
+    private Long procesados;
+
+    @Column(name = "fallidos", nullable = false)
+    private Long fallidos;
+
+    // Checkpoint: última fila confirmada
+    @Column(name = "cursor_fecha")
+    private LocalDateTime cursorFecha;
+
+    @Column(name = "cursor_id")
+    private UUID cursorId;
+
+    // Tiempo acumulado procesando lotes, para calcular el throughput
+    @Column(name = "milisegundos_procesando", nullable = false)
+    private Long milisegundosProcesando;
+
+    // Instancia que procesa el reanálisis y hasta cuándo lo tiene reservado
+    @Column(name = "nodo_reclamo", length = 100)
+    private String nodoReclamo;
+
+    @Column(name = "reclamo_hasta")
+    private LocalDateTime reclamoHasta;
+
+    @Column(name = "fecha_creacion", nullable = false)
+    private LocalDateTime fechaCreacion;
+
+    @Column(name = "fecha_inicio")
+    private LocalDateTime fechaInicio;
+
+    @Column(name = "fecha_ultimo_checkpoint")
+    private LocalDateTime fechaUltimoCheckpoint;
+
+    @Column(name = "fecha_finalizacion")
+    private LocalDateTime fechaFinalizacion;
+
+    @PrePersist
+    protected void onCreate() {
+        fechaCreacion = LocalDateTime.now();
+        if (estado == null) {
+            estado = EstadoReanalisis.PENDIENTE;
+        }
+        if (procesados == null) {
+            procesados = 0L;
+        }
+        if (fallidos == null) {
+            fallidos = 0L;
+        }
+        if (milisegundosProcesando == null) {
+            milisegundosProcesando = 0L;
+        }
+    }
+}
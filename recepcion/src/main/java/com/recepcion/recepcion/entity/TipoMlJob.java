@@ -0,0 +1,6 @@
+package com.recepcion.recepcion.entity;
+
+public enum TipoMlJob {
+    ANALISIS_TEXTO,
+    ANALISIS_IMAGEN
+}
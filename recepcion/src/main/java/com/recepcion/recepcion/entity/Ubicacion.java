@@ -19,6 +19,8 @@ import java.util.UUID;
 @Builder
 public class Ubicacion {
 
+    public static final String CIUDAD_POR_DEFECTO = "Santa Cruz de la Sierra";
+
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
@@ -55,7 +57,7 @@ public class Ubicacion {
     protected void onCreate() {
         fechaCreacion = LocalDateTime.now();
         if (ciudad == null) {
-            ciudad = "Santa Cruz de la Sierra";
+            ciudad = CIUDAD_POR_DEFECTO;
         }
     }
 }
@@ -1,41 +1,42 @@
 package com.recepcion.recepcion.event;
 
-import com.recepcion.recepcion.service.AnalisisMlOrchestrationService;
+import com.recepcion.recepcion.service.MlJobService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.event.TransactionPhase;
 import org.springframework.transaction.event.TransactionalEventListener;
 
+/**
+ * Encola los análisis ML en la tabla ml_job dentro de la misma transacción que crea
+ * el incidente o el multimedia: si el COMMIT se confirma, el job también.
+ * La ejecución la realiza {@link com.recepcion.recepcion.worker.MlJobWorker}.
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class AnalisisMlEventListener {
 
-    private final AnalisisMlOrchestrationService analisisMlOrchestrationService;
+    private final MlJobService mlJobService;
 
-    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
-    @Async
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
     public void handleIncidenteCreadoEvent(IncidenteCreadoEvent event) {
-        log.info("Evento IncidenteCreadoEvent recibido después de COMMIT. Incidente ID: {}", event.getIncidenteId());
-        try {
-            analisisMlOrchestrationService.analizarTextoAutomaticamente(event.getIncidenteId());
-        } catch (Exception e) {
-            log.error("Error al procesar análisis de texto para incidente {}: {}",
-                    event.getIncidenteId(), e.getMessage(), e);
-        }
+        log.info("Evento IncidenteCreadoEvent recibido. Encolando análisis de texto para incidente: {}",
+                event.getIncidenteId());
+        mlJobService.encolarAnalisisTexto(event.getIncidenteId());
     }
 
-    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
-    @Async
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void handleIncidentesCreadosEvent(IncidentesCreadosEvent event) {
+        log.info("Evento IncidentesCreadosEvent recibido. Encolando análisis de texto para {} incidentes",
+                event.getIncidenteIds().size());
+        mlJobService.encolarAnalisisTexto(event.getIncidenteIds());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
     public void handleMultimediaCreadoEvent(MultimediaCreadoEvent event) {
-        log.info("Evento MultimediaCreadoEvent recibido después de COMMIT. Multimedia ID: {}", event.getMultimediaId());
-        try {
-            analisisMlOrchestrationService.analizarImagenAutomaticamente(event.getMultimediaId());
-        } catch (Exception e) {
-            log.error("Error al procesar análisis de imagen para multimedia {}: {}",
-                    event.getMultimediaId(), e.getMessage(), e);
-        }
+        log.info("Evento MultimediaCreadoEvent recibido. Encolando análisis de imagen para multimedia: {}",
+                event.getMultimediaId());
+        mlJobService.encolarAnalisisImagen(event.getMultimediaId());
     }
 }
@@ -0,0 +1,20 @@
+package com.recepcion.recepcion.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Incidentes creados juntos en un lote: sus análisis de texto se encolan con un solo batch de inserts
+ */
+@Getter
+public class IncidentesCreadosEvent extends ApplicationEvent {
+    private final List<UUID> incidenteIds;
+
+    public IncidentesCreadosEvent(Object source, List<UUID> incidenteIds) {
+        super(source);
+        this.incidenteIds = incidenteIds;
+    }
+}
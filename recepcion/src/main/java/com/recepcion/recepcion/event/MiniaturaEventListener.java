@@ -0,0 +1,25 @@
+package com.recepcion.recepcion.event;
+
+import com.recepcion.recepcion.service.MiniaturaService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Genera las miniaturas de cada imagen subida, después del COMMIT y fuera del thread de la petición
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MiniaturaEventListener {
+
+    private final MiniaturaService miniaturaService;
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void handleMultimediaCreadoEvent(MultimediaCreadoEvent event) {
+        log.debug("Encolando miniaturas para multimedia: {}", event.getMultimediaId());
+        miniaturaService.generarEnSegundoPlano(event.getMultimediaId());
+    }
+}
@@ -0,0 +1,19 @@
+package com.recepcion.recepcion.exception;
+
+/**
+ * Excepción lanzada cuando el recurso todavía no está listo (503)
+ * Ejemplo: miniatura encolada que aún no se generó
+ */
+public class ServiceUnavailableException extends RuntimeException {
+
+    private final long reintentarEnSegundos;
+
+    public ServiceUnavailableException(String message, long reintentarEnSegundos) {
+        super(message);
+        this.reintentarEnSegundos = reintentarEnSegundos;
+    }
+
+    public long getReintentarEnSegundos() {
+        return reintentarEnSegundos;
+    }
+}
@@ -0,0 +1,13 @@
+package com.recepcion.recepcion.exception;
+
+/**
+ * Excepción lanzada cuando el solicitante tomado de la cache ya no existe en la base
+ * (se borró y la invalidación no llegó). La transacción queda abortada: quien la abrió
+ * puede reintentar una vez, ya sin la entrada en la cache.
+ */
+public class SolicitanteObsoletoException extends RuntimeException {
+
+    public SolicitanteObsoletoException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,39 @@
+package com.recepcion.recepcion.mapper;
+
+import com.recepcion.recepcion.dto.response.ReanalisisResponse;
+import com.recepcion.recepcion.entity.ReanalisisJob;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+import java.util.List;
+
+@Mapper(componentModel = "spring")
+public interface ReanalisisMapper {
+
+    /**
+     * Convierte entidad ReanalisisJob a ReanalisisResponse, con el avance y el throughput calculados
+     */
+    @Mapping(target = "porcentaje", expression = "java(porcentaje(entity))")
+    @Mapping(target = "itemsPorSegundo", expression = "java(itemsPorSegundo(entity))")
+    ReanalisisResponse toResponse(ReanalisisJob entity);
+
+    /**
+     * Convierte lista de entidades a lista de responses
+     */
+    List<ReanalisisResponse> toResponseList(List<ReanalisisJob> entities);
+
+    default Double porcentaje(ReanalisisJob entity) {
+        if (entity.getTotal() == null || entity.getTotal() == 0) {
+            return null;
+        }
+        // El total se cuenta al crear: filas nuevas pueden llevarlo apenas por encima de 100
+        return Math.min(100.0, entity.getProcesados() * 100.0 / entity.getTotal());
+    }
+
+    default Double itemsPorSegundo(ReanalisisJob entity) {
+        if (entity.getMilisegundosProcesando() == null || entity.getMilisegundosProcesando() == 0) {
+            return null;
+        }
+        return entity.getProcesados() * 1000.0 / entity.getMilisegundosProcesando();
+    }
+}
@@ -0,0 +1,82 @@
+package com.recepcion.recepcion.repository;
+
+import com.recepcion.recepcion.entity.ArchivoBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ArchivoBlobRepository extends JpaRepository<ArchivoBlob, String> {
+
+    /**
+     * Registrar el blob sin referencias si todavía no existe. Se confirma antes de escribir el objeto en el
+     * almacén: si después la transacción de la subida se revierte, la fila queda con 0 referencias y la
+     * recolección de huérfanos encuentra el objeto. Recién pasada la gracia es candidata a recolectarse.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO archivo_blob (hash, ruta, tamano_bytes, referencias, fecha_creacion, fecha_actualizacion) " +
+                   "VALUES (:hash, :ruta, :tamanoBytes, 0, :ahora, :ahora) " +
+                   "ON CONFLICT (hash) DO NOTHING",
+           nativeQuery = true)
+    int registrar(
+        @Param("hash") String hash,
+        @Param("ruta") String ruta,
+        @Param("tamanoBytes") long tamanoBytes,
+        @Param("ahora") LocalDateTime ahora
+    );
+
+    /**
+     * Registrar una referencia al blob, creándolo si no existe. Es atómico frente a subidas
+     * simultáneas del mismo contenido, y deja la fila bloqueada hasta el fin de la transacción.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO archivo_blob (hash, ruta, tamano_bytes, referencias, fecha_creacion, fecha_actualizacion) " +
+                   "VALUES (:hash, :ruta, :tamanoBytes, 1, :ahora, :ahora) " +
+                   "ON CONFLICT (hash) DO UPDATE SET referencias = archivo_blob.referencias + 1, " +
+                   "fecha_actualizacion = :ahora",
+           nativeQuery = true)
+    int agregarReferencia(
+        @Param("hash") String hash,
+        @Param("ruta") String ruta,
+        @Param("tamanoBytes") long tamanoBytes,
+        @Param("ahora") LocalDateTime ahora
+    );
+
+    /**
+     * Quitar una referencia al blob
+     *
+     * @return 0 si el blob no existe (archivo anterior al almacenamiento por contenido)
+     */
+    @Modifying
+    @Query("UPDATE ArchivoBlob b SET b.referencias = b.referencias - 1, b.fechaActualizacion = :ahora " +
+           "WHERE b.hash = :hash AND b.referencias > 0")
+    int quitarReferencia(@Param("hash") String hash, @Param("ahora") LocalDateTime ahora);
+
+    @Query("SELECT b.ruta FROM ArchivoBlob b WHERE b.hash = :hash")
+    Optional<String> findRutaByHash(@Param("hash") String hash);
+
+    @Query("SELECT b.referencias FROM ArchivoBlob b WHERE b.hash = :hash")
+    Optional<Integer> findReferenciasByHash(@Param("hash") String hash);
+
+    /**
+     * Bloquear el blob solo si sigue sin referencias. Una subida que lo está reutilizando
+     * tiene la fila bloqueada o ya subió el contador, y en ambos casos no se devuelve.
+     */
+    @Query(value = "SELECT * FROM archivo_blob WHERE hash = :hash AND referencias = 0 FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    Optional<ArchivoBlob> bloquearSinReferencias(@Param("hash") String hash);
+
+    /**
+     * Blobs sin referencias desde antes del límite (p. ej. si la JVM cayó antes de borrarlos)
+     */
+    @Query(value = "SELECT hash FROM archivo_blob WHERE referencias = 0 AND fecha_actualizacion < :limite " +
+                   "ORDER BY fecha_actualizacion LIMIT :lote",
+           nativeQuery = true)
+    List<String> findHuerfanos(@Param("limite") LocalDateTime limite, @Param("lote") int lote);
+}
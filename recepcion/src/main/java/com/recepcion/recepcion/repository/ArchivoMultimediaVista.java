@@ -0,0 +1,19 @@
+package com.recepcion.recepcion.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Datos mínimos para servir el archivo de un multimedia, sin cargar la entidad
+ */
+public interface ArchivoMultimediaVista {
+
+    String getUrlArchivo();
+
+    String getNombreArchivo();
+
+    Long getTamanoBytes();
+
+    String getHashContenido();
+
+    LocalDateTime getFechaSubida();
+}
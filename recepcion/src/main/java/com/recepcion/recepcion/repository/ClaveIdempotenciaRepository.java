@@ -0,0 +1,84 @@
+package com.recepcion.recepcion.repository;
+
+import com.recepcion.recepcion.entity.ClaveIdempotencia;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Repository
+public interface ClaveIdempotenciaRepository extends JpaRepository<ClaveIdempotencia, String> {
+
+    /**
+     * Reservar la clave para ejecutar la solicitud, a nombre de {@code dueno}
+     *
+     * @return 1 si se reservó, 0 si otra solicitud ya la tenía
+     */
+    @Modifying
+    @Query(value = "INSERT INTO clave_idempotencia (clave, estado, dueno, bloqueada_hasta, fecha_creacion, fecha_expiracion) " +
+                   "VALUES (:clave, 'EN_PROCESO', :dueno, :bloqueadaHasta, :ahora, :expiracion) " +
+                   "ON CONFLICT (clave) DO NOTHING",
+           nativeQuery = true)
+    int reservar(
+        @Param("clave") String clave,
+        @Param("dueno") UUID dueno,
+        @Param("ahora") LocalDateTime ahora,
+        @Param("bloqueadaHasta") LocalDateTime bloqueadaHasta,
+        @Param("expiracion") LocalDateTime expiracion
+    );
+
+    /**
+     * Retomar una reserva EN_PROCESO cuyo bloqueo venció (la instancia que la tenía no terminó).
+     * Pasa a ser de {@code dueno}: si la anterior termina después, ya no puede completarla ni liberarla.
+     *
+     * @return 1 si esta solicitud quedó con la reserva
+     */
+    @Modifying
+    @Query("UPDATE ClaveIdempotencia c SET c.dueno = :dueno, c.bloqueadaHasta = :bloqueadaHasta " +
+           "WHERE c.clave = :clave AND c.estado = com.recepcion.recepcion.entity.EstadoIdempotencia.EN_PROCESO " +
+           "AND c.bloqueadaHasta < :ahora")
+    int retomarVencida(
+        @Param("clave") String clave,
+        @Param("dueno") UUID dueno,
+        @Param("ahora") LocalDateTime ahora,
+        @Param("bloqueadaHasta") LocalDateTime bloqueadaHasta
+    );
+
+    /**
+     * Guardar la respuesta; se ejecuta en la misma transacción que crea el recurso
+     *
+     * @return 0 si la reserva ya no es de {@code dueno} (otra solicitud la retomó)
+     */
+    @Modifying
+    @Query("UPDATE ClaveIdempotencia c SET c.estado = com.recepcion.recepcion.entity.EstadoIdempotencia.COMPLETADA, " +
+           "c.statusHttp = :statusHttp, c.respuesta = :respuesta WHERE c.clave = :clave AND c.dueno = :dueno")
+    int completar(
+        @Param("clave") String clave,
+        @Param("dueno") UUID dueno,
+        @Param("statusHttp") int statusHttp,
+        @Param("respuesta") String respuesta
+    );
+
+    /**
+     * Liberar la reserva de una solicitud que falló, para que el reintento la ejecute.
+     * Solo la libera su dueño: una reserva retomada por otra solicitud sigue en pie.
+     */
+    @Modifying
+    @Query("DELETE FROM ClaveIdempotencia c " +
+           "WHERE c.clave = :clave AND c.dueno = :dueno " +
+           "AND c.estado = com.recepcion.recepcion.entity.EstadoIdempotencia.EN_PROCESO")
+    int liberar(@Param("clave") String clave, @Param("dueno") UUID dueno);
+
+    /**
+     * Borrar hasta {@code lote} claves vencidas
+     */
+    @Modifying
+    @Query(value = "DELETE FROM clave_idempotencia WHERE clave IN (" +
+                   "SELECT clave FROM clave_idempotencia WHERE fecha_expiracion < :ahora LIMIT :lote)",
+           nativeQuery = true)
+    int eliminarVencidas(@Param("ahora") LocalDateTime ahora, @Param("lote") int lote);
+}
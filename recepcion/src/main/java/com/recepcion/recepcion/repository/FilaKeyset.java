@@ -0,0 +1,14 @@
+package com.recepcion.recepcion.repository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Fila de un recorrido por keyset: el ID y la fecha por la que se ordena
+ */
+public interface FilaKeyset {
+
+    UUID getId();
+
+    LocalDateTime getFecha();
+}
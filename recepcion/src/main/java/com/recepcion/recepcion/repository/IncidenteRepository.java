@@ -4,18 +4,29 @@ import com.recepcion.recepcion.entity.EstadoIncidente;
 import com.recepcion.recepcion.entity.Incidente;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface IncidenteRepository extends JpaRepository<Incidente, UUID> {
 
+    /**
+     * Buscar incidente bloqueando la fila hasta el fin de la transacción
+     * (evita que los resultados de texto e imagen se pisen entre sí)
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM Incidente i WHERE i.id = :id")
+    Optional<Incidente> findByIdParaActualizar(@Param("id") UUID id);
+
     /**
      * Buscar incidentes por estado
      */
@@ -50,6 +61,66 @@ public interface IncidenteRepository extends JpaRepository<Incidente, UUID> {
            "AND i.estadoIncidente IN ('RECIBIDO', 'EN_ANALISIS_TEXTO')")
     List<Incidente> findIncidentesPendientesAnalisisTexto();
 
+    /**
+     * Incidentes que quedaron EN_ANALISIS_TEXTO sin análisis, sin cambios desde {@code limite}
+     * y sin job activo ni descartado que los retome.
+     * Paginado por keyset sobre (fecha_ultima_actualizacion, id): la página siguiente empieza
+     * después de la última fila devuelta.
+     */
+    @Query(value = "SELECT i.* FROM incidente i " +
+                   "WHERE i.estado_incidente = 'EN_ANALISIS_TEXTO' AND i.analisis_texto_id IS NULL " +
+                   "AND i.fecha_ultima_actualizacion < :limite " +
+                   "AND (i.fecha_ultima_actualizacion, i.id) > (:desdeFecha, :desdeId) " +
+                   "AND NOT EXISTS (SELECT 1 FROM ml_job j WHERE j.referencia_id = i.id " +
+                   "AND j.tipo = 'ANALISIS_TEXTO' AND j.estado IN ('PENDIENTE', 'PROCESANDO', 'DESCARTADO')) " +
+                   "ORDER BY i.fecha_ultima_actualizacion, i.id " +
+                   "LIMIT :lote",
+           nativeQuery = true)
+    List<Incidente> findAnalisisTextoHuerfanos(
+        @Param("limite") LocalDateTime limite,
+        @Param("desdeFecha") LocalDateTime desdeFecha,
+        @Param("desdeId") UUID desdeId,
+        @Param("lote") int lote
+    );
+
+    /**
+     * Incidentes con análisis de texto completado que entran en un reanálisis: versión del modelo
+     * (null = cualquiera) y rango de fecha de reporte (null = sin límite).
+     * Paginado por keyset sobre (fecha_reporte, id).
+     */
+    @Query(value = "SELECT i.id AS id, i.fecha_reporte AS fecha FROM incidente i " +
+                   "JOIN analisis_ml_texto a ON a.id = i.analisis_texto_id " +
+                   "WHERE (CAST(:version AS text) IS NULL OR a.modelo_version = :version) " +
+                   "AND (CAST(:fechaDesde AS timestamp) IS NULL OR i.fecha_reporte >= :fechaDesde) " +
+                   "AND (CAST(:fechaHasta AS timestamp) IS NULL OR i.fecha_reporte < :fechaHasta) " +
+                   "AND (i.fecha_reporte, i.id) > (:desdeFecha, :desdeId) " +
+                   "ORDER BY i.fecha_reporte, i.id " +
+                   "LIMIT :lote",
+           nativeQuery = true)
+    List<FilaKeyset> findParaReanalisisTexto(
+        @Param("version") String version,
+        @Param("fechaDesde") LocalDateTime fechaDesde,
+        @Param("fechaHasta") LocalDateTime fechaHasta,
+        @Param("desdeFecha") LocalDateTime desdeFecha,
+        @Param("desdeId") UUID desdeId,
+        @Param("lote") int lote
+    );
+
+    /**
+     * Contar los incidentes que entran en un reanálisis de texto
+     */
+    @Query(value = "SELECT COUNT(*) FROM incidente i " +
+                   "JOIN analisis_ml_texto a ON a.id = i.analisis_texto_id " +
+                   "WHERE (CAST(:version AS text) IS NULL OR a.modelo_version = :version) " +
+                   "AND (CAST(:fechaDesde AS timestamp) IS NULL OR i.fecha_reporte >= :fechaDesde) " +
+                   "AND (CAST(:fechaHasta AS timestamp) IS NULL OR i.fecha_reporte < :fechaHasta)",
+           nativeQuery = true)
+    long countParaReanalisisTexto(
+        @Param("version") String version,
+        @Param("fechaDesde") LocalDateTime fechaDesde,
+        @Param("fechaHasta") LocalDateTime fechaHasta
+    );
+
     /**
      * Buscar incidentes por rango de fechas
      */
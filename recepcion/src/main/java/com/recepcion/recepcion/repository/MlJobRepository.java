@@ -0,0 +1,68 @@
+package com.recepcion.recepcion.repository;
+
+import com.recepcion.recepcion.entity.EstadoMlJob;
+import com.recepcion.recepcion.entity.MlJob;
+import com.recepcion.recepcion.entity.TipoMlJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface MlJobRepository extends JpaRepository<MlJob, UUID> {
+
+    /**
+     * Bloquear un lote de jobs disponibles sin esperar a los que otra instancia ya tiene bloqueados.
+     * Incluye jobs PROCESANDO cuyo reclamo expiró (la instancia que los tenía murió).
+     * Orden: {@code orden_reclamo}, la prioridad efectiva guardada al encolar (ver {@link MlJob#getOrdenReclamo}).
+     * Es fija, así idx_ml_job_orden entrega los jobs ya ordenados y el poll se detiene al completar el lote
+     * en vez de ordenar toda la cola pendiente.
+     * Debe ejecutarse dentro de una transacción: el bloqueo dura hasta el COMMIT.
+     */
+    @Query(value = "SELECT * FROM ml_job " +
+                   "WHERE ((estado = 'PENDIENTE' AND disponible_desde <= :ahora) " +
+                   "OR (estado = 'PROCESANDO' AND fecha_reclamo < :reclamoExpirado)) " +
+                   "AND estado IN ('PENDIENTE', 'PROCESANDO') " +
+                   "ORDER BY orden_reclamo, fecha_creacion " +
+                   "LIMIT :lote " +
+                   "FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<MlJob> bloquearDisponibles(
+        @Param("ahora") LocalDateTime ahora,
+        @Param("reclamoExpirado") LocalDateTime reclamoExpirado,
+        @Param("lote") int lote
+    );
+
+    /**
+     * Contar jobs por estado (profundidad de la cola)
+     */
+    long countByEstado(EstadoMlJob estado);
+
+    /**
+     * Contar los jobs en un estado disponibles desde antes de {@code ahora}: sin los aplazados a futuro
+     */
+    long countByEstadoAndDisponibleDesdeLessThanEqual(EstadoMlJob estado, LocalDateTime ahora);
+
+    /**
+     * Contar los jobs de una referencia en un estado (p. ej. cuántas veces terminó en ERROR)
+     */
+    long countByReferenciaIdAndTipoAndEstado(UUID referenciaId, TipoMlJob tipo, EstadoMlJob estado);
+
+    /**
+     * Último job de una referencia en un estado
+     */
+    Optional<MlJob> findFirstByReferenciaIdAndTipoAndEstadoOrderByFechaCreacionDesc(
+        UUID referenciaId, TipoMlJob tipo, EstadoMlJob estado);
+
+    /**
+     * Intentar tomar un advisory lock de Postgres sin esperar. Se libera solo al terminar la transacción,
+     * así una tarea periódica corre en una sola instancia a la vez.
+     */
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:clave)", nativeQuery = true)
+    boolean intentarBloqueoAsesor(@Param("clave") long clave);
+}
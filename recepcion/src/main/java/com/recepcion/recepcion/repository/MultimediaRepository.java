@@ -2,10 +2,13 @@ package com.recepcion.recepcion.repository;
 
 import com.recepcion.recepcion.entity.Multimedia;
 import com.recepcion.recepcion.entity.TipoArchivo;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -23,6 +26,19 @@ public interface MultimediaRepository extends JpaRepository<Multimedia, UUID> {
      */
     List<Multimedia> findByTipoArchivo(TipoArchivo tipoArchivo);
 
+    /**
+     * Ruta, nombre y validadores HTTP (hash, fecha) del archivo de un multimedia, en una sola consulta
+     */
+    @Query("SELECT m.urlArchivo AS urlArchivo, m.nombreArchivo AS nombreArchivo, m.tamanoBytes AS tamanoBytes, " +
+           "m.hashContenido AS hashContenido, m.fechaSubida AS fechaSubida FROM Multimedia m WHERE m.id = :id")
+    Optional<ArchivoMultimediaVista> findArchivoById(@Param("id") UUID id);
+
+    /**
+     * Multimedia cuyo archivo no coincide con el patrón, en orden de ID
+     * (para la migración por lotes al almacenamiento por contenido)
+     */
+    List<Multimedia> findByIdGreaterThanAndUrlArchivoNotLikeOrderByIdAsc(UUID desde, String patron, Limit limite);
+
     /**
      * Buscar archivos multimedia pendientes de análisis ML
      */
@@ -30,6 +46,65 @@ public interface MultimediaRepository extends JpaRepository<Multimedia, UUID> {
            "AND m.analisisCompletado = false")
     List<Multimedia> findPendientesAnalisis();
 
+    /**
+     * Imágenes sin analizar subidas antes de {@code limite} y sin job activo ni descartado que las retome.
+     * Paginado por keyset sobre (fecha_subida, id).
+     */
+    @Query(value = "SELECT m.* FROM multimedia m " +
+                   "WHERE m.tipo_archivo = 'IMAGEN' AND m.requiere_analisis_ml = TRUE " +
+                   "AND m.analisis_completado = FALSE " +
+                   "AND m.fecha_subida < :limite " +
+                   "AND (m.fecha_subida, m.id) > (:desdeFecha, :desdeId) " +
+                   "AND NOT EXISTS (SELECT 1 FROM ml_job j WHERE j.referencia_id = m.id " +
+                   "AND j.tipo = 'ANALISIS_IMAGEN' AND j.estado IN ('PENDIENTE', 'PROCESANDO', 'DESCARTADO')) " +
+                   "ORDER BY m.fecha_subida, m.id " +
+                   "LIMIT :lote",
+           nativeQuery = true)
+    List<Multimedia> findAnalisisImagenHuerfanos(
+        @Param("limite") LocalDateTime limite,
+        @Param("desdeFecha") LocalDateTime desdeFecha,
+        @Param("desdeId") UUID desdeId,
+        @Param("lote") int lote
+    );
+
+    /**
+     * Imágenes con análisis que entran en un reanálisis: versión del modelo de visión
+     * (null = cualquiera) y rango de fecha de subida (null = sin límite).
+     * Paginado por keyset sobre (fecha_subida, id).
+     */
+    @Query(value = "SELECT m.id AS id, m.fecha_subida AS fecha FROM multimedia m " +
+                   "JOIN analisis_ml_imagen a ON a.multimedia_id = m.id " +
+                   "WHERE (CAST(:version AS text) IS NULL OR a.modelo_vision = :version) " +
+                   "AND (CAST(:fechaDesde AS timestamp) IS NULL OR m.fecha_subida >= :fechaDesde) " +
+                   "AND (CAST(:fechaHasta AS timestamp) IS NULL OR m.fecha_subida < :fechaHasta) " +
+                   "AND (m.fecha_subida, m.id) > (:desdeFecha, :desdeId) " +
+                   "ORDER BY m.fecha_subida, m.id " +
+                   "LIMIT :lote",
+           nativeQuery = true)
+    List<FilaKeyset> findParaReanalisisImagen(
+        @Param("version") String version,
+        @Param("fechaDesde") LocalDateTime fechaDesde,
+        @Param("fechaHasta") LocalDateTime fechaHasta,
+        @Param("desdeFecha") LocalDateTime desdeFecha,
+        @Param("desdeId") UUID desdeId,
+        @Param("lote") int lote
+    );
+
+    /**
+     * Contar las imágenes que entran en un reanálisis
+     */
+    @Query(value = "SELECT COUNT(*) FROM multimedia m " +
+                   "JOIN analisis_ml_imagen a ON a.multimedia_id = m.id " +
+                   "WHERE (CAST(:version AS text) IS NULL OR a.modelo_vision = :version) " +
+                   "AND (CAST(:fechaDesde AS timestamp) IS NULL OR m.fecha_subida >= :fechaDesde) " +
+                   "AND (CAST(:fechaHasta AS timestamp) IS NULL OR m.fecha_subida < :fechaHasta)",
+           nativeQuery = true)
+    long countParaReanalisisImagen(
+        @Param("version") String version,
+        @Param("fechaDesde") LocalDateTime fechaDesde,
+        @Param("fechaHasta") LocalDateTime fechaHasta
+    );
+
     /**
      * Buscar la imagen principal de un incidente
      */
@@ -0,0 +1,43 @@
+package com.recepcion.recepcion.repository;
+
+import com.recepcion.recepcion.entity.EstadoReanalisis;
+import com.recepcion.recepcion.entity.ReanalisisJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ReanalisisJobRepository extends JpaRepository<ReanalisisJob, UUID> {
+
+    /**
+     * Reanálisis en los estados indicados, el más antiguo primero
+     */
+    List<ReanalisisJob> findByEstadoInOrderByFechaCreacionAsc(Collection<EstadoReanalisis> estados);
+
+    /**
+     * Listar todos los reanálisis, el más reciente primero
+     */
+    List<ReanalisisJob> findAllByOrderByFechaCreacionDesc();
+
+    /**
+     * Reservar un reanálisis para un nodo si está libre, ya es suyo o la reserva de otro nodo venció
+     *
+     * @return 1 si quedó reservado para el nodo
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ReanalisisJob r SET r.nodoReclamo = :nodo, r.reclamoHasta = :hasta " +
+           "WHERE r.id = :id AND (r.nodoReclamo IS NULL OR r.nodoReclamo = :nodo OR r.reclamoHasta < :ahora)")
+    int reservar(
+        @Param("id") UUID id,
+        @Param("nodo") String nodo,
+        @Param("hasta") LocalDateTime hasta,
+        @Param("ahora") LocalDateTime ahora
+    );
+}
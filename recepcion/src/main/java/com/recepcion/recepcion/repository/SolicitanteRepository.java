@@ -3,8 +3,13 @@ package com.recepcion.recepcion.repository;
 import com.recepcion.recepcion.entity.CanalOrigen;
 import com.recepcion.recepcion.entity.Solicitante;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -17,6 +22,35 @@ public interface SolicitanteRepository extends JpaRepository<Solicitante, UUID>
      */
     Optional<Solicitante> findByTelefono(String telefono);
 
+    /**
+     * Crear el solicitante del teléfono si todavía no existe, sin tocar la fila si ya existe.
+     * Frente a reportes simultáneos del mismo número nuevo el segundo INSERT espera al primero y no
+     * devuelve nada: quien llama lo lee con {@link #findByTelefono}. DO NOTHING, a diferencia de un
+     * DO UPDATE vacío, no bloquea ni reescribe la fila de un solicitante existente.
+     * <p>
+     * Un solo viaje a la BD solo para números nuevos: un teléfono ya registrado que no estaba en la
+     * cache cuesta dos (este INSERT vacío y el SELECT). Se acepta a cambio de no tomar el lock de fila
+     * que un DO UPDATE ... RETURNING pondría sobre el solicitante, compartido por todos sus reportes.
+     */
+    @Query(value = "INSERT INTO solicitante (id, nombre_completo, telefono, canal_origen, fecha_registro) " +
+                   "VALUES (:id, :nombreCompleto, :telefono, :canalOrigen, :ahora) " +
+                   "ON CONFLICT (telefono) DO NOTHING " +
+                   "RETURNING *",
+           nativeQuery = true)
+    @Transactional
+    Optional<Solicitante> insertarSiNoExiste(
+        @Param("id") UUID id,
+        @Param("nombreCompleto") String nombreCompleto,
+        @Param("telefono") String telefono,
+        @Param("canalOrigen") String canalOrigen,
+        @Param("ahora") LocalDateTime ahora
+    );
+
+    /**
+     * Buscar los solicitantes de varios teléfonos en una sola consulta (alta de incidentes en lote)
+     */
+    List<Solicitante> findByTelefonoIn(Collection<String> telefonos);
+
     /**
      * Verificar si existe un solicitante con ese teléfono
      */
@@ -3,9 +3,10 @@ package com.recepcion.recepcion.repository;
 import com.recepcion.recepcion.entity.Ubicacion;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
-//import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.UUID;
 
@@ -32,4 +33,32 @@ public interface UbicacionRepository extends JpaRepository<Ubicacion, UUID> {
      */
     @Query("SELECT u FROM Ubicacion u WHERE u.latitud IS NOT NULL AND u.longitud IS NOT NULL")
     List<Ubicacion> findUbicacionesConCoordenadas();
+
+    /**
+     * Buscar ubicaciones dentro de un rectángulo de coordenadas con la misma descripción textual
+     * (sin distinguir mayúsculas ni espacios repetidos), las más antiguas primero. El rango usa
+     * idx_ubicacion_coordenadas; la descripción se compara solo en esas filas.
+     */
+    @Query(value = "SELECT * FROM ubicacion " +
+                   "WHERE latitud >= :latitudMin AND latitud < :latitudMax " +
+                   "AND longitud >= :longitudMin AND longitud < :longitudMax " +
+                   "AND lower(regexp_replace(trim(descripcion_textual), '\\s+', ' ', 'g')) = :descripcion " +
+                   "ORDER BY fecha_creacion LIMIT :limite",
+           nativeQuery = true)
+    List<Ubicacion> findEnArea(
+        @Param("latitudMin") BigDecimal latitudMin,
+        @Param("latitudMax") BigDecimal latitudMax,
+        @Param("longitudMin") BigDecimal longitudMin,
+        @Param("longitudMax") BigDecimal longitudMax,
+        @Param("descripcion") String descripcion,
+        @Param("limite") int limite
+    );
+
+    /**
+     * Las ubicaciones con coordenadas más recientes, para precargar el índice de celdas
+     */
+    @Query(value = "SELECT * FROM ubicacion WHERE latitud IS NOT NULL AND longitud IS NOT NULL " +
+                   "ORDER BY fecha_creacion DESC LIMIT :limite",
+           nativeQuery = true)
+    List<Ubicacion> findRecientesConCoordenadas(@Param("limite") int limite);
 }
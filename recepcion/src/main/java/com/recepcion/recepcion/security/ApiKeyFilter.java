@@ -31,9 +31,11 @@ public class ApiKeyFilter extends OncePerRequestFilter {
 
     private static final String API_KEY_HEADER = "X-API-Key";
 
-    // Rutas que NO requieren API Key (públicas)
+    // Rutas que NO requieren API Key (públicas). Del actuator solo health e info: el resto
+    // (métricas, estado de réplicas ML) expone detalles internos y pide la API Key de administrador
     private static final List<String> PUBLIC_PATHS = Arrays.asList(
-            "/api/actuator",
+            "/api/actuator/health",
+            "/api/actuator/info",
             "/api/v3/api-docs",
             "/api/swagger-ui",
             "/api/swagger-resources"
@@ -0,0 +1,93 @@
+package com.recepcion.recepcion.service;
+
+import org.springframework.core.io.Resource;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
+
+/**
+ * Almacenamiento de archivos direccionado por contenido. Cada contenido distinto se guarda una
+ * sola vez bajo la clave {@code blobs/ab/cd/<sha256>.<ext>} (los subdirectorios son los primeros
+ * caracteres del hash, así ningún directorio crece sin límite) y la tabla archivo_blob cuenta
+ * cuántos multimedia lo usan. Dónde se guardan los bytes lo decide el
+ * {@link com.recepcion.recepcion.almacen.AlmacenObjetos} configurado.
+ */
+public interface AlmacenamientoService {
+
+    /**
+     * Archivo recibido en el directorio temporal local, con su tamaño y SHA-256
+     */
+    record ArchivoRecibido(Path temporal, long tamanoBytes, String hashContenido) {
+    }
+
+    /**
+     * Archivo guardado: clave del blob (compartida si el contenido ya existía), tamaño y SHA-256
+     */
+    record ArchivoAlmacenado(String ruta, long tamanoBytes, String hashContenido) {
+    }
+
+    /**
+     * Cómo entregar un objeto: el contenido, su ruta en este nodo (para sendfile) si es local,
+     * y una URL firmada si el almacén permite descargarlo directamente
+     */
+    record Descarga(Resource contenido, Path rutaLocal, URI urlFirmada, long tamanoBytes) {
+    }
+
+    /**
+     * Resultado de la migración de archivos anteriores al almacenamiento por contenido
+     */
+    record ResultadoMigracion(int migrados, int duplicados, int faltantes) {
+    }
+
+    /**
+     * Copia el stream (y lo cierra) a un archivo temporal local calculando su SHA-256.
+     * Se guarda definitivamente con {@link #guardar(ArchivoRecibido, String)}.
+     */
+    ArchivoRecibido recibir(InputStream contenido);
+
+    /**
+     * Guarda el archivo recibido en su blob (o lo descarta si el contenido ya existía) y suma una
+     * referencia. Debe llamarse dentro de la transacción que crea el multimedia.
+     */
+    ArchivoAlmacenado guardar(ArchivoRecibido recibido, String extension);
+
+    /**
+     * Quita la referencia de un multimedia a su archivo. El blob se borra tras el COMMIT
+     * solo si era la última referencia. Los archivos anteriores a la migración se borran directamente.
+     */
+    void liberar(String hashContenido, String ruta);
+
+    /**
+     * Borra el blob si sigue sin referencias
+     *
+     * @return true si se borró
+     */
+    boolean recolectar(String hashContenido);
+
+    /**
+     * Borra los blobs que quedaron sin referencias y no se llegaron a borrar
+     *
+     * @return cantidad de blobs borrados
+     */
+    int recolectarHuerfanos();
+
+    /**
+     * Mueve al almacenamiento por contenido los archivos subidos con el esquema anterior
+     * (un archivo por multimedia con nombre aleatorio en el directorio local). Es reanudable:
+     * solo procesa los multimedia cuya ruta no es todavía la de un blob.
+     */
+    ResultadoMigracion migrarArchivosExistentes();
+
+    /**
+     * Contenido de un objeto para servirlo por HTTP
+     *
+     * @param tamanoBytes tamaño si ya se conoce; null para consultarlo al almacén
+     */
+    Descarga descarga(String ruta, Long tamanoBytes);
+
+    /**
+     * Ruta local o URL firmada con la que otro servicio (p. ej. el de análisis de imágenes) puede leer el objeto
+     */
+    String ubicacionLectura(String ruta);
+}
@@ -1,5 +1,8 @@
 package com.recepcion.recepcion.service;
 
+import com.recepcion.recepcion.client.MlImagenClient;
+import com.recepcion.recepcion.client.MlTextoClient;
+
 import java.util.UUID;
 
 /**
@@ -28,4 +31,17 @@ public interface AnalisisMlOrchestrationService {
      * @param incidenteId ID del incidente
      */
     void analizarIncidenteCompleto(UUID incidenteId);
+
+    /**
+     * Vuelve a analizar el texto de un incidente ya analizado (p. ej. con un modelo nuevo).
+     * Reemplaza el análisis y recalcula la prioridad sin cambiar el estado del incidente.
+     *
+     * @throws com.recepcion.recepcion.client.MlServicioNoDisponibleException si el servicio ML no está disponible
+     */
+    void reanalizarTexto(UUID incidenteId) throws MlTextoClient.MlServiceException;
+
+    /**
+     * Vuelve a analizar una imagen ya analizada, igual que {@link #reanalizarTexto(UUID)}
+     */
+    void reanalizarImagen(UUID multimediaId) throws MlImagenClient.MlServiceException;
 }
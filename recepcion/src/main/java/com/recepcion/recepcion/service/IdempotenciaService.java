@@ -0,0 +1,39 @@
+package com.recepcion.recepcion.service;
+
+import org.springframework.http.ResponseEntity;
+
+import java.util.function.Supplier;
+
+/**
+ * Ejecución única de las solicitudes que traen un header Idempotency-Key (reintentos de n8n por timeout)
+ */
+public interface IdempotenciaService {
+
+    String HEADER = "Idempotency-Key";
+
+    // Marca las respuestas devueltas desde el almacén en vez de ejecutar la solicitud
+    String HEADER_REPETIDA = "Idempotent-Replayed";
+
+    /**
+     * Ejecuta {@code accion} una sola vez por clave y operación.
+     * <ul>
+     *     <li>Sin clave: ejecuta sin más.</li>
+     *     <li>Clave ya completada: devuelve la respuesta original (status y cuerpo) sin ejecutar.</li>
+     *     <li>Clave en proceso: espera a que la primera ejecución termine y devuelve su respuesta;
+     *     si no termina a tiempo, ConflictException.</li>
+     * </ul>
+     * La respuesta se guarda en la misma transacción que ejecuta la acción. Si la acción falla la
+     * reserva se libera y un reintento vuelve a ejecutarla.
+     *
+     * @param operacion método y ruta, con los IDs de la ruta (la misma clave en otro incidente es otra solicitud)
+     * @param tipo      clase del cuerpo, para reconstruir la respuesta guardada
+     */
+    <T> ResponseEntity<T> ejecutar(String operacion, String clave, Class<T> tipo, Supplier<ResponseEntity<T>> accion);
+
+    /**
+     * Borra las claves vencidas
+     *
+     * @return cantidad de claves borradas
+     */
+    int eliminarVencidas();
+}
@@ -4,6 +4,7 @@ import com.recepcion.recepcion.dto.request.ActualizarEstadoIncidenteRequest;
 import com.recepcion.recepcion.dto.request.ActualizarIncidenteRequest;
 import com.recepcion.recepcion.dto.request.CrearIncidenteRequest;
 import com.recepcion.recepcion.dto.response.IncidenteDetalleResponse;
+import com.recepcion.recepcion.dto.response.IncidenteLoteResponse;
 import com.recepcion.recepcion.dto.response.IncidenteResponse;
 import com.recepcion.recepcion.entity.EstadoIncidente;
 import org.springframework.data.domain.Page;
@@ -23,6 +24,13 @@ public interface IncidenteService {
      */
     IncidenteResponse crear(CrearIncidenteRequest request);
 
+    /**
+     * Crear varios incidentes en una transacción: solicitantes resueltos con una consulta
+     * y ubicaciones, incidentes y jobs ML insertados en batch.
+     * Los ítems inválidos se informan en su resultado y no impiden crear el resto.
+     */
+    IncidenteLoteResponse crearLote(List<CrearIncidenteRequest> requests);
+
     /**
      * Buscar incidente por ID (vista básica)
      */
@@ -0,0 +1,64 @@
+package com.recepcion.recepcion.service;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Miniaturas de las imágenes subidas, para que los listados no descarguen la foto original.
+ * Cada imagen se decodifica una vez y se escriben todos los tamaños de {@link Tamano}.
+ */
+public interface MiniaturaService {
+
+    /**
+     * Tamaños de miniatura, por lado mayor en píxeles
+     */
+    enum Tamano {
+        PEQUENA(160),
+        MEDIANA(480),
+        GRANDE(1024);
+
+        private final int ladoMaximo;
+
+        Tamano(int ladoMaximo) {
+            this.ladoMaximo = ladoMaximo;
+        }
+
+        public int getLadoMaximo() {
+            return ladoMaximo;
+        }
+    }
+
+    /**
+     * Encola la generación en el pool de miniaturas, salvo que ya haya una encolada o en curso
+     * para el mismo multimedia. Si el pool está lleno se omite: se vuelve a encolar al pedirla.
+     */
+    void generarEnSegundoPlano(UUID multimediaId);
+
+    /**
+     * Genera (o regenera) todas las miniaturas de un multimedia. Es idempotente: las rutas
+     * dependen solo del ID y del tamaño, y cada archivo se reemplaza de forma atómica.
+     *
+     * @return la ruta de la miniatura pequeña, o vacío si la imagen no se pudo decodificar
+     */
+    Optional<String> generar(UUID multimediaId);
+
+    /**
+     * Hash perceptual de la imagen para reutilizar análisis ML de fotos repetidas. Si la generación
+     * de miniaturas todavía no lo guardó, lo calcula con una decodificación submuestreada (unos
+     * pocos miles de píxeles) y lo guarda.
+     *
+     * @return el hash, o vacío si la imagen no se pudo decodificar o supera el máximo de píxeles
+     */
+    Optional<Long> obtenerHashPerceptual(UUID multimediaId);
+
+    /**
+     * Archivo de la miniatura pedida. Si todavía no existe se encola su generación y se lanza
+     * {@link com.recepcion.recepcion.exception.ServiceUnavailableException} para que el cliente reintente
+     */
+    MultimediaService.Archivo obtenerMiniatura(UUID multimediaId, Tamano tamano);
+
+    /**
+     * Borra las miniaturas de un multimedia del disco
+     */
+    void eliminarArchivos(UUID multimediaId);
+}
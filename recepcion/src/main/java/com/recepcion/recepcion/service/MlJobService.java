@@ -0,0 +1,69 @@
+package com.recepcion.recepcion.service;
+
+import com.recepcion.recepcion.entity.MlJob;
+import com.recepcion.recepcion.entity.TipoMlJob;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Cola persistente de trabajos de análisis ML (tabla ml_job)
+ */
+public interface MlJobService {
+
+    /**
+     * Encola el análisis de texto de un incidente.
+     * Se une a la transacción actual, por lo que el job se confirma junto con el incidente.
+     */
+    MlJob encolarAnalisisTexto(UUID incidenteId);
+
+    /**
+     * Encola el análisis de texto de varios incidentes creados en la transacción actual.
+     * Los jobs se insertan juntos (batch JDBC) en vez de uno por llamada.
+     */
+    List<MlJob> encolarAnalisisTexto(List<UUID> incidenteIds);
+
+    /**
+     * Encola el análisis de una imagen
+     */
+    MlJob encolarAnalisisImagen(UUID multimediaId);
+
+    /**
+     * Vuelve a encolar un análisis que quedó sin job activo; no se reclama antes de {@code espera}
+     */
+    MlJob reencolar(TipoMlJob tipo, UUID referenciaId, Duration espera);
+
+    /**
+     * Reclama hasta {@code cantidad} jobs disponibles para el nodo indicado
+     */
+    List<MlJob> reclamarLote(String nodo, int cantidad);
+
+    /**
+     * Marca un job como completado
+     */
+    void marcarCompletado(UUID jobId);
+
+    /**
+     * Registra el fallo de un job: se reprograma si le quedan intentos, si no queda en ERROR
+     *
+     * @param definitivo true si el error no tiene sentido reintentarlo
+     */
+    void marcarFallido(UUID jobId, String error, boolean definitivo);
+
+    /**
+     * Devuelve un job a la cola sin consumir un intento, porque el servicio ML no está disponible.
+     * Se retomará pasado el tiempo de aplazamiento configurado.
+     */
+    void aplazar(UUID jobId, String motivo);
+
+    /**
+     * Cantidad de jobs pendientes en la cola
+     */
+    long contarPendientes();
+
+    /**
+     * Cantidad de jobs pendientes que ya se pueden reclamar (sin los aplazados por backoff o aplazar)
+     */
+    long contarDisponibles();
+}
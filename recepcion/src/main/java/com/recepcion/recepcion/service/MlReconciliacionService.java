@@ -0,0 +1,31 @@
+package com.recepcion.recepcion.service;
+
+import com.recepcion.recepcion.entity.TipoMlJob;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Reconciliación de análisis ML huérfanos: incidentes e imágenes que quedaron a medio analizar
+ * sin un job que los retome (la JVM murió, o el job agotó sus intentos en ERROR)
+ */
+public interface MlReconciliacionService {
+
+    /**
+     * Posición de la última fila revisada (paginado por keyset)
+     */
+    record Cursor(LocalDateTime fecha, UUID id) {
+
+        public static final Cursor INICIO = new Cursor(LocalDateTime.of(1970, 1, 1, 0, 0), new UUID(0, 0));
+    }
+
+    /**
+     * Revisa una página de análisis huérfanos del tipo indicado: los reencola con backoff exponencial
+     * o, si ya agotaron los reencolados, los descarta (estado DESCARTADO).
+     * Solo una instancia reconcilia a la vez (advisory lock de la transacción).
+     *
+     * @return cursor de la página siguiente, o vacío si no quedan filas u otra instancia está reconciliando
+     */
+    Optional<Cursor> reconciliarPagina(TipoMlJob tipo, Cursor desde);
+}
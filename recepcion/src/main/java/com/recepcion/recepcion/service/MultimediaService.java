@@ -1,8 +1,12 @@
 package com.recepcion.recepcion.service;
 
 import com.recepcion.recepcion.dto.response.MultimediaResponse;
+import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -24,9 +28,22 @@ public interface MultimediaService {
     List<MultimediaResponse> listarPorIncidente(UUID incidenteId);
 
     /**
-     * Descargar archivo multimedia
+     * Archivo de un multimedia listo para servir: se lee del almacén en streaming al escribir la respuesta.
+     * Los archivos no cambian después de subidos, así que hash y fecha de subida sirven de validadores HTTP.
+     *
+     * @param ruta          ruta en el disco de este nodo; null si el almacén es remoto
+     * @param urlFirmada    URL temporal para descargarlo directamente del almacén; null si no la soporta
+     * @param hashContenido SHA-256 del contenido; null en archivos subidos antes de calcularlo
      */
-    byte[] descargarArchivo(UUID id);
+    record Archivo(Resource contenido, Path ruta, URI urlFirmada, String nombreArchivo, long tamanoBytes,
+                   String hashContenido, LocalDateTime fechaSubida) {
+    }
+
+    /**
+     * Obtener el archivo de un multimedia para verlo o descargarlo. Solo consulta la BD (y el almacén en
+     * archivos subidos antes de registrar su tamaño): una petición condicional que termina en 304 no lee el archivo.
+     */
+    Archivo obtenerArchivo(UUID id);
 
     /**
      * Eliminar archivo multimedia
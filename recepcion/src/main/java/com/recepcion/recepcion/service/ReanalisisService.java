@@ -0,0 +1,68 @@
+package com.recepcion.recepcion.service;
+
+import com.recepcion.recepcion.dto.request.CrearReanalisisRequest;
+import com.recepcion.recepcion.dto.response.ReanalisisResponse;
+import com.recepcion.recepcion.entity.ReanalisisJob;
+import com.recepcion.recepcion.repository.FilaKeyset;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Reanálisis masivo de análisis ML ya completados (tabla reanalisis_job).
+ * Se procesa por lotes con checkpoint, a una tasa limitada y cediendo ante el tráfico en vivo.
+ */
+public interface ReanalisisService {
+
+    /**
+     * Crea un reanálisis; queda PENDIENTE hasta que un worker lo tome
+     */
+    ReanalisisResponse crear(CrearReanalisisRequest request);
+
+    /**
+     * Buscar reanálisis por ID, con su avance
+     */
+    ReanalisisResponse buscarPorId(UUID id);
+
+    /**
+     * Listar todos los reanálisis, el más reciente primero
+     */
+    List<ReanalisisResponse> listarTodos();
+
+    /**
+     * Pausar un reanálisis; el lote en curso termina y guarda su checkpoint
+     */
+    ReanalisisResponse pausar(UUID id);
+
+    /**
+     * Reanudar un reanálisis pausado desde su último checkpoint
+     */
+    ReanalisisResponse reanudar(UUID id);
+
+    /**
+     * Cancelar un reanálisis que no terminó
+     */
+    ReanalisisResponse cancelar(UUID id);
+
+    /**
+     * Reserva para el nodo el reanálisis activo más antiguo que esté libre, ya sea suyo
+     * o cuya reserva haya vencido (el nodo anterior murió).
+     */
+    Optional<ReanalisisJob> reclamarSiguiente(String nodo, Duration reserva);
+
+    /**
+     * Siguiente lote de filas a reanalizar, a partir del checkpoint del reanálisis
+     */
+    List<FilaKeyset> siguienteLote(ReanalisisJob job, int cantidad);
+
+    /**
+     * Guarda el checkpoint y los contadores de un lote y libera la reserva del nodo.
+     *
+     * @param ultima     última fila procesada, o null si no se avanzó
+     * @param terminado  true si no quedan filas después de {@code ultima}
+     */
+    void registrarAvance(UUID id, String nodo, FilaKeyset ultima, int procesados, int fallidos,
+                         long milisegundos, boolean terminado);
+}
@@ -0,0 +1,180 @@
+package com.recepcion.recepcion.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.recepcion.recepcion.dto.response.SolicitanteResponse;
+import com.recepcion.recepcion.entity.CanalOrigen;
+import com.recepcion.recepcion.entity.Solicitante;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Cache en memoria de solicitantes por teléfono: casi todos los reportes llegan de números que ya
+ * reportaron antes, y así el alta y la búsqueda por teléfono no van a Postgres.
+ * <p>
+ * Las escrituras se reflejan recién con el COMMIT (una transacción que falla no deja entradas con
+ * IDs inexistentes). Las invalidaciones se publican con {@code pg_notify} en la misma transacción;
+ * Postgres las entrega al confirmar y {@link com.recepcion.recepcion.worker.SolicitanteCacheListener}
+ * las aplica en las demás instancias. El TTL acota el daño de una notificación perdida.
+ */
+@Component
+@Slf4j
+public class SolicitanteCache {
+
+    public static final String CANAL = "solicitante_cache";
+
+    // Identifica las notificaciones propias, que ya se aplicaron localmente
+    private final String nodo = UUID.randomUUID().toString();
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean habilitado;
+    private final Cache<String, Entrada> solicitantes;
+    private final Counter invalidacionesLocales;
+    private final Counter invalidacionesRemotas;
+
+    /**
+     * Lo mínimo para asociar un incidente y responder sin volver a leer la fila
+     */
+    public record Entrada(UUID id, String nombreCompleto, String telefono, CanalOrigen canalOrigen,
+                          LocalDateTime fechaRegistro) {
+
+        public Solicitante toEntity() {
+            return Solicitante.builder()
+                    .id(id)
+                    .nombreCompleto(nombreCompleto)
+                    .telefono(telefono)
+                    .canalOrigen(canalOrigen)
+                    .fechaRegistro(fechaRegistro)
+                    .build();
+        }
+
+        public SolicitanteResponse toResponse() {
+            return SolicitanteResponse.builder()
+                    .id(id)
+                    .nombreCompleto(nombreCompleto)
+                    .telefono(telefono)
+                    .canalOrigen(canalOrigen)
+                    .fechaRegistro(fechaRegistro)
+                    .build();
+        }
+    }
+
+    public SolicitanteCache(
+            JdbcTemplate jdbcTemplate,
+            @Value("${app.solicitantes.cache.enabled:true}") boolean habilitado,
+            @Value("${app.solicitantes.cache.max-entradas:50000}") long maxEntradas,
+            @Value("${app.solicitantes.cache.ttl-minutos:30}") long ttlMinutos,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.habilitado = habilitado;
+        this.solicitantes = Caffeine.newBuilder()
+                .maximumSize(maxEntradas)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutos))
+                .recordStats()
+                .build();
+
+        // cache.gets{result=hit|miss} da la tasa de aciertos; cache.evictions los desalojos por tamaño o TTL
+        CaffeineCacheMetrics.monitor(meterRegistry, solicitantes, "solicitantes.telefono");
+        this.invalidacionesLocales = Counter.builder("solicitantes.cache.invalidaciones")
+                .tag("origen", "local")
+                .description("Entradas invalidadas por cambios hechos en esta instancia")
+                .register(meterRegistry);
+        this.invalidacionesRemotas = Counter.builder("solicitantes.cache.invalidaciones")
+                .tag("origen", "remoto")
+                .description("Entradas invalidadas por NOTIFY de otra instancia")
+                .register(meterRegistry);
+    }
+
+    public Optional<Entrada> buscar(String telefono) {
+        if (!habilitado || telefono == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(solicitantes.getIfPresent(telefono));
+    }
+
+    /**
+     * Write-through: guarda el solicitante cuando la transacción actual se confirme
+     */
+    public void guardar(Solicitante solicitante) {
+        if (!habilitado) {
+            return;
+        }
+        Entrada entrada = new Entrada(solicitante.getId(), solicitante.getNombreCompleto(), solicitante.getTelefono(),
+                solicitante.getCanalOrigen(), solicitante.getFechaRegistro());
+        alConfirmar(() -> solicitantes.put(entrada.telefono(), entrada));
+    }
+
+    /**
+     * Quita el teléfono de esta instancia y avisa a las demás. Se llama dentro de la transacción
+     * que modifica o borra el solicitante: el NOTIFY solo se entrega si esa transacción confirma.
+     */
+    public void invalidar(String telefono) {
+        if (!habilitado || telefono == null) {
+            return;
+        }
+        solicitantes.invalidate(telefono);
+        invalidacionesLocales.increment();
+        // Otra vez tras el COMMIT: una lectura concurrente pudo volver a cargar la fila anterior
+        alConfirmar(() -> solicitantes.invalidate(telefono));
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null, CANAL, nodo + ":" + telefono);
+    }
+
+    /**
+     * Quita el teléfono solo de esta instancia, sin NOTIFY: para cuando la transacción ya está
+     * abortada y la entrada resultó apuntar a un solicitante que no existe
+     */
+    public void descartar(String telefono) {
+        if (telefono == null) {
+            return;
+        }
+        solicitantes.invalidate(telefono);
+        invalidacionesLocales.increment();
+    }
+
+    /**
+     * Aplica una notificación recibida por LISTEN; las de esta misma instancia se ignoran
+     */
+    public void aplicarNotificacion(String mensaje) {
+        int separador = mensaje.indexOf(':');
+        if (separador < 0 || mensaje.substring(0, separador).equals(nodo)) {
+            return;
+        }
+        solicitantes.invalidate(mensaje.substring(separador + 1));
+        invalidacionesRemotas.increment();
+    }
+
+    /**
+     * Tras reconectar el LISTEN pudieron perderse notificaciones: se descarta todo
+     */
+    public void invalidarTodo() {
+        solicitantes.invalidateAll();
+    }
+
+    public long tamano() {
+        return solicitantes.estimatedSize();
+    }
+
+    private static void alConfirmar(Runnable accion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            accion.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                accion.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,265 @@
+package com.recepcion.recepcion.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.recepcion.recepcion.dto.request.UbicacionRequest;
+import com.recepcion.recepcion.entity.Ubicacion;
+import com.recepcion.recepcion.mapper.UbicacionMapper;
+import com.recepcion.recepcion.repository.UbicacionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Resuelve la ubicación de un incidente nuevo: las coordenadas se ajustan a una grilla de celdas
+ * ({@code app.ubicaciones.dedup.celda-grados}) y, si ya hay una ubicación en la misma celda con los mismos
+ * datos de dirección (descripción, referencia, ciudad, distrito y zona, sin distinguir mayúsculas ni espacios),
+ * se reutiliza en vez de insertar otra fila. Muchos reportes repetidos llegan de la misma esquina con el
+ * mismo texto (el bot reenvía, el mismo vecino vuelve a reportar); sin esto la tabla ubicacion
+ * (y idx_ubicacion_coordenadas) crece uno a uno con los incidentes. Con otro texto se inserta una fila
+ * propia: la dirección que escribió cada ciudadano no se pierde.
+ * <p>
+ * El índice (celda, dirección) -> ubicación vive en memoria, se precarga con las ubicaciones más recientes
+ * al arrancar y ante un fallo se consulta la base por rango de coordenadas (otra instancia pudo crear la fila).
+ * Una fila compartida no se puede modificar ni borrar por /ubicaciones (ver UbicacionServiceImpl).
+ * Cada acierto se confirma leyendo la fila por ID, así una entrada de una ubicación borrada o movida
+ * no asocia el incidente a algo que ya no existe. Dos instancias que crean a la vez una ubicación en la
+ * misma celda pueden dejar dos filas; la deduplicación es de mejor esfuerzo.
+ */
+@Component
+@Slf4j
+public class UbicacionResolver {
+
+    // Filas de la base que se revisan por celda al fallar el índice en memoria
+    private static final int CANDIDATOS_POR_CELDA = 10;
+
+    private final UbicacionRepository ubicacionRepository;
+    private final UbicacionMapper ubicacionMapper;
+    private final boolean habilitado;
+    private final double celdaGrados;
+    private final int precarga;
+    private final Cache<Clave, UUID> indice;
+    private final Counter reutilizadas;
+    private final Counter nuevas;
+    private final Counter sinCoordenadas;
+
+    /**
+     * Celda de la grilla: índices de fila (latitud) y columna (longitud)
+     */
+    record Celda(long fila, long columna) {
+    }
+
+    /**
+     * Celda más los datos de dirección normalizados: dos reportes comparten fila solo si coinciden en todo
+     */
+    record Clave(Celda celda, String descripcion, String referencia, String ciudad, String distrito, String zona) {
+    }
+
+    public UbicacionResolver(
+            UbicacionRepository ubicacionRepository,
+            UbicacionMapper ubicacionMapper,
+            @Value("${app.ubicaciones.dedup.enabled:true}") boolean habilitado,
+            @Value("${app.ubicaciones.dedup.celda-grados:0.0005}") double celdaGrados,
+            @Value("${app.ubicaciones.dedup.max-celdas:100000}") long maxCeldas,
+            @Value("${app.ubicaciones.dedup.precarga:20000}") int precarga,
+            MeterRegistry meterRegistry) {
+        this.ubicacionRepository = ubicacionRepository;
+        this.ubicacionMapper = ubicacionMapper;
+        this.habilitado = habilitado;
+        this.celdaGrados = celdaGrados;
+        this.precarga = precarga;
+        this.indice = Caffeine.newBuilder()
+                .maximumSize(maxCeldas)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, indice, "ubicaciones.celdas");
+        this.reutilizadas = Counter.builder("ubicaciones.resolucion")
+                .tag("resultado", "reutilizada")
+                .description("Incidentes asociados a una ubicación existente de la misma celda")
+                .register(meterRegistry);
+        this.nuevas = Counter.builder("ubicaciones.resolucion")
+                .tag("resultado", "nueva")
+                .description("Incidentes para los que se insertó una ubicación nueva")
+                .register(meterRegistry);
+        this.sinCoordenadas = Counter.builder("ubicaciones.resolucion")
+                .tag("resultado", "sin_coordenadas")
+                .description("Incidentes sin coordenadas: siempre insertan su ubicación")
+                .register(meterRegistry);
+        Gauge.builder("ubicaciones.reutilizacion", this, UbicacionResolver::tasaReutilizacion)
+                .description("Fracción de incidentes que reutilizaron una ubicación existente")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Carga en el índice las ubicaciones más recientes; si falla, el índice se llena con el uso
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void precargar() {
+        if (!habilitado || precarga <= 0) {
+            return;
+        }
+        try {
+            List<Ubicacion> recientes = ubicacionRepository.findRecientesConCoordenadas(precarga);
+            // De la más reciente a la más antigua: en cada celda queda la más antigua, igual que en findEnArea
+            recientes.forEach(u -> indice.put(clave(u), u.getId()));
+            log.info("Índice de ubicaciones precargado: {} ubicaciones en {} celdas",
+                    recientes.size(), indice.estimatedSize());
+        } catch (Exception e) {
+            log.warn("No se pudo precargar el índice de ubicaciones: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Ubicación para un incidente nuevo: una existente de la misma celda y dirección, o una recién insertada
+     */
+    public Ubicacion resolver(UbicacionRequest request) {
+        return resolver(List.of(request)).get(0);
+    }
+
+    /**
+     * Igual que {@link #resolver(UbicacionRequest)} para un lote, en el mismo orden. Las ubicaciones
+     * del lote con la misma celda y dirección también comparten fila; las nuevas se insertan con un saveAll.
+     */
+    public List<Ubicacion> resolver(List<UbicacionRequest> requests) {
+        List<Ubicacion> resultado = new ArrayList<>(requests.size());
+        Map<Clave, Ubicacion> delLote = new HashMap<>();
+        List<Ubicacion> aInsertar = new ArrayList<>();
+
+        for (UbicacionRequest request : requests) {
+            if (!habilitado || request.getLatitud() == null || request.getLongitud() == null) {
+                Ubicacion nueva = ubicacionMapper.toEntity(request);
+                aInsertar.add(nueva);
+                resultado.add(nueva);
+                (habilitado ? sinCoordenadas : nuevas).increment();
+                continue;
+            }
+
+            Ubicacion pedida = ubicacionMapper.toEntity(request);
+            Clave clave = clave(pedida);
+            Ubicacion ubicacion = delLote.get(clave);
+            if (ubicacion == null) {
+                ubicacion = buscar(clave).orElse(null);
+            }
+            if (ubicacion != null) {
+                reutilizadas.increment();
+            } else {
+                ubicacion = pedida;
+                aInsertar.add(ubicacion);
+                nuevas.increment();
+            }
+            delLote.put(clave, ubicacion);
+            resultado.add(ubicacion);
+        }
+
+        if (!aInsertar.isEmpty()) {
+            // saveAll sobre entidades nuevas persiste las mismas instancias que ya están en resultado
+            ubicacionRepository.saveAll(aInsertar);
+            if (habilitado) {
+                List<Ubicacion> insertadas = aInsertar.stream()
+                        .filter(u -> u.getLatitud() != null && u.getLongitud() != null)
+                        .toList();
+                // Recién tras el COMMIT: si la transacción falla, las filas no existen
+                alConfirmar(() -> insertadas.forEach(u ->
+                        indice.asMap().putIfAbsent(clave(u), u.getId())));
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Quita la ubicación del índice; se llama antes de borrarla o de cambiarle las coordenadas
+     */
+    public void olvidar(Ubicacion ubicacion) {
+        if (ubicacion.getLatitud() == null || ubicacion.getLongitud() == null) {
+            return;
+        }
+        indice.asMap().remove(clave(ubicacion), ubicacion.getId());
+    }
+
+    public double tasaReutilizacion() {
+        double total = reutilizadas.count() + nuevas.count() + sinCoordenadas.count();
+        return total == 0 ? 0 : reutilizadas.count() / total;
+    }
+
+    // ==================== MÉTODOS PRIVADOS ====================
+
+    private Optional<Ubicacion> buscar(Clave clave) {
+        UUID id = indice.getIfPresent(clave);
+        if (id != null) {
+            Optional<Ubicacion> indexada = ubicacionRepository.findById(id)
+                    .filter(u -> u.getLatitud() != null && u.getLongitud() != null && clave.equals(clave(u)));
+            if (indexada.isPresent()) {
+                return indexada;
+            }
+            // Se borró o se modificó en otra instancia
+            indice.asMap().remove(clave, id);
+        }
+
+        // Los límites en BigDecimal pueden diferir del cálculo en double justo en el borde, y la base solo
+        // compara la descripción: se vuelve a filtrar por la clave completa
+        Celda celda = clave.celda();
+        Optional<Ubicacion> enBase = ubicacionRepository.findEnArea(
+                        BigDecimal.valueOf(celda.fila() * celdaGrados),
+                        BigDecimal.valueOf((celda.fila() + 1) * celdaGrados),
+                        BigDecimal.valueOf(celda.columna() * celdaGrados),
+                        BigDecimal.valueOf((celda.columna() + 1) * celdaGrados),
+                        clave.descripcion(),
+                        CANDIDATOS_POR_CELDA)
+                .stream()
+                .filter(u -> u.getLatitud() != null && u.getLongitud() != null && clave.equals(clave(u)))
+                .findFirst();
+        enBase.ifPresent(u -> indice.put(clave, u.getId()));
+        return enBase;
+    }
+
+    Clave clave(Ubicacion ubicacion) {
+        Celda celda = new Celda((long) Math.floor(ubicacion.getLatitud().doubleValue() / celdaGrados),
+                (long) Math.floor(ubicacion.getLongitud().doubleValue() / celdaGrados));
+        // Sin ciudad se guarda la ciudad por defecto (Ubicacion#onCreate): cuenta como la misma
+        return new Clave(celda, normalizar(ubicacion.getDescripcionTextual()), normalizar(ubicacion.getReferencia()),
+                normalizar(Objects.requireNonNullElse(ubicacion.getCiudad(), Ubicacion.CIUDAD_POR_DEFECTO)),
+                normalizar(ubicacion.getDistrito()), normalizar(ubicacion.getZona()));
+    }
+
+    /**
+     * Igual que la comparación de {@link UbicacionRepository#findEnArea}: sin mayúsculas ni espacios repetidos
+     */
+    static String normalizar(String texto) {
+        if (texto == null || texto.isBlank()) {
+            return "";
+        }
+        return texto.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static void alConfirmar(Runnable accion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            accion.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                accion.run();
+            }
+        });
+    }
+}
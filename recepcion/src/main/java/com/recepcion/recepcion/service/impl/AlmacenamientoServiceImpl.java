@@ -0,0 +1,323 @@
+package com.recepcion.recepcion.service.impl;
+
+import com.recepcion.recepcion.almacen.AlmacenObjetos;
+import com.recepcion.recepcion.almacen.RecursoAlmacenado;
+import com.recepcion.recepcion.entity.Multimedia;
+import com.recepcion.recepcion.exception.ServiceException;
+import com.recepcion.recepcion.repository.ArchivoBlobRepository;
+import com.recepcion.recepcion.repository.MultimediaRepository;
+import com.recepcion.recepcion.service.AlmacenamientoService;
+import com.recepcion.recepcion.util.GuardadoStreaming;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+@Service
+@Slf4j
+public class AlmacenamientoServiceImpl implements AlmacenamientoService {
+
+    private static final UUID ID_INICIAL = new UUID(0L, 0L);
+    private static final String PREFIJO_BLOBS = "blobs";
+    private static final Pattern EXTENSION_VALIDA = Pattern.compile("[a-z0-9]{1,10}");
+
+    private final ArchivoBlobRepository archivoBlobRepository;
+    private final MultimediaRepository multimediaRepository;
+    private final AlmacenObjetos almacen;
+    // Cada recolección y cada lote de la migración en su propia transacción
+    private final TransactionTemplate nuevaTransaccion;
+
+    @Value("${app.multimedia.upload-dir:uploads}")
+    private String uploadDir;
+
+    // Un blob sin referencias más antiguo que esto se considera abandonado
+    @Value("${app.multimedia.almacenamiento.gracia-huerfanos-segundos:3600}")
+    private long graciaHuerfanosSegundos;
+
+    @Value("${app.multimedia.almacenamiento.lote:100}")
+    private int lote;
+
+    // Validez de las URLs firmadas para descargar del almacén (solo almacenes remotos)
+    @Value("${app.multimedia.almacenamiento.validez-url-segundos:900}")
+    private long validezUrlSegundos;
+
+    public AlmacenamientoServiceImpl(ArchivoBlobRepository archivoBlobRepository,
+                                     MultimediaRepository multimediaRepository,
+                                     AlmacenObjetos almacen,
+                                     PlatformTransactionManager transactionManager) {
+        this.archivoBlobRepository = archivoBlobRepository;
+        this.multimediaRepository = multimediaRepository;
+        this.almacen = almacen;
+        this.nuevaTransaccion = new TransactionTemplate(transactionManager);
+        this.nuevaTransaccion.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public ArchivoRecibido recibir(InputStream contenido) {
+        Path temporal = directorioTemporal().resolve(UUID.randomUUID().toString());
+        try {
+            Files.createDirectories(temporal.getParent());
+            GuardadoStreaming.ArchivoGuardado guardado = GuardadoStreaming.guardar(contenido, temporal);
+            return new ArchivoRecibido(temporal, guardado.tamanoBytes(), guardado.sha256());
+        } catch (IOException e) {
+            log.error("Error al recibir archivo", e);
+            throw new ServiceException("Error al guardar el archivo", e);
+        }
+    }
+
+    @Override
+    @Transactional
+    public ArchivoAlmacenado guardar(ArchivoRecibido recibido, String extension) {
+        String hash = recibido.hashContenido();
+        try {
+            // Fila confirmada antes de tocar el almacén: un objeto de una subida revertida no queda fuera de la recolección
+            nuevaTransaccion.executeWithoutResult(status -> archivoBlobRepository.registrar(hash,
+                    claveBlob(hash, extension), recibido.tamanoBytes(), LocalDateTime.now()));
+            // Bloquea la fila del blob: una recolección simultánea del mismo hash espera o lo saltea
+            archivoBlobRepository.agregarReferencia(hash, claveBlob(hash, extension),
+                    recibido.tamanoBytes(), LocalDateTime.now());
+            String clave = archivoBlobRepository.findRutaByHash(hash)
+                    .orElseThrow(() -> new IllegalStateException("Blob no registrado: " + hash));
+
+            if (almacen.existe(clave)) {
+                log.debug("Contenido duplicado, se reutiliza el blob {}", clave);
+            } else {
+                almacen.guardar(clave, recibido.temporal());
+            }
+            return new ArchivoAlmacenado(clave, recibido.tamanoBytes(), hash);
+
+        } catch (IOException e) {
+            log.error("Error al guardar archivo", e);
+            throw new ServiceException("Error al guardar el archivo", e);
+        } finally {
+            borrarTemporal(recibido.temporal());
+        }
+    }
+
+    @Override
+    @Transactional
+    public void liberar(String hashContenido, String ruta) {
+        if (hashContenido == null || archivoBlobRepository.quitarReferencia(hashContenido, LocalDateTime.now()) == 0) {
+            if (ruta != null && ruta.startsWith(PREFIJO_BLOBS + "/")) {
+                // Blob que ya estaba sin referencias: una subida del mismo contenido puede estar
+                // reutilizándolo, solo el recolector lo borra con la fila bloqueada
+                log.debug("Blob {} ya sin referencias, queda para el recolector", ruta);
+                return;
+            }
+            // Archivo anterior al almacenamiento por contenido: pertenece solo a este multimedia
+            eliminarObjeto(ruta);
+            return;
+        }
+
+        if (archivoBlobRepository.findReferenciasByHash(hashContenido).orElse(0) > 0) {
+            log.debug("Blob {} sigue referenciado, no se elimina", hashContenido);
+            return;
+        }
+        // Tras el COMMIT: si la transacción se revierte, la referencia vuelve y el archivo tiene que seguir ahí
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recolectar(hashContenido);
+                }
+            });
+        } else {
+            recolectar(hashContenido);
+        }
+    }
+
+    @Override
+    public boolean recolectar(String hashContenido) {
+        Boolean borrado = nuevaTransaccion.execute(status -> archivoBlobRepository.bloquearSinReferencias(hashContenido)
+                .map(blob -> {
+                    // Con la fila bloqueada ninguna subida puede reutilizar el blob mientras se borra
+                    eliminarObjeto(blob.getRuta());
+                    archivoBlobRepository.delete(blob);
+                    log.debug("Blob {} eliminado tras perder su última referencia", hashContenido);
+                    return true;
+                })
+                .orElse(false));
+        return Boolean.TRUE.equals(borrado);
+    }
+
+    @Override
+    public int recolectarHuerfanos() {
+        List<String> huerfanos = archivoBlobRepository.findHuerfanos(
+                LocalDateTime.now().minusSeconds(graciaHuerfanosSegundos), lote);
+        int borrados = 0;
+        for (String hash : huerfanos) {
+            if (recolectar(hash)) {
+                borrados++;
+            }
+        }
+        if (borrados > 0) {
+            log.info("Recolectados {} blobs sin referencias", borrados);
+        }
+        return borrados;
+    }
+
+    @Override
+    public ResultadoMigracion migrarArchivosExistentes() {
+        // Los que ya tienen una clave de blob no se migran
+        String patronClaves = escaparLike(PREFIJO_BLOBS) + "%";
+        UUID desde = ID_INICIAL;
+        int migrados = 0;
+        int duplicados = 0;
+        int faltantes = 0;
+
+        while (desde != null) {
+            UUID cursor = desde;
+            List<Path> anteriores = new ArrayList<>();
+            int[] conteo = new int[3];
+
+            UUID siguiente = nuevaTransaccion.execute(status -> {
+                List<Multimedia> pagina = multimediaRepository
+                        .findByIdGreaterThanAndUrlArchivoNotLikeOrderByIdAsc(cursor, patronClaves, Limit.of(lote));
+                for (Multimedia multimedia : pagina) {
+                    Path anterior = Paths.get(multimedia.getUrlArchivo());
+                    if (!Files.exists(anterior)) {
+                        log.warn("Multimedia {} apunta a un archivo inexistente: {}", multimedia.getId(), anterior);
+                        conteo[2]++;
+                        continue;
+                    }
+                    boolean duplicado = migrar(multimedia, anterior);
+                    anteriores.add(anterior);
+                    conteo[duplicado ? 1 : 0]++;
+                }
+                return pagina.size() < lote ? null : pagina.get(pagina.size() - 1).getId();
+            });
+
+            // Los archivos viejos se borran recién con el lote confirmado: si falla, las filas siguen apuntando a ellos
+            anteriores.forEach(this::borrarTemporal);
+            migrados += conteo[0];
+            duplicados += conteo[1];
+            faltantes += conteo[2];
+            desde = siguiente;
+        }
+
+        log.info("Migración al almacenamiento por contenido terminada: {} migrados, {} duplicados, {} sin archivo",
+                migrados, duplicados, faltantes);
+        return new ResultadoMigracion(migrados, duplicados, faltantes);
+    }
+
+    @Override
+    public Descarga descarga(String ruta, Long tamanoBytes) {
+        try {
+            long tamano = tamanoBytes != null ? tamanoBytes : almacen.tamano(ruta);
+            Path local = almacen.rutaLocal(ruta).orElse(null);
+            Resource contenido = local != null
+                    ? new FileSystemResource(local)
+                    : new RecursoAlmacenado(almacen, ruta, tamano);
+            return new Descarga(contenido, local,
+                    almacen.urlFirmada(ruta, Duration.ofSeconds(validezUrlSegundos)).orElse(null), tamano);
+        } catch (IOException e) {
+            log.error("Error al leer archivo: {}", ruta, e);
+            throw new ServiceException("Error al descargar el archivo", e);
+        }
+    }
+
+    @Override
+    public String ubicacionLectura(String ruta) {
+        return almacen.rutaLocal(ruta)
+                .map(Path::toString)
+                .or(() -> almacen.urlFirmada(ruta, Duration.ofSeconds(validezUrlSegundos)).map(Object::toString))
+                .orElseThrow(() -> new IllegalStateException("El almacén no ofrece forma de leer " + ruta));
+    }
+
+    // ==================== MÉTODOS PRIVADOS ====================
+
+    /**
+     * Copia el archivo al blob de su contenido (si no existía) y apunta el multimedia al blob
+     *
+     * @return true si el contenido ya estaba almacenado
+     */
+    private boolean migrar(Multimedia multimedia, Path anterior) {
+        try {
+            GuardadoStreaming.ArchivoGuardado medido = GuardadoStreaming.medir(anterior);
+            archivoBlobRepository.agregarReferencia(medido.sha256(),
+                    claveBlob(medido.sha256(), extension(anterior)), medido.tamanoBytes(), LocalDateTime.now());
+            String clave = archivoBlobRepository.findRutaByHash(medido.sha256()).orElseThrow();
+
+            boolean duplicado = almacen.existe(clave);
+            if (!duplicado) {
+                // Se sube una copia: hasta el COMMIT la fila sigue apuntando al archivo anterior
+                Path copia = directorioTemporal().resolve(UUID.randomUUID().toString());
+                Files.createDirectories(copia.getParent());
+                Files.copy(anterior, copia);
+                try {
+                    almacen.guardar(clave, copia);
+                } finally {
+                    borrarTemporal(copia);
+                }
+            }
+
+            multimedia.setUrlArchivo(clave);
+            multimedia.setHashContenido(medido.sha256());
+            multimedia.setTamanoBytes(medido.tamanoBytes());
+            return duplicado;
+
+        } catch (IOException e) {
+            throw new ServiceException("Error al migrar el archivo " + anterior, e);
+        }
+    }
+
+    private Path directorioTemporal() {
+        return Paths.get(uploadDir, "tmp");
+    }
+
+    /**
+     * blobs/ab/cd/abcd...ef.jpg: dos niveles de 256 prefijos cada uno
+     */
+    private static String claveBlob(String hash, String extension) {
+        // La extensión viene del nombre que mandó el cliente: solo se acepta si es alfanumérica
+        String nombre = extension != null && EXTENSION_VALIDA.matcher(extension).matches() ? hash + "." + extension : hash;
+        return PREFIJO_BLOBS + "/" + hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + nombre;
+    }
+
+    private static String escaparLike(String valor) {
+        return valor.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static String extension(Path archivo) {
+        String nombre = archivo.getFileName().toString();
+        int punto = nombre.lastIndexOf('.');
+        return punto >= 0 ? nombre.substring(punto + 1).toLowerCase() : null;
+    }
+
+    private void eliminarObjeto(String ruta) {
+        try {
+            almacen.eliminar(ruta);
+            log.debug("Archivo físico eliminado: {}", ruta);
+        } catch (IOException e) {
+            log.warn("No se pudo eliminar archivo físico: {}", ruta, e);
+        }
+    }
+
+    private void borrarTemporal(Path archivo) {
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException e) {
+            log.warn("No se pudo eliminar archivo local: {}", archivo, e);
+        }
+    }
+}
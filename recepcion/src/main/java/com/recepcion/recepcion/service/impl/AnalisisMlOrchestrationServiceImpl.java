@@ -1,6 +1,11 @@
 package com.recepcion.recepcion.service.impl;
 
+import com.recepcion.recepcion.client.MlHealthMonitor;
 import com.recepcion.recepcion.client.MlImagenClient;
+import com.recepcion.recepcion.client.MlImagenDuplicados;
+import com.recepcion.recepcion.client.MlServicioNoDisponibleException;
+import com.recepcion.recepcion.client.MlTextoBatcher;
+import com.recepcion.recepcion.client.MlTextoCache;
 import com.recepcion.recepcion.client.MlTextoClient;
 import com.recepcion.recepcion.dto.ml.AnalizarImagenResponse;
 import com.recepcion.recepcion.dto.ml.AnalizarTextoResponse;
@@ -8,29 +13,67 @@ import com.recepcion.recepcion.entity.*;
 import com.recepcion.recepcion.exception.ResourceNotFoundException;
 import com.recepcion.recepcion.exception.ServiceException;
 import com.recepcion.recepcion.repository.*;
+import com.recepcion.recepcion.service.AlmacenamientoService;
 import com.recepcion.recepcion.service.AnalisisMlOrchestrationService;
+import com.recepcion.recepcion.service.MiniaturaService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Orquesta los análisis ML en tres etapas para no retener una conexión de BD
+ * durante la llamada HTTP al servicio de Python:
+ * <ol>
+ *     <li>Reclamo: transacción corta que marca el incidente y toma los datos a analizar</li>
+ *     <li>Llamada remota: sin transacción ni conexión abierta</li>
+ *     <li>Aplicación: transacción corta que guarda el análisis y actualiza el incidente</li>
+ * </ol>
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AnalisisMlOrchestrationServiceImpl implements AnalisisMlOrchestrationService {
 
+    // Estados que un resultado ML puede pasar a ANALIZADO (no pisa decisiones del administrador)
+    private static final Set<EstadoIncidente> ESTADOS_EN_ANALISIS = EnumSet.of(
+            EstadoIncidente.RECIBIDO,
+            EstadoIncidente.EN_ANALISIS_TEXTO,
+            EstadoIncidente.EN_ANALISIS_IMAGEN,
+            EstadoIncidente.ANALIZADO
+    );
+
     private final IncidenteRepository incidenteRepository;
     private final MultimediaRepository multimediaRepository;
     private final AnalisisMlTextoRepository analisisTextoRepository;
     private final AnalisisMlImagenRepository analisisImagenRepository;
     private final MlTextoClient mlTextoClient;
+    private final MlTextoBatcher mlTextoBatcher;
+    private final MlTextoCache mlTextoCache;
     private final MlImagenClient mlImagenClient;
+    private final MlImagenDuplicados mlImagenDuplicados;
+    private final AlmacenamientoService almacenamientoService;
+    private final MiniaturaService miniaturaService;
+    private final MlHealthMonitor mlHealthMonitor;
+    private final TransactionTemplate transactionTemplate;
+
+    @Qualifier("mlFanOutExecutor")
+    private final Executor mlFanOutExecutor;
 
     @Value("${ml.texto.enabled:true}")
     private boolean mlTextoEnabled;
@@ -38,11 +81,125 @@ public class AnalisisMlOrchestrationServiceImpl implements AnalisisMlOrchestrati
     @Value("${ml.imagen.enabled:true}")
     private boolean mlImagenEnabled;
 
+    @Value("${ml.fanout.max-por-incidente:4}")
+    private int maxAnalisisPorIncidente;
+
+    @Value("${ml.cobertura.prioridad-maxima:2}")
+    private int prioridadMaximaCobertura;
+
     @Override
-    @Async
-    @Transactional
     public void analizarTextoAutomaticamente(UUID incidenteId) {
-        log.info("===== MÉTODO ASÍNCRONO INICIADO: analizarTextoAutomaticamente =====");
+        ejecutarAnalisisTexto(incidenteId, true);
+    }
+
+    @Override
+    public void analizarImagenAutomaticamente(UUID multimediaId) {
+        ejecutarAnalisisImagen(multimediaId, true);
+    }
+
+    @Override
+    public void analizarIncidenteCompleto(UUID incidenteId) {
+        log.info("Iniciando análisis completo del incidente: {}", incidenteId);
+
+        List<UUID> imagenesPendientes = multimediaRepository.findByIncidenteId(incidenteId).stream()
+                .filter(imagen -> imagen.getTipoArchivo() == TipoArchivo.IMAGEN
+                        && Boolean.TRUE.equals(imagen.getRequiereAnalisisMl())
+                        && !Boolean.TRUE.equals(imagen.getAnalisisCompletado()))
+                .map(Multimedia::getId)
+                .toList();
+
+        // 1. Fan-out: texto e imágenes en paralelo, como máximo maxAnalisisPorIncidente a la vez.
+        //    Cada resultado parcial se guarda sin recalcular la prioridad final.
+        Semaphore cupo = new Semaphore(maxAnalisisPorIncidente);
+        List<CompletableFuture<Void>> analisis = new ArrayList<>();
+        analisis.add(lanzar(cupo, () -> ejecutarAnalisisTexto(incidenteId, false)));
+        for (UUID multimediaId : imagenesPendientes) {
+            analisis.add(lanzar(cupo, () -> ejecutarAnalisisImagen(multimediaId, false)));
+        }
+
+        // 2. Join: esperar todos los análisis, aunque alguno falle
+        List<Throwable> errores = new ArrayList<>();
+        for (CompletableFuture<Void> tarea : analisis) {
+            try {
+                tarea.join();
+            } catch (CompletionException | CancellationException e) {
+                errores.add(e.getCause() != null ? e.getCause() : e);
+            }
+        }
+
+        // 3. Prioridad final una sola vez con todos los resultados disponibles
+        transactionTemplate.executeWithoutResult(status -> recalcularPrioridadFinal(incidenteId));
+
+        log.info("Análisis completo del incidente {} finalizado: {} análisis, {} con error",
+                incidenteId, analisis.size(), errores.size());
+
+        if (!errores.isEmpty()) {
+            Throwable primero = errores.get(0);
+            if (primero instanceof RuntimeException runtimeEx && errores.size() == 1) {
+                throw runtimeEx;
+            }
+            throw new ServiceException(String.format("%d de %d análisis del incidente %s fallaron",
+                    errores.size(), analisis.size(), incidenteId), primero);
+        }
+    }
+
+    @Override
+    public void reanalizarTexto(UUID incidenteId) throws MlTextoClient.MlServiceException {
+        if (!mlHealthMonitor.textoDisponible()) {
+            throw new MlServicioNoDisponibleException("Servicio ML de texto no disponible");
+        }
+
+        String texto = transactionTemplate.execute(status -> incidenteRepository.findById(incidenteId)
+                .map(Incidente::getDescripcionOriginal)
+                .orElseThrow(() -> new ResourceNotFoundException("Incidente", "id", incidenteId)));
+
+        // Sin cobertura ni urgencia: el reanálisis nunca compite con el tráfico en vivo
+        AnalizarTextoResponse mlResponse = obtenerAnalisisTexto(new TextoReclamado(texto, false), incidenteId);
+
+        transactionTemplate.executeWithoutResult(status ->
+                aplicarResultadoTexto(incidenteId, texto, mlResponse, true, true));
+    }
+
+    @Override
+    public void reanalizarImagen(UUID multimediaId) throws MlImagenClient.MlServiceException {
+        if (!mlHealthMonitor.imagenDisponible()) {
+            throw new MlServicioNoDisponibleException("Servicio ML de imagen no disponible");
+        }
+
+        Multimedia multimedia = transactionTemplate.execute(status -> multimediaRepository.findById(multimediaId)
+                .orElseThrow(() -> new ResourceNotFoundException("Multimedia", "id", multimediaId)));
+        UUID incidenteId = multimedia.getIncidente().getId();
+
+        // Siempre al servicio: con un modelo nuevo el análisis de un duplicado también está desactualizado
+        AnalizarImagenResponse mlResponse = mlImagenClient.analizarImagen(
+                almacenamientoService.ubicacionLectura(multimedia.getUrlArchivo()), multimediaId, incidenteId);
+
+        transactionTemplate.executeWithoutResult(status ->
+                aplicarResultadoImagen(multimediaId, incidenteId, mlResponse, true, true));
+    }
+
+    /**
+     * Lanza un análisis en el pool de fan-out respetando el cupo del incidente.
+     * El cupo se toma en el thread que lanza, así los threads del pool nunca quedan bloqueados esperándolo.
+     */
+    private CompletableFuture<Void> lanzar(Semaphore cupo, Runnable tarea) {
+        try {
+            cupo.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        try {
+            return CompletableFuture.runAsync(tarea, mlFanOutExecutor)
+                    .whenComplete((resultado, error) -> cupo.release());
+        } catch (RuntimeException e) {
+            cupo.release();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void ejecutarAnalisisTexto(UUID incidenteId, boolean recalcularPrioridad) {
+        log.info("===== INICIANDO: analizarTextoAutomaticamente =====");
         log.info("Thread actual: {}", Thread.currentThread().getName());
         log.info("Incidente ID: {}", incidenteId);
 
@@ -54,65 +211,31 @@ public class AnalisisMlOrchestrationServiceImpl implements AnalisisMlOrchestrati
         log.info("Iniciando análisis automático de texto para incidente: {}", incidenteId);
 
         try {
-            // 1. Obtener incidente
-            Incidente incidente = incidenteRepository.findById(incidenteId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Incidente", "id", incidenteId));
-
-            // 2. Verificar que el servicio ML esté disponible
-            if (!mlTextoClient.isServiceHealthy()) {
-                log.error("Servicio ML de texto no disponible. Incidente {} no será analizado.", incidenteId);
-                return;
+            // 1. Verificar el estado cacheado del servicio ML (sin llamada de red)
+            if (!mlHealthMonitor.textoDisponible()) {
+                throw new MlServicioNoDisponibleException("Servicio ML de texto no disponible");
             }
 
-            // 3. Cambiar estado del incidente
-            incidente.setEstadoIncidente(EstadoIncidente.EN_ANALISIS_TEXTO);
-            incidenteRepository.save(incidente);
-
-            // 4. Llamar al servicio ML
-            AnalizarTextoResponse mlResponse = mlTextoClient.analizarTexto(
-                    incidente.getDescripcionOriginal(),
-                    incidenteId
-            );
-
-            // 5. Guardar resultado del análisis
-            // Convertir List<String> a Map<String, Object> para palabras clave
-            Map<String, Object> palabrasClaveMap = new java.util.HashMap<>();
-            if (mlResponse.getPalabrasClaveCriticas() != null) {
-                palabrasClaveMap.put("palabras", mlResponse.getPalabrasClaveCriticas());
+            // 2. Reclamar el incidente (transacción corta)
+            TextoReclamado reclamado = transactionTemplate.execute(status -> reclamarAnalisisTexto(incidenteId));
+            if (reclamado == null) {
+                return;
             }
 
-            AnalisisMlTexto analisis = AnalisisMlTexto.builder()
-                    .incidente(incidente)
-                    .textoAnalizado(incidente.getDescripcionOriginal())
-                    .prioridadCalculada(mlResponse.getPrioridadCalculada())
-                    .nivelGravedad(mlResponse.getNivelGravedad())
-                    .tipoIncidentePredicho(mlResponse.getTipoIncidentePredicho())
-                    .scoreConfianza(mlResponse.getScoreConfianza())
-                    .palabrasClaveCriticas(palabrasClaveMap)
-                    .categoriasDetectadas(mlResponse.getCategoriasDetectadas())
-                    .entidadesMedicas(mlResponse.getEntidadesMedicas())
-                    .probabilidadesCategorias(mlResponse.getProbabilidadesCategorias())
-                    .modeloVersion(mlResponse.getModeloVersion())
-                    .algoritmoUsado(mlResponse.getAlgoritmoUsado())
-                    .tiempoProcesamientoMs(mlResponse.getTiempoProcesamientoMs())
-                    .build();
-
-            analisis = analisisTextoRepository.save(analisis);
-
-            // 6. Actualizar incidente con resultado
-            incidente.setAnalisisTexto(analisis);
-            incidente.setPrioridadTexto(mlResponse.getPrioridadCalculada());
-            incidente.setTipoIncidenteClasificado(mlResponse.getTipoIncidentePredicho());
-            incidente.setEstadoIncidente(EstadoIncidente.ANALIZADO);
-
-            // 7. Calcular prioridad final
-            calcularPrioridadFinal(incidente);
+            // 3. Reusar el análisis de un texto idéntico o llamar al servicio ML
+            //    (sin conexión de BD retenida, agrupado con otros textos pendientes)
+            AnalizarTextoResponse mlResponse = obtenerAnalisisTexto(reclamado, incidenteId);
 
-            incidenteRepository.save(incidente);
+            // 4. Aplicar el resultado (transacción corta)
+            transactionTemplate.executeWithoutResult(status ->
+                    aplicarResultadoTexto(incidenteId, reclamado.texto(), mlResponse, recalcularPrioridad, false));
 
             log.info("Análisis de texto completado exitosamente. Prioridad: {}",
                     mlResponse.getPrioridadCalculada());
 
+        } catch (MlServicioNoDisponibleException e) {
+            log.warn("Servicio ML de texto no disponible, se aplaza el análisis de {}", incidenteId);
+            throw e;
         } catch (MlTextoClient.MlServiceException e) {
             log.error("Error en servicio ML de texto para incidente {}: {}",
                     incidenteId, e.getMessage());
@@ -124,10 +247,7 @@ public class AnalisisMlOrchestrationServiceImpl implements AnalisisMlOrchestrati
         }
     }
 
-    @Override
-    @Async
-    @Transactional
-    public void analizarImagenAutomaticamente(UUID multimediaId) {
+    private void ejecutarAnalisisImagen(UUID multimediaId, boolean recalcularPrioridad) {
         if (!mlImagenEnabled) {
             log.info("Análisis de imagen deshabilitado en configuración");
             return;
@@ -136,91 +256,43 @@ public class AnalisisMlOrchestrationServiceImpl implements AnalisisMlOrchestrati
         log.info("Iniciando análisis automático de imagen para multimedia: {}", multimediaId);
 
         try {
-            // 1. Obtener multimedia
-            Multimedia multimedia = multimediaRepository.findById(multimediaId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Multimedia", "id", multimediaId));
-
-            Incidente incidente = multimedia.getIncidente();
-            UUID incidenteId = incidente.getId();
-
-            // 2. Verificar que sea una imagen
-            if (multimedia.getTipoArchivo() != TipoArchivo.IMAGEN) {
-                log.info("Archivo {} no es imagen, omitiendo análisis ML", multimediaId);
-                return;
+            // 1. Verificar el estado cacheado del servicio ML (sin llamada de red)
+            if (!mlHealthMonitor.imagenDisponible()) {
+                throw new MlServicioNoDisponibleException("Servicio ML de imagen no disponible");
             }
 
-            // 3. Verificar que el servicio ML esté disponible
-            if (!mlImagenClient.isServiceHealthy()) {
-                log.error("Servicio ML de imagen no disponible. Imagen {} no será analizada.", multimediaId);
+            // 2. Reclamar la imagen (transacción corta)
+            ImagenReclamada reclamada = transactionTemplate.execute(status -> reclamarAnalisisImagen(multimediaId));
+            if (reclamada == null) {
                 return;
             }
 
-            // 4. Cambiar estado del incidente
-            incidente.setEstadoIncidente(EstadoIncidente.EN_ANALISIS_IMAGEN);
-            incidenteRepository.save(incidente);
-
-            // 5. Llamar al servicio ML
-            AnalizarImagenResponse mlResponse = mlImagenClient.analizarImagen(
-                    multimedia.getUrlArchivo(),
-                    multimediaId,
-                    incidenteId
-            );
-
-            // 6. Guardar resultado del análisis
-            // Convertir String a CalidadImagen enum
-            CalidadImagen calidadImagenEnum = null;
-            if (mlResponse.getCalidadImagen() != null) {
-                try {
-                    calidadImagenEnum = CalidadImagen.valueOf(mlResponse.getCalidadImagen().toUpperCase());
-                } catch (IllegalArgumentException e) {
-                    log.warn("Calidad de imagen desconocida: {}", mlResponse.getCalidadImagen());
-                    calidadImagenEnum = CalidadImagen.REGULAR; // Valor por defecto
-                }
+            // 3. Reusar el análisis de una imagen casi idéntica o llamar al servicio ML (sin conexión de BD retenida)
+            Long hashPerceptual = hashPerceptual(multimediaId, reclamada.hashPerceptual());
+            AnalizarImagenResponse duplicado = buscarAnalisisDuplicado(multimediaId, hashPerceptual);
+            AnalizarImagenResponse mlResponse = duplicado != null
+                    ? duplicado
+                    : mlImagenClient.analizarImagen(
+                            almacenamientoService.ubicacionLectura(reclamada.urlArchivo()),
+                            multimediaId,
+                            reclamada.incidenteId(),
+                            reclamada.urgente()
+                    );
+
+            // 4. Aplicar el resultado (transacción corta)
+            transactionTemplate.executeWithoutResult(status ->
+                    aplicarResultadoImagen(multimediaId, reclamada.incidenteId(), mlResponse, recalcularPrioridad, false));
+
+            if (duplicado == null) {
+                mlImagenDuplicados.registrar(hashPerceptual, multimediaId);
             }
 
-            AnalisisMlImagen analisis = AnalisisMlImagen.builder()
-                    .multimedia(multimedia)
-                    .esImagenAccidente(mlResponse.getEsImagenAccidente())
-                    .scoreVeracidad(mlResponse.getScoreVeracidad())
-                    .tipoEscenaDetectada(mlResponse.getTipoEscenaDetectada())
-                    .nivelGravedadVisual(mlResponse.getNivelGravedadVisual())
-                    .elementosCriticosDetectados(mlResponse.getElementosCriticosDetectados())
-                    .objetosDetectados(mlResponse.getObjetosDetectados())
-                    .personasDetectadas(mlResponse.getPersonasDetectadas())
-                    .vehiculosDetectados(mlResponse.getVehiculosDetectados())
-                    .categoriasEscena(mlResponse.getCategoriasEscena())
-                    .scoreConfianzaEscena(mlResponse.getScoreConfianzaEscena())
-                    .esAnomalia(mlResponse.getEsAnomalia())
-                    .scoreAnomalia(mlResponse.getScoreAnomalia())
-                    .razonSospecha(mlResponse.getRazonSospecha())
-                    .calidadImagen(calidadImagenEnum)
-                    .resolucionImagen(mlResponse.getResolucionImagen())
-                    .esImagenClara(mlResponse.getEsImagenClara())
-                    .modeloVision(mlResponse.getModeloVision())
-                    .modeloVeracidad(mlResponse.getModeloVeracidad())
-                    .tiempoProcesamientoMs(mlResponse.getTiempoProcesamientoMs())
-                    .build();
-
-            analisis = analisisImagenRepository.save(analisis);
-
-            // 7. Actualizar multimedia
-            // Nota: La relación ya está establecida en analisis.multimedia
-            multimedia.setAnalisisCompletado(true);
-            multimediaRepository.save(multimedia);
-
-            // 8. Actualizar incidente con resultado
-            incidente.setPrioridadImagen(mlResponse.getNivelGravedadVisual());
-            incidente.setScoreVeracidad(mlResponse.getScoreVeracidad());
-            incidente.setEstadoIncidente(EstadoIncidente.ANALIZADO);
-
-            // 9. Calcular prioridad final
-            calcularPrioridadFinal(incidente);
-
-            incidenteRepository.save(incidente);
-
             log.info("Análisis de imagen completado exitosamente. Severidad: {}, Veracidad: {}",
                     mlResponse.getNivelGravedadVisual(), mlResponse.getScoreVeracidad());
 
+        } catch (MlServicioNoDisponibleException e) {
+            log.warn("Servicio ML de imagen no disponible, se aplaza el análisis de {}", multimediaId);
+            throw e;
         } catch (MlImagenClient.MlServiceException e) {
             log.error("Error en servicio ML de imagen para multimedia {}: {}",
                     multimediaId, e.getMessage());
@@ -232,26 +304,318 @@ public class AnalisisMlOrchestrationServiceImpl implements AnalisisMlOrchestrati
         }
     }
 
-    @Override
-    @Transactional
-    public void analizarIncidenteCompleto(UUID incidenteId) {
-        log.info("Iniciando análisis completo del incidente: {}", incidenteId);
+    // ==================== ETAPAS DE TEXTO ====================
 
-        // 1. Analizar texto
-        analizarTextoAutomaticamente(incidenteId);
+    /**
+     * Texto a analizar y si el incidente es urgente (la llamada se cubre entre réplicas)
+     */
+    private record TextoReclamado(String texto, boolean urgente) {
+    }
 
-        // 2. Analizar todas las imágenes asociadas
-        List<Multimedia> imagenes = multimediaRepository.findByIncidenteId(incidenteId);
+    /**
+     * Etapa 1: marca el incidente EN_ANALISIS_TEXTO y devuelve el texto a analizar,
+     * o null si ya tiene análisis
+     */
+    private TextoReclamado reclamarAnalisisTexto(UUID incidenteId) {
+        // Con lock: en el fan-out el reclamo puede coincidir con la aplicación de una imagen
+        Incidente incidente = incidenteRepository.findByIdParaActualizar(incidenteId)
+                .orElseThrow(() -> new ResourceNotFoundException("Incidente", "id", incidenteId));
+
+        if (incidente.getAnalisisTexto() != null) {
+            log.info("Incidente {} ya tiene análisis de texto, se omite", incidenteId);
+            return null;
+        }
+
+        incidente.setEstadoIncidente(EstadoIncidente.EN_ANALISIS_TEXTO);
+        incidenteRepository.save(incidente);
+
+        return new TextoReclamado(incidente.getDescripcionOriginal(), esUrgente(incidente.getPrioridadInicial()));
+    }
+
+    /**
+     * Etapa 2: resultado de la cache si el mismo texto ya se analizó con el modelo vigente,
+     * si no la llamada al servicio ML. Los incidentes urgentes no esperan a completar un lote:
+     * van directo al cliente, cubiertos en otra réplica si tardan.
+     */
+    private AnalizarTextoResponse obtenerAnalisisTexto(TextoReclamado reclamado, UUID incidenteId)
+            throws MlTextoClient.MlServiceException {
+        String texto = reclamado.texto();
+        AnalizarTextoResponse enCache = mlTextoCache.buscar(texto).orElse(null);
+        if (enCache != null) {
+            log.info("Análisis de texto del incidente {} reutilizado desde cache", incidenteId);
+            return enCache;
+        }
+
+        AnalizarTextoResponse mlResponse = reclamado.urgente()
+                ? mlTextoClient.analizarTexto(texto, incidenteId, true)
+                : mlTextoBatcher.analizar(texto, incidenteId);
+        mlTextoCache.guardar(texto, mlResponse);
+        return mlResponse;
+    }
 
-        for (Multimedia imagen : imagenes) {
-            if (imagen.getTipoArchivo() == TipoArchivo.IMAGEN
-                && Boolean.TRUE.equals(imagen.getRequiereAnalisisMl())
-                && !Boolean.TRUE.equals(imagen.getAnalisisCompletado())) {
-                analizarImagenAutomaticamente(imagen.getId());
+    /**
+     * Etapa 3: guarda el análisis de texto y actualiza el incidente.
+     * En un reanálisis reemplaza el análisis existente (mismo ID) y no cambia el estado del incidente.
+     */
+    private void aplicarResultadoTexto(UUID incidenteId, String texto, AnalizarTextoResponse mlResponse,
+                                       boolean recalcularPrioridad, boolean reanalisis) {
+        Incidente incidente = incidenteRepository.findByIdParaActualizar(incidenteId)
+                .orElseThrow(() -> new ResourceNotFoundException("Incidente", "id", incidenteId));
+        AnalisisMlTexto anterior = reanalisis ? incidente.getAnalisisTexto() : null;
+
+        // Convertir List<String> a Map<String, Object> para palabras clave
+        Map<String, Object> palabrasClaveMap = new java.util.HashMap<>();
+        if (mlResponse.getPalabrasClaveCriticas() != null) {
+            palabrasClaveMap.put("palabras", mlResponse.getPalabrasClaveCriticas());
+        }
+
+        AnalisisMlTexto analisis = AnalisisMlTexto.builder()
+                .id(anterior != null ? anterior.getId() : null)
+                .incidente(incidente)
+                .textoAnalizado(texto)
+                .prioridadCalculada(mlResponse.getPrioridadCalculada())
+                .nivelGravedad(mlResponse.getNivelGravedad())
+                .tipoIncidentePredicho(mlResponse.getTipoIncidentePredicho())
+                .scoreConfianza(mlResponse.getScoreConfianza())
+                .palabrasClaveCriticas(palabrasClaveMap)
+                .categoriasDetectadas(mlResponse.getCategoriasDetectadas())
+                .entidadesMedicas(mlResponse.getEntidadesMedicas())
+                .probabilidadesCategorias(mlResponse.getProbabilidadesCategorias())
+                .modeloVersion(mlResponse.getModeloVersion())
+                .algoritmoUsado(mlResponse.getAlgoritmoUsado())
+                .tiempoProcesamientoMs(mlResponse.getTiempoProcesamientoMs())
+                // Explícitos: al reemplazar un análisis no se ejecuta @PrePersist
+                .fechaAnalisis(LocalDateTime.now())
+                .estadoAnalisis(EstadoAnalisis.COMPLETADO)
+                .build();
+
+        analisis = analisisTextoRepository.save(analisis);
+
+        incidente.setAnalisisTexto(analisis);
+        incidente.setPrioridadTexto(mlResponse.getPrioridadCalculada());
+        incidente.setTipoIncidenteClasificado(mlResponse.getTipoIncidentePredicho());
+        if (!reanalisis) {
+            marcarAnalizado(incidente);
+        }
+
+        if (recalcularPrioridad) {
+            calcularPrioridadFinal(incidente);
+        }
+
+        incidenteRepository.save(incidente);
+    }
+
+    // ==================== ETAPAS DE IMAGEN ====================
+
+    /**
+     * Datos tomados en la etapa de reclamo para la llamada remota
+     */
+    private record ImagenReclamada(UUID incidenteId, String urlArchivo, Long hashPerceptual, boolean urgente) {
+    }
+
+    /**
+     * Etapa 1: marca el incidente EN_ANALISIS_IMAGEN y devuelve los datos de la imagen,
+     * o null si no corresponde analizarla
+     */
+    private ImagenReclamada reclamarAnalisisImagen(UUID multimediaId) {
+        Multimedia multimedia = multimediaRepository.findById(multimediaId)
+                .orElseThrow(() -> new ResourceNotFoundException("Multimedia", "id", multimediaId));
+
+        if (multimedia.getTipoArchivo() != TipoArchivo.IMAGEN) {
+            log.info("Archivo {} no es imagen, omitiendo análisis ML", multimediaId);
+            return null;
+        }
+
+        if (Boolean.TRUE.equals(multimedia.getAnalisisCompletado())) {
+            log.info("Imagen {} ya fue analizada, se omite", multimediaId);
+            return null;
+        }
+
+        UUID incidenteId = multimedia.getIncidente().getId();
+        Incidente incidente = incidenteRepository.findByIdParaActualizar(incidenteId)
+                .orElseThrow(() -> new ResourceNotFoundException("Incidente", "id", incidenteId));
+        incidente.setEstadoIncidente(EstadoIncidente.EN_ANALISIS_IMAGEN);
+        incidenteRepository.save(incidente);
+
+        Integer prioridad = incidente.getPrioridadFinal() != null
+                ? incidente.getPrioridadFinal()
+                : incidente.getPrioridadInicial();
+        return new ImagenReclamada(incidente.getId(), multimedia.getUrlArchivo(), multimedia.getHashPerceptual(),
+                esUrgente(prioridad));
+    }
+
+    /**
+     * Hash perceptual de la imagen reclamada. En ráfagas el job ML suele llegar antes que la
+     * generación de miniaturas: sin él la búsqueda de duplicados no tendría con qué comparar,
+     * así que se calcula aquí con una decodificación submuestreada. Si falla se analiza sin reutilizar.
+     */
+    private Long hashPerceptual(UUID multimediaId, Long reclamado) {
+        if (reclamado != null || !mlImagenDuplicados.isHabilitado()) {
+            return reclamado;
+        }
+        try {
+            return miniaturaService.obtenerHashPerceptual(multimediaId).orElse(null);
+        } catch (RuntimeException e) {
+            log.warn("No se pudo calcular el hash perceptual de {}: {}", multimediaId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Etapa 2: si una imagen casi idéntica ya fue analizada, devuelve su resultado para no
+     * enviar esta al servicio ML. Null si no hay duplicado reciente.
+     */
+    private AnalizarImagenResponse buscarAnalisisDuplicado(UUID multimediaId, Long hashPerceptual) {
+        UUID original = mlImagenDuplicados.buscarSimilar(hashPerceptual).orElse(null);
+        if (original == null || original.equals(multimediaId)) {
+            mlImagenDuplicados.contarNueva();
+            return null;
+        }
+
+        AnalizarImagenResponse duplicado = transactionTemplate.execute(status ->
+                analisisImagenRepository.findByMultimediaId(original)
+                        .map(this::aResponse)
+                        .orElse(null));
+
+        if (duplicado == null) {
+            // La imagen original se eliminó: se saca del índice y se analiza normalmente
+            mlImagenDuplicados.olvidar(original);
+            mlImagenDuplicados.contarNueva();
+            return null;
+        }
+
+        log.info("Imagen {} casi idéntica a {}, se reutiliza su análisis", multimediaId, original);
+        mlImagenDuplicados.contarReutilizada();
+        return duplicado;
+    }
+
+    /**
+     * Convierte un análisis guardado al formato de respuesta del servicio ML para aplicarlo a otra imagen
+     */
+    private AnalizarImagenResponse aResponse(AnalisisMlImagen analisis) {
+        return AnalizarImagenResponse.builder()
+                .esImagenAccidente(analisis.getEsImagenAccidente())
+                .scoreVeracidad(analisis.getScoreVeracidad())
+                .tipoEscenaDetectada(analisis.getTipoEscenaDetectada())
+                .nivelGravedadVisual(analisis.getNivelGravedadVisual())
+                .elementosCriticosDetectados(analisis.getElementosCriticosDetectados())
+                .objetosDetectados(analisis.getObjetosDetectados())
+                .personasDetectadas(analisis.getPersonasDetectadas())
+                .vehiculosDetectados(analisis.getVehiculosDetectados())
+                .categoriasEscena(analisis.getCategoriasEscena())
+                .scoreConfianzaEscena(analisis.getScoreConfianzaEscena())
+                .esAnomalia(analisis.getEsAnomalia())
+                .scoreAnomalia(analisis.getScoreAnomalia())
+                .razonSospecha(analisis.getRazonSospecha())
+                .calidadImagen(analisis.getCalidadImagen() != null ? analisis.getCalidadImagen().name() : null)
+                .resolucionImagen(analisis.getResolucionImagen())
+                .esImagenClara(analisis.getEsImagenClara())
+                .modeloVision(analisis.getModeloVision())
+                .modeloVeracidad(analisis.getModeloVeracidad())
+                // No hubo inferencia para esta imagen
+                .tiempoProcesamientoMs(0)
+                .build();
+    }
+
+    /**
+     * Etapa 3: guarda el análisis de imagen y actualiza multimedia e incidente.
+     * En un reanálisis reemplaza el análisis existente (mismo ID) y no cambia el estado del incidente.
+     */
+    private void aplicarResultadoImagen(UUID multimediaId, UUID incidenteId, AnalizarImagenResponse mlResponse,
+                                        boolean recalcularPrioridad, boolean reanalisis) {
+        Incidente incidente = incidenteRepository.findByIdParaActualizar(incidenteId)
+                .orElseThrow(() -> new ResourceNotFoundException("Incidente", "id", incidenteId));
+        Multimedia multimedia = multimediaRepository.findById(multimediaId)
+                .orElseThrow(() -> new ResourceNotFoundException("Multimedia", "id", multimediaId));
+
+        // Convertir String a CalidadImagen enum
+        CalidadImagen calidadImagenEnum = null;
+        if (mlResponse.getCalidadImagen() != null) {
+            try {
+                calidadImagenEnum = CalidadImagen.valueOf(mlResponse.getCalidadImagen().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                log.warn("Calidad de imagen desconocida: {}", mlResponse.getCalidadImagen());
+                calidadImagenEnum = CalidadImagen.REGULAR; // Valor por defecto
             }
         }
 
-        log.info("Análisis completo del incidente {} iniciado", incidenteId);
+        AnalisisMlImagen anterior = reanalisis
+                ? analisisImagenRepository.findByMultimediaId(multimediaId).orElse(null)
+                : null;
+
+        AnalisisMlImagen analisis = AnalisisMlImagen.builder()
+                .id(anterior != null ? anterior.getId() : null)
+                .multimedia(multimedia)
+                .esImagenAccidente(mlResponse.getEsImagenAccidente())
+                .scoreVeracidad(mlResponse.getScoreVeracidad())
+                .tipoEscenaDetectada(mlResponse.getTipoEscenaDetectada())
+                .nivelGravedadVisual(mlResponse.getNivelGravedadVisual())
+                .elementosCriticosDetectados(mlResponse.getElementosCriticosDetectados())
+                .objetosDetectados(mlResponse.getObjetosDetectados())
+                .personasDetectadas(mlResponse.getPersonasDetectadas())
+                .vehiculosDetectados(mlResponse.getVehiculosDetectados())
+                .categoriasEscena(mlResponse.getCategoriasEscena())
+                .scoreConfianzaEscena(mlResponse.getScoreConfianzaEscena())
+                .esAnomalia(mlResponse.getEsAnomalia())
+                .scoreAnomalia(mlResponse.getScoreAnomalia())
+                .razonSospecha(mlResponse.getRazonSospecha())
+                .calidadImagen(calidadImagenEnum)
+                .resolucionImagen(mlResponse.getResolucionImagen())
+                .esImagenClara(mlResponse.getEsImagenClara())
+                .modeloVision(mlResponse.getModeloVision())
+                .modeloVeracidad(mlResponse.getModeloVeracidad())
+                .tiempoProcesamientoMs(mlResponse.getTiempoProcesamientoMs())
+                .fechaAnalisis(LocalDateTime.now())
+                .estadoAnalisis(EstadoAnalisis.COMPLETADO)
+                .build();
+
+        analisisImagenRepository.save(analisis);
+
+        // Nota: La relación ya está establecida en analisis.multimedia
+        multimedia.setAnalisisCompletado(true);
+        multimediaRepository.save(multimedia);
+
+        incidente.setPrioridadImagen(mlResponse.getNivelGravedadVisual());
+        incidente.setScoreVeracidad(mlResponse.getScoreVeracidad());
+        if (!reanalisis) {
+            marcarAnalizado(incidente);
+        }
+
+        if (recalcularPrioridad) {
+            calcularPrioridadFinal(incidente);
+        }
+
+        incidenteRepository.save(incidente);
+    }
+
+    // ==================== MÉTODOS PRIVADOS ====================
+
+    /**
+     * Pasa el incidente a ANALIZADO salvo que mientras se analizaba haya sido
+     * aprobado, rechazado o cancelado
+     */
+    private void marcarAnalizado(Incidente incidente) {
+        if (ESTADOS_EN_ANALISIS.contains(incidente.getEstadoIncidente())) {
+            incidente.setEstadoIncidente(EstadoIncidente.ANALIZADO);
+        } else {
+            log.info("Incidente {} cambió a {} durante el análisis, se conserva el estado",
+                    incidente.getId(), incidente.getEstadoIncidente());
+        }
+    }
+
+    /**
+     * Recalcula y guarda la prioridad final al cerrar el fan-out de un incidente
+     */
+    private void recalcularPrioridadFinal(UUID incidenteId) {
+        incidenteRepository.findByIdParaActualizar(incidenteId).ifPresent(incidente -> {
+            calcularPrioridadFinal(incidente);
+            incidenteRepository.save(incidente);
+        });
+    }
+
+    // 1 es la prioridad más alta
+    private boolean esUrgente(Integer prioridad) {
+        return prioridad != null && prioridad <= prioridadMaximaCobertura;
     }
 
     /**
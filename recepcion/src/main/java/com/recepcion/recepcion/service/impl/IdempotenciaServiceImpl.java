@@ -0,0 +1,263 @@
+package com.recepcion.recepcion.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.recepcion.recepcion.entity.ClaveIdempotencia;
+import com.recepcion.recepcion.entity.EstadoIdempotencia;
+import com.recepcion.recepcion.exception.BadRequestException;
+import com.recepcion.recepcion.exception.ConflictException;
+import com.recepcion.recepcion.exception.ServiceException;
+import com.recepcion.recepcion.repository.ClaveIdempotenciaRepository;
+import com.recepcion.recepcion.service.IdempotenciaService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+@Service
+@Slf4j
+public class IdempotenciaServiceImpl implements IdempotenciaService {
+
+    private static final int LARGO_MAXIMO_CLAVE = 255;
+
+    private final ClaveIdempotenciaRepository claveIdempotenciaRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transaccion;
+    private final TransactionTemplate nuevaTransaccion;
+    private final Duration ttl;
+    // Respuestas ya guardadas: un reintento no necesita ir a la base
+    private final Cache<String, Respuesta> completadas;
+    // Ejecuciones en curso en esta instancia: los duplicados esperan el mismo resultado
+    private final ConcurrentHashMap<String, CompletableFuture<Respuesta>> enCurso = new ConcurrentHashMap<>();
+    private final Counter ejecutadas;
+    private final Counter repetidas;
+
+    // Tras esto sin terminar, otra solicitud con la misma clave puede retomar la reserva
+    @Value("${app.idempotencia.bloqueo-segundos:120}")
+    private long bloqueoSegundos;
+
+    // Cuánto espera un duplicado a que termine la primera ejecución antes de responder 409
+    @Value("${app.idempotencia.espera-maxima-ms:30000}")
+    private long esperaMaximaMs;
+
+    @Value("${app.idempotencia.sondeo-ms:100}")
+    private long sondeoMs;
+
+    @Value("${app.idempotencia.lote:1000}")
+    private int lote;
+
+    record Respuesta(int status, String cuerpo) {
+    }
+
+    public IdempotenciaServiceImpl(ClaveIdempotenciaRepository claveIdempotenciaRepository,
+                                   ObjectMapper objectMapper,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${app.idempotencia.ttl-horas:24}") long ttlHoras,
+                                   @Value("${app.idempotencia.cache.max-entradas:10000}") long maxEntradasCache,
+                                   MeterRegistry meterRegistry) {
+        this.claveIdempotenciaRepository = claveIdempotenciaRepository;
+        this.objectMapper = objectMapper;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.nuevaTransaccion = new TransactionTemplate(transactionManager);
+        this.nuevaTransaccion.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.ttl = Duration.ofHours(ttlHoras);
+        this.completadas = Caffeine.newBuilder()
+                .maximumSize(maxEntradasCache)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, completadas, "idempotencia.respuestas");
+        this.ejecutadas = Counter.builder("idempotencia.solicitudes")
+                .tag("resultado", "ejecutada")
+                .description("Solicitudes con Idempotency-Key ejecutadas por primera vez")
+                .register(meterRegistry);
+        this.repetidas = Counter.builder("idempotencia.solicitudes")
+                .tag("resultado", "repetida")
+                .description("Reintentos respondidos con la respuesta guardada, sin ejecutar")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <T> ResponseEntity<T> ejecutar(String operacion, String clave, Class<T> tipo,
+                                          Supplier<ResponseEntity<T>> accion) {
+        if (clave == null || clave.isBlank()) {
+            return accion.get();
+        }
+        if (clave.length() > LARGO_MAXIMO_CLAVE) {
+            throw new BadRequestException(HEADER + " no puede exceder " + LARGO_MAXIMO_CLAVE + " caracteres");
+        }
+        String id = operacion + " " + clave;
+
+        Respuesta guardada = completadas.getIfPresent(id);
+        if (guardada != null) {
+            return repetir(id, guardada, tipo);
+        }
+
+        CompletableFuture<Respuesta> propia = new CompletableFuture<>();
+        CompletableFuture<Respuesta> previa = enCurso.putIfAbsent(id, propia);
+        if (previa != null) {
+            log.info("Solicitud {} duplicada mientras la primera se ejecuta, se espera su respuesta", id);
+            return repetir(id, esperar(id, previa), tipo);
+        }
+
+        try {
+            EjecucionResultado<T> resultado = ejecutarUnaVez(id, tipo, accion);
+            propia.complete(resultado.respuesta());
+            return resultado.original() != null ? resultado.original() : repetir(id, resultado.respuesta(), tipo);
+        } catch (RuntimeException e) {
+            propia.completeExceptionally(e);
+            throw e;
+        } finally {
+            enCurso.remove(id, propia);
+        }
+    }
+
+    @Override
+    public int eliminarVencidas() {
+        int total = 0;
+        int borradas;
+        do {
+            borradas = nuevaTransaccion.execute(status ->
+                    claveIdempotenciaRepository.eliminarVencidas(LocalDateTime.now(), lote));
+            total += borradas;
+        } while (borradas == lote);
+        if (total > 0) {
+            log.info("Eliminadas {} claves de idempotencia vencidas", total);
+        }
+        return total;
+    }
+
+    // ==================== MÉTODOS PRIVADOS ====================
+
+    /**
+     * @param original la respuesta de la acción si la ejecutó esta solicitud, null si se tomó la guardada
+     */
+    private record EjecucionResultado<T>(Respuesta respuesta, ResponseEntity<T> original) {
+    }
+
+    /**
+     * Reserva la clave y ejecuta, o espera la respuesta de la solicitud (de otra instancia) que la tiene
+     */
+    private <T> EjecucionResultado<T> ejecutarUnaVez(String id, Class<T> tipo, Supplier<ResponseEntity<T>> accion) {
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(esperaMaximaMs);
+        while (true) {
+            UUID dueno = UUID.randomUUID();
+            if (reservar(id, dueno)) {
+                return ejecutarReservada(id, dueno, accion);
+            }
+
+            Optional<Respuesta> terminada = claveIdempotenciaRepository.findById(id)
+                    .filter(fila -> fila.getEstado() == EstadoIdempotencia.COMPLETADA)
+                    .map(fila -> new Respuesta(fila.getStatusHttp(), fila.getRespuesta()));
+            if (terminada.isPresent()) {
+                completadas.put(id, terminada.get());
+                return new EjecucionResultado<>(terminada.get(), null);
+            }
+
+            if (System.nanoTime() > limite) {
+                throw new ConflictException("Una solicitud con el mismo " + HEADER + " sigue en proceso");
+            }
+            try {
+                Thread.sleep(sondeoMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServiceException("Interrumpido esperando la solicitud " + id, e);
+            }
+        }
+    }
+
+    private boolean reservar(String id, UUID dueno) {
+        LocalDateTime ahora = LocalDateTime.now();
+        LocalDateTime bloqueadaHasta = ahora.plusSeconds(bloqueoSegundos);
+        return Boolean.TRUE.equals(nuevaTransaccion.execute(status ->
+                claveIdempotenciaRepository.reservar(id, dueno, ahora, bloqueadaHasta, ahora.plus(ttl)) == 1
+                        || claveIdempotenciaRepository.retomarVencida(id, dueno, ahora, bloqueadaHasta) == 1));
+    }
+
+    /**
+     * La acción y el guardado de su respuesta confirman juntos: no puede quedar el recurso creado sin
+     * respuesta guardada (un reintento lo duplicaría) ni una respuesta de algo que no se creó.
+     * Si la reserva venció y otra solicitud la retomó, esta se revierte: el recurso lo crea la otra.
+     */
+    private <T> EjecucionResultado<T> ejecutarReservada(String id, UUID dueno, Supplier<ResponseEntity<T>> accion) {
+        try {
+            EjecucionResultado<T> resultado = transaccion.execute(status -> {
+                ResponseEntity<T> original = accion.get();
+                Respuesta respuesta = new Respuesta(original.getStatusCode().value(), serializar(original.getBody()));
+                if (claveIdempotenciaRepository.completar(id, dueno, respuesta.status(), respuesta.cuerpo()) == 0) {
+                    throw new ConflictException("La solicitud con el mismo " + HEADER
+                            + " tardó más que el bloqueo y otra la retomó");
+                }
+                return new EjecucionResultado<>(respuesta, original);
+            });
+            completadas.put(id, resultado.respuesta());
+            ejecutadas.increment();
+            return resultado;
+        } catch (RuntimeException e) {
+            // Falló y no se creó nada: el reintento tiene que poder ejecutarla
+            nuevaTransaccion.executeWithoutResult(status -> claveIdempotenciaRepository.liberar(id, dueno));
+            throw e;
+        }
+    }
+
+    private Respuesta esperar(String id, CompletableFuture<Respuesta> enCurso) {
+        try {
+            return enCurso.get(esperaMaximaMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ConflictException("Una solicitud con el mismo " + HEADER + " sigue en proceso");
+        } catch (ExecutionException e) {
+            // La primera falló: el duplicado recibe el mismo error
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new ServiceException("Error en la solicitud " + id, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("Interrumpido esperando la solicitud " + id, e);
+        }
+    }
+
+    private <T> ResponseEntity<T> repetir(String id, Respuesta respuesta, Class<T> tipo) {
+        repetidas.increment();
+        log.info("Solicitud {} repetida, se devuelve la respuesta original ({})", id, respuesta.status());
+        try {
+            T cuerpo = respuesta.cuerpo() != null ? objectMapper.readValue(respuesta.cuerpo(), tipo) : null;
+            return ResponseEntity.status(respuesta.status())
+                    .header(HEADER_REPETIDA, "true")
+                    .body(cuerpo);
+        } catch (JsonProcessingException e) {
+            throw new ServiceException("No se pudo leer la respuesta guardada de " + id, e);
+        }
+    }
+
+    private String serializar(Object cuerpo) {
+        if (cuerpo == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(cuerpo);
+        } catch (JsonProcessingException e) {
+            throw new ServiceException("No se pudo guardar la respuesta", e);
+        }
+    }
+}
@@ -3,31 +3,47 @@ package com.recepcion.recepcion.service.impl;
 import com.recepcion.recepcion.dto.request.ActualizarEstadoIncidenteRequest;
 import com.recepcion.recepcion.dto.request.ActualizarIncidenteRequest;
 import com.recepcion.recepcion.dto.request.CrearIncidenteRequest;
+import com.recepcion.recepcion.dto.request.SolicitanteRequest;
 import com.recepcion.recepcion.dto.response.IncidenteDetalleResponse;
+import com.recepcion.recepcion.dto.response.IncidenteLoteResponse;
 import com.recepcion.recepcion.dto.response.IncidenteResponse;
 import com.recepcion.recepcion.entity.*;
 import com.recepcion.recepcion.event.IncidenteCreadoEvent;
+import com.recepcion.recepcion.event.IncidentesCreadosEvent;
 import com.recepcion.recepcion.exception.BadRequestException;
 //import com.recepcion.recepcion.exception.ConflictException;
 import com.recepcion.recepcion.exception.ResourceNotFoundException;
+import com.recepcion.recepcion.exception.ServiceException;
+import com.recepcion.recepcion.exception.SolicitanteObsoletoException;
 import com.recepcion.recepcion.mapper.IncidenteMapper;
-import com.recepcion.recepcion.mapper.SolicitanteMapper;
-import com.recepcion.recepcion.mapper.UbicacionMapper;
 import com.recepcion.recepcion.repository.*;
+import com.recepcion.recepcion.service.AlmacenamientoService;
 import com.recepcion.recepcion.service.AnalisisMlOrchestrationService;
 import com.recepcion.recepcion.service.IncidenteService;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import com.recepcion.recepcion.service.MiniaturaService;
+import com.recepcion.recepcion.service.SolicitanteCache;
+import com.recepcion.recepcion.service.UbicacionResolver;
+import com.recepcion.recepcion.util.PreEvaluacionUrgencia;
+import jakarta.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
 import java.util.UUID;
 
 @Service
@@ -43,11 +59,18 @@ public class IncidenteServiceImpl implements IncidenteService {
     private final AnalisisMlImagenRepository analisisImagenRepository;
 
     private final IncidenteMapper incidenteMapper;
-    private final SolicitanteMapper solicitanteMapper;
-    private final UbicacionMapper ubicacionMapper;
+    private final UbicacionResolver ubicacionResolver;
 
     private final AnalisisMlOrchestrationService analisisMlOrchestrationService;
     private final ApplicationEventPublisher eventPublisher;
+    private final AlmacenamientoService almacenamientoService;
+    private final MiniaturaService miniaturaService;
+    private final SolicitanteCache solicitanteCache;
+    private final Validator validator;
+
+    // Más ítems por llamada alargan la transacción y el lock de las filas de solicitante
+    @Value("${app.incidentes.lote.max-items:500}")
+    private int maxItemsLote;
 
     public IncidenteServiceImpl(
             IncidenteRepository incidenteRepository,
@@ -57,10 +80,13 @@ public class IncidenteServiceImpl implements IncidenteService {
             MultimediaRepository multimediaRepository,
             AnalisisMlImagenRepository analisisImagenRepository,
             IncidenteMapper incidenteMapper,
-            SolicitanteMapper solicitanteMapper,
-            UbicacionMapper ubicacionMapper,
+            UbicacionResolver ubicacionResolver,
             @Lazy AnalisisMlOrchestrationService analisisMlOrchestrationService,
-            ApplicationEventPublisher eventPublisher) {
+            ApplicationEventPublisher eventPublisher,
+            AlmacenamientoService almacenamientoService,
+            MiniaturaService miniaturaService,
+            SolicitanteCache solicitanteCache,
+            Validator validator) {
         this.incidenteRepository = incidenteRepository;
         this.solicitanteRepository = solicitanteRepository;
         this.ubicacionRepository = ubicacionRepository;
@@ -68,10 +94,13 @@ public class IncidenteServiceImpl implements IncidenteService {
         this.multimediaRepository = multimediaRepository;
         this.analisisImagenRepository = analisisImagenRepository;
         this.incidenteMapper = incidenteMapper;
-        this.solicitanteMapper = solicitanteMapper;
-        this.ubicacionMapper = ubicacionMapper;
+        this.ubicacionResolver = ubicacionResolver;
         this.analisisMlOrchestrationService = analisisMlOrchestrationService;
         this.eventPublisher = eventPublisher;
+        this.almacenamientoService = almacenamientoService;
+        this.miniaturaService = miniaturaService;
+        this.solicitanteCache = solicitanteCache;
+        this.validator = validator;
     }
 
     // ==================== CRUD BÁSICO ====================
@@ -80,17 +109,14 @@ public class IncidenteServiceImpl implements IncidenteService {
     public IncidenteResponse crear(CrearIncidenteRequest request) {
         log.info("Creando nuevo incidente");
 
-        // 1. Crear o buscar solicitante por teléfono
-        Solicitante solicitante = solicitanteRepository.findByTelefono(request.getSolicitante().getTelefono())
-                .orElseGet(() -> {
-                    log.info("Creando nuevo solicitante: {}", request.getSolicitante().getTelefono());
-                    Solicitante nuevoSolicitante = solicitanteMapper.toEntity(request.getSolicitante());
-                    return solicitanteRepository.save(nuevoSolicitante);
-                });
+        // 1. Solicitante por teléfono: de la cache si reportó antes, si no un solo INSERT ... ON CONFLICT
+        String telefono = request.getSolicitante().getTelefono();
+        Optional<SolicitanteCache.Entrada> enCache = solicitanteCache.buscar(telefono);
+        Solicitante solicitante = enCache.map(SolicitanteCache.Entrada::toEntity)
+                .orElseGet(() -> obtenerOCrearSolicitante(request.getSolicitante()));
 
-        // 2. Crear ubicación
-        Ubicacion ubicacion = ubicacionMapper.toEntity(request.getUbicacion());
-        ubicacion = ubicacionRepository.save(ubicacion);
+        // 2. Ubicación: la existente de la misma celda de la grilla, o una nueva
+        Ubicacion ubicacion = ubicacionResolver.resolver(request.getUbicacion());
 
         // 3. Crear incidente
         Incidente incidente = Incidente.builder()
@@ -99,10 +125,22 @@ public class IncidenteServiceImpl implements IncidenteService {
                 .descripcionOriginal(request.getDescripcionOriginal())
                 .tipoIncidenteReportado(request.getTipoIncidenteReportado())
                 .estadoIncidente(EstadoIncidente.RECIBIDO)
-                .prioridadInicial(3) // Prioridad media por defecto
+                // Pre-evaluación por palabras clave hasta que responda el análisis ML
+                .prioridadInicial(PreEvaluacionUrgencia.calcular(request.getDescripcionOriginal()))
                 .build();
 
-        incidente = incidenteRepository.save(incidente);
+        if (enCache.isEmpty()) {
+            incidente = incidenteRepository.save(incidente);
+        } else {
+            // Flush inmediato: si el solicitante de la cache ya no existe, la FK falla acá y no en el COMMIT
+            try {
+                incidente = incidenteRepository.saveAndFlush(incidente);
+            } catch (DataIntegrityViolationException e) {
+                solicitanteCache.descartar(telefono);
+                throw new SolicitanteObsoletoException(
+                        "El solicitante en cache del teléfono " + telefono + " ya no existe", e);
+            }
+        }
 
         log.info("Incidente creado exitosamente con ID: {}", incidente.getId());
 
@@ -113,6 +151,80 @@ public class IncidenteServiceImpl implements IncidenteService {
         return incidenteMapper.toResponse(incidente);
     }
 
+    @Override
+    public IncidenteLoteResponse crearLote(List<CrearIncidenteRequest> requests) {
+        if (requests.size() > maxItemsLote) {
+            throw new BadRequestException("El lote no puede tener más de " + maxItemsLote + " incidentes");
+        }
+        log.info("Creando lote de {} incidentes", requests.size());
+
+        // 1. Validar cada ítem por separado
+        List<IncidenteLoteResponse.Resultado> resultados = new ArrayList<>(requests.size());
+        Map<Integer, CrearIncidenteRequest> validos = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            CrearIncidenteRequest request = requests.get(i);
+            List<String> errores = request == null
+                    ? List.of("El incidente no puede ser nulo")
+                    : validator.validate(request).stream()
+                            .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                            .sorted()
+                            .toList();
+            if (errores.isEmpty()) {
+                validos.put(i, request);
+            }
+            resultados.add(IncidenteLoteResponse.Resultado.builder()
+                    .indice(i)
+                    .creado(false)
+                    .errores(errores)
+                    .build());
+        }
+
+        if (!validos.isEmpty()) {
+            // 2. Solicitantes: los existentes con una sola consulta IN, los nuevos en batch
+            Map<String, Solicitante> solicitantes = resolverSolicitantes(validos.values());
+
+            // 3. Ubicaciones e incidentes: saveAll sobre entidades nuevas queda en batches de inserts al hacer flush.
+            //    Las ubicaciones que caen en la celda de una existente (o de otra del lote) la reutilizan
+            List<Ubicacion> ubicaciones = ubicacionResolver.resolver(validos.values().stream()
+                    .map(CrearIncidenteRequest::getUbicacion)
+                    .toList());
+
+            List<Incidente> incidentes = new ArrayList<>(validos.size());
+            int posicion = 0;
+            for (CrearIncidenteRequest request : validos.values()) {
+                incidentes.add(Incidente.builder()
+                        .solicitante(solicitantes.get(request.getSolicitante().getTelefono()))
+                        .ubicacion(ubicaciones.get(posicion++))
+                        .descripcionOriginal(request.getDescripcionOriginal())
+                        .tipoIncidenteReportado(request.getTipoIncidenteReportado())
+                        .estadoIncidente(EstadoIncidente.RECIBIDO)
+                        .prioridadInicial(PreEvaluacionUrgencia.calcular(request.getDescripcionOriginal()))
+                        .build());
+            }
+            incidentes = incidenteRepository.saveAll(incidentes);
+
+            posicion = 0;
+            for (Integer indice : validos.keySet()) {
+                Incidente incidente = incidentes.get(posicion++);
+                IncidenteLoteResponse.Resultado resultado = resultados.get(indice);
+                resultado.setCreado(true);
+                resultado.setIncidenteId(incidente.getId());
+                resultado.setPrioridadInicial(incidente.getPrioridadInicial());
+            }
+
+            // 4. Un solo evento para todo el lote: los jobs de análisis de texto también van en batch
+            eventPublisher.publishEvent(new IncidentesCreadosEvent(this,
+                    incidentes.stream().map(Incidente::getId).toList()));
+        }
+
+        log.info("Lote procesado: {} creados, {} rechazados", validos.size(), requests.size() - validos.size());
+        return IncidenteLoteResponse.builder()
+                .creados(validos.size())
+                .rechazados(requests.size() - validos.size())
+                .resultados(resultados)
+                .build();
+    }
+
     @Override
     @Transactional(readOnly = true)
     public IncidenteResponse buscarPorId(UUID id) {
@@ -181,6 +293,7 @@ public class IncidenteServiceImpl implements IncidenteService {
         }
 
         UUID solicitanteId = incidente.getSolicitante().getId();
+        String telefonoSolicitante = incidente.getSolicitante().getTelefono();
         UUID ubicacionId = incidente.getUbicacion().getId();
 
         // 1. Eliminar análisis de imágenes y archivos multimedia
@@ -193,23 +306,9 @@ public class IncidenteServiceImpl implements IncidenteService {
                 analisisImagenRepository.delete(analisisImagen);
             });
 
-            // Eliminar archivo físico
-            try {
-                Files.deleteIfExists(Paths.get(multimedia.getUrlArchivo()));
-                log.debug("Archivo físico eliminado: {}", multimedia.getUrlArchivo());
-            } catch (Exception e) {
-                log.warn("No se pudo eliminar archivo físico: {}", multimedia.getUrlArchivo(), e);
-            }
-
-            // Eliminar miniatura si existe
-            if (multimedia.getUrlMiniatura() != null) {
-                try {
-                    Files.deleteIfExists(Paths.get(multimedia.getUrlMiniatura()));
-                    log.debug("Miniatura eliminada: {}", multimedia.getUrlMiniatura());
-                } catch (Exception e) {
-                    log.warn("No se pudo eliminar miniatura: {}", multimedia.getUrlMiniatura(), e);
-                }
-            }
+            // Eliminar archivo físico (solo si ningún otro multimedia comparte el contenido) y sus miniaturas
+            almacenamientoService.liberar(multimedia.getHashContenido(), multimedia.getUrlArchivo());
+            miniaturaService.eliminarArchivos(multimedia.getId());
 
             // Eliminar registro de multimedia
             multimediaRepository.delete(multimedia);
@@ -229,6 +328,7 @@ public class IncidenteServiceImpl implements IncidenteService {
         long incidentesConUbicacion = incidenteRepository.countByUbicacionId(ubicacionId);
         if (incidentesConUbicacion == 0) {
             log.info("Eliminando ubicación ID: {} - era el único incidente asociado", ubicacionId);
+            ubicacionResolver.olvidar(incidente.getUbicacion());
             ubicacionRepository.deleteById(ubicacionId);
         } else {
             log.debug("Ubicación ID: {} tiene {} incidentes adicionales - no se eliminará",
@@ -240,12 +340,58 @@ public class IncidenteServiceImpl implements IncidenteService {
         if (incidentesDelSolicitante == 0) {
             log.info("Eliminando solicitante ID: {} - era el único incidente asociado", solicitanteId);
             solicitanteRepository.deleteById(solicitanteId);
+            solicitanteCache.invalidar(telefonoSolicitante);
         } else {
             log.debug("Solicitante ID: {} tiene {} incidentes adicionales - no se eliminará",
                      solicitanteId, incidentesDelSolicitante);
         }
     }
 
+    /**
+     * Solicitante de cada teléfono del lote; los que no existen se crean con los datos de su primer reporte
+     */
+    private Map<String, Solicitante> resolverSolicitantes(Collection<CrearIncidenteRequest> requests) {
+        Map<String, SolicitanteRequest> porTelefono = new LinkedHashMap<>();
+        requests.forEach(request -> porTelefono.putIfAbsent(request.getSolicitante().getTelefono(), request.getSolicitante()));
+
+        Map<String, Solicitante> solicitantes = new HashMap<>(porTelefono.size());
+        porTelefono.keySet().forEach(telefono -> solicitanteCache.buscar(telefono)
+                .ifPresent(entrada -> solicitantes.put(telefono, entrada.toEntity())));
+
+        List<String> sinCache = porTelefono.keySet().stream()
+                .filter(telefono -> !solicitantes.containsKey(telefono))
+                .toList();
+        if (!sinCache.isEmpty()) {
+            solicitanteRepository.findByTelefonoIn(sinCache).forEach(solicitante -> {
+                solicitantes.put(solicitante.getTelefono(), solicitante);
+                solicitanteCache.guardar(solicitante);
+            });
+        }
+
+        // Los nuevos uno por uno: otro reporte del mismo número puede estar creándolo a la vez.
+        // En orden de teléfono, para que dos lotes con números nuevos en común no se bloqueen en cruz
+        new TreeMap<>(porTelefono).forEach((telefono, solicitante) -> solicitantes.computeIfAbsent(telefono,
+                t -> obtenerOCrearSolicitante(solicitante)));
+        return solicitantes;
+    }
+
+    /**
+     * Solicitante del teléfono leído de Postgres, creado con los datos del request si es su primer reporte.
+     * Quien llama ya buscó en la cache: el de la cache es una instancia desacoplada que alcanza para la FK
+     * del incidente y para la respuesta. Un número ya registrado que no estaba en la cache cuesta dos
+     * consultas (INSERT sin filas y SELECT); un número nuevo, una.
+     */
+    private Solicitante obtenerOCrearSolicitante(SolicitanteRequest request) {
+        Solicitante solicitante = solicitanteRepository.insertarSiNoExiste(UUID.randomUUID(),
+                        request.getNombreCompleto(), request.getTelefono(), request.getCanalOrigen().getValor(),
+                        LocalDateTime.now())
+                .or(() -> solicitanteRepository.findByTelefono(request.getTelefono()))
+                .orElseThrow(() -> new ServiceException(
+                        "El solicitante del teléfono " + request.getTelefono() + " se eliminó mientras se creaba"));
+        solicitanteCache.guardar(solicitante);
+        return solicitante;
+    }
+
     // ==================== GESTIÓN DE ESTADOS ====================
 
     @Override
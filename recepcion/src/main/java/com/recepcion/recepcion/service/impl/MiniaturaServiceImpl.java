@@ -0,0 +1,276 @@
+package com.recepcion.recepcion.service.impl;
+
+import com.recepcion.recepcion.almacen.AlmacenObjetos;
+import com.recepcion.recepcion.entity.Multimedia;
+import com.recepcion.recepcion.exception.ResourceNotFoundException;
+import com.recepcion.recepcion.exception.ServiceException;
+import com.recepcion.recepcion.exception.ServiceUnavailableException;
+import com.recepcion.recepcion.repository.ArchivoMultimediaVista;
+import com.recepcion.recepcion.repository.MultimediaRepository;
+import com.recepcion.recepcion.service.AlmacenamientoService;
+import com.recepcion.recepcion.service.MiniaturaService;
+import com.recepcion.recepcion.service.MultimediaService;
+import com.recepcion.recepcion.util.HashPerceptual;
+import com.recepcion.recepcion.util.Miniaturas;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+@Slf4j
+public class MiniaturaServiceImpl implements MiniaturaService {
+
+    // Retry-After sugerido mientras se genera una miniatura pedida que todavía no existe
+    private static final long REINTENTAR_EN_SEGUNDOS = 2;
+    // Lado menor mínimo de la decodificación submuestreada para el hash perceptual (que reduce a 9x8)
+    private static final int LADO_MINIMO_HASH = 64;
+
+    private final MultimediaRepository multimediaRepository;
+    private final AlmacenObjetos almacen;
+    private final AlmacenamientoService almacenamientoService;
+    private final ThreadPoolTaskExecutor miniaturaExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final Timer tiempoGeneracion;
+    private final Counter fallidas;
+    // Multimedia con una generación encolada o en curso: cada imagen se decodifica una sola vez a la vez
+    private final Set<UUID> enCurso = ConcurrentHashMap.newKeySet();
+
+    @Value("${app.multimedia.upload-dir:uploads}")
+    private String uploadDir;
+
+    // Calidad JPEG de las miniaturas (0 a 1)
+    @Value("${app.multimedia.miniaturas.calidad:0.8}")
+    private float calidad;
+
+    // Imágenes con más píxeles no se decodifican: un PNG de pocos KB puede declarar una imagen de gigapíxeles
+    @Value("${app.multimedia.miniaturas.max-pixeles:50000000}")
+    private long maxPixeles;
+
+    public MiniaturaServiceImpl(MultimediaRepository multimediaRepository,
+                                AlmacenObjetos almacen,
+                                AlmacenamientoService almacenamientoService,
+                                @Qualifier("miniaturaExecutor") ThreadPoolTaskExecutor miniaturaExecutor,
+                                TransactionTemplate transactionTemplate,
+                                MeterRegistry meterRegistry) {
+        this.multimediaRepository = multimediaRepository;
+        this.almacen = almacen;
+        this.almacenamientoService = almacenamientoService;
+        this.miniaturaExecutor = miniaturaExecutor;
+        this.transactionTemplate = transactionTemplate;
+        this.tiempoGeneracion = Timer.builder("multimedia.miniaturas.generacion")
+                .description("Tiempo en decodificar una imagen y escribir todas sus miniaturas")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.fallidas = Counter.builder("multimedia.miniaturas.fallidas")
+                .description("Imágenes cuyas miniaturas no se pudieron generar")
+                .register(meterRegistry);
+        Gauge.builder("multimedia.miniaturas.cola", miniaturaExecutor,
+                        executor -> executor.getThreadPoolExecutor().getQueue().size())
+                .description("Miniaturas esperando un thread del pool")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void generarEnSegundoPlano(UUID multimediaId) {
+        if (!enCurso.add(multimediaId)) {
+            return;
+        }
+        try {
+            miniaturaExecutor.execute(() -> {
+                try {
+                    generar(multimediaId);
+                } catch (Exception e) {
+                    log.warn("Error al generar miniaturas de {}: {}", multimediaId, e.getMessage());
+                } finally {
+                    enCurso.remove(multimediaId);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            enCurso.remove(multimediaId);
+            log.warn("Pool de miniaturas lleno, las de {} se encolarán al pedirlas", multimediaId);
+        }
+    }
+
+    @Override
+    public Optional<String> generar(UUID multimediaId) {
+        ArchivoMultimediaVista vista = multimediaRepository.findArchivoById(multimediaId)
+                .orElseThrow(() -> new ResourceNotFoundException("Multimedia", "id", multimediaId));
+
+        Timer.Sample muestra = Timer.start();
+        long hashPerceptual;
+        try {
+            BufferedImage imagen;
+            try (InputStream original = almacen.leer(vista.getUrlArchivo())) {
+                imagen = leerImagen(original, vista.getUrlArchivo(), 0);
+            }
+            if (imagen == null) {
+                fallidas.increment();
+                return Optional.empty();
+            }
+            // Con la misma decodificación: el hash perceptual del análisis ML de fotos repetidas
+            hashPerceptual = HashPerceptual.calcular(imagen);
+
+            Files.createDirectories(directorioTemporal());
+            // De mayor a menor: cada tamaño se reduce desde el anterior, no desde el original
+            Tamano[] tamanos = Tamano.values();
+            for (int i = tamanos.length - 1; i >= 0; i--) {
+                imagen = Miniaturas.reducir(imagen, tamanos[i].getLadoMaximo());
+                Path temporal = directorioTemporal().resolve(UUID.randomUUID() + ".jpg");
+                try {
+                    Miniaturas.escribirJpeg(imagen, calidad, temporal);
+                    almacen.guardar(clave(multimediaId, tamanos[i]), temporal);
+                } finally {
+                    Files.deleteIfExists(temporal);
+                }
+            }
+        } catch (IOException e) {
+            fallidas.increment();
+            throw new ServiceException("Error al generar las miniaturas", e);
+        } finally {
+            muestra.stop(tiempoGeneracion);
+        }
+
+        String urlMiniatura = clave(multimediaId, Tamano.PEQUENA);
+        transactionTemplate.executeWithoutResult(status -> multimediaRepository.findById(multimediaId)
+                .ifPresent(multimedia -> {
+                    multimedia.setUrlMiniatura(urlMiniatura);
+                    // Si el análisis ML ya guardó el suyo se conserva: el índice de duplicados lo usa
+                    if (multimedia.getHashPerceptual() == null) {
+                        multimedia.setHashPerceptual(hashPerceptual);
+                    }
+                }));
+        log.debug("Miniaturas generadas para multimedia {}", multimediaId);
+        return Optional.of(urlMiniatura);
+    }
+
+    @Override
+    public Optional<Long> obtenerHashPerceptual(UUID multimediaId) {
+        Multimedia multimedia = multimediaRepository.findById(multimediaId)
+                .orElseThrow(() -> new ResourceNotFoundException("Multimedia", "id", multimediaId));
+        if (multimedia.getHashPerceptual() != null) {
+            return Optional.of(multimedia.getHashPerceptual());
+        }
+
+        BufferedImage imagen;
+        try (InputStream original = almacen.leer(multimedia.getUrlArchivo())) {
+            imagen = leerImagen(original, multimedia.getUrlArchivo(), LADO_MINIMO_HASH);
+        } catch (IOException e) {
+            throw new ServiceException("Error al leer la imagen para el hash perceptual", e);
+        }
+        if (imagen == null) {
+            return Optional.empty();
+        }
+        long hashPerceptual = HashPerceptual.calcular(imagen);
+
+        transactionTemplate.executeWithoutResult(status -> multimediaRepository.findById(multimediaId)
+                .filter(actual -> actual.getHashPerceptual() == null)
+                .ifPresent(actual -> actual.setHashPerceptual(hashPerceptual)));
+        return Optional.of(hashPerceptual);
+    }
+
+    @Override
+    public MultimediaService.Archivo obtenerMiniatura(UUID multimediaId, Tamano tamano) {
+        ArchivoMultimediaVista vista = multimediaRepository.findArchivoById(multimediaId)
+                .orElseThrow(() -> new ResourceNotFoundException("Multimedia", "id", multimediaId));
+
+        String clave = clave(multimediaId, tamano);
+        try {
+            if (!almacen.existe(clave)) {
+                // Nunca se decodifica en el thread del request: se encola y el cliente reintenta
+                generarEnSegundoPlano(multimediaId);
+                throw new ServiceUnavailableException(
+                        "La miniatura del multimedia " + multimediaId + " se está generando", REINTENTAR_EN_SEGUNDOS);
+            }
+        } catch (IOException e) {
+            log.error("Error al leer miniatura: {}", clave, e);
+            throw new ServiceException("Error al descargar la miniatura", e);
+        }
+
+        // La miniatura depende solo del contenido original y del tamaño: su ETag se deriva del hash
+        String hash = vista.getHashContenido() != null
+                ? vista.getHashContenido() + "-" + tamano.name().toLowerCase()
+                : null;
+        AlmacenamientoService.Descarga descarga = almacenamientoService.descarga(clave, null);
+        return new MultimediaService.Archivo(descarga.contenido(), descarga.rutaLocal(), descarga.urlFirmada(),
+                clave.substring(clave.lastIndexOf('/') + 1), descarga.tamanoBytes(), hash, vista.getFechaSubida());
+    }
+
+    @Override
+    public void eliminarArchivos(UUID multimediaId) {
+        for (Tamano tamano : Tamano.values()) {
+            try {
+                almacen.eliminar(clave(multimediaId, tamano));
+            } catch (IOException e) {
+                log.warn("No se pudo eliminar la miniatura {} de {}", tamano, multimediaId, e);
+            }
+        }
+    }
+
+    /**
+     * Decodifica la imagen solo si sus dimensiones, leídas del encabezado, no superan {@code maxPixeles}.
+     * Con {@code ladoMinimo} mayor que 0 lee una de cada N filas y columnas, dejando el lado menor
+     * en al menos {@code ladoMinimo} píxeles.
+     *
+     * @return null si el formato no es soportado o la imagen es demasiado grande
+     */
+    private BufferedImage leerImagen(InputStream original, String urlArchivo, int ladoMinimo) throws IOException {
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(original)) {
+            Iterator<ImageReader> readers = entrada != null ? ImageIO.getImageReaders(entrada) : Collections.emptyIterator();
+            if (!readers.hasNext()) {
+                log.warn("Formato de imagen no soportado para miniaturas: {}", urlArchivo);
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(entrada, true, true);
+                long pixeles = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixeles > maxPixeles) {
+                    log.warn("Imagen de {}x{} supera el máximo de {} píxeles, no se generan miniaturas: {}",
+                            reader.getWidth(0), reader.getHeight(0), maxPixeles, urlArchivo);
+                    return null;
+                }
+                ImageReadParam parametros = reader.getDefaultReadParam();
+                int paso = ladoMinimo > 0
+                        ? Math.max(1, Math.min(reader.getWidth(0), reader.getHeight(0)) / ladoMinimo)
+                        : 1;
+                parametros.setSourceSubsampling(paso, paso, 0, 0);
+                return reader.read(0, parametros);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private Path directorioTemporal() {
+        return Paths.get(uploadDir, "tmp");
+    }
+
+    private static String clave(UUID multimediaId, Tamano tamano) {
+        return "miniaturas/" + multimediaId + "-" + tamano.name().toLowerCase() + ".jpg";
+    }
+}
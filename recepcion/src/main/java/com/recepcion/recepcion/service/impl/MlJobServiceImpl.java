@@ -0,0 +1,235 @@
+package com.recepcion.recepcion.service.impl;
+
+import com.recepcion.recepcion.entity.EstadoMlJob;
+import com.recepcion.recepcion.entity.Incidente;
+import com.recepcion.recepcion.entity.MlJob;
+import com.recepcion.recepcion.entity.Multimedia;
+import com.recepcion.recepcion.entity.TipoMlJob;
+import com.recepcion.recepcion.repository.IncidenteRepository;
+import com.recepcion.recepcion.repository.MlJobRepository;
+import com.recepcion.recepcion.repository.MultimediaRepository;
+import com.recepcion.recepcion.service.MlJobService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@Slf4j
+@Transactional
+public class MlJobServiceImpl implements MlJobService {
+
+    private final MlJobRepository mlJobRepository;
+    private final IncidenteRepository incidenteRepository;
+    private final MultimediaRepository multimediaRepository;
+    private final MeterRegistry meterRegistry;
+    private final Timer tiempoReclamo;
+
+    @Value("${ml.jobs.max-intentos:3}")
+    private int maxIntentos;
+
+    @Value("${ml.jobs.reintento-segundos:30}")
+    private long reintentoSegundos;
+
+    @Value("${ml.jobs.aplazamiento-segundos:15}")
+    private long aplazamientoSegundos;
+
+    @Value("${ml.jobs.reclamo-expira-segundos:300}")
+    private long reclamoExpiraSegundos;
+
+    @Value("${ml.jobs.aging-segundos:60}")
+    private long agingSegundos;
+
+    public MlJobServiceImpl(MlJobRepository mlJobRepository,
+                            IncidenteRepository incidenteRepository,
+                            MultimediaRepository multimediaRepository,
+                            MeterRegistry meterRegistry) {
+        this.mlJobRepository = mlJobRepository;
+        this.incidenteRepository = incidenteRepository;
+        this.multimediaRepository = multimediaRepository;
+        this.meterRegistry = meterRegistry;
+        this.tiempoReclamo = Timer.builder("ml.jobs.reclamo")
+                .description("Duración de la transacción que reclama un lote de jobs")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public MlJob encolarAnalisisTexto(UUID incidenteId) {
+        return encolar(TipoMlJob.ANALISIS_TEXTO, incidenteId, prioridadDe(TipoMlJob.ANALISIS_TEXTO, incidenteId), null);
+    }
+
+    @Override
+    public List<MlJob> encolarAnalisisTexto(List<UUID> incidenteIds) {
+        // Los incidentes están en el contexto de persistencia: prioridadDe no vuelve a consultar la base
+        List<MlJob> jobs = incidenteIds.stream()
+                .map(id -> {
+                    Integer prioridad = prioridadDe(TipoMlJob.ANALISIS_TEXTO, id);
+                    return MlJob.builder()
+                            .tipo(TipoMlJob.ANALISIS_TEXTO)
+                            .referenciaId(id)
+                            .prioridad(prioridad)
+                            .ordenReclamo(ordenReclamo(prioridad))
+                            .build();
+                })
+                .toList();
+        List<MlJob> guardados = mlJobRepository.saveAll(jobs);
+        log.info("{} jobs ML {} encolados en lote", guardados.size(), TipoMlJob.ANALISIS_TEXTO);
+        return guardados;
+    }
+
+    @Override
+    public MlJob encolarAnalisisImagen(UUID multimediaId) {
+        return encolar(TipoMlJob.ANALISIS_IMAGEN, multimediaId, prioridadDe(TipoMlJob.ANALISIS_IMAGEN, multimediaId), null);
+    }
+
+    @Override
+    public MlJob reencolar(TipoMlJob tipo, UUID referenciaId, Duration espera) {
+        return encolar(tipo, referenciaId, prioridadDe(tipo, referenciaId), LocalDateTime.now().plus(espera));
+    }
+
+    @Override
+    public List<MlJob> reclamarLote(String nodo, int cantidad) {
+        long inicio = System.nanoTime();
+        LocalDateTime ahora = LocalDateTime.now();
+
+        List<MlJob> bloqueados = mlJobRepository.bloquearDisponibles(
+                ahora, ahora.minusSeconds(reclamoExpiraSegundos), cantidad);
+
+        List<MlJob> reclamados = new ArrayList<>();
+        for (MlJob job : bloqueados) {
+            if (job.getEstado() == EstadoMlJob.PROCESANDO) {
+                log.warn("Job {} abandonado por el nodo {}, se vuelve a reclamar", job.getId(), job.getNodoReclamo());
+                if (job.getIntentos() >= maxIntentos) {
+                    job.setEstado(EstadoMlJob.ERROR);
+                    job.setErrorMensaje("Reclamo expirado tras " + job.getIntentos() + " intentos");
+                    job.setFechaFinalizacion(ahora);
+                    continue;
+                }
+            } else {
+                tiempoEspera(job.getPrioridad()).record(Duration.between(job.getDisponibleDesde(), ahora));
+            }
+
+            job.setEstado(EstadoMlJob.PROCESANDO);
+            job.setNodoReclamo(nodo);
+            job.setFechaReclamo(ahora);
+            job.setIntentos(job.getIntentos() + 1);
+            reclamados.add(job);
+        }
+
+        tiempoReclamo.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+
+        if (!reclamados.isEmpty()) {
+            log.debug("Nodo {} reclamó {} jobs ML", nodo, reclamados.size());
+        }
+        return reclamados;
+    }
+
+    @Override
+    public void marcarCompletado(UUID jobId) {
+        mlJobRepository.findById(jobId).ifPresent(job -> {
+            job.setEstado(EstadoMlJob.COMPLETADO);
+            job.setFechaFinalizacion(LocalDateTime.now());
+            job.setErrorMensaje(null);
+        });
+    }
+
+    @Override
+    public void marcarFallido(UUID jobId, String error, boolean definitivo) {
+        mlJobRepository.findById(jobId).ifPresent(job -> {
+            job.setErrorMensaje(error);
+            if (definitivo || job.getIntentos() >= maxIntentos) {
+                log.error("Job {} ({}) descartado tras {} intentos: {}",
+                        jobId, job.getTipo(), job.getIntentos(), error);
+                job.setEstado(EstadoMlJob.ERROR);
+                job.setFechaFinalizacion(LocalDateTime.now());
+            } else {
+                log.warn("Job {} ({}) falló en el intento {}, se reintentará en {}s: {}",
+                        jobId, job.getTipo(), job.getIntentos(), reintentoSegundos, error);
+                job.setEstado(EstadoMlJob.PENDIENTE);
+                job.setDisponibleDesde(LocalDateTime.now().plusSeconds(reintentoSegundos));
+                job.setNodoReclamo(null);
+                job.setFechaReclamo(null);
+            }
+        });
+    }
+
+    @Override
+    public void aplazar(UUID jobId, String motivo) {
+        mlJobRepository.findById(jobId).ifPresent(job -> {
+            log.info("Job {} ({}) aplazado {}s: {}", jobId, job.getTipo(), aplazamientoSegundos, motivo);
+            job.setEstado(EstadoMlJob.PENDIENTE);
+            job.setIntentos(Math.max(0, job.getIntentos() - 1));
+            job.setDisponibleDesde(LocalDateTime.now().plusSeconds(aplazamientoSegundos));
+            job.setNodoReclamo(null);
+            job.setFechaReclamo(null);
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long contarPendientes() {
+        return mlJobRepository.countByEstado(EstadoMlJob.PENDIENTE);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long contarDisponibles() {
+        return mlJobRepository.countByEstadoAndDisponibleDesdeLessThanEqual(EstadoMlJob.PENDIENTE, LocalDateTime.now());
+    }
+
+    private Integer prioridadDe(TipoMlJob tipo, UUID referenciaId) {
+        if (tipo == TipoMlJob.ANALISIS_TEXTO) {
+            return incidenteRepository.findById(referenciaId)
+                    .map(Incidente::getPrioridadInicial)
+                    .orElse(null);
+        }
+        // La imagen hereda la prioridad más reciente de su incidente
+        return multimediaRepository.findById(referenciaId)
+                .map(Multimedia::getIncidente)
+                .map(incidente -> incidente.getPrioridadFinal() != null
+                        ? incidente.getPrioridadFinal()
+                        : incidente.getPrioridadInicial())
+                .orElse(null);
+    }
+
+    /**
+     * Un job de prioridad p se ordena como uno de prioridad 1 encolado (p - 1) x aging-segundos después:
+     * tras esa espera un job menos urgente pasa delante de los urgentes recién llegados
+     */
+    private LocalDateTime ordenReclamo(Integer prioridad) {
+        int nivel = prioridad != null ? prioridad : 3;
+        return LocalDateTime.now().plusSeconds((nivel - 1) * agingSegundos);
+    }
+
+    private MlJob encolar(TipoMlJob tipo, UUID referenciaId, Integer prioridad, LocalDateTime disponibleDesde) {
+        MlJob job = mlJobRepository.save(MlJob.builder()
+                .tipo(tipo)
+                .referenciaId(referenciaId)
+                .prioridad(prioridad)
+                .disponibleDesde(disponibleDesde)
+                .ordenReclamo(ordenReclamo(prioridad))
+                .build());
+        log.info("Job ML {} encolado para {} con prioridad {} (job ID: {})",
+                tipo, referenciaId, job.getPrioridad(), job.getId());
+        return job;
+    }
+
+    /**
+     * Timer de espera en cola por prioridad, para ver el efecto del orden por urgencia y del aging
+     */
+    private Timer tiempoEspera(Integer prioridad) {
+        return Timer.builder("ml.jobs.espera")
+                .description("Tiempo desde que un job queda disponible hasta que un worker lo reclama")
+                .tag("prioridad", String.valueOf(prioridad != null ? prioridad : 3))
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,165 @@
+package com.recepcion.recepcion.service.impl;
+
+import com.recepcion.recepcion.entity.EstadoIncidente;
+import com.recepcion.recepcion.entity.EstadoMlJob;
+import com.recepcion.recepcion.entity.Incidente;
+import com.recepcion.recepcion.entity.Multimedia;
+import com.recepcion.recepcion.entity.TipoMlJob;
+import com.recepcion.recepcion.repository.IncidenteRepository;
+import com.recepcion.recepcion.repository.MlJobRepository;
+import com.recepcion.recepcion.repository.MultimediaRepository;
+import com.recepcion.recepcion.service.MlJobService;
+import com.recepcion.recepcion.service.MlReconciliacionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Service
+@Slf4j
+@Transactional
+public class MlReconciliacionServiceImpl implements MlReconciliacionService {
+
+    // Clave del advisory lock compartida por todas las instancias
+    private static final long CLAVE_BLOQUEO = 0x4D4C5F5245434FL;
+
+    private final MlJobRepository mlJobRepository;
+    private final IncidenteRepository incidenteRepository;
+    private final MultimediaRepository multimediaRepository;
+    private final MlJobService mlJobService;
+    private final Counter reencolados;
+    private final Counter descartados;
+
+    @Value("${ml.reconciliacion.antiguedad-segundos:600}")
+    private long antiguedadSegundos;
+
+    @Value("${ml.reconciliacion.lote:100}")
+    private int lote;
+
+    @Value("${ml.reconciliacion.max-reencolados:5}")
+    private int maxReencolados;
+
+    @Value("${ml.reconciliacion.backoff-base-segundos:60}")
+    private long backoffBaseSegundos;
+
+    @Value("${ml.reconciliacion.backoff-max-segundos:3600}")
+    private long backoffMaxSegundos;
+
+    public MlReconciliacionServiceImpl(MlJobRepository mlJobRepository,
+                                       IncidenteRepository incidenteRepository,
+                                       MultimediaRepository multimediaRepository,
+                                       MlJobService mlJobService,
+                                       MeterRegistry meterRegistry) {
+        this.mlJobRepository = mlJobRepository;
+        this.incidenteRepository = incidenteRepository;
+        this.multimediaRepository = multimediaRepository;
+        this.mlJobService = mlJobService;
+        this.reencolados = Counter.builder("ml.reconciliacion")
+                .tag("resultado", "reencolado")
+                .description("Análisis huérfanos devueltos a la cola por el reconciliador")
+                .register(meterRegistry);
+        this.descartados = Counter.builder("ml.reconciliacion")
+                .tag("resultado", "descartado")
+                .description("Análisis huérfanos descartados tras agotar los reencolados")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Optional<Cursor> reconciliarPagina(TipoMlJob tipo, Cursor desde) {
+        if (!mlJobRepository.intentarBloqueoAsesor(CLAVE_BLOQUEO)) {
+            log.debug("Otra instancia está reconciliando análisis ML, se omite este ciclo");
+            return Optional.empty();
+        }
+
+        LocalDateTime limite = LocalDateTime.now().minusSeconds(antiguedadSegundos);
+        return tipo == TipoMlJob.ANALISIS_TEXTO
+                ? reconciliarTextos(limite, desde)
+                : reconciliarImagenes(limite, desde);
+    }
+
+    private Optional<Cursor> reconciliarTextos(LocalDateTime limite, Cursor desde) {
+        List<Incidente> huerfanos = incidenteRepository.findAnalisisTextoHuerfanos(
+                limite, desde.fecha(), desde.id(), lote);
+        if (huerfanos.isEmpty()) {
+            return Optional.empty();
+        }
+        // Antes de modificar filas: un incidente descartado cambia su fecha de actualización
+        Incidente ultimo = huerfanos.get(huerfanos.size() - 1);
+        Cursor siguiente = new Cursor(ultimo.getFechaUltimaActualizacion(), ultimo.getId());
+
+        for (Incidente incidente : huerfanos) {
+            if (!reencolarODescartar(TipoMlJob.ANALISIS_TEXTO, incidente.getId())) {
+                incidente.setEstadoIncidente(EstadoIncidente.RECIBIDO);
+            }
+        }
+        return huerfanos.size() < lote ? Optional.empty() : Optional.of(siguiente);
+    }
+
+    private Optional<Cursor> reconciliarImagenes(LocalDateTime limite, Cursor desde) {
+        List<Multimedia> huerfanas = multimediaRepository.findAnalisisImagenHuerfanos(
+                limite, desde.fecha(), desde.id(), lote);
+        if (huerfanas.isEmpty()) {
+            return Optional.empty();
+        }
+        Multimedia ultima = huerfanas.get(huerfanas.size() - 1);
+        Cursor siguiente = new Cursor(ultima.getFechaSubida(), ultima.getId());
+
+        for (Multimedia multimedia : huerfanas) {
+            if (!reencolarODescartar(TipoMlJob.ANALISIS_IMAGEN, multimedia.getId())) {
+                // El incidente no puede quedar esperando una imagen que ya no se va a analizar
+                Incidente incidente = multimedia.getIncidente();
+                if (incidente.getEstadoIncidente() == EstadoIncidente.EN_ANALISIS_IMAGEN) {
+                    incidente.setEstadoIncidente(incidente.getAnalisisTexto() != null
+                            ? EstadoIncidente.ANALIZADO
+                            : EstadoIncidente.RECIBIDO);
+                }
+            }
+        }
+        return huerfanas.size() < lote ? Optional.empty() : Optional.of(siguiente);
+    }
+
+    /**
+     * Reencola el análisis con espera base * 2^(fallos previos), hasta el máximo configurado.
+     *
+     * @return false si ya agotó los reencolados y quedó descartado
+     */
+    private boolean reencolarODescartar(TipoMlJob tipo, UUID referenciaId) {
+        long fallidos = mlJobRepository.countByReferenciaIdAndTipoAndEstado(referenciaId, tipo, EstadoMlJob.ERROR);
+
+        if (fallidos >= Math.max(1, maxReencolados)) {
+            mlJobRepository.findFirstByReferenciaIdAndTipoAndEstadoOrderByFechaCreacionDesc(
+                    referenciaId, tipo, EstadoMlJob.ERROR).ifPresent(job -> {
+                job.setEstado(EstadoMlJob.DESCARTADO);
+                job.setErrorMensaje("Descartado tras " + fallidos + " jobs fallidos. Último error: "
+                        + job.getErrorMensaje());
+            });
+            descartados.increment();
+            log.error("Análisis {} de {} descartado tras {} jobs fallidos", tipo, referenciaId, fallidos);
+            return false;
+        }
+
+        Duration espera = backoff(fallidos);
+        mlJobService.reencolar(tipo, referenciaId, espera);
+        reencolados.increment();
+        log.warn("Análisis {} de {} huérfano, reencolado en {}s ({} jobs fallidos)",
+                tipo, referenciaId, espera.toSeconds(), fallidos);
+        return true;
+    }
+
+    private Duration backoff(long fallidos) {
+        // Sin fallos previos (p. ej. la JVM murió antes de crear el job) se reencola de inmediato
+        if (fallidos == 0) {
+            return Duration.ZERO;
+        }
+        long segundos = backoffBaseSegundos << Math.min(fallidos - 1, 20);
+        return Duration.ofSeconds(Math.min(segundos, backoffMaxSegundos));
+    }
+}
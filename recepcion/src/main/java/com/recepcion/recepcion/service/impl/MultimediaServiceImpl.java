@@ -9,9 +9,12 @@ import com.recepcion.recepcion.exception.BadRequestException;
 import com.recepcion.recepcion.exception.ResourceNotFoundException;
 import com.recepcion.recepcion.exception.ServiceException;
 import com.recepcion.recepcion.mapper.MultimediaMapper;
+import com.recepcion.recepcion.repository.ArchivoMultimediaVista;
 import com.recepcion.recepcion.repository.IncidenteRepository;
 import com.recepcion.recepcion.repository.MultimediaRepository;
+import com.recepcion.recepcion.service.AlmacenamientoService;
 import com.recepcion.recepcion.service.AnalisisMlOrchestrationService;
+import com.recepcion.recepcion.service.MiniaturaService;
 import com.recepcion.recepcion.service.MultimediaService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -23,9 +26,6 @@ import org.springframework.web.multipart.MultipartFile;
 
 //import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
@@ -40,23 +40,26 @@ public class MultimediaServiceImpl implements MultimediaService {
     private final MultimediaMapper multimediaMapper;
     private final AnalisisMlOrchestrationService analisisMlOrchestrationService;
     private final ApplicationEventPublisher eventPublisher;
+    private final MiniaturaService miniaturaService;
+    private final AlmacenamientoService almacenamientoService;
 
     public MultimediaServiceImpl(
             MultimediaRepository multimediaRepository,
             IncidenteRepository incidenteRepository,
             MultimediaMapper multimediaMapper,
             @Lazy AnalisisMlOrchestrationService analisisMlOrchestrationService,
-            ApplicationEventPublisher eventPublisher) {
+            ApplicationEventPublisher eventPublisher,
+            MiniaturaService miniaturaService,
+            AlmacenamientoService almacenamientoService) {
         this.multimediaRepository = multimediaRepository;
         this.incidenteRepository = incidenteRepository;
         this.multimediaMapper = multimediaMapper;
         this.analisisMlOrchestrationService = analisisMlOrchestrationService;
         this.eventPublisher = eventPublisher;
+        this.miniaturaService = miniaturaService;
+        this.almacenamientoService = almacenamientoService;
     }
 
-    @Value("${app.multimedia.upload-dir:uploads}")
-    private String uploadDir;
-
     @Value("${app.multimedia.max-file-size:10485760}") // 10MB por defecto
     private Long maxFileSize;
 
@@ -75,13 +78,15 @@ public class MultimediaServiceImpl implements MultimediaService {
         // Validaciones del archivo
         validarArchivo(archivo);
 
-        // Generar nombre único
         String nombreOriginal = archivo.getOriginalFilename();
         String extension = obtenerExtension(nombreOriginal);
-        String nombreUnico = UUID.randomUUID().toString() + "." + extension;
 
-        // Guardar archivo en disco
-        String urlArchivo = guardarArchivo(archivo, nombreUnico);
+        // Recibir el archivo en un temporal local (streaming, con tamaño y SHA-256 en la misma pasada)
+        AlmacenamientoService.ArchivoRecibido recibido = recibirArchivo(archivo);
+
+        // Guardar en el almacenamiento por contenido (si el contenido ya existe se comparte)
+        AlmacenamientoService.ArchivoAlmacenado guardado = almacenamientoService.guardar(recibido, extension);
+        String urlArchivo = guardado.ruta();
 
         // Crear registro en BD
         Multimedia multimedia = Multimedia.builder()
@@ -90,8 +95,9 @@ public class MultimediaServiceImpl implements MultimediaService {
                 .nombreArchivo(nombreOriginal)
                 .tipoArchivo(TipoArchivo.IMAGEN)
                 .formatoArchivo(extension)
-                .tamanoBytes(archivo.getSize())
-                .descripcion(descripcion)
+                .tamanoBytes(guardado.tamanoBytes())
+                .hashContenido(guardado.hashContenido())
+                                .descripcion(descripcion)
                 .esPrincipal(esPrincipal != null ? esPrincipal : false)
                 .requiereAnalisisMl(true)
                 .analisisCompletado(false)
@@ -132,19 +138,16 @@ public class MultimediaServiceImpl implements MultimediaService {
 
     @Override
     @Transactional(readOnly = true)
-    public byte[] descargarArchivo(UUID id) {
-        log.debug("Descargando archivo multimedia ID: {}", id);
+    public Archivo obtenerArchivo(UUID id) {
+        log.debug("Obteniendo archivo multimedia ID: {}", id);
 
-        Multimedia multimedia = multimediaRepository.findById(id)
+        ArchivoMultimediaVista vista = multimediaRepository.findArchivoById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Multimedia", "id", id));
 
-        try {
-            Path filePath = Paths.get(multimedia.getUrlArchivo());
-            return Files.readAllBytes(filePath);
-        } catch (IOException e) {
-            log.error("Error al leer archivo: {}", multimedia.getUrlArchivo(), e);
-            throw new ServiceException("Error al descargar el archivo", e);
-        }
+        // El contenido se lee en streaming al escribir la respuesta: nunca se carga entero en el heap
+        AlmacenamientoService.Descarga descarga = almacenamientoService.descarga(vista.getUrlArchivo(), vista.getTamanoBytes());
+        return new Archivo(descarga.contenido(), descarga.rutaLocal(), descarga.urlFirmada(), vista.getNombreArchivo(),
+                descarga.tamanoBytes(), vista.getHashContenido(), vista.getFechaSubida());
     }
 
     @Override
@@ -154,13 +157,9 @@ public class MultimediaServiceImpl implements MultimediaService {
         Multimedia multimedia = multimediaRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Multimedia", "id", id));
 
-        // Eliminar archivo físico
-        try {
-            Files.deleteIfExists(Paths.get(multimedia.getUrlArchivo()));
-            log.debug("Archivo físico eliminado: {}", multimedia.getUrlArchivo());
-        } catch (IOException e) {
-            log.warn("No se pudo eliminar archivo físico: {}", multimedia.getUrlArchivo(), e);
-        }
+        // Eliminar archivo físico (solo si ningún otro multimedia comparte el contenido)
+        almacenamientoService.liberar(multimedia.getHashContenido(), multimedia.getUrlArchivo());
+        miniaturaService.eliminarArchivos(id);
 
         // Eliminar registro de BD
         multimediaRepository.delete(multimedia);
@@ -211,21 +210,15 @@ public class MultimediaServiceImpl implements MultimediaService {
         log.debug("Archivo validado correctamente: {} - {} bytes", archivo.getOriginalFilename(), archivo.getSize());
     }
 
-    private String guardarArchivo(MultipartFile archivo, String nombreUnico) {
+    private AlmacenamientoService.ArchivoRecibido recibirArchivo(MultipartFile archivo) {
         try {
-            // Crear directorio si no existe
-            Path dirPath = Paths.get(uploadDir);
-            if (!Files.exists(dirPath)) {
-                Files.createDirectories(dirPath);
-                log.info("Directorio de uploads creado: {}", uploadDir);
-            }
-
-            // Guardar archivo
-            Path filePath = dirPath.resolve(nombreUnico);
-            Files.write(filePath, archivo.getBytes());
-
-            log.debug("Archivo guardado en: {}", filePath.toAbsolutePath());
-            return filePath.toString();
+            // Copia por bloques desde el multipart (en memoria o ya volcado a disco por el contenedor):
+            // nunca se carga el archivo entero en el heap
+            AlmacenamientoService.ArchivoRecibido recibido = almacenamientoService.recibir(archivo.getInputStream());
+
+            log.debug("Archivo recibido en: {} ({} bytes, sha256 {})",
+                    recibido.temporal(), recibido.tamanoBytes(), recibido.hashContenido());
+            return recibido;
 
         } catch (IOException e) {
             log.error("Error al guardar archivo", e);
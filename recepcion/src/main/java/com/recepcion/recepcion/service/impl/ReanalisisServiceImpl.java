@@ -0,0 +1,190 @@
+package com.recepcion.recepcion.service.impl;
+
+import com.recepcion.recepcion.dto.request.CrearReanalisisRequest;
+import com.recepcion.recepcion.dto.response.ReanalisisResponse;
+import com.recepcion.recepcion.entity.EstadoReanalisis;
+import com.recepcion.recepcion.entity.ReanalisisJob;
+import com.recepcion.recepcion.entity.TipoMlJob;
+import com.recepcion.recepcion.exception.BadRequestException;
+import com.recepcion.recepcion.exception.ConflictException;
+import com.recepcion.recepcion.exception.ResourceNotFoundException;
+import com.recepcion.recepcion.mapper.ReanalisisMapper;
+import com.recepcion.recepcion.repository.FilaKeyset;
+import com.recepcion.recepcion.repository.IncidenteRepository;
+import com.recepcion.recepcion.repository.MultimediaRepository;
+import com.recepcion.recepcion.repository.ReanalisisJobRepository;
+import com.recepcion.recepcion.service.MlReconciliacionService.Cursor;
+import com.recepcion.recepcion.service.ReanalisisService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class ReanalisisServiceImpl implements ReanalisisService {
+
+    private static final EnumSet<EstadoReanalisis> ACTIVOS = EnumSet.of(EstadoReanalisis.PENDIENTE, EstadoReanalisis.EN_CURSO);
+
+    private final ReanalisisJobRepository reanalisisJobRepository;
+    private final IncidenteRepository incidenteRepository;
+    private final MultimediaRepository multimediaRepository;
+    private final ReanalisisMapper reanalisisMapper;
+
+    @Value("${ml.reanalisis.tasa-por-segundo:2}")
+    private double tasaPorDefecto;
+
+    @Override
+    public ReanalisisResponse crear(CrearReanalisisRequest request) {
+        String version = request.getModeloVersion() == null || request.getModeloVersion().isBlank()
+                ? null
+                : request.getModeloVersion().trim();
+        // Sin fecha final se acota a lo analizado hasta ahora: lo nuevo ya sale con el modelo actual
+        LocalDateTime hasta = request.getFechaHasta() != null ? request.getFechaHasta() : LocalDateTime.now();
+
+        if (request.getFechaDesde() != null && !request.getFechaDesde().isBefore(hasta)) {
+            throw new BadRequestException("La fecha desde debe ser anterior a la fecha hasta");
+        }
+
+        long total = request.getTipo() == TipoMlJob.ANALISIS_TEXTO
+                ? incidenteRepository.countParaReanalisisTexto(version, request.getFechaDesde(), hasta)
+                : multimediaRepository.countParaReanalisisImagen(version, request.getFechaDesde(), hasta);
+
+        ReanalisisJob job = ReanalisisJob.builder()
+                .tipo(request.getTipo())
+                .modeloVersion(version)
+                .fechaDesde(request.getFechaDesde())
+                .fechaHasta(hasta)
+                .tasaPorSegundo(request.getTasaPorSegundo() != null ? request.getTasaPorSegundo() : tasaPorDefecto)
+                .total(total)
+                .build();
+        job = reanalisisJobRepository.save(job);
+
+        log.info("Reanálisis {} creado: {} (versión {}, {} - {}), {} filas a {}/s", job.getId(), job.getTipo(),
+                version, job.getFechaDesde(), hasta, total, job.getTasaPorSegundo());
+        return reanalisisMapper.toResponse(job);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ReanalisisResponse buscarPorId(UUID id) {
+        return reanalisisMapper.toResponse(obtener(id));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ReanalisisResponse> listarTodos() {
+        return reanalisisMapper.toResponseList(reanalisisJobRepository.findAllByOrderByFechaCreacionDesc());
+    }
+
+    @Override
+    public ReanalisisResponse pausar(UUID id) {
+        ReanalisisJob job = obtener(id);
+        if (!ACTIVOS.contains(job.getEstado())) {
+            throw new ConflictException("Solo se puede pausar un reanálisis pendiente o en curso (estado actual: "
+                    + job.getEstado() + ")");
+        }
+        job.setEstado(EstadoReanalisis.PAUSADO);
+        log.info("Reanálisis {} pausado en {}/{}", id, job.getProcesados(), job.getTotal());
+        return reanalisisMapper.toResponse(job);
+    }
+
+    @Override
+    public ReanalisisResponse reanudar(UUID id) {
+        ReanalisisJob job = obtener(id);
+        if (job.getEstado() != EstadoReanalisis.PAUSADO) {
+            throw new ConflictException("Solo se puede reanudar un reanálisis pausado (estado actual: "
+                    + job.getEstado() + ")");
+        }
+        job.setEstado(job.getFechaInicio() != null ? EstadoReanalisis.EN_CURSO : EstadoReanalisis.PENDIENTE);
+        log.info("Reanálisis {} reanudado", id);
+        return reanalisisMapper.toResponse(job);
+    }
+
+    @Override
+    public ReanalisisResponse cancelar(UUID id) {
+        ReanalisisJob job = obtener(id);
+        if (job.getEstado() == EstadoReanalisis.COMPLETADO || job.getEstado() == EstadoReanalisis.CANCELADO) {
+            throw new ConflictException("El reanálisis ya terminó (estado actual: " + job.getEstado() + ")");
+        }
+        job.setEstado(EstadoReanalisis.CANCELADO);
+        job.setFechaFinalizacion(LocalDateTime.now());
+        log.info("Reanálisis {} cancelado en {}/{}", id, job.getProcesados(), job.getTotal());
+        return reanalisisMapper.toResponse(job);
+    }
+
+    @Override
+    public Optional<ReanalisisJob> reclamarSiguiente(String nodo, Duration reserva) {
+        LocalDateTime ahora = LocalDateTime.now();
+        for (ReanalisisJob candidato : reanalisisJobRepository.findByEstadoInOrderByFechaCreacionAsc(ACTIVOS)) {
+            if (reanalisisJobRepository.reservar(candidato.getId(), nodo, ahora.plus(reserva), ahora) == 0) {
+                continue;
+            }
+            ReanalisisJob job = obtener(candidato.getId());
+            if (job.getEstado() == EstadoReanalisis.PENDIENTE) {
+                job.setEstado(EstadoReanalisis.EN_CURSO);
+                job.setFechaInicio(ahora);
+            }
+            return Optional.of(job);
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<FilaKeyset> siguienteLote(ReanalisisJob job, int cantidad) {
+        LocalDateTime desdeFecha = job.getCursorFecha() != null ? job.getCursorFecha() : Cursor.INICIO.fecha();
+        UUID desdeId = job.getCursorId() != null ? job.getCursorId() : Cursor.INICIO.id();
+
+        return job.getTipo() == TipoMlJob.ANALISIS_TEXTO
+                ? incidenteRepository.findParaReanalisisTexto(job.getModeloVersion(), job.getFechaDesde(),
+                        job.getFechaHasta(), desdeFecha, desdeId, cantidad)
+                : multimediaRepository.findParaReanalisisImagen(job.getModeloVersion(), job.getFechaDesde(),
+                        job.getFechaHasta(), desdeFecha, desdeId, cantidad);
+    }
+
+    @Override
+    public void registrarAvance(UUID id, String nodo, FilaKeyset ultima, int procesados, int fallidos,
+                                long milisegundos, boolean terminado) {
+        ReanalisisJob job = obtener(id);
+        if (!nodo.equals(job.getNodoReclamo())) {
+            // La reserva venció y otro nodo retomó desde el checkpoint anterior: su avance es el que vale
+            log.warn("Reanálisis {} ya no está reservado por {}, se descarta el avance del lote", id, nodo);
+            return;
+        }
+
+        LocalDateTime ahora = LocalDateTime.now();
+        if (ultima != null) {
+            job.setCursorFecha(ultima.getFecha());
+            job.setCursorId(ultima.getId());
+            job.setFechaUltimoCheckpoint(ahora);
+        }
+        job.setProcesados(job.getProcesados() + procesados);
+        job.setFallidos(job.getFallidos() + fallidos);
+        job.setMilisegundosProcesando(job.getMilisegundosProcesando() + milisegundos);
+        job.setNodoReclamo(null);
+        job.setReclamoHasta(null);
+
+        // Una pausa o cancelación durante el lote se respeta: solo se guarda el checkpoint
+        if (terminado && job.getEstado() == EstadoReanalisis.EN_CURSO) {
+            job.setEstado(EstadoReanalisis.COMPLETADO);
+            job.setFechaFinalizacion(ahora);
+            log.info("Reanálisis {} completado: {} procesados, {} fallidos", id, job.getProcesados(), job.getFallidos());
+        }
+    }
+
+    private ReanalisisJob obtener(UUID id) {
+        return reanalisisJobRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Reanálisis", "id", id));
+    }
+}
@@ -8,6 +8,7 @@ import com.recepcion.recepcion.exception.ConflictException;
 import com.recepcion.recepcion.exception.ResourceNotFoundException;
 import com.recepcion.recepcion.mapper.SolicitanteMapper;
 import com.recepcion.recepcion.repository.SolicitanteRepository;
+import com.recepcion.recepcion.service.SolicitanteCache;
 import com.recepcion.recepcion.service.SolicitanteService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -17,6 +18,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Service
@@ -27,6 +29,7 @@ public class SolicitanteServiceImpl implements SolicitanteService {
 
     private final SolicitanteRepository solicitanteRepository;
     private final SolicitanteMapper solicitanteMapper;
+    private final SolicitanteCache solicitanteCache;
 
     @Override
     public SolicitanteResponse crear(SolicitanteRequest request) {
@@ -39,6 +42,7 @@ public class SolicitanteServiceImpl implements SolicitanteService {
 
         Solicitante solicitante = solicitanteMapper.toEntity(request);
         Solicitante guardado = solicitanteRepository.save(solicitante);
+        solicitanteCache.guardar(guardado);
 
         log.info("Solicitante creado exitosamente con ID: {}", guardado.getId());
         return solicitanteMapper.toResponse(guardado);
@@ -60,8 +64,14 @@ public class SolicitanteServiceImpl implements SolicitanteService {
     public SolicitanteResponse buscarPorTelefono(String telefono) {
         log.debug("Buscando solicitante por teléfono: {}", telefono);
 
+        Optional<SolicitanteCache.Entrada> enCache = solicitanteCache.buscar(telefono);
+        if (enCache.isPresent()) {
+            return enCache.get().toResponse();
+        }
+
         Solicitante solicitante = solicitanteRepository.findByTelefono(telefono)
                 .orElseThrow(() -> new ResourceNotFoundException("Solicitante", "teléfono", telefono));
+        solicitanteCache.guardar(solicitante);
 
         return solicitanteMapper.toResponse(solicitante);
     }
@@ -97,8 +107,12 @@ public class SolicitanteServiceImpl implements SolicitanteService {
             throw new ConflictException("Ya existe un solicitante con el teléfono: " + request.getTelefono());
         }
 
+        // El teléfono anterior deja de apuntar a este solicitante (o a sus datos viejos) en todas las instancias
+        solicitanteCache.invalidar(solicitante.getTelefono());
+
         solicitanteMapper.updateEntityFromRequest(request, solicitante);
         Solicitante actualizado = solicitanteRepository.save(solicitante);
+        solicitanteCache.guardar(actualizado);
 
         log.info("Solicitante actualizado exitosamente: {}", id);
         return solicitanteMapper.toResponse(actualizado);
@@ -108,11 +122,11 @@ public class SolicitanteServiceImpl implements SolicitanteService {
     public void eliminar(UUID id) {
         log.info("Eliminando solicitante ID: {}", id);
 
-        if (!solicitanteRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Solicitante", "id", id);
-        }
+        Solicitante solicitante = solicitanteRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Solicitante", "id", id));
 
-        solicitanteRepository.deleteById(id);
+        solicitanteRepository.delete(solicitante);
+        solicitanteCache.invalidar(solicitante.getTelefono());
         log.info("Solicitante eliminado exitosamente: {}", id);
     }
 
@@ -3,9 +3,12 @@ package com.recepcion.recepcion.service.impl;
 import com.recepcion.recepcion.dto.request.UbicacionRequest;
 import com.recepcion.recepcion.dto.response.UbicacionResponse;
 import com.recepcion.recepcion.entity.Ubicacion;
+import com.recepcion.recepcion.exception.ConflictException;
 import com.recepcion.recepcion.exception.ResourceNotFoundException;
 import com.recepcion.recepcion.mapper.UbicacionMapper;
+import com.recepcion.recepcion.repository.IncidenteRepository;
 import com.recepcion.recepcion.repository.UbicacionRepository;
+import com.recepcion.recepcion.service.UbicacionResolver;
 import com.recepcion.recepcion.service.UbicacionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -24,7 +27,9 @@ import java.util.UUID;
 public class UbicacionServiceImpl implements UbicacionService {
 
     private final UbicacionRepository ubicacionRepository;
+    private final IncidenteRepository incidenteRepository;
     private final UbicacionMapper ubicacionMapper;
+    private final UbicacionResolver ubicacionResolver;
 
     @Override
     public UbicacionResponse crear(UbicacionRequest request) {
@@ -73,6 +78,8 @@ public class UbicacionServiceImpl implements UbicacionService {
         Ubicacion ubicacion = ubicacionRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Ubicacion", "id", id));
 
+        validarNoCompartida(id, "modificar");
+        ubicacionResolver.olvidar(ubicacion);
         ubicacionMapper.updateEntityFromRequest(request, ubicacion);
         Ubicacion actualizada = ubicacionRepository.save(ubicacion);
 
@@ -84,11 +91,24 @@ public class UbicacionServiceImpl implements UbicacionService {
     public void eliminar(UUID id) {
         log.info("Eliminando ubicación ID: {}", id);
 
-        if (!ubicacionRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Ubicacion", "id", id);
-        }
+        Ubicacion ubicacion = ubicacionRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Ubicacion", "id", id));
 
-        ubicacionRepository.deleteById(id);
+        validarNoCompartida(id, "eliminar");
+        ubicacionResolver.olvidar(ubicacion);
+        ubicacionRepository.delete(ubicacion);
         log.info("Ubicación eliminada exitosamente: {}", id);
     }
+
+    /**
+     * Una ubicación reutilizada por varios incidentes (ver UbicacionResolver) es de solo lectura:
+     * modificarla movería todos esos incidentes y borrarla los borraría en cascada
+     */
+    private void validarNoCompartida(UUID id, String operacion) {
+        long incidentes = incidenteRepository.countByUbicacionId(id);
+        if (incidentes > 1) {
+            throw new ConflictException("No se puede " + operacion + " la ubicación " + id
+                    + ": la comparten " + incidentes + " incidentes");
+        }
+    }
 }
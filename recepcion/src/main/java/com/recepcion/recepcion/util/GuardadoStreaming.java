@@ -0,0 +1,84 @@
+package com.recepcion.recepcion.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Copia un stream a disco calculando en la misma pasada su tamaño y SHA-256.
+ * Usa un buffer fijo, así el heap no crece con el tamaño del archivo (a diferencia de
+ * {@code Files.write(ruta, archivo.getBytes())}, que carga el archivo entero en memoria).
+ */
+public final class GuardadoStreaming {
+
+    private static final int TAMANO_BUFFER = 64 * 1024;
+
+    private GuardadoStreaming() {
+    }
+
+    /**
+     * Resultado del guardado: bytes escritos y SHA-256 en hexadecimal
+     */
+    public record ArchivoGuardado(long tamanoBytes, String sha256) {
+    }
+
+    /**
+     * Escribe {@code origen} en {@code destino} y cierra el stream.
+     * Se escribe primero a un archivo temporal junto al destino y se mueve al terminar:
+     * si la copia falla a medias no queda un archivo truncado con el nombre final.
+     */
+    public static ArchivoGuardado guardar(InputStream origen, Path destino) throws IOException {
+        MessageDigest sha256 = nuevoSha256();
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".parte");
+        long tamano = 0;
+
+        try (InputStream entrada = origen; OutputStream salida = Files.newOutputStream(temporal)) {
+            byte[] buffer = new byte[TAMANO_BUFFER];
+            int leidos;
+            while ((leidos = entrada.read(buffer)) != -1) {
+                sha256.update(buffer, 0, leidos);
+                salida.write(buffer, 0, leidos);
+                tamano += leidos;
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporal);
+            throw e;
+        }
+
+        Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE);
+        return new ArchivoGuardado(tamano, HexFormat.of().formatHex(sha256.digest()));
+    }
+
+    /**
+     * Tamaño y SHA-256 de un archivo ya guardado, leyéndolo por bloques
+     */
+    public static ArchivoGuardado medir(Path archivo) throws IOException {
+        MessageDigest sha256 = nuevoSha256();
+        long tamano = 0;
+
+        try (InputStream entrada = Files.newInputStream(archivo)) {
+            byte[] buffer = new byte[TAMANO_BUFFER];
+            int leidos;
+            while ((leidos = entrada.read(buffer)) != -1) {
+                sha256.update(buffer, 0, leidos);
+                tamano += leidos;
+            }
+        }
+        return new ArchivoGuardado(tamano, HexFormat.of().formatHex(sha256.digest()));
+    }
+
+    private static MessageDigest nuevoSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Todo JRE está obligado a incluir SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
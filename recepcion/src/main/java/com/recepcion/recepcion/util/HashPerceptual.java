@@ -0,0 +1,50 @@
+package com.recepcion.recepcion.util;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Hash perceptual (dHash de 64 bits) de imágenes.
+ * La imagen se reduce a 9x8 en escala de grises y cada bit indica si un píxel es más
+ * claro que su vecino derecho. Recompresiones, cambios de tamaño o de formato de la misma
+ * foto dan hashes a pocos bits de distancia.
+ * Se calcula sobre la imagen que ya decodifica la generación de miniaturas, o con una decodificación
+ * submuestreada al reclamar el análisis ML si las miniaturas todavía no se generaron.
+ */
+public final class HashPerceptual {
+
+    private static final int ANCHO = 9;
+    private static final int ALTO = 8;
+
+    private HashPerceptual() {
+    }
+
+    public static long calcular(BufferedImage imagen) {
+        BufferedImage reducida = new BufferedImage(ANCHO, ALTO, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = reducida.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(imagen, 0, 0, ANCHO, ALTO, null);
+        } finally {
+            g.dispose();
+        }
+
+        long hash = 0;
+        for (int y = 0; y < ALTO; y++) {
+            for (int x = 0; x < ANCHO - 1; x++) {
+                int izquierda = reducida.getRaster().getSample(x, y, 0);
+                int derecha = reducida.getRaster().getSample(x + 1, y, 0);
+                hash = (hash << 1) | (izquierda > derecha ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Distancia de Hamming entre dos hashes (bits distintos, 0 a 64)
+     */
+    public static int distancia(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
@@ -0,0 +1,79 @@
+package com.recepcion.recepcion.util;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Reducción de imágenes a miniaturas JPEG.
+ * La reducción se hace a la mitad en cada paso (y la última al tamaño exacto): con un solo salto
+ * grande el filtro bilineal saltea píxeles y la miniatura sale con aliasing.
+ */
+public final class Miniaturas {
+
+    private Miniaturas() {
+    }
+
+    /**
+     * Reduce la imagen para que su lado mayor no supere {@code ladoMaximo}; nunca la agranda.
+     * El resultado es RGB sin transparencia (fondo blanco), listo para JPEG.
+     */
+    public static BufferedImage reducir(BufferedImage origen, int ladoMaximo) {
+        double escala = Math.min(1.0, (double) ladoMaximo / Math.max(origen.getWidth(), origen.getHeight()));
+        int anchoFinal = Math.max(1, (int) Math.round(origen.getWidth() * escala));
+        int altoFinal = Math.max(1, (int) Math.round(origen.getHeight() * escala));
+
+        BufferedImage actual = origen;
+        do {
+            int ancho = Math.max(anchoFinal, actual.getWidth() / 2);
+            int alto = Math.max(altoFinal, actual.getHeight() / 2);
+            actual = dibujar(actual, ancho, alto);
+        } while (actual.getWidth() > anchoFinal || actual.getHeight() > altoFinal);
+        return actual;
+    }
+
+    /**
+     * Escribe la imagen como JPEG con la calidad indicada (0 a 1).
+     * Se escribe a un temporal y se mueve al terminar, así quien lee nunca ve una miniatura a medias.
+     */
+    public static void escribirJpeg(BufferedImage imagen, float calidad, Path destino) throws IOException {
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".parte");
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream salida = ImageIO.createImageOutputStream(Files.newOutputStream(temporal))) {
+            ImageWriteParam parametros = writer.getDefaultWriteParam();
+            parametros.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            parametros.setCompressionQuality(calidad);
+            writer.setOutput(salida);
+            writer.write(null, new IIOImage(imagen, null, null), parametros);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporal);
+            throw e;
+        } finally {
+            writer.dispose();
+        }
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static BufferedImage dibujar(BufferedImage origen, int ancho, int alto) {
+        BufferedImage destino = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = destino.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, ancho, alto);
+            g.drawImage(origen, 0, 0, ancho, alto, null);
+        } finally {
+            g.dispose();
+        }
+        return destino;
+    }
+}
@@ -0,0 +1,90 @@
+package com.recepcion.recepcion.util;
+
+import java.text.Normalizer;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Pre-evaluación de urgencia por palabras clave, sin ML.
+ * Da una prioridad inicial (1 = más urgente, 5 = menos urgente) en el momento de recibir el
+ * reporte, para ordenar la cola de análisis antes de que el modelo de texto responda.
+ */
+public final class PreEvaluacionUrgencia {
+
+    public static final int PRIORIDAD_POR_DEFECTO = 3;
+
+    // Riesgo vital inmediato
+    private static final List<String> CRITICAS = List.of(
+            "paro cardiaco", "paro respiratorio", "no respira", "inconsciente", "infarto",
+            "convulsion", "hemorragia", "se desangra", "disparo", "balazo", "apunalad",
+            "ahogando", "ahogado", "atrapad", "incendio", "explosion", "sobredosis"
+    );
+
+    // Urgencia alta: lesiones descritas
+    private static final List<String> LESIONES = List.of(
+            "herido", "sangre", "sangra", "fractura", "quemadura", "desmay", "embarazada",
+            "dolor de pecho", "golpe en la cabeza"
+    );
+
+    // Urgencia alta: eventos que suelen tener lesionados, salvo que el reporte diga que no los hay
+    private static final List<String> EVENTOS = List.of(
+            "atropell", "choque", "volcad", "caida"
+    );
+
+    // Frases que niegan lesiones: se quitan del texto antes de buscar, si no "sin heridos" contaría como "herido"
+    private static final List<String> NEGACIONES = List.of(
+            "sin heridos", "sin herido", "no hay heridos", "no hubo heridos", "ningun herido",
+            "sin lesionados", "no hay lesionados"
+    );
+
+    // Sin riesgo aparente
+    private static final List<String> LEVES = List.of(
+            "leve", "rayon", "solo danos materiales"
+    );
+
+    private PreEvaluacionUrgencia() {
+    }
+
+    /**
+     * Orden de las reglas: críticas, lesiones, indicios de algo leve (incluida una negación de lesiones),
+     * eventos. Así "choque leve, no hay heridos" queda en 4 y "choque con heridos" en 2.
+     */
+    public static int calcular(String descripcion) {
+        if (descripcion == null || descripcion.isBlank()) {
+            return PRIORIDAD_POR_DEFECTO;
+        }
+
+        String texto = normalizar(descripcion);
+        boolean negaLesiones = false;
+        for (String negacion : NEGACIONES) {
+            if (texto.contains(negacion)) {
+                texto = texto.replace(negacion, " ");
+                negaLesiones = true;
+            }
+        }
+
+        if (contieneAlguna(texto, CRITICAS)) {
+            return 1;
+        }
+        if (contieneAlguna(texto, LESIONES)) {
+            return 2;
+        }
+        if (negaLesiones || contieneAlguna(texto, LEVES)) {
+            return 4;
+        }
+        if (contieneAlguna(texto, EVENTOS)) {
+            return 2;
+        }
+        return PRIORIDAD_POR_DEFECTO;
+    }
+
+    private static boolean contieneAlguna(String texto, List<String> palabras) {
+        return palabras.stream().anyMatch(texto::contains);
+    }
+
+    private static String normalizar(String texto) {
+        String sinTildes = Normalizer.normalize(texto.toLowerCase(Locale.ROOT), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "");
+        return sinTildes.replaceAll("\\s+", " ");
+    }
+}
@@ -0,0 +1,30 @@
+package com.recepcion.recepcion.worker;
+
+import com.recepcion.recepcion.service.AlmacenamientoService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tarea periódica que borra los blobs que quedaron sin referencias y no se borraron tras el COMMIT
+ * (p. ej. porque la JVM cayó justo después). Cada blob se borra en su propia transacción con la fila
+ * bloqueada, así puede correr en varias instancias a la vez.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class BlobRecolector {
+
+    private final AlmacenamientoService almacenamientoService;
+
+    @Scheduled(fixedDelayString = "${app.multimedia.almacenamiento.recoleccion-intervalo-ms:3600000}",
+               initialDelayString = "${app.multimedia.almacenamiento.recoleccion-intervalo-ms:3600000}")
+    public void recolectar() {
+        try {
+            almacenamientoService.recolectarHuerfanos();
+        } catch (Exception e) {
+            log.error("Error al recolectar blobs sin referencias: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.recepcion.recepcion.worker;
+
+import com.recepcion.recepcion.service.IdempotenciaService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tarea periódica que borra las claves de idempotencia vencidas. Borra por lotes, cada uno en su
+ * propia transacción, así no bloquea la tabla aunque se hayan acumulado muchas.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class IdempotenciaRecolector {
+
+    private final IdempotenciaService idempotenciaService;
+
+    @Scheduled(fixedDelayString = "${app.idempotencia.recoleccion-intervalo-ms:3600000}",
+               initialDelayString = "${app.idempotencia.recoleccion-intervalo-ms:3600000}")
+    public void recolectar() {
+        try {
+            idempotenciaService.eliminarVencidas();
+        } catch (Exception e) {
+            log.error("Error al eliminar claves de idempotencia vencidas: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.recepcion.recepcion.worker;
+
+import com.recepcion.recepcion.service.AlmacenamientoService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Migración única de los archivos subidos antes del almacenamiento por contenido.
+ * Se activa arrancando una instancia con {@code app.multimedia.almacenamiento.migrar=true}
+ * (p. ej. {@code java -jar recepcion.jar --app.multimedia.almacenamiento.migrar=true});
+ * si se interrumpe, volver a arrancarla retoma con los archivos que faltan.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.multimedia.almacenamiento.migrar", havingValue = "true")
+public class MigracionAlmacenamiento implements ApplicationRunner {
+
+    private final AlmacenamientoService almacenamientoService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        log.info("Migrando archivos existentes al almacenamiento por contenido");
+        AlmacenamientoService.ResultadoMigracion resultado = almacenamientoService.migrarArchivosExistentes();
+        if (resultado.faltantes() > 0) {
+            log.warn("{} multimedia apuntan a archivos que no existen y quedaron sin migrar", resultado.faltantes());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.recepcion.recepcion.worker;
+
+import com.recepcion.recepcion.client.MlServicioNoDisponibleException;
+import com.recepcion.recepcion.entity.MlJob;
+import com.recepcion.recepcion.exception.ResourceNotFoundException;
+import com.recepcion.recepcion.service.AnalisisMlOrchestrationService;
+import com.recepcion.recepcion.service.MlJobService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Worker que consume la cola persistente ml_job.
+ * Cada ciclo reclama tantos jobs como threads libres tenga el pool, así nunca se
+ * reclama trabajo que la instancia no puede empezar de inmediato.
+ */
+@Component
+@Slf4j
+public class MlJobWorker {
+
+    private final MlJobService mlJobService;
+    private final AnalisisMlOrchestrationService analisisMlOrchestrationService;
+    private final ThreadPoolTaskExecutor mlJobExecutor;
+    private final String nodo;
+
+    private final AtomicInteger enEjecucion = new AtomicInteger();
+    private final AtomicLong pendientes = new AtomicLong();
+
+    @Value("${ml.jobs.enabled:true}")
+    private boolean habilitado;
+
+    @Value("${ml.jobs.workers:5}")
+    private int workers;
+
+    @Value("${ml.jobs.lote:10}")
+    private int lote;
+
+    public MlJobWorker(
+            MlJobService mlJobService,
+            AnalisisMlOrchestrationService analisisMlOrchestrationService,
+            @Qualifier("mlJobExecutor") ThreadPoolTaskExecutor mlJobExecutor,
+            @Value("${ml.jobs.nodo:}") String nodo,
+            MeterRegistry meterRegistry) {
+        this.mlJobService = mlJobService;
+        this.analisisMlOrchestrationService = analisisMlOrchestrationService;
+        this.mlJobExecutor = mlJobExecutor;
+        this.nodo = nodo.isBlank() ? ManagementFactory.getRuntimeMXBean().getName() : nodo;
+
+        Gauge.builder("ml.jobs.pendientes", pendientes, AtomicLong::get)
+                .description("Jobs ML pendientes en la cola persistente")
+                .register(meterRegistry);
+        Gauge.builder("ml.jobs.en_ejecucion", enEjecucion, AtomicInteger::get)
+                .description("Jobs ML ejecutándose en esta instancia")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${ml.jobs.poll-interval-ms:1000}")
+    public void procesarCola() {
+        if (!habilitado) {
+            return;
+        }
+
+        int libres = workers - enEjecucion.get();
+        if (libres <= 0) {
+            return;
+        }
+
+        List<MlJob> jobs;
+        try {
+            jobs = mlJobService.reclamarLote(nodo, Math.min(libres, lote));
+        } catch (Exception e) {
+            log.error("Error al reclamar jobs ML: {}", e.getMessage(), e);
+            return;
+        }
+
+        for (MlJob job : jobs) {
+            enEjecucion.incrementAndGet();
+            try {
+                mlJobExecutor.execute(() -> ejecutar(job));
+            } catch (TaskRejectedException e) {
+                // El reclamo expirará y otro ciclo (o nodo) lo retomará
+                enEjecucion.decrementAndGet();
+                log.warn("Pool de workers lleno, job {} se liberará al expirar su reclamo", job.getId());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ml.jobs.metricas-interval-ms:5000}")
+    public void actualizarProfundidadCola() {
+        try {
+            pendientes.set(mlJobService.contarPendientes());
+        } catch (Exception e) {
+            log.debug("No se pudo actualizar la profundidad de la cola ML: {}", e.getMessage());
+        }
+    }
+
+    private void ejecutar(MlJob job) {
+        try {
+            log.info("Procesando job ML {} ({}) para {} - intento {}",
+                    job.getId(), job.getTipo(), job.getReferenciaId(), job.getIntentos());
+
+            switch (job.getTipo()) {
+                case ANALISIS_TEXTO -> analisisMlOrchestrationService.analizarTextoAutomaticamente(job.getReferenciaId());
+                case ANALISIS_IMAGEN -> analisisMlOrchestrationService.analizarImagenAutomaticamente(job.getReferenciaId());
+            }
+
+            mlJobService.marcarCompletado(job.getId());
+        } catch (MlServicioNoDisponibleException e) {
+            // El servicio ML está caído: no se gasta un intento, se reintenta cuando se recupere
+            mlJobService.aplazar(job.getId(), e.getMessage());
+        } catch (Exception e) {
+            boolean definitivo = e instanceof ResourceNotFoundException
+                    || e.getCause() instanceof ResourceNotFoundException;
+            mlJobService.marcarFallido(job.getId(), e.getMessage(), definitivo);
+        } finally {
+            enEjecucion.decrementAndGet();
+        }
+    }
+}
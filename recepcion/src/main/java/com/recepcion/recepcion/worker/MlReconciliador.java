@@ -0,0 +1,49 @@
+package com.recepcion.recepcion.worker;
+
+import com.recepcion.recepcion.entity.TipoMlJob;
+import com.recepcion.recepcion.service.MlReconciliacionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tarea periódica que busca análisis ML huérfanos (incidentes EN_ANALISIS_* o imágenes sin analizar
+ * que ya no tienen job) y los devuelve a la cola. Cada página es una transacción corta; puede correr
+ * en varias instancias porque solo una toma el advisory lock a la vez.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MlReconciliador {
+
+    private final MlReconciliacionService mlReconciliacionService;
+
+    @Value("${ml.reconciliacion.enabled:true}")
+    private boolean habilitado;
+
+    // Tope de páginas por ciclo: lo que quede se revisa en el siguiente
+    @Value("${ml.reconciliacion.max-paginas:10}")
+    private int maxPaginas;
+
+    @Scheduled(fixedDelayString = "${ml.reconciliacion.intervalo-ms:60000}",
+               initialDelayString = "${ml.reconciliacion.intervalo-ms:60000}")
+    public void reconciliar() {
+        if (!habilitado) {
+            return;
+        }
+
+        for (TipoMlJob tipo : TipoMlJob.values()) {
+            MlReconciliacionService.Cursor cursor = MlReconciliacionService.Cursor.INICIO;
+            for (int pagina = 0; pagina < maxPaginas && cursor != null; pagina++) {
+                try {
+                    cursor = mlReconciliacionService.reconciliarPagina(tipo, cursor).orElse(null);
+                } catch (Exception e) {
+                    log.error("Error al reconciliar análisis {}: {}", tipo, e.getMessage(), e);
+                    cursor = null;
+                }
+            }
+        }
+    }
+}
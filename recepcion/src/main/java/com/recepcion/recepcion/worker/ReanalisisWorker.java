@@ -0,0 +1,182 @@
+package com.recepcion.recepcion.worker;
+
+import com.recepcion.recepcion.client.MlServicioNoDisponibleException;
+import com.recepcion.recepcion.entity.ReanalisisJob;
+import com.recepcion.recepcion.repository.FilaKeyset;
+import com.recepcion.recepcion.service.AnalisisMlOrchestrationService;
+import com.recepcion.recepcion.service.MlJobService;
+import com.recepcion.recepcion.service.ReanalisisService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Worker del reanálisis masivo. Procesa un lote a la vez a la tasa configurada en el reanálisis
+ * y guarda el checkpoint al terminarlo, así un reinicio solo repite el lote que quedó a medias.
+ * Cede ante el tráfico en vivo: no empieza (y corta el lote) mientras la cola ml_job tenga trabajo.
+ */
+@Component
+@Slf4j
+public class ReanalisisWorker {
+
+    private final ReanalisisService reanalisisService;
+    private final AnalisisMlOrchestrationService analisisMlOrchestrationService;
+    private final MlJobService mlJobService;
+    private final ThreadPoolTaskExecutor reanalisisExecutor;
+    private final String nodo;
+
+    private final AtomicBoolean enEjecucion = new AtomicBoolean();
+
+    @Value("${ml.reanalisis.enabled:true}")
+    private boolean habilitado;
+
+    @Value("${ml.reanalisis.lote:50}")
+    private int lote;
+
+    // Tiempo que un nodo se reserva el reanálisis; si muere, otro lo retoma al vencer
+    @Value("${ml.reanalisis.reserva-segundos:300}")
+    private long reservaSegundos;
+
+    // Jobs en vivo pendientes tolerados antes de ceder
+    @Value("${ml.reanalisis.max-pendientes-en-vivo:0}")
+    private long maxPendientesEnVivo;
+
+    public ReanalisisWorker(
+            ReanalisisService reanalisisService,
+            AnalisisMlOrchestrationService analisisMlOrchestrationService,
+            MlJobService mlJobService,
+            @Qualifier("reanalisisExecutor") ThreadPoolTaskExecutor reanalisisExecutor,
+            @Value("${ml.jobs.nodo:}") String nodo) {
+        this.reanalisisService = reanalisisService;
+        this.analisisMlOrchestrationService = analisisMlOrchestrationService;
+        this.mlJobService = mlJobService;
+        this.reanalisisExecutor = reanalisisExecutor;
+        this.nodo = nodo.isBlank() ? ManagementFactory.getRuntimeMXBean().getName() : nodo;
+    }
+
+    @Scheduled(fixedDelayString = "${ml.reanalisis.intervalo-ms:5000}",
+               initialDelayString = "${ml.reanalisis.intervalo-ms:5000}")
+    public void procesar() {
+        if (!habilitado || enEjecucion.get()) {
+            return;
+        }
+
+        ReanalisisJob job;
+        try {
+            if (hayTraficoEnVivo()) {
+                return;
+            }
+            job = reanalisisService.reclamarSiguiente(nodo, Duration.ofSeconds(reservaSegundos)).orElse(null);
+        } catch (Exception e) {
+            log.error("Error al reclamar reanálisis: {}", e.getMessage(), e);
+            return;
+        }
+        if (job == null) {
+            return;
+        }
+
+        enEjecucion.set(true);
+        try {
+            reanalisisExecutor.execute(() -> {
+                try {
+                    procesarLote(job);
+                } finally {
+                    enEjecucion.set(false);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            // La reserva vencerá y se retomará desde el checkpoint
+            enEjecucion.set(false);
+            log.warn("No se pudo lanzar el lote del reanálisis {}: {}", job.getId(), e.getMessage());
+        }
+    }
+
+    void procesarLote(ReanalisisJob job) {
+        int cantidad = tamanoLote(job.getTasaPorSegundo());
+        long intervaloNanos = (long) (TimeUnit.SECONDS.toNanos(1) / job.getTasaPorSegundo());
+
+        List<FilaKeyset> filas;
+        try {
+            filas = reanalisisService.siguienteLote(job, cantidad);
+        } catch (Exception e) {
+            log.error("Error al leer el lote del reanálisis {}: {}", job.getId(), e.getMessage(), e);
+            reanalisisService.registrarAvance(job.getId(), nodo, null, 0, 0, 0, false);
+            return;
+        }
+
+        long inicio = System.nanoTime();
+        FilaKeyset ultima = null;
+        int procesados = 0;
+        int fallidos = 0;
+        boolean interrumpido = false;
+
+        for (FilaKeyset fila : filas) {
+            // Espaciado fijo entre reanálisis para respetar la tasa
+            long espera = inicio + procesados * intervaloNanos - System.nanoTime();
+            if (espera > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(espera);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    interrumpido = true;
+                    break;
+                }
+            }
+            if (hayTraficoEnVivo()) {
+                log.debug("Reanálisis {} cede ante la cola en vivo", job.getId());
+                interrumpido = true;
+                break;
+            }
+
+            try {
+                switch (job.getTipo()) {
+                    case ANALISIS_TEXTO -> analisisMlOrchestrationService.reanalizarTexto(fila.getId());
+                    case ANALISIS_IMAGEN -> analisisMlOrchestrationService.reanalizarImagen(fila.getId());
+                }
+            } catch (MlServicioNoDisponibleException e) {
+                // Sin avanzar el checkpoint: la fila se reintenta en el próximo lote
+                log.warn("Reanálisis {} detenido, servicio ML no disponible: {}", job.getId(), e.getMessage());
+                interrumpido = true;
+                break;
+            } catch (Exception e) {
+                // Un fallo puntual no frena el reanálisis: el análisis anterior queda como estaba
+                fallidos++;
+                log.warn("Reanálisis {} no pudo reanalizar {}: {}", job.getId(), fila.getId(), e.getMessage());
+            }
+            procesados++;
+            ultima = fila;
+        }
+
+        long milisegundos = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        boolean terminado = !interrumpido && filas.size() < cantidad;
+        reanalisisService.registrarAvance(job.getId(), nodo, ultima, procesados, fallidos, milisegundos, terminado);
+        log.info("Reanálisis {}: lote de {} procesado ({} fallidos) en {} ms", job.getId(), procesados,
+                fallidos, milisegundos);
+    }
+
+    /**
+     * El lote tiene que entrar holgado en la reserva, si no otro nodo lo retomaría mientras sigue en curso
+     */
+    int tamanoLote(double tasaPorSegundo) {
+        int queEntraEnLaReserva = (int) (tasaPorSegundo * reservaSegundos / 2);
+        return Math.max(1, Math.min(lote, queEntraEnLaReserva));
+    }
+
+    /**
+     * Solo cuentan los jobs que se pueden reclamar ya: uno aplazado por backoff (hasta una hora) no es
+     * tráfico en vivo y no debe pausar el reanálisis mientras espera
+     */
+    private boolean hayTraficoEnVivo() {
+        return mlJobService.contarDisponibles() > maxPendientesEnVivo;
+    }
+}
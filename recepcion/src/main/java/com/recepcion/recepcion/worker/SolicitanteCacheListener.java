@@ -0,0 +1,101 @@
+package com.recepcion.recepcion.worker;
+
+import com.recepcion.recepcion.service.SolicitanteCache;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Escucha con LISTEN las invalidaciones de {@link SolicitanteCache} publicadas por las demás instancias.
+ * Ocupa una conexión del pool de forma permanente; si se corta se reconecta y vacía la cache,
+ * porque las notificaciones enviadas mientras tanto se perdieron.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "app.solicitantes.cache.enabled", havingValue = "true", matchIfMissing = true)
+public class SolicitanteCacheListener {
+
+    private final DataSource dataSource;
+    private final SolicitanteCache solicitanteCache;
+    private final ExecutorService hilo = Executors.newSingleThreadExecutor(
+            new CustomizableThreadFactory("solicitante-cache-listen-"));
+
+    // Espera máxima de cada getNotifications; también es el intervalo para detectar la conexión caída
+    @Value("${app.solicitantes.cache.listen-espera-ms:10000}")
+    private int esperaMs;
+
+    @Value("${app.solicitantes.cache.reconexion-ms:5000}")
+    private long reconexionMs;
+
+    private volatile boolean activo = true;
+
+    public SolicitanteCacheListener(DataSource dataSource, SolicitanteCache solicitanteCache) {
+        this.dataSource = dataSource;
+        this.solicitanteCache = solicitanteCache;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        hilo.submit(this::escuchar);
+    }
+
+    private void escuchar() {
+        boolean primeraConexion = true;
+        while (activo) {
+            try (Connection conexion = dataSource.getConnection()) {
+                PGConnection pg = conexion.unwrap(PGConnection.class);
+                try (Statement statement = conexion.createStatement()) {
+                    statement.execute("LISTEN " + SolicitanteCache.CANAL);
+                }
+                if (!primeraConexion) {
+                    solicitanteCache.invalidarTodo();
+                }
+                primeraConexion = false;
+                log.info("Escuchando invalidaciones de la cache de solicitantes en el canal {}", SolicitanteCache.CANAL);
+
+                while (activo) {
+                    PGNotification[] notificaciones = pg.getNotifications(esperaMs);
+                    if (notificaciones != null) {
+                        for (PGNotification notificacion : notificaciones) {
+                            solicitanteCache.aplicarNotificacion(notificacion.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!activo) {
+                    return;
+                }
+                log.warn("Se perdió el LISTEN de la cache de solicitantes, reintento en {} ms: {}",
+                        reconexionMs, e.getMessage());
+                // Sin LISTEN no se puede saber qué cambió en otras instancias
+                solicitanteCache.invalidarTodo();
+                try {
+                    Thread.sleep(reconexionMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        activo = false;
+        hilo.shutdownNow();
+    }
+}
@@ -86,6 +86,9 @@
   CREATE INDEX idx_incidente_veracidad ON incidente(score_veracidad) WHERE score_veracidad IS NOT NULL;
   CREATE INDEX idx_incidente_fecha ON incidente(fecha_reporte);
   CREATE INDEX idx_incidente_solicitante ON incidente(solicitante_id);
+  -- Keyset del reconciliador de análisis huérfanos
+  CREATE INDEX idx_incidente_en_analisis_texto ON incidente(fecha_ultima_actualizacion, id)
+      WHERE estado_incidente = 'EN_ANALISIS_TEXTO';
 
   -- 4. MULTIMEDIA
   CREATE TABLE multimedia (
@@ -100,6 +103,10 @@
           CHECK (tipo_archivo IN ('imagen', 'audio', 'video')),
       formato_archivo VARCHAR(10),
       tamano_bytes BIGINT,
+      -- dHash de 64 bits para reutilizar el análisis ML de imágenes casi idénticas
+      hash_perceptual BIGINT,
+      -- SHA-256 del contenido, calculado al guardar
+      hash_contenido VARCHAR(64),
 
       -- Metadatos
       descripcion TEXT,
@@ -117,6 +124,8 @@
   CREATE INDEX idx_multimedia_principal ON multimedia(es_principal) WHERE es_principal = TRUE;
   CREATE INDEX idx_multimedia_pendiente ON multimedia(analisis_completado)
       WHERE requiere_analisis_ml = TRUE AND analisis_completado = FALSE;
+  CREATE INDEX idx_multimedia_pendiente_fecha ON multimedia(fecha_subida, id)
+      WHERE requiere_analisis_ml = TRUE AND analisis_completado = FALSE;
 
   -- 5. ANALISIS_ML_TEXTO
   CREATE TABLE analisis_ml_texto (
@@ -221,6 +230,84 @@
   CREATE INDEX idx_historial_incidente ON incidente_historial_estados(incidente_id);
   CREATE INDEX idx_historial_fecha ON incidente_historial_estados(fecha_cambio);
 
+  -- 8. COLA DE TRABAJOS ML
+  CREATE TABLE ml_job (
+      id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+      tipo VARCHAR(30) NOT NULL CHECK (tipo IN ('ANALISIS_TEXTO', 'ANALISIS_IMAGEN')),
+      referencia_id UUID NOT NULL,
+      estado VARCHAR(20) NOT NULL DEFAULT 'PENDIENTE'
+          CHECK (estado IN ('PENDIENTE', 'PROCESANDO', 'COMPLETADO', 'ERROR', 'DESCARTADO')),
+      -- 1 = más urgente ... 5 = menos urgente (prioridad del incidente al encolar)
+      prioridad INT DEFAULT 3 CHECK (prioridad BETWEEN 1 AND 5),
+      intentos INT NOT NULL DEFAULT 0,
+      disponible_desde TIMESTAMP NOT NULL DEFAULT NOW(),
+      nodo_reclamo VARCHAR(100),
+      fecha_reclamo TIMESTAMP,
+      fecha_creacion TIMESTAMP NOT NULL DEFAULT NOW(),
+      fecha_finalizacion TIMESTAMP,
+      error_mensaje TEXT,
+      -- Prioridad efectiva con aging: fecha de encolado + (prioridad - 1) * ml.jobs.aging-segundos
+      orden_reclamo TIMESTAMP NOT NULL DEFAULT NOW()
+  );
+
+  CREATE INDEX idx_ml_job_reclamo ON ml_job(estado, disponible_desde);
+  -- Sirve el ORDER BY del reclamo: el poll lee solo los primeros jobs vivos, sin ordenar la cola
+  CREATE INDEX idx_ml_job_orden ON ml_job(orden_reclamo) WHERE estado IN ('PENDIENTE', 'PROCESANDO');
+  CREATE INDEX idx_ml_job_referencia ON ml_job(referencia_id);
+
+  CREATE TABLE reanalisis_job (
+      id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+      tipo VARCHAR(30) NOT NULL CHECK (tipo IN ('ANALISIS_TEXTO', 'ANALISIS_IMAGEN')),
+      modelo_version VARCHAR(50),
+      fecha_desde TIMESTAMP,
+      fecha_hasta TIMESTAMP,
+      tasa_por_segundo DOUBLE PRECISION NOT NULL CHECK (tasa_por_segundo > 0),
+      estado VARCHAR(20) NOT NULL DEFAULT 'PENDIENTE'
+          CHECK (estado IN ('PENDIENTE', 'EN_CURSO', 'PAUSADO', 'COMPLETADO', 'CANCELADO')),
+      total BIGINT,
+      procesados BIGINT NOT NULL DEFAULT 0,
+      fallidos BIGINT NOT NULL DEFAULT 0,
+      -- Checkpoint: última fila (fecha, id) confirmada
+      cursor_fecha TIMESTAMP,
+      cursor_id UUID,
+      milisegundos_procesando BIGINT NOT NULL DEFAULT 0,
+      nodo_reclamo VARCHAR(100),
+      reclamo_hasta TIMESTAMP,
+      fecha_creacion TIMESTAMP NOT NULL DEFAULT NOW(),
+      fecha_inicio TIMESTAMP,
+      fecha_ultimo_checkpoint TIMESTAMP,
+      fecha_finalizacion TIMESTAMP
+  );
+
+  CREATE INDEX idx_reanalisis_job_estado ON reanalisis_job(estado, fecha_creacion);
+
+  -- Almacenamiento de archivos por contenido: un blob por SHA-256, compartido por los multimedia iguales
+  CREATE TABLE archivo_blob (
+      hash VARCHAR(64) PRIMARY KEY,
+      ruta VARCHAR(500) NOT NULL,
+      tamano_bytes BIGINT NOT NULL,
+      -- Multimedia que usan el blob; al llegar a 0 se borra el archivo
+      referencias INTEGER NOT NULL DEFAULT 1 CHECK (referencias >= 0),
+      fecha_creacion TIMESTAMP NOT NULL DEFAULT NOW(),
+      fecha_actualizacion TIMESTAMP NOT NULL DEFAULT NOW()
+  );
+
+  CREATE INDEX idx_archivo_blob_huerfanos ON archivo_blob(referencias, fecha_actualizacion);
+
+  -- Respuestas de solicitudes con Idempotency-Key, para devolver la original ante un reintento
+  CREATE TABLE clave_idempotencia (
+      clave VARCHAR(400) PRIMARY KEY,
+      estado VARCHAR(20) NOT NULL CHECK (estado IN ('EN_PROCESO', 'COMPLETADA')),
+      status_http INTEGER,
+      respuesta TEXT,
+      dueno UUID,
+      bloqueada_hasta TIMESTAMP NOT NULL,
+      fecha_creacion TIMESTAMP NOT NULL DEFAULT NOW(),
+      fecha_expiracion TIMESTAMP NOT NULL
+  );
+
+  CREATE INDEX idx_clave_idempotencia_expiracion ON clave_idempotencia(fecha_expiracion);
+
 
   --triggers
 
@@ -0,0 +1,89 @@
+package com.recepcion.recepcion;
+
+import com.recepcion.recepcion.support.CargaIntake;
+import com.recepcion.recepcion.support.MlStubServer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Prueba de carga de punta a punta: recepcion completo sobre un Postgres de Testcontainers,
+ * con los servicios ML reemplazados por {@link MlStubServer}.
+ * No corre con el resto de las pruebas; se lanza con:
+ * {@code mvn test -Dtest=IntakeCargaTest -Dcarga=true [-Dcarga.usuarios=20 -Dcarga.incidentes=10]}
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Testcontainers(disabledWithoutDocker = true)
+@EnabledIfSystemProperty(named = "carga", matches = "true")
+@Slf4j
+class IntakeCargaTest {
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    static final MlStubServer ML_TEXTO = iniciarStub(8, MlStubServer.Latencia.logNormal(40, 300));
+    static final MlStubServer ML_IMAGEN = iniciarStub(4, MlStubServer.Latencia.logNormal(150, 900));
+
+    @LocalServerPort
+    int puerto;
+
+    @DynamicPropertySource
+    static void configurar(DynamicPropertyRegistry registry) throws IOException {
+        registry.add("ml.texto.base-url", ML_TEXTO::getBaseUrl);
+        registry.add("ml.imagen.base-url", ML_IMAGEN::getBaseUrl);
+        registry.add("app.multimedia.upload-dir", Files.createTempDirectory("carga-uploads")::toString);
+        registry.add("spring.jpa.show-sql", () -> "false");
+        registry.add("ml.salud.intervalo-ms", () -> "1000");
+        registry.add("ml.jobs.poll-interval-ms", () -> "200");
+    }
+
+    @AfterAll
+    static void detenerStubs() {
+        ML_TEXTO.close();
+        ML_IMAGEN.close();
+    }
+
+    @Test
+    void flujoDeReporteBajoCarga() throws Exception {
+        CargaIntake.Escenario escenario = new CargaIntake.Escenario(
+                Integer.getInteger("carga.usuarios", 10),
+                Integer.getInteger("carga.incidentes", 5),
+                Integer.getInteger("carga.imagenes", 2),
+                Duration.ofMillis(250),
+                Duration.ofSeconds(60));
+
+        CargaIntake.Reporte reporte = new CargaIntake("http://localhost:" + puerto + "/api").ejecutar(escenario);
+        log.info("\n{}", reporte.formatear());
+
+        assertThat(reporte.incidentesCreados())
+                .isEqualTo(escenario.usuarios() * escenario.incidentesPorUsuario());
+        assertThat(reporte.incidentesSinTerminar()).isZero();
+        assertThat(reporte.porEndpoint().get(CargaIntake.CREAR_INCIDENTE).errores()).isZero();
+        assertThat(reporte.porEndpoint().get(CargaIntake.SUBIR_IMAGEN).errores()).isZero();
+    }
+
+    private static MlStubServer iniciarStub(int capacidad, MlStubServer.Latencia latencia) {
+        try {
+            return new MlStubServer(0, capacidad, latencia);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
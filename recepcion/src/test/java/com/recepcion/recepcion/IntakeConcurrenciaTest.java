@@ -0,0 +1,131 @@
+package com.recepcion.recepcion;
+
+import com.recepcion.recepcion.dto.request.CrearIncidenteRequest;
+import com.recepcion.recepcion.dto.request.SolicitanteRequest;
+import com.recepcion.recepcion.dto.request.UbicacionRequest;
+import com.recepcion.recepcion.entity.CanalOrigen;
+import com.recepcion.recepcion.entity.Solicitante;
+import com.recepcion.recepcion.repository.IncidenteRepository;
+import com.recepcion.recepcion.repository.SolicitanteRepository;
+import com.recepcion.recepcion.service.IncidenteService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Reportes simultáneos del mismo número nuevo sobre un Postgres real: todos tienen que crearse
+ * y quedar asociados a un único solicitante, sin errores por la restricción única del teléfono.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+class IntakeConcurrenciaTest {
+
+    private static final int REPORTES = 16;
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    IncidenteService incidenteService;
+
+    @Autowired
+    SolicitanteRepository solicitanteRepository;
+
+    @Autowired
+    IncidenteRepository incidenteRepository;
+
+    @DynamicPropertySource
+    static void configurar(DynamicPropertyRegistry registry) {
+        // Solo interesa el alta: sin workers ML que consuman los jobs
+        registry.add("ml.jobs.enabled", () -> "false");
+        registry.add("ml.reconciliacion.enabled", () -> "false");
+        registry.add("ml.reanalisis.enabled", () -> "false");
+        registry.add("spring.jpa.show-sql", () -> "false");
+    }
+
+    @Test
+    void primerosReportesSimultaneosDelMismoNumeroCompartenElSolicitante() throws Exception {
+        String telefono = telefonoNuevo();
+
+        simultaneos(REPORTES, () -> incidenteService.crear(reporte(telefono)));
+
+        assertSolicitanteUnicoCon(telefono, REPORTES);
+    }
+
+    @Test
+    void lotesSimultaneosConElMismoNumeroNuevoCompartenElSolicitante() throws Exception {
+        String telefono = telefonoNuevo();
+
+        simultaneos(4, () -> incidenteService.crearLote(List.of(reporte(telefono), reporte(telefono))));
+
+        assertSolicitanteUnicoCon(telefono, 8);
+    }
+
+    private void assertSolicitanteUnicoCon(String telefono, int incidentes) {
+        Solicitante solicitante = solicitanteRepository.findByTelefono(telefono).orElseThrow();
+        assertThat(solicitanteRepository.findByTelefonoIn(List.of(telefono))).hasSize(1);
+        assertThat(incidenteRepository.findBySolicitanteId(solicitante.getId())).hasSize(incidentes);
+    }
+
+    /**
+     * Lanza las tareas a la vez desde hilos distintos y propaga la primera excepción
+     */
+    private static void simultaneos(int cantidad, Callable<?> tarea) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(cantidad);
+        CountDownLatch largada = new CountDownLatch(1);
+        try {
+            List<Future<?>> pendientes = new ArrayList<>();
+            for (int i = 0; i < cantidad; i++) {
+                pendientes.add(pool.submit(() -> {
+                    largada.await();
+                    return tarea.call();
+                }));
+            }
+            largada.countDown();
+            for (Future<?> pendiente : pendientes) {
+                pendiente.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static String telefonoNuevo() {
+        return "+5916" + ThreadLocalRandom.current().nextInt(10_000_000, 99_999_999);
+    }
+
+    private static CrearIncidenteRequest reporte(String telefono) {
+        return CrearIncidenteRequest.builder()
+                .solicitante(SolicitanteRequest.builder()
+                        .nombreCompleto("Usuario Concurrente")
+                        .telefono(telefono)
+                        .canalOrigen(CanalOrigen.TELEGRAM)
+                        .build())
+                .ubicacion(UbicacionRequest.builder()
+                        .descripcionTextual("Av. de prueba")
+                        .latitud(new BigDecimal("-17.78"))
+                        .longitud(new BigDecimal("-63.18"))
+                        .build())
+                .descripcionOriginal("Choque entre dos autos, hay heridos")
+                .build();
+    }
+}
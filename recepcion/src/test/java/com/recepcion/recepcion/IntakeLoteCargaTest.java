@@ -0,0 +1,161 @@
+package com.recepcion.recepcion;
+
+import com.recepcion.recepcion.support.CargaIntake;
+import com.recepcion.recepcion.support.MlStubServer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compara el throughput de alta de incidentes de a uno (POST /incidentes) contra POST /incidentes/lote,
+ * con la misma cantidad de incidentes y de clientes en paralelo. Como {@link IntakeCargaTest}, corre
+ * sobre un Postgres de Testcontainers y no se lanza con el resto de las pruebas:
+ * {@code mvn test -Dtest=IntakeLoteCargaTest -Dcarga=true [-Dcarga.total=2000 -Dcarga.usuarios=8 -Dcarga.lote=200]}
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Testcontainers(disabledWithoutDocker = true)
+@EnabledIfSystemProperty(named = "carga", matches = "true")
+@Slf4j
+class IntakeLoteCargaTest {
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    // Los jobs de análisis se procesan durante la medición, como en producción
+    static final MlStubServer ML_TEXTO = iniciarStub(8, MlStubServer.Latencia.logNormal(40, 300));
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+    @LocalServerPort
+    int puerto;
+
+    @DynamicPropertySource
+    static void configurar(DynamicPropertyRegistry registry) {
+        registry.add("ml.texto.base-url", ML_TEXTO::getBaseUrl);
+        registry.add("spring.jpa.show-sql", () -> "false");
+        registry.add("logging.level.org.hibernate.SQL", () -> "WARN");
+        registry.add("logging.level.org.hibernate.type.descriptor.sql.BasicBinder", () -> "WARN");
+    }
+
+    @AfterAll
+    static void detenerStubs() {
+        ML_TEXTO.close();
+    }
+
+    @Test
+    void elAltaEnLoteSuperaAlAltaDeAUno() throws Exception {
+        int total = Integer.getInteger("carga.total", 2000);
+        int usuarios = Integer.getInteger("carga.usuarios", 8);
+        int tamanoLote = Integer.getInteger("carga.lote", 200);
+
+        // Calentamiento: JIT, pool de conexiones y planes de las consultas
+        ejecutar(usuarios, 50, i -> crearDeAUno());
+        ejecutar(usuarios, 4, i -> crearEnLote(25));
+
+        long inicio = System.nanoTime();
+        int deAUno = ejecutar(usuarios, total, i -> crearDeAUno());
+        double porSegundoDeAUno = deAUno / segundosDesde(inicio);
+
+        inicio = System.nanoTime();
+        int lotes = (total + tamanoLote - 1) / tamanoLote;
+        int enLote = ejecutar(usuarios, lotes, i -> crearEnLote(Math.min(tamanoLote, total - i * tamanoLote)));
+        double porSegundoEnLote = enLote / segundosDesde(inicio);
+
+        log.info("De a uno: {} incidentes, {}/s. En lotes de {}: {} incidentes, {}/s (x{})",
+                deAUno, Math.round(porSegundoDeAUno), tamanoLote, enLote, Math.round(porSegundoEnLote),
+                String.format("%.1f", porSegundoEnLote / porSegundoDeAUno));
+
+        assertThat(deAUno).isEqualTo(total);
+        assertThat(enLote).isEqualTo(total);
+        assertThat(porSegundoEnLote).isGreaterThan(porSegundoDeAUno);
+    }
+
+    private int crearDeAUno() throws IOException, InterruptedException {
+        HttpResponse<String> respuesta = enviar("/incidentes", CargaIntake.nuevoIncidente());
+        return respuesta.statusCode() == 201 ? 1 : 0;
+    }
+
+    private int crearEnLote(int cantidad) throws IOException, InterruptedException {
+        String cuerpo = IntStream.range(0, cantidad)
+                .mapToObj(i -> CargaIntake.nuevoIncidente())
+                .collect(Collectors.joining(",", "{\"incidentes\": [", "]}"));
+        HttpResponse<String> respuesta = enviar("/incidentes/lote", cuerpo);
+        return respuesta.statusCode() == 201 ? cantidad : 0;
+    }
+
+    private HttpResponse<String> enviar(String ruta, String cuerpo) throws IOException, InterruptedException {
+        return http.send(HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + "/api" + ruta))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(cuerpo))
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Reparte {@code tareas} llamadas entre {@code usuarios} hilos
+     *
+     * @return incidentes creados
+     */
+    private static int ejecutar(int usuarios, int tareas, Tarea tarea) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(usuarios);
+        try {
+            List<Future<Integer>> pendientes = new ArrayList<>(tareas);
+            for (int i = 0; i < tareas; i++) {
+                int indice = i;
+                pendientes.add(pool.submit((Callable<Integer>) () -> tarea.ejecutar(indice)));
+            }
+            int creados = 0;
+            for (Future<Integer> pendiente : pendientes) {
+                creados += pendiente.get();
+            }
+            return creados;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static double segundosDesde(long inicioNanos) {
+        return (System.nanoTime() - inicioNanos) / 1e9;
+    }
+
+    @FunctionalInterface
+    private interface Tarea {
+
+        int ejecutar(int indice) throws Exception;
+    }
+
+    private static MlStubServer iniciarStub(int capacidad, MlStubServer.Latencia latencia) {
+        try {
+            return new MlStubServer(0, capacidad, latencia);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
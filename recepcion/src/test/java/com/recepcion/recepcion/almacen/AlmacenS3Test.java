@@ -0,0 +1,127 @@
+package com.recepcion.recepcion.almacen;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.testcontainers.containers.MinIOContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * {@link AlmacenS3} contra un MinIO de Testcontainers: mismo protocolo que S3, sin credenciales de AWS.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class AlmacenS3Test {
+
+    private static final String BUCKET = "recepcion-test";
+
+    @Container
+    static final MinIOContainer MINIO = new MinIOContainer("minio/minio:RELEASE.2024-10-13T13-34-11Z");
+
+    private static S3Client s3;
+    private static S3Presigner presigner;
+    private static AlmacenS3 almacen;
+
+    @TempDir
+    Path directorio;
+
+    @BeforeAll
+    static void conectar() {
+        URI endpoint = URI.create(MINIO.getS3URL());
+        StaticCredentialsProvider credenciales = StaticCredentialsProvider.create(
+                AwsBasicCredentials.create(MINIO.getUserName(), MINIO.getPassword()));
+        S3Configuration pathStyle = S3Configuration.builder().pathStyleAccessEnabled(true).build();
+        s3 = S3Client.builder().endpointOverride(endpoint).region(Region.US_EAST_1)
+                .credentialsProvider(credenciales).serviceConfiguration(pathStyle).build();
+        presigner = S3Presigner.builder().endpointOverride(endpoint).region(Region.US_EAST_1)
+                .credentialsProvider(credenciales).serviceConfiguration(pathStyle).build();
+        s3.createBucket(b -> b.bucket(BUCKET));
+        // Umbral al mínimo: cualquier archivo de más de 5 MB se sube por partes
+        almacen = new AlmacenS3(s3, presigner, BUCKET, 0, AlmacenS3.TAMANO_PARTE_MINIMO);
+    }
+
+    @AfterAll
+    static void cerrar() {
+        almacen.close();
+    }
+
+    @Test
+    void guardaLeeYEliminaUnObjeto() throws Exception {
+        byte[] contenido = aleatorio(10_000, 1);
+        Path origen = Files.write(directorio.resolve("chica.jpg"), contenido);
+
+        almacen.guardar("blobs/ab/cd/chica.jpg", origen);
+
+        assertThat(origen).doesNotExist();
+        assertThat(almacen.existe("blobs/ab/cd/chica.jpg")).isTrue();
+        assertThat(almacen.tamano("blobs/ab/cd/chica.jpg")).isEqualTo(contenido.length);
+        try (InputStream leido = almacen.leer("blobs/ab/cd/chica.jpg")) {
+            assertThat(leido.readAllBytes()).isEqualTo(contenido);
+        }
+        assertThat(almacen.rutaLocal("blobs/ab/cd/chica.jpg")).isEmpty();
+
+        almacen.eliminar("blobs/ab/cd/chica.jpg");
+        assertThat(almacen.existe("blobs/ab/cd/chica.jpg")).isFalse();
+        assertThatThrownBy(() -> almacen.tamano("blobs/ab/cd/chica.jpg")).isInstanceOf(NoSuchFileException.class);
+    }
+
+    @Test
+    void subePorPartesLosArchivosGrandesYLeeRangos() throws Exception {
+        // Dos partes completas y una última más chica
+        int tamano = (int) (2 * AlmacenS3.TAMANO_PARTE_MINIMO + 123_456);
+        byte[] contenido = aleatorio(tamano, 2);
+        Path origen = Files.write(directorio.resolve("video.mp4"), contenido);
+
+        almacen.guardar("blobs/ef/01/video.mp4", origen);
+
+        assertThat(almacen.tamano("blobs/ef/01/video.mp4")).isEqualTo(tamano);
+        long inicio = AlmacenS3.TAMANO_PARTE_MINIMO - 10;
+        try (InputStream rango = almacen.leerRango("blobs/ef/01/video.mp4", inicio, inicio + 19)) {
+            assertThat(rango.readAllBytes()).isEqualTo(Arrays.copyOfRange(contenido, (int) inicio, (int) inicio + 20));
+        }
+        try (InputStream leido = almacen.leer("blobs/ef/01/video.mp4")) {
+            assertThat(leido.readAllBytes()).isEqualTo(contenido);
+        }
+    }
+
+    @Test
+    void laUrlFirmadaPermiteDescargarSinCredenciales() throws Exception {
+        byte[] contenido = aleatorio(2048, 3);
+        almacen.guardar("miniaturas/firmada.jpg", Files.write(directorio.resolve("firmada.jpg"), contenido));
+
+        URI url = almacen.urlFirmada("miniaturas/firmada.jpg", Duration.ofMinutes(5)).orElseThrow();
+
+        HttpResponse<byte[]> respuesta = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(url).GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertThat(respuesta.statusCode()).isEqualTo(200);
+        assertThat(respuesta.body()).isEqualTo(contenido);
+    }
+
+    private static byte[] aleatorio(int tamano, long semilla) {
+        byte[] contenido = new byte[tamano];
+        new Random(semilla).nextBytes(contenido);
+        return contenido;
+    }
+}
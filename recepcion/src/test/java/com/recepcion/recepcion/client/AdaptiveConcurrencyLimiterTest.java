@@ -0,0 +1,119 @@
+package com.recepcion.recepcion.client;
+
+import com.recepcion.recepcion.support.MlStubServer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * El limitador debe converger a la capacidad del servidor: con un stub que atiende 8 llamadas
+ * simultáneas a 20 ms y se degrada por encima, y una latencia objetivo de 50 ms, el límite
+ * debe subir desde el valor inicial y estabilizarse alrededor de la capacidad, sin crecer hasta
+ * la cantidad de llamadores. El margen inferior es amplio porque el test corre también en máquinas
+ * de un solo núcleo, donde el scheduling agrega latencia a algunas respuestas.
+ */
+@Slf4j
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final int CAPACIDAD_STUB = 8;
+    private static final int LLAMADORES = 32;
+
+    @Test
+    void convergeALaCapacidadDelServicio() throws Exception {
+        try (MlStubServer stub = new MlStubServer(CAPACIDAD_STUB, 20)) {
+            AdaptiveConcurrencyLimiter limitador = new AdaptiveConcurrencyLimiter("ml-texto", 2, 1, 64, 50, 10_000);
+            // El pool por defecto admite 5 conexiones por host: por debajo de la capacidad del stub
+            HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(
+                    HttpClients.custom()
+                            .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                                    .setMaxConnPerRoute(LLAMADORES)
+                                    .setMaxConnTotal(LLAMADORES)
+                                    .build())
+                            .build());
+            MlTextoClient client = new MlTextoClient(
+                    new RestTemplate(factory), 1000, 30_000, limitador,
+                    new MlReplicas("ml-texto", stub.getBaseUrl(), 1000, 30_000, false, 0, 16));
+
+            AtomicBoolean corriendo = new AtomicBoolean(true);
+            ExecutorService llamadores = Executors.newFixedThreadPool(LLAMADORES);
+            for (int i = 0; i < LLAMADORES; i++) {
+                llamadores.submit(() -> {
+                    while (corriendo.get()) {
+                        client.analizarTexto("Choque con heridos en la avenida principal", UUID.randomUUID());
+                    }
+                    return null;
+                });
+            }
+
+            // Muestras del último segundo de 4, cuando ya debería haber convergido
+            Thread.sleep(3000);
+            List<Integer> muestras = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                muestras.add(limitador.getLimite());
+                Thread.sleep(50);
+            }
+            corriendo.set(false);
+            llamadores.shutdown();
+            assertThat(llamadores.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+            double promedio = muestras.stream().mapToInt(Integer::intValue).average().orElse(0);
+            log.info("Límite en régimen: promedio {}, muestras {}, máximo en curso en el stub: {}, llamadas: {}",
+                    String.format("%.1f", promedio), muestras, stub.getMaximoEnCurso(), stub.getLlamadas());
+
+            assertThat(promedio).isBetween(CAPACIDAD_STUB * 0.5, CAPACIDAD_STUB * 2.5);
+            assertThat(limitador.getEnVuelo()).isZero();
+        }
+    }
+
+    @Test
+    void rechazaCuandoNoHayCupoDentroDeLaEsperaMaxima() {
+        AdaptiveConcurrencyLimiter limitador = new AdaptiveConcurrencyLimiter("ml-imagen", 1, 1, 1, 1000, 50);
+
+        AdaptiveConcurrencyLimiter.Permiso permiso = limitador.adquirir();
+        try {
+            assertThatThrownBy(limitador::adquirir)
+                    .isInstanceOf(MlServicioNoDisponibleException.class);
+            assertThat(limitador.getRechazadas()).isEqualTo(1);
+        } finally {
+            permiso.liberar();
+        }
+        limitador.adquirir().liberar();
+    }
+
+    @Test
+    void unRechazoPorFaltaDeCupoNoDejaElCircuitoTrabadoEnHalfOpen() {
+        AdaptiveConcurrencyLimiter limitador = new AdaptiveConcurrencyLimiter("ml-texto", 1, 1, 1, 1000, 50);
+        // Puerto cerrado: la primera llamada falla y abre el circuito; sin espera pasa enseguida a HALF_OPEN
+        MlTextoClient client = new MlTextoClient(new RestTemplate(), 1, 0, limitador,
+                new MlReplicas("ml-texto", "http://127.0.0.1:1", 1000, 30_000, false, 0, 16));
+        assertThatThrownBy(() -> client.analizarTexto("Choque con heridos", UUID.randomUUID()))
+                .isInstanceOf(MlTextoClient.MlServiceException.class);
+        assertThat(client.getCircuitBreaker().getEstado()).isEqualTo(CircuitBreaker.Estado.OPEN);
+
+        AdaptiveConcurrencyLimiter.Permiso ocupado = limitador.adquirir();
+        try {
+            // La llamada de prueba se autoriza pero no consigue cupo
+            assertThatThrownBy(() -> client.analizarTexto("Choque con heridos", UUID.randomUUID()))
+                    .isInstanceOf(MlServicioNoDisponibleException.class);
+            assertThat(client.getCircuitBreaker().getEstado()).isEqualTo(CircuitBreaker.Estado.HALF_OPEN);
+        } finally {
+            ocupado.liberar();
+        }
+
+        assertThat(client.getCircuitBreaker().permiteLlamada()).isTrue();
+    }
+}
@@ -0,0 +1,163 @@
+package com.recepcion.recepcion.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MlReplicasTest {
+
+    private MlReplicas replicas;
+
+    @AfterEach
+    void cerrar() {
+        replicas.cerrar();
+    }
+
+    @Test
+    void eligeLaReplicaConMenosLlamadasEnCurso() throws Exception {
+        replicas = new MlReplicas("ml-texto", "http://a:8001, http://b:8001/", 3, 30_000, false, 0, 16);
+        CountDownLatch enCurso = new CountDownLatch(1);
+        CountDownLatch terminar = new CountDownLatch(1);
+        ExecutorService llamador = Executors.newSingleThreadExecutor();
+
+        try {
+            llamador.submit(() -> replicas.ejecutar(false, replica -> {
+                enCurso.countDown();
+                terminar.await();
+                return replica.getUrl();
+            }));
+            assertThat(enCurso.await(5, TimeUnit.SECONDS)).isTrue();
+
+            String ocupada = replicas.getReplicas().stream()
+                    .filter(r -> r.getEnCurso() == 1)
+                    .findFirst().orElseThrow().getUrl();
+            for (int i = 0; i < 10; i++) {
+                assertThat(replicas.elegir(null).getUrl()).isNotEqualTo(ocupada);
+            }
+        } finally {
+            terminar.countDown();
+            llamador.shutdown();
+        }
+    }
+
+    @Test
+    void expulsaLaReplicaConFallosConsecutivos() {
+        replicas = new MlReplicas("ml-imagen", "http://a:8002,http://b:8002", 2, 30_000, false, 0, 16);
+        MlReplicas.Replica fallando = replicas.getReplicas().get(0);
+
+        fallando.registrarFallo();
+        assertThat(fallando.isDisponible()).isTrue();
+        fallando.registrarFallo();
+
+        assertThat(fallando.isDisponible()).isFalse();
+        assertThat(replicas.getDisponibles()).isEqualTo(1);
+        for (int i = 0; i < 10; i++) {
+            assertThat(replicas.elegir(null).getUrl()).isEqualTo("http://b:8002");
+        }
+        // Un health check sano no acorta una expulsión por fallos
+        fallando.registrarSalud(true);
+        assertThat(fallando.isDisponible()).isFalse();
+    }
+
+    @Test
+    void elHealthCheckSanoSoloLevantaLaExpulsionPorSalud() {
+        replicas = new MlReplicas("ml-texto", "http://a:8001,http://b:8001", 1, 30_000, false, 0, 16);
+        MlReplicas.Replica replica = replicas.getReplicas().get(0);
+
+        replica.registrarSalud(false);
+        replica.registrarFallo();
+        replica.registrarSalud(true);
+        assertThat(replica.isDisponible()).isFalse();
+
+        MlReplicas.Replica otra = replicas.getReplicas().get(1);
+        otra.registrarSalud(false);
+        assertThat(otra.isDisponible()).isFalse();
+        otra.registrarSalud(true);
+        assertThat(otra.isDisponible()).isTrue();
+    }
+
+    @Test
+    void cubreLaLlamadaUrgenteEnOtraReplicaAlSuperarElP95() throws Exception {
+        replicas = new MlReplicas("ml-texto", "http://a:8001,http://b:8001", 3, 30_000, true, 20, 16);
+        for (int i = 0; i < 30; i++) {
+            replicas.ejecutar(false, replica -> {
+                Thread.sleep(5);
+                return replica.getUrl();
+            });
+        }
+
+        AtomicInteger intentos = new AtomicInteger();
+        long inicio = System.nanoTime();
+        AtomicReference<String> primera = new AtomicReference<>();
+        CountDownLatch abortada = new CountDownLatch(1);
+        AtomicReference<Boolean> perdedoraCancelada = new AtomicReference<>();
+        String respuesta = replicas.ejecutar(true, replica -> {
+            if (intentos.getAndIncrement() == 0) {
+                primera.set(replica.getUrl());
+                // Lo que haría la fábrica de requests con la petición HTTP en curso
+                MlReplicas.alCancelar(abortada::countDown);
+                abortada.await(3, TimeUnit.SECONDS);
+                perdedoraCancelada.set(MlReplicas.cancelada());
+                throw new IllegalStateException("abortada");
+            }
+            return replica.getUrl();
+        });
+        long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+        assertThat(respuesta).isNotEqualTo(primera.get());
+        assertThat(ms).isLessThan(1000);
+        assertThat(replicas.getCoberturasEnviadas()).isEqualTo(1);
+        // La copia cuenta como ganadora en su propio hilo, justo después de entregar la respuesta
+        for (int i = 0; i < 50 && replicas.getCoberturasGanadoras() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(replicas.getCoberturasGanadoras()).isEqualTo(1);
+        // La petición perdedora se aborta en cuanto la copia responde
+        assertThat(abortada.await(1, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 50 && perdedoraCancelada.get() == null; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(perdedoraCancelada.get()).isTrue();
+    }
+
+    @Test
+    void sinCupoEnElPoolLaLlamadaUrgenteVaSinCobertura() throws Exception {
+        replicas = new MlReplicas("ml-texto", "http://a:8001,http://b:8001", 3, 30_000, true, 20, 2);
+        for (int i = 0; i < 30; i++) {
+            replicas.ejecutar(false, replica -> {
+                Thread.sleep(5);
+                return replica.getUrl();
+            });
+        }
+        CountDownLatch ocupados = new CountDownLatch(2);
+        CountDownLatch terminar = new CountDownLatch(1);
+        ExecutorService llamador = Executors.newSingleThreadExecutor();
+
+        try {
+            // Una llamada cubierta cuyos dos intentos ocupan todo el pool
+            llamador.submit(() -> replicas.ejecutar(true, replica -> {
+                ocupados.countDown();
+                terminar.await();
+                return replica.getUrl();
+            }));
+            assertThat(ocupados.await(5, TimeUnit.SECONDS)).isTrue();
+
+            String hilo = replicas.ejecutar(true, replica -> Thread.currentThread().getName());
+
+            assertThat(hilo).isEqualTo(Thread.currentThread().getName());
+            assertThat(replicas.getCoberturasSinCupo()).isEqualTo(1);
+            assertThat(replicas.getCoberturasEnviadas()).isEqualTo(1);
+        } finally {
+            terminar.countDown();
+            llamador.shutdown();
+        }
+    }
+}
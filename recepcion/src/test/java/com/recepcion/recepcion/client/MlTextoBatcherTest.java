@@ -0,0 +1,109 @@
+package com.recepcion.recepcion.client;
+
+import com.recepcion.recepcion.dto.ml.AnalizarTextoLoteResponse;
+import com.recepcion.recepcion.dto.ml.AnalizarTextoRequest;
+import com.recepcion.recepcion.dto.ml.AnalizarTextoResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Verifica que los análisis concurrentes se agrupen en lotes y que cada llamador
+ * reciba el resultado de su propio texto
+ */
+class MlTextoBatcherTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MlTextoClient mlTextoClient = mock(MlTextoClient.class);
+    private final ExecutorService llamadores = Executors.newFixedThreadPool(8);
+    private MlTextoBatcher batcher;
+
+    @AfterEach
+    void cerrar() {
+        llamadores.shutdownNow();
+        batcher.cerrar();
+    }
+
+    @Test
+    void agrupaTextosConcurrentesEnUnSoloLote() throws Exception {
+        batcher = new MlTextoBatcher(mlTextoClient, true, 8, 200, 2, 5000, 60000, registry);
+        when(mlTextoClient.analizarTextoLote(anyList())).thenAnswer(inv -> {
+            List<AnalizarTextoRequest> items = inv.getArgument(0);
+            return items.stream()
+                    .map(r -> new AnalizarTextoLoteResponse.Item(r.getIncidenteId(),
+                            AnalizarTextoResponse.builder().tipoIncidentePredicho(r.getTexto()).build(), null))
+                    .toList();
+        });
+
+        List<Future<AnalizarTextoResponse>> resultados = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String texto = "texto-" + i;
+            resultados.add(llamadores.submit(() -> batcher.analizar(texto, UUID.randomUUID())));
+        }
+
+        for (int i = 0; i < 8; i++) {
+            assertThat(resultados.get(i).get(5, TimeUnit.SECONDS).getTipoIncidentePredicho()).isEqualTo("texto-" + i);
+        }
+        verify(mlTextoClient, times(1)).analizarTextoLote(anyList());
+        verify(mlTextoClient, never()).analizarTexto(any(), any());
+        assertThat(registry.get("ml.texto.lote.tamano").summary().max()).isEqualTo(8);
+    }
+
+    @Test
+    void usaLlamadasIndividualesSiElServicioNoTieneEndpointDeLotes() throws Exception {
+        batcher = new MlTextoBatcher(mlTextoClient, true, 8, 10, 2, 5000, 60000, registry);
+        when(mlTextoClient.analizarTextoLote(anyList()))
+                .thenThrow(new MlTextoClient.LoteNoSoportadoException("sin endpoint de lotes"));
+        when(mlTextoClient.analizarTexto(any(), any()))
+                .thenReturn(AnalizarTextoResponse.builder().prioridadCalculada(2).build());
+
+        assertThat(batcher.analizar("primer texto", UUID.randomUUID()).getPrioridadCalculada()).isEqualTo(2);
+        assertThat(batcher.analizar("segundo texto", UUID.randomUUID()).getPrioridadCalculada()).isEqualTo(2);
+
+        // Tras el primer 404 ya no se vuelve a probar el endpoint de lotes
+        verify(mlTextoClient, times(1)).analizarTextoLote(anyList());
+        verify(mlTextoClient, times(2)).analizarTexto(any(), any());
+    }
+
+    @Test
+    void unTextoDemasiadoLargoVaSoloYNoHaceFallarElLote() throws Exception {
+        batcher = new MlTextoBatcher(mlTextoClient, true, 8, 10, 2, 5000, 60000, registry);
+        when(mlTextoClient.analizarTexto(any(), any()))
+                .thenThrow(new MlTextoClient.MlServiceException("422 texto demasiado largo"));
+        when(mlTextoClient.analizarTextoLote(anyList())).thenAnswer(inv -> {
+            List<AnalizarTextoRequest> items = inv.getArgument(0);
+            return items.stream()
+                    .map(r -> new AnalizarTextoLoteResponse.Item(r.getIncidenteId(),
+                            AnalizarTextoResponse.builder().prioridadCalculada(3).build(), null))
+                    .toList();
+        });
+
+        String largo = "a".repeat(MlTextoBatcher.TEXTO_MAX_CARACTERES + 1);
+        assertThatThrownBy(() -> batcher.analizar(largo, UUID.randomUUID()))
+                .isInstanceOf(MlTextoClient.MlServiceException.class);
+        assertThat(batcher.analizar("texto normal del incidente", UUID.randomUUID()).getPrioridadCalculada()).isEqualTo(3);
+
+        verify(mlTextoClient, times(1)).analizarTexto(eq(largo), any());
+        verify(mlTextoClient, times(1)).analizarTextoLote(anyList());
+    }
+
+    @Test
+    void rechazaUnMaxItemsMayorAlQueAceptaElServicioMl() {
+        assertThatThrownBy(() -> new MlTextoBatcher(mlTextoClient, true, MlTextoBatcher.LOTE_MAX_ITEMS + 1,
+                10, 2, 5000, 60000, registry))
+                .isInstanceOf(IllegalArgumentException.class);
+        batcher = new MlTextoBatcher(mlTextoClient, true, MlTextoBatcher.LOTE_MAX_ITEMS, 10, 2, 5000, 60000, registry);
+    }
+}
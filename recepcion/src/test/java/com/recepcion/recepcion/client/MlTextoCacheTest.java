@@ -0,0 +1,111 @@
+package com.recepcion.recepcion.client;
+
+import com.recepcion.recepcion.dto.ml.AnalizarTextoResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class MlTextoCacheTest {
+
+    private final MlHealthMonitor mlHealthMonitor = mock(MlHealthMonitor.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong reloj = new AtomicLong();
+
+    @Test
+    void variantesDeEspaciosMayusculasYTildesUsanLaMismaClave() {
+        MlTextoCache cache = crear(100, 60);
+        modelo("v1");
+        AnalizarTextoResponse response = respuesta(1, null);
+
+        cache.guardar("Choque con   heridos en la Av. Blanco Galindo", response);
+
+        assertThat(cache.buscar("  choque CON heridos\ten la av. blanco galindo ")).containsSame(response);
+        assertThat(cache.buscar("Chóque con heridos en la Av. Blanco Galindo!")).containsSame(response);
+        assertThat(cache.buscar("Choque sin heridos en la Av. Blanco Galindo")).isEmpty();
+        assertThat(MlTextoCache.normalizar("  Incendio\n\nEN  Quillacollo ¡urgente! "))
+                .isEqualTo("incendio en quillacollo urgente");
+    }
+
+    @Test
+    void cambiarLaVersionDelModeloInvalidaLosResultados() {
+        MlTextoCache cache = crear(100, 60);
+        modelo("v1");
+        cache.guardar("Robo en el mercado", respuesta(3, "v1"));
+        assertThat(cache.buscar("Robo en el mercado")).isPresent();
+
+        modelo("v2");
+
+        assertThat(cache.buscar("Robo en el mercado")).isEmpty();
+        assertThat(cache.tamano()).isZero();
+
+        cache.guardar("Robo en el mercado", respuesta(2, "v2"));
+        assertThat(cache.buscar("Robo en el mercado")).get()
+                .extracting(AnalizarTextoResponse::getPrioridadCalculada).isEqualTo(2);
+    }
+
+    @Test
+    void respetaElMaximoDeEntradasYElVencimiento() {
+        MlTextoCache cache = crear(3, 60);
+        modelo("v1");
+
+        for (int i = 0; i < 20; i++) {
+            cache.guardar("Incidente número " + i, respuesta(3, null));
+        }
+        assertThat(cache.tamano()).isLessThanOrEqualTo(3);
+
+        MlTextoCache conVencimiento = crear(100, 60);
+        conVencimiento.guardar("Accidente de tránsito", respuesta(2, null));
+        reloj.addAndGet(TimeUnit.MINUTES.toNanos(59));
+        assertThat(conVencimiento.buscar("Accidente de tránsito")).isPresent();
+        reloj.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        assertThat(conVencimiento.buscar("Accidente de tránsito")).isEmpty();
+    }
+
+    @Test
+    void noGuardaAnalisisIncompletosNiSinVersionDeModelo() {
+        MlTextoCache cache = crear(100, 60);
+        modelo("v1");
+
+        cache.guardar("Persona desaparecida", null);
+        cache.guardar("Persona desaparecida", respuesta(null, "v1"));
+        assertThat(cache.buscar("Persona desaparecida")).isEmpty();
+
+        // Servicio ML sin health check exitoso: no hay versión con la que guardar ni buscar
+        when(mlHealthMonitor.getSaludTexto()).thenReturn(null);
+        cache.guardar("Corte de luz", respuesta(4, null));
+        assertThat(cache.buscar("Corte de luz")).isEmpty();
+        assertThat(cache.tamano()).isZero();
+    }
+
+    @Test
+    void deshabilitadaNoGuardaNada() {
+        MlTextoCache cache = new MlTextoCache(mlHealthMonitor, false, 100, 60, meterRegistry, reloj::get);
+        modelo("v1");
+
+        cache.guardar("Choque con heridos", respuesta(1, "v1"));
+
+        assertThat(cache.buscar("Choque con heridos")).isEmpty();
+        assertThat(cache.tamano()).isZero();
+    }
+
+    private MlTextoCache crear(long maxEntradas, long ttlMinutos) {
+        return new MlTextoCache(mlHealthMonitor, true, maxEntradas, ttlMinutos, meterRegistry, reloj::get);
+    }
+
+    private void modelo(String version) {
+        when(mlHealthMonitor.getSaludTexto()).thenReturn(new EstadoSaludMl(true, version, LocalDateTime.now()));
+    }
+
+    private static AnalizarTextoResponse respuesta(Integer prioridad, String version) {
+        return AnalizarTextoResponse.builder()
+                .prioridadCalculada(prioridad)
+                .modeloVersion(version)
+                .build();
+    }
+}
@@ -0,0 +1,144 @@
+package com.recepcion.recepcion.controller;
+
+import com.recepcion.recepcion.service.IdempotenciaService;
+import com.recepcion.recepcion.service.MiniaturaService;
+import com.recepcion.recepcion.service.MultimediaService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class MultimediaControllerTest {
+
+    private static final String HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+    private static final LocalDateTime SUBIDA = LocalDateTime.of(2025, 3, 10, 14, 30);
+
+    private final MultimediaService multimediaService = mock(MultimediaService.class);
+    private final UUID id = UUID.randomUUID();
+    private MockMvc mockMvc;
+    private byte[] contenido;
+
+    @TempDir
+    Path directorio;
+
+    @BeforeEach
+    void configurar() throws Exception {
+        contenido = new byte[100_000];
+        new Random(3).nextBytes(contenido);
+        Path ruta = Files.write(directorio.resolve("foto.jpg"), contenido);
+        when(multimediaService.obtenerArchivo(id)).thenReturn(new MultimediaService.Archivo(
+                new FileSystemResource(ruta), ruta, null, "foto.jpg", contenido.length, HASH, SUBIDA));
+        MultimediaController controller = new MultimediaController(multimediaService, mock(MiniaturaService.class),
+                mock(IdempotenciaService.class));
+        ReflectionTestUtils.setField(controller, "cacheMaxAgeSegundos", 31_536_000L);
+        ReflectionTestUtils.setField(controller, "redirigirDescargas", true);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void sirveElArchivoCompleto() throws Exception {
+        mockMvc.perform(get("/multimedia/{id}/ver", id))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/jpeg"))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, immutable"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + HASH + "\""))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(content().bytes(contenido));
+    }
+
+    @Test
+    void respondeNoModificadoSinTocarElArchivoSiElEtagCoincide() throws Exception {
+        Path inexistente = directorio.resolve("no-existe.jpg");
+        UUID otro = UUID.randomUUID();
+        when(multimediaService.obtenerArchivo(otro)).thenReturn(new MultimediaService.Archivo(
+                new FileSystemResource(inexistente), inexistente, null, "no-existe.jpg", 0, HASH, SUBIDA));
+
+        mockMvc.perform(get("/multimedia/{id}/ver", otro).header(HttpHeaders.IF_NONE_MATCH, "\"" + HASH + "\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + HASH + "\""))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, immutable"))
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void respondeNoModificadoConIfModifiedSince() throws Exception {
+        HttpHeaders cabeceras = new HttpHeaders();
+        cabeceras.setIfModifiedSince(SUBIDA.atZone(ZoneId.systemDefault()).plusMinutes(1));
+
+        mockMvc.perform(get("/multimedia/{id}/descargar", id).headers(cabeceras))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void sirveElArchivoSiElEtagNoCoincide() throws Exception {
+        mockMvc.perform(get("/multimedia/{id}/ver", id).header(HttpHeaders.IF_NONE_MATCH, "\"otro-hash\""))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(contenido));
+    }
+
+    @Test
+    void respondeElRangoPedido() throws Exception {
+        mockMvc.perform(get("/multimedia/{id}/descargar", id).header(HttpHeaders.RANGE, "bytes=1000-1999"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 1000-1999/" + contenido.length))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, startsWith("attachment;")))
+                .andExpect(content().bytes(Arrays.copyOfRange(contenido, 1000, 2000)));
+    }
+
+    @Test
+    void reanudaUnaDescargaDesdeUnByte() throws Exception {
+        mockMvc.perform(get("/multimedia/{id}/descargar", id).header(HttpHeaders.RANGE, "bytes=99000-"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().bytes(Arrays.copyOfRange(contenido, 99_000, contenido.length)));
+    }
+
+    @Test
+    void redirigeALaUrlFirmadaSiElArchivoEstaEnUnAlmacenRemoto() throws Exception {
+        UUID remoto = UUID.randomUUID();
+        URI firmada = URI.create("https://s3.example.com/recepcion/blobs/9f/86/" + HASH + ".jpg?X-Amz-Signature=abc");
+        when(multimediaService.obtenerArchivo(remoto)).thenReturn(new MultimediaService.Archivo(
+                new ByteArrayResource(contenido), null, firmada, "foto.jpg", contenido.length, HASH, SUBIDA));
+
+        mockMvc.perform(get("/multimedia/{id}/ver", remoto))
+                .andExpect(status().isFound())
+                .andExpect(header().string(HttpHeaders.LOCATION, firmada.toString()))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-store"));
+    }
+
+    @Test
+    void delegaEnSendfileSiElContenedorLoSoporta() throws Exception {
+        MvcResult resultado = mockMvc.perform(get("/multimedia/{id}/ver", id)
+                        .requestAttr("org.apache.tomcat.sendfile.support", Boolean.TRUE))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, contenido.length))
+                .andReturn();
+
+        assertThat(resultado.getResponse().getContentAsByteArray()).isEmpty();
+        assertThat(resultado.getRequest().getAttribute("org.apache.tomcat.sendfile.filename"))
+                .isEqualTo(directorio.resolve("foto.jpg").toAbsolutePath().toString());
+        assertThat(resultado.getRequest().getAttribute("org.apache.tomcat.sendfile.end")).isEqualTo((long) contenido.length);
+    }
+}
@@ -0,0 +1,57 @@
+package com.recepcion.recepcion.security;
+
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ApiKeyFilterTest {
+
+    private static final String ADMIN = "admin-key";
+    private static final String N8N = "n8n-key";
+
+    private final ApiKeyFilter filtro = new ApiKeyFilter();
+
+    @BeforeEach
+    void configurar() {
+        ReflectionTestUtils.setField(filtro, "adminApiKey", ADMIN);
+        ReflectionTestUtils.setField(filtro, "n8nApiKey", N8N);
+    }
+
+    @Test
+    void healthEInfoSiguenPublicos() throws Exception {
+        assertThat(status("/api/actuator/health", null)).isEqualTo(200);
+        assertThat(status("/api/actuator/health/liveness", null)).isEqualTo(200);
+        assertThat(status("/api/actuator/info", null)).isEqualTo(200);
+    }
+
+    @Test
+    void elEstadoDeLasReplicasMlPideLaApiKeyDeAdministrador() throws Exception {
+        assertThat(status("/api/actuator/ml", null)).isEqualTo(401);
+        assertThat(status("/api/actuator/ml", N8N)).isEqualTo(403);
+        assertThat(status("/api/actuator/ml", ADMIN)).isEqualTo(200);
+    }
+
+    @Test
+    void lasMetricasDeColasYLimitadoresPidenLaApiKeyDeAdministrador() throws Exception {
+        assertThat(status("/api/actuator/metrics/ml.limite.concurrencia", null)).isEqualTo(401);
+        assertThat(status("/api/actuator/metrics", N8N)).isEqualTo(403);
+        assertThat(status("/api/actuator/metrics", ADMIN)).isEqualTo(200);
+    }
+
+    private int status(String ruta, String apiKey) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", ruta);
+        if (apiKey != null) {
+            request.addHeader("X-API-Key", apiKey);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain cadena = new MockFilterChain();
+        filtro.doFilter(request, response, cadena);
+        return response.getStatus();
+    }
+}
@@ -0,0 +1,105 @@
+package com.recepcion.recepcion.service;
+
+import com.recepcion.recepcion.entity.CanalOrigen;
+import com.recepcion.recepcion.entity.Solicitante;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class SolicitanteCacheTest {
+
+    private static final String TELEFONO = "+59170000001";
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SolicitanteCache cache = new SolicitanteCache(jdbcTemplate, true, 100, 30, meterRegistry);
+
+    @AfterEach
+    void limpiar() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void guardaRecienAlConfirmarLaTransaccion() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        cache.guardar(solicitante());
+        assertThat(cache.buscar(TELEFONO)).isEmpty();
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertThat(cache.buscar(TELEFONO)).hasValueSatisfying(entrada -> {
+            assertThat(entrada.nombreCompleto()).isEqualTo("Ana Pérez");
+            assertThat(entrada.toResponse().getCanalOrigen()).isEqualTo(CanalOrigen.WHATSAPP);
+        });
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "solicitantes.telefono").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void unaTransaccionRevertidaNoDejaLaEntrada() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        cache.guardar(solicitante());
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertThat(cache.buscar(TELEFONO)).isEmpty();
+    }
+
+    @Test
+    void invalidarAvisaALasDemasInstanciasYSuPropiaNotificacionSeIgnora() {
+        cache.guardar(solicitante());
+
+        cache.invalidar(TELEFONO);
+
+        assertThat(cache.buscar(TELEFONO)).isEmpty();
+        ArgumentCaptor<String> mensaje = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).query(eq("SELECT pg_notify(?, ?)"), any(ResultSetExtractor.class),
+                eq(SolicitanteCache.CANAL), mensaje.capture());
+        assertThat(mensaje.getValue()).endsWith(":" + TELEFONO);
+
+        cache.guardar(solicitante());
+        cache.aplicarNotificacion(mensaje.getValue());
+        assertThat(cache.buscar(TELEFONO)).isPresent();
+        assertThat(meterRegistry.get("solicitantes.cache.invalidaciones").tag("origen", "remoto").counter().count())
+                .isZero();
+    }
+
+    @Test
+    void unaNotificacionDeOtraInstanciaInvalidaLaEntrada() {
+        cache.guardar(solicitante());
+
+        cache.aplicarNotificacion(UUID.randomUUID() + ":" + TELEFONO);
+
+        assertThat(cache.buscar(TELEFONO)).isEmpty();
+        assertThat(meterRegistry.get("solicitantes.cache.invalidaciones").tag("origen", "remoto").counter().count())
+                .isEqualTo(1);
+        verify(jdbcTemplate, never()).query(anyString(), any(ResultSetExtractor.class), any(Object[].class));
+    }
+
+    private static Solicitante solicitante() {
+        return Solicitante.builder()
+                .id(UUID.randomUUID())
+                .nombreCompleto("Ana Pérez")
+                .telefono(TELEFONO)
+                .canalOrigen(CanalOrigen.WHATSAPP)
+                .fechaRegistro(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,133 @@
+package com.recepcion.recepcion.service;
+
+import com.recepcion.recepcion.dto.request.UbicacionRequest;
+import com.recepcion.recepcion.entity.Ubicacion;
+import com.recepcion.recepcion.mapper.UbicacionMapper;
+import com.recepcion.recepcion.repository.UbicacionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class UbicacionResolverTest {
+
+    private final UbicacionRepository ubicacionRepository = mock(UbicacionRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UbicacionResolver resolver = new UbicacionResolver(ubicacionRepository,
+            Mappers.getMapper(UbicacionMapper.class), true, 0.0005, 1000, 100, meterRegistry);
+
+    @BeforeEach
+    void configurar() {
+        // saveAll asigna IDs como lo haría Hibernate al persistir
+        when(ubicacionRepository.saveAll(anyList())).thenAnswer(invocacion -> {
+            List<Ubicacion> ubicaciones = invocacion.getArgument(0);
+            ubicaciones.forEach(u -> u.setId(UUID.randomUUID()));
+            return ubicaciones;
+        });
+    }
+
+    @Test
+    void reutilizaLaUbicacionDeLaMismaCeldaSinConsultarPorArea() {
+        Ubicacion primera = resolver.resolver(request("-17.78321", "-63.18204"));
+        when(ubicacionRepository.findById(primera.getId())).thenReturn(Optional.of(primera));
+
+        // A unos 10 m: misma celda de 0.0005°
+        Ubicacion segunda = resolver.resolver(request("-17.78330", "-63.18210"));
+
+        assertThat(segunda).isSameAs(primera);
+        verify(ubicacionRepository, times(1)).saveAll(anyList());
+        verify(ubicacionRepository, times(1)).findEnArea(any(), any(), any(), any(), any(), anyInt());
+        assertThat(resolver.tasaReutilizacion()).isEqualTo(0.5);
+        assertThat(meterRegistry.get("ubicaciones.reutilizacion").gauge().value()).isEqualTo(0.5);
+    }
+
+    @Test
+    void insertaUnaNuevaEnOtraCeldaOSinCoordenadas() {
+        Ubicacion centro = resolver.resolver(request("-17.78321", "-63.18204"));
+        Ubicacion otraCelda = resolver.resolver(request("-17.79000", "-63.18204"));
+        Ubicacion sinCoordenadas = resolver.resolver(UbicacionRequest.builder().descripcionTextual("Mercado").build());
+
+        assertThat(List.of(centro.getId(), otraCelda.getId(), sinCoordenadas.getId())).doesNotHaveDuplicates();
+        verify(ubicacionRepository, times(3)).saveAll(anyList());
+        assertThat(resolver.tasaReutilizacion()).isZero();
+    }
+
+    @Test
+    void enLaMismaCeldaConOtraDireccionInsertaUnaFilaPropia() {
+        Ubicacion primera = resolver.resolver(request("-17.78321", "-63.18204"));
+        when(ubicacionRepository.findById(primera.getId())).thenReturn(Optional.of(primera));
+
+        // Mismo texto con otras mayúsculas y espacios: es la misma dirección
+        UbicacionRequest mismaDireccion = request("-17.78330", "-63.18210");
+        mismaDireccion.setDescripcionTextual("  av. CAÑOTO y   calle Ayacucho ");
+        UbicacionRequest otraDireccion = request("-17.78330", "-63.18210");
+        otraDireccion.setDescripcionTextual("Frente al mercado Los Pozos");
+        UbicacionRequest otraReferencia = request("-17.78330", "-63.18210");
+        otraReferencia.setReferencia("Casa verde de dos pisos");
+
+        assertThat(resolver.resolver(mismaDireccion)).isSameAs(primera);
+        assertThat(resolver.resolver(otraDireccion)).isNotSameAs(primera);
+        assertThat(resolver.resolver(otraReferencia)).isNotSameAs(primera);
+        verify(ubicacionRepository, times(3)).saveAll(anyList());
+    }
+
+    @Test
+    void tomaDeLaBaseLaUbicacionQueCreoOtraInstancia() {
+        Ubicacion existente = ubicacion("-17.78321", "-63.18204");
+        when(ubicacionRepository.findEnArea(any(), any(), any(), any(), any(), anyInt())).thenReturn(List.of(existente));
+
+        assertThat(resolver.resolver(request("-17.78330", "-63.18210"))).isSameAs(existente);
+        verify(ubicacionRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void descartaLaEntradaPrecargadaDeUnaUbicacionBorrada() {
+        Ubicacion borrada = ubicacion("-17.78321", "-63.18204");
+        when(ubicacionRepository.findRecientesConCoordenadas(100)).thenReturn(List.of(borrada));
+        resolver.precargar();
+        when(ubicacionRepository.findById(borrada.getId())).thenReturn(Optional.empty());
+
+        Ubicacion nueva = resolver.resolver(request("-17.78330", "-63.18210"));
+
+        assertThat(nueva.getId()).isNotEqualTo(borrada.getId());
+        verify(ubicacionRepository).saveAll(anyList());
+    }
+
+    @Test
+    void enUnLoteLasDeLaMismaCeldaCompartenUnaSolaFila() {
+        List<Ubicacion> ubicaciones = resolver.resolver(List.of(
+                request("-17.78321", "-63.18204"), request("-17.78330", "-63.18210"), request("-17.79000", "-63.18204")));
+
+        assertThat(ubicaciones.get(1)).isSameAs(ubicaciones.get(0));
+        assertThat(ubicaciones.get(2)).isNotSameAs(ubicaciones.get(0));
+        verify(ubicacionRepository).saveAll(argThat((List<Ubicacion> nuevas) -> nuevas.size() == 2));
+    }
+
+    private static UbicacionRequest request(String latitud, String longitud) {
+        return UbicacionRequest.builder()
+                .descripcionTextual("Av. Cañoto y calle Ayacucho")
+                .latitud(new BigDecimal(latitud))
+                .longitud(new BigDecimal(longitud))
+                .build();
+    }
+
+    private static Ubicacion ubicacion(String latitud, String longitud) {
+        return Ubicacion.builder()
+                .id(UUID.randomUUID())
+                .descripcionTextual("Av. Cañoto y calle Ayacucho")
+                .latitud(new BigDecimal(latitud))
+                .longitud(new BigDecimal(longitud))
+                .build();
+    }
+}
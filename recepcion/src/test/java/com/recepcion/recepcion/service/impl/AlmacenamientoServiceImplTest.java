@@ -0,0 +1,172 @@
+package com.recepcion.recepcion.service.impl;
+
+import com.recepcion.recepcion.almacen.AlmacenLocal;
+import com.recepcion.recepcion.entity.ArchivoBlob;
+import com.recepcion.recepcion.entity.Multimedia;
+import com.recepcion.recepcion.repository.ArchivoBlobRepository;
+import com.recepcion.recepcion.repository.MultimediaRepository;
+import com.recepcion.recepcion.service.AlmacenamientoService.ArchivoAlmacenado;
+import com.recepcion.recepcion.service.AlmacenamientoService.ResultadoMigracion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class AlmacenamientoServiceImplTest {
+
+    private final ArchivoBlobRepository archivoBlobRepository = mock(ArchivoBlobRepository.class);
+    private final MultimediaRepository multimediaRepository = mock(MultimediaRepository.class);
+    // Lo que tendría la tabla archivo_blob: hash -> ruta del primer guardado
+    private final Map<String, String> blobs = new HashMap<>();
+    private AlmacenamientoServiceImpl service;
+
+    @TempDir
+    Path directorio;
+
+    @BeforeEach
+    void configurar() {
+        when(archivoBlobRepository.agregarReferencia(anyString(), anyString(), anyLong(), any())).thenAnswer(invocacion -> {
+            blobs.putIfAbsent(invocacion.getArgument(0), invocacion.getArgument(1));
+            return 1;
+        });
+        when(archivoBlobRepository.findRutaByHash(anyString()))
+                .thenAnswer(invocacion -> Optional.ofNullable(blobs.get(invocacion.<String>getArgument(0))));
+
+        service = new AlmacenamientoServiceImpl(archivoBlobRepository, multimediaRepository,
+                new AlmacenLocal(directorio), mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(service, "uploadDir", directorio.toString());
+        ReflectionTestUtils.setField(service, "lote", 100);
+    }
+
+    @Test
+    void guardaEnSubdirectoriosPorHashYComparteElBlobDeContenidoRepetido() throws Exception {
+        ArchivoAlmacenado primero = service.guardar(service.recibir(stream("misma foto")), "jpg");
+        ArchivoAlmacenado segundo = service.guardar(service.recibir(stream("misma foto")), "jpeg");
+        ArchivoAlmacenado otro = service.guardar(service.recibir(stream("otra foto")), "../../etc");
+
+        String hash = primero.hashContenido();
+        assertThat(primero.ruta()).isEqualTo("blobs/" + hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + ".jpg");
+        assertThat(directorio.resolve(primero.ruta())).hasContent("misma foto");
+        assertThat(segundo.ruta()).isEqualTo(primero.ruta());
+        assertThat(otro.ruta()).endsWith("/" + otro.hashContenido());
+        assertThat(archivos(directorio.resolve("blobs"))).hasSize(2);
+        assertThat(archivos(directorio.resolve("tmp"))).isEmpty();
+        verify(archivoBlobRepository, times(3)).agregarReferencia(anyString(), anyString(), anyLong(), any());
+    }
+
+    @Test
+    void registraElBlobAntesDeEscribirloParaQueUnaSubidaRevertidaSeRecolecte() throws Exception {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        service = new AlmacenamientoServiceImpl(archivoBlobRepository, multimediaRepository,
+                new AlmacenLocal(directorio), transactionManager);
+        ReflectionTestUtils.setField(service, "uploadDir", directorio.toString());
+
+        service.guardar(service.recibir(stream("foto revertida")), "jpg");
+
+        InOrder orden = inOrder(transactionManager, archivoBlobRepository);
+        orden.verify(transactionManager).getTransaction(any());
+        orden.verify(archivoBlobRepository).registrar(anyString(), anyString(), anyLong(), any());
+        orden.verify(transactionManager).commit(any());
+        orden.verify(archivoBlobRepository).agregarReferencia(anyString(), anyString(), anyLong(), any());
+    }
+
+    @Test
+    void soloBorraElBlobAlQuitarLaUltimaReferencia() throws Exception {
+        ArchivoAlmacenado guardado = service.guardar(service.recibir(stream("compartida")), "png");
+        Path blob = directorio.resolve(guardado.ruta());
+        String hash = guardado.hashContenido();
+        when(archivoBlobRepository.quitarReferencia(eq(hash), any())).thenReturn(1);
+        when(archivoBlobRepository.findReferenciasByHash(hash)).thenReturn(Optional.of(1), Optional.of(0));
+        when(archivoBlobRepository.bloquearSinReferencias(hash)).thenReturn(Optional.of(
+                ArchivoBlob.builder().hash(hash).ruta(guardado.ruta()).referencias(0).build()));
+
+        service.liberar(hash, guardado.ruta());
+        assertThat(blob).exists();
+        verify(archivoBlobRepository, never()).bloquearSinReferencias(any());
+
+        service.liberar(hash, guardado.ruta());
+        assertThat(blob).doesNotExist();
+        verify(archivoBlobRepository).delete(any(ArchivoBlob.class));
+    }
+
+    @Test
+    void unBlobQueYaEstabaSinReferenciasQuedaParaElRecolector() throws Exception {
+        ArchivoAlmacenado guardado = service.guardar(service.recibir(stream("reutilizada")), "jpg");
+        String hash = guardado.hashContenido();
+        when(archivoBlobRepository.quitarReferencia(eq(hash), any())).thenReturn(0);
+
+        service.liberar(hash, guardado.ruta());
+
+        assertThat(directorio.resolve(guardado.ruta())).exists();
+        verify(archivoBlobRepository, never()).bloquearSinReferencias(any());
+        verify(archivoBlobRepository, never()).delete(any(ArchivoBlob.class));
+    }
+
+    @Test
+    void unArchivoAnteriorALaMigracionSeBorraDirectamente() throws Exception {
+        Path anterior = Files.writeString(directorio.resolve(UUID.randomUUID() + ".jpg"), "vieja");
+
+        service.liberar(null, anterior.toString());
+
+        assertThat(anterior).doesNotExist();
+        verify(archivoBlobRepository, never()).quitarReferencia(any(), any());
+    }
+
+    @Test
+    void migraLosArchivosExistentesDeduplicandoPorContenido() throws Exception {
+        Multimedia primera = multimedia(Files.writeString(directorio.resolve("a.jpg"), "foto repetida"));
+        Multimedia repetida = multimedia(Files.writeString(directorio.resolve("b.jpg"), "foto repetida"));
+        Multimedia sinArchivo = multimedia(directorio.resolve("perdida.jpg"));
+        when(multimediaRepository.findByIdGreaterThanAndUrlArchivoNotLikeOrderByIdAsc(any(), anyString(), any()))
+                .thenReturn(List.of(primera, repetida, sinArchivo));
+
+        ResultadoMigracion resultado = service.migrarArchivosExistentes();
+
+        assertThat(resultado).isEqualTo(new ResultadoMigracion(1, 1, 1));
+        assertThat(repetida.getUrlArchivo()).isEqualTo(primera.getUrlArchivo()).startsWith("blobs/");
+        assertThat(primera.getHashContenido()).hasSize(64);
+        assertThat(directorio.resolve(primera.getUrlArchivo())).hasContent("foto repetida");
+        assertThat(directorio.resolve("a.jpg")).doesNotExist();
+        assertThat(directorio.resolve("b.jpg")).doesNotExist();
+        assertThat(sinArchivo.getUrlArchivo()).isEqualTo(directorio.resolve("perdida.jpg").toString());
+    }
+
+    private static ByteArrayInputStream stream(String contenido) {
+        return new ByteArrayInputStream(contenido.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Multimedia multimedia(Path archivo) {
+        Multimedia multimedia = new Multimedia();
+        multimedia.setId(UUID.randomUUID());
+        multimedia.setUrlArchivo(archivo.toString());
+        return multimedia;
+    }
+
+    private static List<Path> archivos(Path raiz) throws Exception {
+        if (!Files.exists(raiz)) {
+            return List.of();
+        }
+        try (Stream<Path> recorrido = Files.walk(raiz)) {
+            return recorrido.filter(Files::isRegularFile).toList();
+        }
+    }
+}
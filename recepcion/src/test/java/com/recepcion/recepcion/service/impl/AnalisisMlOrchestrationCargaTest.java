@@ -0,0 +1,195 @@
+package com.recepcion.recepcion.service.impl;
+
+import com.recepcion.recepcion.client.MlHealthMonitor;
+import com.recepcion.recepcion.client.MlImagenClient;
+import com.recepcion.recepcion.client.MlImagenDuplicados;
+import com.recepcion.recepcion.client.MlTextoBatcher;
+import com.recepcion.recepcion.client.MlTextoCache;
+import com.recepcion.recepcion.client.MlTextoClient;
+import com.recepcion.recepcion.dto.ml.AnalizarTextoResponse;
+import com.recepcion.recepcion.entity.AnalisisMlTexto;
+import com.recepcion.recepcion.entity.EstadoIncidente;
+import com.recepcion.recepcion.entity.Incidente;
+import com.recepcion.recepcion.repository.AnalisisMlImagenRepository;
+import com.recepcion.recepcion.repository.AnalisisMlTextoRepository;
+import com.recepcion.recepcion.repository.IncidenteRepository;
+import com.recepcion.recepcion.repository.MultimediaRepository;
+import com.recepcion.recepcion.service.AlmacenamientoService;
+import com.recepcion.recepcion.service.MiniaturaService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Prueba de carga del orquestador ML con un pool de conexiones de tamaño fijo.
+ * Cada transacción ocupa una "conexión" del pool simulado; la llamada ML tarda
+ * {@link #LATENCIA_ML_MS} ms. Si la llamada se hiciera dentro de la transacción,
+ * {@link #ANALISIS_CONCURRENTES} análisis con {@link #TAMANO_POOL} conexiones tardarían
+ * al menos (ANALISIS_CONCURRENTES / TAMANO_POOL) * LATENCIA_ML_MS.
+ */
+@Slf4j
+class AnalisisMlOrchestrationCargaTest {
+
+    private static final int TAMANO_POOL = 4;
+    private static final int ANALISIS_CONCURRENTES = 64;
+    private static final long LATENCIA_ML_MS = 200;
+
+    @Test
+    void poolFijoSoportaAnalisisConcurrentesSinRetenerConexiones() throws Exception {
+        PoolConexionesSimulado pool = new PoolConexionesSimulado(TAMANO_POOL);
+        AtomicInteger llamadasConTransaccion = new AtomicInteger();
+
+        IncidenteRepository incidenteRepository = mock(IncidenteRepository.class);
+        AnalisisMlTextoRepository analisisTextoRepository = mock(AnalisisMlTextoRepository.class);
+        MlTextoBatcher mlTextoBatcher = mock(MlTextoBatcher.class);
+        MlHealthMonitor mlHealthMonitor = mock(MlHealthMonitor.class);
+
+        when(incidenteRepository.findByIdParaActualizar(any())).thenAnswer(inv -> Optional.of(nuevoIncidente(inv.getArgument(0))));
+        when(incidenteRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(analisisTextoRepository.save(any())).thenAnswer(inv -> inv.getArgument(0, AnalisisMlTexto.class));
+        when(mlHealthMonitor.textoDisponible()).thenReturn(true);
+        when(mlTextoBatcher.analizar(any(), any())).thenAnswer(inv -> {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                llamadasConTransaccion.incrementAndGet();
+            }
+            Thread.sleep(LATENCIA_ML_MS);
+            return respuestaMl();
+        });
+
+        AnalisisMlOrchestrationServiceImpl service = new AnalisisMlOrchestrationServiceImpl(
+                incidenteRepository,
+                mock(MultimediaRepository.class),
+                analisisTextoRepository,
+                mock(AnalisisMlImagenRepository.class),
+                mock(MlTextoClient.class),
+                mlTextoBatcher,
+                mock(MlTextoCache.class),
+                mock(MlImagenClient.class),
+                mock(MlImagenDuplicados.class),
+                mock(AlmacenamientoService.class),
+                mock(MiniaturaService.class),
+                mlHealthMonitor,
+                new TransactionTemplate(pool),
+                Runnable::run
+        );
+        ReflectionTestUtils.setField(service, "mlTextoEnabled", true);
+
+        ExecutorService executor = Executors.newFixedThreadPool(ANALISIS_CONCURRENTES);
+        CountDownLatch inicio = new CountDownLatch(1);
+        List<Future<?>> resultados = new ArrayList<>();
+        for (int i = 0; i < ANALISIS_CONCURRENTES; i++) {
+            resultados.add(executor.submit(() -> {
+                inicio.await();
+                service.analizarTextoAutomaticamente(UUID.randomUUID());
+                return null;
+            }));
+        }
+
+        long t0 = System.nanoTime();
+        inicio.countDown();
+        for (Future<?> resultado : resultados) {
+            resultado.get(30, TimeUnit.SECONDS);
+        }
+        long transcurridoMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+        executor.shutdown();
+
+        long minimoConTransaccionLarga = (ANALISIS_CONCURRENTES / TAMANO_POOL) * LATENCIA_ML_MS;
+        log.info("{} análisis concurrentes con pool de {} conexiones: {} ms " +
+                        "(>= {} ms si la llamada ML retuviera la conexión), máximo de conexiones en uso: {}",
+                ANALISIS_CONCURRENTES, TAMANO_POOL, transcurridoMs, minimoConTransaccionLarga, pool.maximoEnUso());
+
+        assertThat(llamadasConTransaccion.get()).isZero();
+        assertThat(pool.maximoEnUso()).isLessThanOrEqualTo(TAMANO_POOL);
+        assertThat(transcurridoMs).isLessThan(minimoConTransaccionLarga / 2);
+    }
+
+    private static Incidente nuevoIncidente(UUID id) {
+        return Incidente.builder()
+                .id(id)
+                .descripcionOriginal("Accidente de tránsito con dos heridos en la avenida")
+                .estadoIncidente(EstadoIncidente.RECIBIDO)
+                .build();
+    }
+
+    private static AnalizarTextoResponse respuestaMl() {
+        return AnalizarTextoResponse.builder()
+                .prioridadCalculada(2)
+                .nivelGravedad(4)
+                .tipoIncidentePredicho("accidente_transito")
+                .categoriasDetectadas(Map.of("trauma", 0.9))
+                .palabrasClaveCriticas(List.of("heridos"))
+                .scoreConfianza(new BigDecimal("0.9"))
+                .modeloVersion("kmeans-v1.0")
+                .build();
+    }
+
+    /**
+     * Transaction manager que simula un pool de conexiones de tamaño fijo:
+     * cada transacción toma una conexión al empezar y la devuelve al terminar
+     */
+    private static class PoolConexionesSimulado extends AbstractPlatformTransactionManager {
+
+        private final Semaphore conexiones;
+        private final AtomicInteger enUso = new AtomicInteger();
+        private final AtomicInteger maximo = new AtomicInteger();
+
+        PoolConexionesSimulado(int tamano) {
+            this.conexiones = new Semaphore(tamano, true);
+        }
+
+        int maximoEnUso() {
+            return maximo.get();
+        }
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            try {
+                if (!conexiones.tryAcquire(30, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("Timeout esperando conexión del pool");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            maximo.accumulateAndGet(enUso.incrementAndGet(), Math::max);
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doCleanupAfterCompletion(Object transaction) {
+            enUso.decrementAndGet();
+            conexiones.release();
+        }
+    }
+}
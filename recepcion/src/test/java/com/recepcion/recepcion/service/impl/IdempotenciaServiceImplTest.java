@@ -0,0 +1,218 @@
+package com.recepcion.recepcion.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.recepcion.recepcion.entity.ClaveIdempotencia;
+import com.recepcion.recepcion.entity.EstadoIdempotencia;
+import com.recepcion.recepcion.exception.BadRequestException;
+import com.recepcion.recepcion.exception.ConflictException;
+import com.recepcion.recepcion.repository.ClaveIdempotenciaRepository;
+import com.recepcion.recepcion.service.IdempotenciaService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class IdempotenciaServiceImplTest {
+
+    private static final String OPERACION = "POST /incidentes";
+
+    record Creado(String id) {
+    }
+
+    // Tabla clave_idempotencia en memoria, compartida por las "instancias" del servicio
+    private final Map<String, ClaveIdempotencia> tabla = new ConcurrentHashMap<>();
+    private final ClaveIdempotenciaRepository repository = mock(ClaveIdempotenciaRepository.class);
+    private final AtomicInteger ejecuciones = new AtomicInteger();
+
+    @BeforeEach
+    void configurar() {
+        when(repository.reservar(anyString(), any(), any(), any(), any())).thenAnswer(inv -> {
+            ClaveIdempotencia fila = ClaveIdempotencia.builder()
+                    .clave(inv.getArgument(0))
+                    .estado(EstadoIdempotencia.EN_PROCESO)
+                    .dueno(inv.getArgument(1))
+                    .bloqueadaHasta(inv.getArgument(3))
+                    .fechaCreacion(inv.getArgument(2))
+                    .fechaExpiracion(inv.getArgument(4))
+                    .build();
+            return tabla.putIfAbsent(fila.getClave(), fila) == null ? 1 : 0;
+        });
+        when(repository.retomarVencida(anyString(), any(), any(), any())).thenAnswer(inv -> {
+            ClaveIdempotencia fila = tabla.get(inv.<String>getArgument(0));
+            if (fila == null || fila.getEstado() != EstadoIdempotencia.EN_PROCESO
+                    || !fila.getBloqueadaHasta().isBefore(inv.getArgument(2))) {
+                return 0;
+            }
+            fila.setDueno(inv.getArgument(1));
+            fila.setBloqueadaHasta(inv.getArgument(3));
+            return 1;
+        });
+        when(repository.completar(anyString(), any(), anyInt(), any())).thenAnswer(inv -> {
+            ClaveIdempotencia fila = tabla.get(inv.<String>getArgument(0));
+            if (fila == null || !inv.getArgument(1).equals(fila.getDueno())) {
+                return 0;
+            }
+            fila.setEstado(EstadoIdempotencia.COMPLETADA);
+            fila.setStatusHttp(inv.getArgument(2));
+            fila.setRespuesta(inv.getArgument(3));
+            return 1;
+        });
+        when(repository.liberar(anyString(), any())).thenAnswer(inv -> {
+            ClaveIdempotencia fila = tabla.get(inv.<String>getArgument(0));
+            return fila != null && inv.getArgument(1).equals(fila.getDueno())
+                    && tabla.remove(fila.getClave(), fila) ? 1 : 0;
+        });
+        when(repository.findById(anyString())).thenAnswer(inv -> Optional.ofNullable(tabla.get(inv.<String>getArgument(0))));
+    }
+
+    @Test
+    void sinClaveEjecutaSinTocarLaBase() {
+        ResponseEntity<Creado> respuesta = nuevaInstancia().ejecutar(OPERACION, null, Creado.class, this::crear);
+
+        assertThat(respuesta.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(ejecuciones).hasValue(1);
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void elReintentoDevuelveLaRespuestaOriginalSinEjecutar() {
+        IdempotenciaServiceImpl service = nuevaInstancia();
+        ResponseEntity<Creado> original = service.ejecutar(OPERACION, "k1", Creado.class, this::crear);
+
+        ResponseEntity<Creado> enCache = service.ejecutar(OPERACION, "k1", Creado.class, this::crear);
+        // Otra instancia no tiene la respuesta en memoria: la toma de la base
+        ResponseEntity<Creado> enBase = nuevaInstancia().ejecutar(OPERACION, "k1", Creado.class, this::crear);
+
+        assertThat(ejecuciones).hasValue(1);
+        assertThat(original.getHeaders().containsKey(IdempotenciaService.HEADER_REPETIDA)).isFalse();
+        for (ResponseEntity<Creado> repetida : List.of(enCache, enBase)) {
+            assertThat(repetida.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+            assertThat(repetida.getBody()).isEqualTo(original.getBody());
+            assertThat(repetida.getHeaders().getFirst(IdempotenciaService.HEADER_REPETIDA)).isEqualTo("true");
+        }
+        // La misma clave en otra operación es otra solicitud
+        service.ejecutar("POST /multimedia/incidente/x/subir", "k1", Creado.class, this::crear);
+        assertThat(ejecuciones).hasValue(2);
+    }
+
+    @Test
+    void losDuplicadosConcurrentesEsperanLaPrimeraEjecucion() throws Exception {
+        IdempotenciaServiceImpl service = nuevaInstancia();
+        IdempotenciaServiceImpl otraInstancia = nuevaInstancia();
+        CountDownLatch enCurso = new CountDownLatch(1);
+        CountDownLatch terminar = new CountDownLatch(1);
+
+        CompletableFuture<ResponseEntity<Creado>> primera = CompletableFuture.supplyAsync(() ->
+                service.ejecutar(OPERACION, "k2", Creado.class, () -> {
+                    enCurso.countDown();
+                    esperar(terminar);
+                    return crear();
+                }));
+        assertThat(enCurso.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<ResponseEntity<Creado>> mismaInstancia = CompletableFuture.supplyAsync(() ->
+                service.ejecutar(OPERACION, "k2", Creado.class, this::crear));
+        CompletableFuture<ResponseEntity<Creado>> deOtraInstancia = CompletableFuture.supplyAsync(() ->
+                otraInstancia.ejecutar(OPERACION, "k2", Creado.class, this::crear));
+        Thread.sleep(100);
+        assertThat(mismaInstancia).isNotDone();
+        assertThat(deOtraInstancia).isNotDone();
+
+        terminar.countDown();
+
+        Creado creado = primera.get(5, TimeUnit.SECONDS).getBody();
+        assertThat(mismaInstancia.get(5, TimeUnit.SECONDS).getBody()).isEqualTo(creado);
+        assertThat(deOtraInstancia.get(5, TimeUnit.SECONDS).getBody()).isEqualTo(creado);
+        assertThat(ejecuciones).hasValue(1);
+    }
+
+    @Test
+    void unaEjecucionFallidaLiberaLaClaveParaElReintento() {
+        IdempotenciaServiceImpl service = nuevaInstancia();
+
+        assertThatThrownBy(() -> service.ejecutar(OPERACION, "k3", Creado.class, () -> {
+            throw new BadRequestException("Datos inválidos");
+        })).isInstanceOf(BadRequestException.class);
+
+        assertThat(tabla).doesNotContainKey(OPERACION + " k3");
+        ResponseEntity<Creado> reintento = service.ejecutar(OPERACION, "k3", Creado.class, this::crear);
+        assertThat(reintento.getHeaders().containsKey(IdempotenciaService.HEADER_REPETIDA)).isFalse();
+        assertThat(ejecuciones).hasValue(1);
+    }
+
+    @Test
+    void retomaLaReservaDeUnaInstanciaQueNoTermino() {
+        tabla.put(OPERACION + " k4", ClaveIdempotencia.builder()
+                .clave(OPERACION + " k4")
+                .estado(EstadoIdempotencia.EN_PROCESO)
+                .dueno(UUID.randomUUID())
+                .bloqueadaHasta(LocalDateTime.now().minusSeconds(1))
+                .build());
+
+        nuevaInstancia().ejecutar(OPERACION, "k4", Creado.class, this::crear);
+
+        assertThat(ejecuciones).hasValue(1);
+        assertThat(tabla.get(OPERACION + " k4").getEstado()).isEqualTo(EstadoIdempotencia.COMPLETADA);
+    }
+
+    @Test
+    void unaEjecucionLentaCuyaReservaFueRetomadaNoLaCompletaNiLaLibera() {
+        UUID otroDueno = UUID.randomUUID();
+
+        assertThatThrownBy(() -> nuevaInstancia().ejecutar(OPERACION, "k5", Creado.class, () -> {
+            // Mientras tanto venció el bloqueo y otra instancia retomó la reserva
+            tabla.get(OPERACION + " k5").setDueno(otroDueno);
+            return crear();
+        })).isInstanceOf(ConflictException.class);
+
+        ClaveIdempotencia fila = tabla.get(OPERACION + " k5");
+        assertThat(fila.getEstado()).isEqualTo(EstadoIdempotencia.EN_PROCESO);
+        assertThat(fila.getDueno()).isEqualTo(otroDueno);
+        assertThat(fila.getRespuesta()).isNull();
+    }
+
+    private IdempotenciaServiceImpl nuevaInstancia() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(inv -> new SimpleTransactionStatus());
+        IdempotenciaServiceImpl service = new IdempotenciaServiceImpl(repository, new ObjectMapper(),
+                transactionManager, 24, 100, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "bloqueoSegundos", 120L);
+        ReflectionTestUtils.setField(service, "esperaMaximaMs", 5000L);
+        ReflectionTestUtils.setField(service, "sondeoMs", 10L);
+        return service;
+    }
+
+    private ResponseEntity<Creado> crear() {
+        return ResponseEntity.status(HttpStatus.CREATED).body(new Creado("incidente-" + ejecuciones.incrementAndGet()));
+    }
+
+    private static void esperar(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.recepcion.recepcion.service.impl;
+
+import com.recepcion.recepcion.dto.request.CrearIncidenteRequest;
+import com.recepcion.recepcion.dto.request.SolicitanteRequest;
+import com.recepcion.recepcion.dto.request.UbicacionRequest;
+import com.recepcion.recepcion.dto.response.IncidenteLoteResponse;
+import com.recepcion.recepcion.entity.CanalOrigen;
+import com.recepcion.recepcion.entity.Incidente;
+import com.recepcion.recepcion.entity.Solicitante;
+import com.recepcion.recepcion.entity.Ubicacion;
+import com.recepcion.recepcion.event.IncidentesCreadosEvent;
+import com.recepcion.recepcion.exception.BadRequestException;
+import com.recepcion.recepcion.exception.SolicitanteObsoletoException;
+import com.recepcion.recepcion.mapper.IncidenteMapper;
+import com.recepcion.recepcion.mapper.UbicacionMapper;
+import com.recepcion.recepcion.repository.*;
+import com.recepcion.recepcion.service.AlmacenamientoService;
+import com.recepcion.recepcion.service.AnalisisMlOrchestrationService;
+import com.recepcion.recepcion.service.MiniaturaService;
+import com.recepcion.recepcion.service.SolicitanteCache;
+import com.recepcion.recepcion.service.UbicacionResolver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class IncidenteServiceImplTest {
+
+    private final IncidenteRepository incidenteRepository = mock(IncidenteRepository.class);
+    private final SolicitanteRepository solicitanteRepository = mock(SolicitanteRepository.class);
+    private final UbicacionRepository ubicacionRepository = mock(UbicacionRepository.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final SolicitanteCache solicitanteCache = mock(SolicitanteCache.class);
+    private IncidenteServiceImpl service;
+
+    @BeforeEach
+    void configurar() {
+        // saveAll asigna IDs como lo haría Hibernate al persistir
+        when(solicitanteRepository.insertarSiNoExiste(any(), any(), any(), any(), any())).thenAnswer(invocacion ->
+                Optional.of(Solicitante.builder()
+                        .id(invocacion.getArgument(0))
+                        .nombreCompleto(invocacion.getArgument(1))
+                        .telefono(invocacion.getArgument(2))
+                        .build()));
+        when(ubicacionRepository.saveAll(anyList())).thenAnswer(invocacion -> {
+            List<Ubicacion> ubicaciones = invocacion.getArgument(0);
+            ubicaciones.forEach(u -> u.setId(UUID.randomUUID()));
+            return ubicaciones;
+        });
+        when(incidenteRepository.saveAll(anyList())).thenAnswer(invocacion -> {
+            List<Incidente> incidentes = invocacion.getArgument(0);
+            incidentes.forEach(i -> i.setId(UUID.randomUUID()));
+            return incidentes;
+        });
+
+        service = new IncidenteServiceImpl(incidenteRepository, solicitanteRepository, ubicacionRepository,
+                mock(AnalisisMlTextoRepository.class), mock(MultimediaRepository.class),
+                mock(AnalisisMlImagenRepository.class), mock(IncidenteMapper.class),
+                new UbicacionResolver(ubicacionRepository, Mappers.getMapper(UbicacionMapper.class), true, 0.0005,
+                        1000, 0, new SimpleMeterRegistry()),
+                mock(AnalisisMlOrchestrationService.class), eventPublisher, mock(AlmacenamientoService.class),
+                mock(MiniaturaService.class), solicitanteCache, Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(service, "maxItemsLote", 3);
+    }
+
+    @Test
+    void creaElLoteResolviendoSolicitantesConUnaConsultaYPublicaUnSoloEvento() {
+        Solicitante existente = Solicitante.builder().id(UUID.randomUUID()).telefono("+59170000001").build();
+        when(solicitanteRepository.findByTelefonoIn(any())).thenReturn(List.of(existente));
+
+        IncidenteLoteResponse respuesta = service.crearLote(List.of(
+                reporte("+59170000001", "Choque con heridos en la avenida"),
+                reporte("+59170000002", "Persona desmayada en la calle"),
+                reporte("+59170000002", "Sigue sin responder")));
+
+        assertThat(respuesta.getCreados()).isEqualTo(3);
+        assertThat(respuesta.getRechazados()).isZero();
+        assertThat(respuesta.getResultados()).extracting(IncidenteLoteResponse.Resultado::getIndice).containsExactly(0, 1, 2);
+        assertThat(respuesta.getResultados()).allSatisfy(r -> assertThat(r.getIncidenteId()).isNotNull());
+
+        verify(solicitanteRepository).findByTelefonoIn(argThat((Collection<String> t) -> t.size() == 2));
+        // Un solo insert para el teléfono nuevo aunque se repita en el lote, ninguno para el existente
+        verify(solicitanteRepository).insertarSiNoExiste(any(), any(), eq("+59170000002"), eq("whatsapp"), any());
+        verify(solicitanteRepository, never()).insertarSiNoExiste(any(), any(), eq("+59170000001"), any(), any());
+        verify(solicitanteRepository, never()).findByTelefono(any());
+        verify(incidenteRepository, never()).save(any());
+        // Los tres reportes son de la misma esquina: una sola ubicación
+        verify(ubicacionRepository).saveAll(argThat((List<Ubicacion> ubicaciones) -> ubicaciones.size() == 1));
+
+        ArgumentCaptor<IncidentesCreadosEvent> evento = ArgumentCaptor.forClass(IncidentesCreadosEvent.class);
+        verify(eventPublisher).publishEvent(evento.capture());
+        assertThat(evento.getValue().getIncidenteIds()).hasSize(3);
+    }
+
+    @Test
+    void creaLosSolicitantesNuevosEnOrdenDeTelefonoYLeeLosQueOtroCreoALaVez() {
+        Solicitante ajeno = Solicitante.builder().id(UUID.randomUUID()).telefono("+59170000005").build();
+        when(solicitanteRepository.insertarSiNoExiste(any(), any(), eq("+59170000005"), any(), any()))
+                .thenReturn(Optional.empty());
+        when(solicitanteRepository.findByTelefono("+59170000005")).thenReturn(Optional.of(ajeno));
+
+        IncidenteLoteResponse respuesta = service.crearLote(List.of(
+                reporte("+59170000009", "Choque con heridos en la avenida"),
+                reporte("+59170000005", "Persona desmayada en la calle"),
+                reporte("+59170000007", "Incendio en un domicilio")));
+
+        assertThat(respuesta.getCreados()).isEqualTo(3);
+        InOrder orden = inOrder(solicitanteRepository);
+        orden.verify(solicitanteRepository).insertarSiNoExiste(any(), any(), eq("+59170000005"), any(), any());
+        orden.verify(solicitanteRepository).insertarSiNoExiste(any(), any(), eq("+59170000007"), any(), any());
+        orden.verify(solicitanteRepository).insertarSiNoExiste(any(), any(), eq("+59170000009"), any(), any());
+        verify(solicitanteRepository).findByTelefono("+59170000005");
+    }
+
+    @Test
+    void unSolicitanteDeLaCacheQueYaNoExisteSeDescartaParaElReintento() {
+        UUID borrado = UUID.randomUUID();
+        when(solicitanteCache.buscar("+59170000001")).thenReturn(Optional.of(new SolicitanteCache.Entrada(
+                borrado, "Ana", "+59170000001", CanalOrigen.WHATSAPP, LocalDateTime.now())));
+        when(incidenteRepository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("fk_solicitante"));
+
+        assertThatThrownBy(() -> service.crear(reporte("+59170000001", "Choque con heridos en la avenida")))
+                .isInstanceOf(SolicitanteObsoletoException.class);
+
+        verify(solicitanteCache).descartar("+59170000001");
+        verify(solicitanteRepository, never()).insertarSiNoExiste(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void informaLosItemsInvalidosSinRechazarElResto() {
+        when(solicitanteRepository.findByTelefonoIn(any())).thenReturn(List.of());
+        CrearIncidenteRequest sinDescripcion = reporte("+59170000003", " ");
+        CrearIncidenteRequest telefonoInvalido = reporte("abc", "Incendio en una casa");
+
+        IncidenteLoteResponse respuesta = service.crearLote(List.of(
+                sinDescripcion, reporte("+59170000004", "Motociclista atropellado"), telefonoInvalido));
+
+        assertThat(respuesta.getCreados()).isEqualTo(1);
+        assertThat(respuesta.getRechazados()).isEqualTo(2);
+        assertThat(respuesta.getResultados().get(0).getCreado()).isFalse();
+        assertThat(respuesta.getResultados().get(0).getErrores()).singleElement().asString().startsWith("descripcionOriginal");
+        assertThat(respuesta.getResultados().get(1).getCreado()).isTrue();
+        assertThat(respuesta.getResultados().get(2).getErrores()).singleElement().asString().startsWith("solicitante.telefono");
+        verify(incidenteRepository).saveAll(argThat((List<Incidente> incidentes) -> incidentes.size() == 1));
+    }
+
+    @Test
+    void rechazaUnLoteMasGrandeQueElMaximo() {
+        List<CrearIncidenteRequest> lote = List.of(reporte("+59170000005", "a"), reporte("+59170000006", "b"),
+                reporte("+59170000007", "c"), reporte("+59170000008", "d"));
+
+        assertThatThrownBy(() -> service.crearLote(lote)).isInstanceOf(BadRequestException.class);
+        verifyNoInteractions(incidenteRepository, eventPublisher);
+    }
+
+    private static CrearIncidenteRequest reporte(String telefono, String descripcion) {
+        return CrearIncidenteRequest.builder()
+                .solicitante(SolicitanteRequest.builder()
+                        .nombreCompleto("Usuario " + telefono)
+                        .telefono(telefono)
+                        .canalOrigen(CanalOrigen.WHATSAPP)
+                        .build())
+                .ubicacion(UbicacionRequest.builder()
+                        .descripcionTextual("Av. de prueba")
+                        .latitud(new BigDecimal("-17.78"))
+                        .longitud(new BigDecimal("-63.18"))
+                        .build())
+                .descripcionOriginal(descripcion)
+                .build();
+    }
+}
@@ -0,0 +1,217 @@
+package com.recepcion.recepcion.service.impl;
+
+import com.recepcion.recepcion.almacen.AlmacenLocal;
+import com.recepcion.recepcion.almacen.RecursoAlmacenado;
+import com.recepcion.recepcion.entity.Multimedia;
+import com.recepcion.recepcion.exception.ServiceUnavailableException;
+import com.recepcion.recepcion.repository.ArchivoMultimediaVista;
+import com.recepcion.recepcion.repository.MultimediaRepository;
+import com.recepcion.recepcion.service.AlmacenamientoService;
+import com.recepcion.recepcion.service.MiniaturaService.Tamano;
+import com.recepcion.recepcion.service.MultimediaService;
+import com.recepcion.recepcion.util.HashPerceptual;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class MiniaturaServiceImplTest {
+
+    private final MultimediaRepository multimediaRepository = mock(MultimediaRepository.class);
+    private final AlmacenamientoService almacenamientoService = mock(AlmacenamientoService.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    private final UUID id = UUID.randomUUID();
+    private final Multimedia multimedia = new Multimedia();
+    private MiniaturaServiceImpl service;
+
+    @TempDir
+    Path directorio;
+
+    @BeforeEach
+    void configurar() {
+        AlmacenLocal almacen = new AlmacenLocal(directorio);
+        executor.setCorePoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.initialize();
+        doAnswer(invocacion -> {
+            invocacion.<Consumer<Object>>getArgument(0).accept(new SimpleTransactionStatus());
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(multimediaRepository.findById(id)).thenReturn(Optional.of(multimedia));
+
+        when(almacenamientoService.descarga(anyString(), any())).thenAnswer(invocacion -> {
+            String clave = invocacion.getArgument(0);
+            long tamano = almacen.tamano(clave);
+            return new AlmacenamientoService.Descarga(new RecursoAlmacenado(almacen, clave, tamano),
+                    almacen.rutaLocal(clave).orElseThrow(), null, tamano);
+        });
+
+        service = new MiniaturaServiceImpl(multimediaRepository, almacen, almacenamientoService, executor,
+                transactionTemplate, meterRegistry);
+        ReflectionTestUtils.setField(service, "uploadDir", directorio.toString());
+        ReflectionTestUtils.setField(service, "calidad", 0.8f);
+        ReflectionTestUtils.setField(service, "maxPixeles", 50_000_000L);
+    }
+
+    @AfterEach
+    void cerrar() {
+        executor.shutdown();
+    }
+
+    @Test
+    void generaTodosLosTamanosYGuardaLaMiniaturaPequena() throws IOException {
+        original(new BufferedImage(3000, 2000, BufferedImage.TYPE_INT_ARGB));
+
+        Optional<String> url = service.generar(id);
+
+        assertThat(url).isPresent();
+        assertThat(multimedia.getUrlMiniatura()).isEqualTo(url.get());
+        assertThat(multimedia.getHashPerceptual()).isNotNull();
+        assertThat(dimensiones(Tamano.PEQUENA)).containsExactly(160, 107);
+        assertThat(dimensiones(Tamano.MEDIANA)).containsExactly(480, 320);
+        assertThat(dimensiones(Tamano.GRANDE)).containsExactly(1024, 683);
+        assertThat(meterRegistry.get("multimedia.miniaturas.generacion").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("multimedia.miniaturas.cola").gauge().value()).isZero();
+    }
+
+    @Test
+    void noAgrandaImagenesChicasYRegenerarEsIdempotente() throws IOException {
+        original(new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB));
+
+        service.generar(id);
+        byte[] primera = Files.readAllBytes(directorio.resolve("miniaturas").resolve(id + "-grande.jpg"));
+        service.generar(id);
+
+        assertThat(dimensiones(Tamano.GRANDE)).containsExactly(300, 200);
+        assertThat(dimensiones(Tamano.MEDIANA)).containsExactly(300, 200);
+        assertThat(Files.readAllBytes(directorio.resolve("miniaturas").resolve(id + "-grande.jpg"))).isEqualTo(primera);
+        try (var archivos = Files.list(directorio.resolve("miniaturas"))) {
+            assertThat(archivos).hasSize(Tamano.values().length);
+        }
+    }
+
+    @Test
+    void unaMiniaturaQueFaltaSeEncolaUnaSolaVezSinDecodificarEnElRequest() throws Exception {
+        original(new BufferedImage(800, 800, BufferedImage.TYPE_INT_RGB));
+        executor.setQueueCapacity(10);
+        executor.initialize();
+        CountDownLatch liberar = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                liberar.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        assertThatThrownBy(() -> service.obtenerMiniatura(id, Tamano.MEDIANA))
+                .isInstanceOf(ServiceUnavailableException.class);
+        assertThatThrownBy(() -> service.obtenerMiniatura(id, Tamano.PEQUENA))
+                .isInstanceOf(ServiceUnavailableException.class);
+        assertThat(executor.getThreadPoolExecutor().getQueue()).hasSize(1);
+
+        liberar.countDown();
+        executor.shutdown();
+        assertThat(executor.getThreadPoolExecutor().awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        MultimediaService.Archivo miniatura = service.obtenerMiniatura(id, Tamano.MEDIANA);
+
+        assertThat(miniatura.ruta()).exists();
+        assertThat(miniatura.nombreArchivo()).endsWith(".jpg");
+        assertThat(miniatura.hashContenido()).isEqualTo("abc123-mediana");
+    }
+
+    @Test
+    void unArchivoQueNoEsImagenNoGeneraMiniaturasYCuentaComoFallida() throws IOException {
+        Path ruta = Files.writeString(directorio.resolve("nota.jpg"), "no soy una imagen");
+        vista(ruta);
+
+        assertThat(service.generar(id)).isEmpty();
+
+        assertThat(multimedia.getUrlMiniatura()).isNull();
+        assertThat(meterRegistry.get("multimedia.miniaturas.fallidas").counter().count()).isEqualTo(1);
+        verify(transactionTemplate, never()).executeWithoutResult(any());
+    }
+
+    @Test
+    void unaImagenConMasPixelesQueElMaximoNoSeDecodifica() throws IOException {
+        ReflectionTestUtils.setField(service, "maxPixeles", 1_000_000L);
+        original(new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_RGB));
+
+        assertThat(service.generar(id)).isEmpty();
+
+        assertThat(multimedia.getUrlMiniatura()).isNull();
+        assertThat(multimedia.getHashPerceptual()).isNull();
+        assertThat(meterRegistry.get("multimedia.miniaturas.fallidas").counter().count()).isEqualTo(1);
+        verify(transactionTemplate, never()).executeWithoutResult(any());
+    }
+
+    @Test
+    void elHashPerceptualSeCalculaSubmuestreadoAntesDeLasMiniaturasYSeConserva() throws IOException {
+        BufferedImage foto = new BufferedImage(2400, 1600, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < foto.getHeight(); y++) {
+            for (int x = 0; x < foto.getWidth(); x++) {
+                int gris = (int) (127 + 120 * Math.sin(x / 150.0) * Math.cos(y / 110.0));
+                foto.setRGB(x, y, gris << 16 | gris << 8 | gris);
+            }
+        }
+        original(foto);
+        multimedia.setUrlArchivo(directorio.resolve("original.png").toString());
+
+        Optional<Long> hash = service.obtenerHashPerceptual(id);
+
+        assertThat(hash).isPresent();
+        assertThat(multimedia.getHashPerceptual()).isEqualTo(hash.get());
+        assertThat(multimedia.getUrlMiniatura()).isNull();
+        // Submuestreada o completa, la misma foto da un hash casi igual
+        assertThat(HashPerceptual.distancia(hash.get(), HashPerceptual.calcular(foto))).isLessThanOrEqualTo(4);
+
+        service.generar(id);
+        assertThat(multimedia.getHashPerceptual()).isEqualTo(hash.get());
+        assertThat(service.obtenerHashPerceptual(id)).contains(hash.get());
+    }
+
+    private void original(BufferedImage imagen) throws IOException {
+        Path ruta = directorio.resolve("original.png");
+        ImageIO.write(imagen, "png", ruta.toFile());
+        vista(ruta);
+    }
+
+    private void vista(Path ruta) {
+        ArchivoMultimediaVista vista = mock(ArchivoMultimediaVista.class);
+        when(vista.getUrlArchivo()).thenReturn(ruta.toString());
+        when(vista.getHashContenido()).thenReturn("abc123");
+        when(vista.getFechaSubida()).thenReturn(LocalDateTime.now());
+        when(multimediaRepository.findArchivoById(id)).thenReturn(Optional.of(vista));
+    }
+
+    private int[] dimensiones(Tamano tamano) throws IOException {
+        BufferedImage miniatura = ImageIO.read(
+                directorio.resolve("miniaturas").resolve(id + "-" + tamano.name().toLowerCase() + ".jpg").toFile());
+        return new int[]{miniatura.getWidth(), miniatura.getHeight()};
+    }
+}
@@ -0,0 +1,100 @@
+package com.recepcion.recepcion.service.impl;
+
+import com.recepcion.recepcion.entity.EstadoIncidente;
+import com.recepcion.recepcion.entity.EstadoMlJob;
+import com.recepcion.recepcion.entity.Incidente;
+import com.recepcion.recepcion.entity.MlJob;
+import com.recepcion.recepcion.entity.TipoMlJob;
+import com.recepcion.recepcion.repository.IncidenteRepository;
+import com.recepcion.recepcion.repository.MlJobRepository;
+import com.recepcion.recepcion.repository.MultimediaRepository;
+import com.recepcion.recepcion.service.MlJobService;
+import com.recepcion.recepcion.service.MlReconciliacionService.Cursor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MlReconciliacionServiceImplTest {
+
+    private final MlJobRepository mlJobRepository = mock(MlJobRepository.class);
+    private final IncidenteRepository incidenteRepository = mock(IncidenteRepository.class);
+    private final MlJobService mlJobService = mock(MlJobService.class);
+    private MlReconciliacionServiceImpl service;
+
+    @BeforeEach
+    void configurar() {
+        service = new MlReconciliacionServiceImpl(mlJobRepository, incidenteRepository,
+                mock(MultimediaRepository.class), mlJobService, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "lote", 2);
+        ReflectionTestUtils.setField(service, "maxReencolados", 3);
+        ReflectionTestUtils.setField(service, "backoffBaseSegundos", 60L);
+        ReflectionTestUtils.setField(service, "backoffMaxSegundos", 200L);
+        when(mlJobRepository.intentarBloqueoAsesor(anyLong())).thenReturn(true);
+    }
+
+    @Test
+    void reencolaConBackoffExponencialYDevuelveElCursorDeLaPaginaSiguiente() {
+        Incidente sinFallos = incidente();
+        Incidente conDosFallos = incidente();
+        when(incidenteRepository.findAnalisisTextoHuerfanos(any(), any(), any(), anyInt()))
+                .thenReturn(List.of(sinFallos, conDosFallos));
+        when(mlJobRepository.countByReferenciaIdAndTipoAndEstado(sinFallos.getId(), TipoMlJob.ANALISIS_TEXTO, EstadoMlJob.ERROR))
+                .thenReturn(0L);
+        when(mlJobRepository.countByReferenciaIdAndTipoAndEstado(conDosFallos.getId(), TipoMlJob.ANALISIS_TEXTO, EstadoMlJob.ERROR))
+                .thenReturn(2L);
+
+        Optional<Cursor> siguiente = service.reconciliarPagina(TipoMlJob.ANALISIS_TEXTO, Cursor.INICIO);
+
+        verify(mlJobService).reencolar(TipoMlJob.ANALISIS_TEXTO, sinFallos.getId(), Duration.ZERO);
+        verify(mlJobService).reencolar(TipoMlJob.ANALISIS_TEXTO, conDosFallos.getId(), Duration.ofSeconds(120));
+        assertThat(siguiente).contains(new Cursor(conDosFallos.getFechaUltimaActualizacion(), conDosFallos.getId()));
+    }
+
+    @Test
+    void descartaElAnalisisQueAgotoLosReencolados() {
+        Incidente veneno = incidente();
+        MlJob ultimoJob = MlJob.builder().estado(EstadoMlJob.ERROR).errorMensaje("HTTP 500").build();
+        when(incidenteRepository.findAnalisisTextoHuerfanos(any(), any(), any(), anyInt())).thenReturn(List.of(veneno));
+        when(mlJobRepository.countByReferenciaIdAndTipoAndEstado(veneno.getId(), TipoMlJob.ANALISIS_TEXTO, EstadoMlJob.ERROR))
+                .thenReturn(3L);
+        when(mlJobRepository.findFirstByReferenciaIdAndTipoAndEstadoOrderByFechaCreacionDesc(
+                veneno.getId(), TipoMlJob.ANALISIS_TEXTO, EstadoMlJob.ERROR)).thenReturn(Optional.of(ultimoJob));
+
+        assertThat(service.reconciliarPagina(TipoMlJob.ANALISIS_TEXTO, Cursor.INICIO)).isEmpty();
+
+        assertThat(ultimoJob.getEstado()).isEqualTo(EstadoMlJob.DESCARTADO);
+        assertThat(veneno.getEstadoIncidente()).isEqualTo(EstadoIncidente.RECIBIDO);
+        verify(mlJobService, never()).reencolar(any(), any(), any());
+    }
+
+    @Test
+    void noHaceNadaSiOtraInstanciaTieneElBloqueo() {
+        when(mlJobRepository.intentarBloqueoAsesor(anyLong())).thenReturn(false);
+
+        assertThat(service.reconciliarPagina(TipoMlJob.ANALISIS_TEXTO, Cursor.INICIO)).isEmpty();
+
+        verify(incidenteRepository, never()).findAnalisisTextoHuerfanos(any(), any(), any(), eq(2));
+    }
+
+    private Incidente incidente() {
+        Incidente incidente = new Incidente();
+        incidente.setId(UUID.randomUUID());
+        incidente.setEstadoIncidente(EstadoIncidente.EN_ANALISIS_TEXTO);
+        incidente.setFechaUltimaActualizacion(LocalDateTime.now().minusHours(1));
+        return incidente;
+    }
+}
@@ -0,0 +1,270 @@
+package com.recepcion.recepcion.support;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generador de carga contra una instancia de recepcion. Cada usuario virtual repite el flujo de un
+ * reporte real: crea el incidente, sube sus imágenes y consulta el estado hasta que el análisis ML termina.
+ * Mide la latencia de cada endpoint y el tiempo desde la creación hasta el fin del análisis.
+ */
+public class CargaIntake {
+
+    public static final String CREAR_INCIDENTE = "POST /incidentes";
+    public static final String SUBIR_IMAGEN = "POST /multimedia/incidente/{id}/subir";
+    public static final String CONSULTAR_INCIDENTE = "GET /incidentes/{id}";
+    public static final String ANALISIS_COMPLETO = "creación -> análisis terminado";
+
+    private static final Set<String> ESTADOS_EN_ANALISIS = Set.of("RECIBIDO", "EN_ANALISIS_TEXTO", "EN_ANALISIS_IMAGEN");
+
+    private static final String[] DESCRIPCIONES = {
+            "Choque entre dos autos en la avenida, hay dos heridos y uno está inconsciente",
+            "Persona mayor se desmayó en la calle, no responde y respira con dificultad",
+            "Motociclista atropellado, sangra mucho de la pierna",
+            "Niño con fiebre alta y convulsiones en su casa",
+            "Caída de un trabajador desde un andamio, no puede moverse"
+    };
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * @param usuarios              usuarios virtuales en paralelo
+     * @param incidentesPorUsuario  reportes que hace cada usuario, uno tras otro
+     * @param imagenesPorIncidente  imágenes que sube con cada reporte
+     * @param intervaloSondeo       espera entre consultas del estado
+     * @param esperaMaximaAnalisis  tras esto el incidente cuenta como no terminado
+     */
+    public record Escenario(int usuarios, int incidentesPorUsuario, int imagenesPorIncidente,
+                            Duration intervaloSondeo, Duration esperaMaximaAnalisis) {
+    }
+
+    public record Estadistica(String endpoint, int llamadas, int errores, double porSegundo,
+                              long p50Ms, long p95Ms, long p99Ms, long maximoMs) {
+    }
+
+    public record Reporte(Duration duracion, int incidentesCreados, int incidentesSinTerminar,
+                          Map<String, Estadistica> porEndpoint) {
+
+        public String formatear() {
+            StringBuilder salida = new StringBuilder(String.format(
+                    "%d incidentes en %.1f s (%d sin terminar el análisis)%n",
+                    incidentesCreados, duracion.toMillis() / 1000.0, incidentesSinTerminar));
+            salida.append(String.format("%-40s %8s %7s %8s %7s %7s %7s %7s%n",
+                    "endpoint", "llamadas", "errores", "req/s", "p50", "p95", "p99", "max"));
+            porEndpoint.values().forEach(e -> salida.append(String.format(
+                    "%-40s %8d %7d %8.1f %7d %7d %7d %7d%n", e.endpoint(), e.llamadas(), e.errores(),
+                    e.porSegundo(), e.p50Ms(), e.p95Ms(), e.p99Ms(), e.maximoMs())));
+            return salida.toString();
+        }
+    }
+
+    private final String baseUrl;
+    private final HttpClient http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final Map<String, Mediciones> mediciones = new ConcurrentHashMap<>();
+    private final AtomicInteger creados = new AtomicInteger();
+    private final AtomicInteger sinTerminar = new AtomicInteger();
+
+    /**
+     * @param baseUrl URL de la API, incluyendo el context path (p. ej. http://localhost:8080/api)
+     */
+    public CargaIntake(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public Reporte ejecutar(Escenario escenario) throws InterruptedException {
+        ExecutorService usuarios = Executors.newFixedThreadPool(escenario.usuarios());
+        long inicio = System.nanoTime();
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int u = 0; u < escenario.usuarios(); u++) {
+                tareas.add(usuarios.submit(() -> {
+                    for (int i = 0; i < escenario.incidentesPorUsuario(); i++) {
+                        reportar(escenario);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> tarea : tareas) {
+                try {
+                    tarea.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Falló un usuario virtual", e.getCause());
+                }
+            }
+        } finally {
+            usuarios.shutdownNow();
+        }
+
+        Duration duracion = Duration.ofNanos(System.nanoTime() - inicio);
+        Map<String, Estadistica> porEndpoint = new LinkedHashMap<>();
+        for (String endpoint : List.of(CREAR_INCIDENTE, SUBIR_IMAGEN, CONSULTAR_INCIDENTE, ANALISIS_COMPLETO)) {
+            Mediciones m = mediciones.get(endpoint);
+            if (m != null) {
+                porEndpoint.put(endpoint, m.estadistica(endpoint, duracion));
+            }
+        }
+        return new Reporte(duracion, creados.get(), sinTerminar.get(), porEndpoint);
+    }
+
+    private void reportar(Escenario escenario) throws IOException, InterruptedException {
+        long inicio = System.nanoTime();
+        HttpResponse<String> creado = enviar(CREAR_INCIDENTE, HttpRequest.newBuilder(uri("/incidentes"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(nuevoIncidente()))
+                .build());
+        if (creado.statusCode() != 201) {
+            return;
+        }
+        creados.incrementAndGet();
+        String id = MAPPER.readTree(creado.body()).path("id").asText();
+
+        for (int i = 0; i < escenario.imagenesPorIncidente(); i++) {
+            String limite = "----carga" + UUID.randomUUID();
+            enviar(SUBIR_IMAGEN, HttpRequest.newBuilder(uri("/multimedia/incidente/" + id + "/subir"))
+                    .header("Content-Type", "multipart/form-data; boundary=" + limite)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(multipart(limite, i == 0)))
+                    .build());
+        }
+
+        long limiteEspera = inicio + escenario.esperaMaximaAnalisis().toNanos();
+        while (System.nanoTime() < limiteEspera) {
+            Thread.sleep(escenario.intervaloSondeo().toMillis());
+            HttpResponse<String> consulta = enviar(CONSULTAR_INCIDENTE,
+                    HttpRequest.newBuilder(uri("/incidentes/" + id)).GET().build());
+            if (consulta.statusCode() == 200) {
+                JsonNode incidente = MAPPER.readTree(consulta.body());
+                if (!ESTADOS_EN_ANALISIS.contains(incidente.path("estadoIncidente").asText())) {
+                    medicion(ANALISIS_COMPLETO).registrar(System.nanoTime() - inicio, false);
+                    return;
+                }
+            }
+        }
+        sinTerminar.incrementAndGet();
+    }
+
+    private HttpResponse<String> enviar(String endpoint, HttpRequest request) throws IOException, InterruptedException {
+        long inicio = System.nanoTime();
+        try {
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            medicion(endpoint).registrar(System.nanoTime() - inicio, response.statusCode() >= 400);
+            return response;
+        } catch (IOException e) {
+            medicion(endpoint).registrar(System.nanoTime() - inicio, true);
+            throw e;
+        }
+    }
+
+    private Mediciones medicion(String endpoint) {
+        return mediciones.computeIfAbsent(endpoint, e -> new Mediciones());
+    }
+
+    private URI uri(String ruta) {
+        return URI.create(baseUrl + ruta);
+    }
+
+    /**
+     * Cuerpo JSON de un reporte con datos aleatorios, tal como lo manda el bot
+     */
+    public static String nuevoIncidente() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // Locale.ROOT: las coordenadas tienen que salir con punto decimal
+        return String.format(Locale.ROOT, """
+                {"solicitante": {"nombreCompleto": "Usuario Carga %d", "telefono": "+5917%07d", "canalOrigen": "whatsapp"},
+                 "ubicacion": {"descripcionTextual": "Av. de prueba %d", "latitud": %.6f, "longitud": %.6f,
+                               "ciudad": "Santa Cruz"},
+                 "descripcionOriginal": "%s"}
+                """, random.nextInt(1000), random.nextInt(10_000_000), random.nextInt(5000),
+                -17.78 + random.nextDouble(-0.05, 0.05), -63.18 + random.nextDouble(-0.05, 0.05),
+                DESCRIPCIONES[random.nextInt(DESCRIPCIONES.length)]);
+    }
+
+    private static byte[] multipart(String limite, boolean esPrincipal) throws IOException {
+        ByteArrayOutputStream cuerpo = new ByteArrayOutputStream();
+        String cabecera = "--" + limite + "\r\n"
+                + "Content-Disposition: form-data; name=\"esPrincipal\"\r\n\r\n" + esPrincipal + "\r\n"
+                + "--" + limite + "\r\n"
+                + "Content-Disposition: form-data; name=\"archivo\"; filename=\"foto.png\"\r\n"
+                + "Content-Type: image/png\r\n\r\n";
+        cuerpo.write(cabecera.getBytes(StandardCharsets.UTF_8));
+        cuerpo.write(imagenAleatoria());
+        cuerpo.write(("\r\n--" + limite + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return cuerpo.toByteArray();
+    }
+
+    /**
+     * Imagen de ruido: cada subida es distinta, así no se reutiliza el análisis de una casi duplicada
+     */
+    private static byte[] imagenAleatoria() throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        BufferedImage imagen = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < imagen.getHeight(); y++) {
+            for (int x = 0; x < imagen.getWidth(); x++) {
+                imagen.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        ImageIO.write(imagen, "png", salida);
+        return salida.toByteArray();
+    }
+
+    private static final class Mediciones {
+
+        private final List<Long> nanos = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger errores = new AtomicInteger();
+
+        void registrar(long duracionNanos, boolean error) {
+            nanos.add(duracionNanos);
+            if (error) {
+                errores.incrementAndGet();
+            }
+        }
+
+        Estadistica estadistica(String endpoint, Duration duracion) {
+            List<Long> ordenadas;
+            synchronized (nanos) {
+                ordenadas = new ArrayList<>(nanos);
+            }
+            Collections.sort(ordenadas);
+            return new Estadistica(endpoint, ordenadas.size(), errores.get(),
+                    ordenadas.size() * 1000.0 / Math.max(1, duracion.toMillis()),
+                    percentil(ordenadas, 0.50), percentil(ordenadas, 0.95), percentil(ordenadas, 0.99),
+                    percentil(ordenadas, 1.0));
+        }
+
+        private static long percentil(List<Long> ordenadas, double p) {
+            if (ordenadas.isEmpty()) {
+                return 0;
+            }
+            int indice = (int) Math.ceil(p * ordenadas.size()) - 1;
+            return Duration.ofNanos(ordenadas.get(Math.max(0, indice))).toMillis();
+        }
+    }
+}
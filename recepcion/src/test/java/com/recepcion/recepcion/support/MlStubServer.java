@@ -0,0 +1,239 @@
+package com.recepcion.recepcion.support;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Servidor ML falso para pruebas, sobre el HttpServer del JDK. Implementa los endpoints de
+ * ml_analisis_texto y ml_analisis_imagen ({@code /api/ml/analizar-texto}, {@code /api/ml/analizar-texto-lote},
+ * {@code /api/ml/analizar-imagen} y {@code /api/ml/salud}), así se puede probar recepcion sin los servicios Python.
+ * <p>
+ * Simula un host con {@code capacidad} llamadas simultáneas: hasta esa cantidad cada llamada tarda lo que
+ * indique la {@link Latencia}; por encima la latencia crece proporcionalmente a la sobrecarga.
+ * También se puede configurar una tasa de errores 500 y si el modelo está cargado.
+ * <p>
+ * Para levantarlo a mano (p. ej. frente a una instancia local de recepcion):
+ * {@code java -cp target/test-classes:... com.recepcion.recepcion.support.MlStubServer 8001 8 50 400}
+ * (puerto, capacidad, p50 y p99 de latencia en ms).
+ */
+@Slf4j
+public class MlStubServer implements AutoCloseable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String RESPUESTA_TEXTO = """
+            {"prioridad_calculada": 2, "nivel_gravedad": 4, "tipo_incidente_predicho": "accidente_transito",
+             "categorias_detectadas": {"trauma": 0.9}, "palabras_clave_criticas": ["heridos"],
+             "score_confianza": 0.9, "probabilidades_categorias": {"cluster_0": 0.9},
+             "modelo_version": "stub-v1", "algoritmo_usado": "kmeans", "tiempo_procesamiento_ms": 1}
+            """;
+
+    private static final String RESPUESTA_IMAGEN = """
+            {"es_imagen_accidente": true, "score_veracidad": 0.85, "tipo_escena_detectada": "accidente_vehicular",
+             "nivel_gravedad_visual": 3, "elementos_criticos_detectados": {"vehiculos_danados": true},
+             "objetos_detectados": {"car": 2}, "personas_detectadas": 1, "vehiculos_detectados": 2,
+             "categorias_escena": {"street": 0.8}, "score_confianza_escena": 0.8, "es_anomalia": false,
+             "score_anomalia": 0.1, "calidad_imagen": "BUENA", "resolucion_imagen": "640x480",
+             "es_imagen_clara": true, "modelo_vision": "stub-v1", "modelo_veracidad": "stub-v1",
+             "tiempo_procesamiento_ms": 1}
+            """;
+
+    static {
+        // Sin esto, Nagle + ACK diferido suman ~40 ms a cada respuesta del HttpServer del JDK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    /**
+     * Distribución de la latencia de una llamada sin sobrecarga, en ms
+     */
+    @FunctionalInterface
+    public interface Latencia {
+
+        double muestrearMs();
+
+        static Latencia fija(long ms) {
+            return () -> ms;
+        }
+
+        static Latencia uniforme(long minimoMs, long maximoMs) {
+            return () -> ThreadLocalRandom.current().nextDouble(minimoMs, maximoMs + 1);
+        }
+
+        /**
+         * Log-normal con la mediana y el p99 indicados: la cola larga típica de un servicio de inferencia
+         */
+        static Latencia logNormal(long p50Ms, long p99Ms) {
+            double mu = Math.log(p50Ms);
+            // z(0.99) = 2.326
+            double sigma = Math.log((double) p99Ms / p50Ms) / 2.326;
+            return () -> Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian());
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger enCurso = new AtomicInteger();
+    private final AtomicInteger maximoEnCurso = new AtomicInteger();
+    private final AtomicInteger llamadas = new AtomicInteger();
+    private final AtomicInteger errores = new AtomicInteger();
+
+    private volatile int capacidad;
+    private volatile Latencia latencia;
+    private volatile double tasaErrores;
+    private volatile boolean modeloCargado = true;
+
+    public MlStubServer(int capacidad, long latenciaBaseMs) throws IOException {
+        this(0, capacidad, Latencia.fija(latenciaBaseMs));
+    }
+
+    /**
+     * @param puerto 0 para uno libre
+     */
+    public MlStubServer(int puerto, int capacidad, Latencia latencia) throws IOException {
+        this.capacidad = capacidad;
+        this.latencia = latencia;
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", puerto), 0);
+        server.createContext("/api/ml/salud", this::salud);
+        server.createContext("/api/ml/analizar-texto", exchange -> analizar(exchange, cuerpo -> RESPUESTA_TEXTO));
+        server.createContext("/api/ml/analizar-texto-lote", exchange -> analizar(exchange, MlStubServer::respuestaLote));
+        server.createContext("/api/ml/analizar-imagen", exchange -> analizar(exchange, cuerpo -> RESPUESTA_IMAGEN));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int puerto = args.length > 0 ? Integer.parseInt(args[0]) : 8001;
+        int capacidad = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        long p50 = args.length > 2 ? Long.parseLong(args[2]) : 50;
+        long p99 = args.length > 3 ? Long.parseLong(args[3]) : 400;
+
+        MlStubServer stub = new MlStubServer(puerto, capacidad, Latencia.logNormal(p50, p99));
+        Runtime.getRuntime().addShutdownHook(new Thread(stub::close));
+        log.info("Stub ML escuchando en {} (capacidad {}, p50 {} ms, p99 {} ms)",
+                stub.getBaseUrl(), capacidad, p50, p99);
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public void setCapacidad(int capacidad) {
+        this.capacidad = capacidad;
+    }
+
+    public void setLatenciaBaseMs(long latenciaBaseMs) {
+        this.latencia = Latencia.fija(latenciaBaseMs);
+    }
+
+    public void setLatencia(Latencia latencia) {
+        this.latencia = latencia;
+    }
+
+    /**
+     * Fracción de llamadas de análisis que responden 500 (0 a 1)
+     */
+    public void setTasaErrores(double tasaErrores) {
+        this.tasaErrores = tasaErrores;
+    }
+
+    /**
+     * Con el modelo sin cargar la salud lo informa y los análisis responden 503
+     */
+    public void setModeloCargado(boolean modeloCargado) {
+        this.modeloCargado = modeloCargado;
+    }
+
+    public int getMaximoEnCurso() {
+        return maximoEnCurso.get();
+    }
+
+    public int getLlamadas() {
+        return llamadas.get();
+    }
+
+    public int getErrores() {
+        return errores.get();
+    }
+
+    private void salud(HttpExchange exchange) throws IOException {
+        responder(exchange, 200, """
+                {"status": "%s", "model_loaded": %b, "model_version": "stub-v1"}
+                """.formatted(modeloCargado ? "healthy" : "degraded", modeloCargado));
+    }
+
+    private void analizar(HttpExchange exchange, Respuesta respuesta) throws IOException {
+        int actuales = enCurso.incrementAndGet();
+        maximoEnCurso.accumulateAndGet(actuales, Math::max);
+        llamadas.incrementAndGet();
+        try {
+            byte[] cuerpo = exchange.getRequestBody().readAllBytes();
+            if (!modeloCargado) {
+                errores.incrementAndGet();
+                responder(exchange, 503, "{\"detail\": \"Modelo no cargado\"}");
+                return;
+            }
+            double sobrecarga = Math.max(1.0, (double) actuales / capacidad);
+            Thread.sleep((long) (latencia.muestrearMs() * sobrecarga));
+            if (ThreadLocalRandom.current().nextDouble() < tasaErrores) {
+                errores.incrementAndGet();
+                responder(exchange, 500, "{\"detail\": \"Error simulado\"}");
+                return;
+            }
+            responder(exchange, 200, respuesta.generar(cuerpo));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            responder(exchange, 503, "{\"detail\": \"interrumpido\"}");
+        } finally {
+            enCurso.decrementAndGet();
+        }
+    }
+
+    private static String respuestaLote(byte[] cuerpo) throws IOException {
+        JsonNode resultado = MAPPER.readTree(RESPUESTA_TEXTO);
+        ObjectNode lote = MAPPER.createObjectNode();
+        ArrayNode resultados = lote.putArray("resultados");
+        for (JsonNode item : MAPPER.readTree(cuerpo).path("items")) {
+            ObjectNode salida = resultados.addObject();
+            salida.set("incidente_id", item.get("incidente_id"));
+            salida.set("resultado", resultado);
+        }
+        lote.put("tiempo_procesamiento_ms", 1);
+        return MAPPER.writeValueAsString(lote);
+    }
+
+    private static void responder(HttpExchange exchange, int status, String cuerpo) throws IOException {
+        byte[] bytes = cuerpo.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream salida = exchange.getResponseBody()) {
+            salida.write(bytes);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Respuesta {
+
+        String generar(byte[] cuerpo) throws IOException;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
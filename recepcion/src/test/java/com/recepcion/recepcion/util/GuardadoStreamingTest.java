@@ -0,0 +1,81 @@
+package com.recepcion.recepcion.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class GuardadoStreamingTest {
+
+    private static final int TAMANO_FOTO = 10 * 1024 * 1024;
+    private static final int REPETICIONES = 5;
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void calculaTamanoYSha256SinDejarTemporales() throws Exception {
+        byte[] contenido = new byte[300_000];
+        new Random(7).nextBytes(contenido);
+        Path origen = Files.write(directorio.resolve("parte-multipart"), contenido);
+        Path destino = directorio.resolve("foto.jpg");
+
+        GuardadoStreaming.ArchivoGuardado guardado = GuardadoStreaming.guardar(Files.newInputStream(origen), destino);
+
+        assertThat(guardado.tamanoBytes()).isEqualTo(contenido.length);
+        assertThat(guardado.sha256())
+                .isEqualTo(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(contenido)));
+        assertThat(Files.readAllBytes(destino)).isEqualTo(contenido);
+        assertThat(directorio.resolve("foto.jpg.parte")).doesNotExist();
+    }
+
+    /**
+     * Benchmark de memoria: bytes asignados en el heap por subida de una foto de 10 MB que el contenedor
+     * ya volcó a disco (file-size-threshold), antes (getBytes + Files.write) y después (streaming).
+     */
+    @Test
+    void elStreamingNoAsignaElArchivoEnElHeap() throws Exception {
+        byte[] contenido = new byte[TAMANO_FOTO];
+        new Random(7).nextBytes(contenido);
+        Path parte = Files.write(directorio.resolve("parte-multipart"), contenido);
+
+        long antes = bytesAsignadosPorSubida(() ->
+                Files.write(directorio.resolve("antes.jpg"), Files.readAllBytes(parte)));
+        long despues = bytesAsignadosPorSubida(() ->
+                GuardadoStreaming.guardar(Files.newInputStream(parte), directorio.resolve("despues.jpg")));
+
+        log.info("Heap asignado por subida de {} MB: antes {} KB, después {} KB",
+                TAMANO_FOTO / 1024 / 1024, antes / 1024, despues / 1024);
+        assertThat(antes).isGreaterThanOrEqualTo(TAMANO_FOTO);
+        assertThat(despues).isLessThan(TAMANO_FOTO / 20);
+    }
+
+    private long bytesAsignadosPorSubida(Subida subida) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        // Calentamiento: carga de clases y JIT no cuentan
+        subida.ejecutar();
+        subida.ejecutar();
+
+        long inicio = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < REPETICIONES; i++) {
+            subida.ejecutar();
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - inicio) / REPETICIONES;
+    }
+
+    @FunctionalInterface
+    private interface Subida {
+
+        void ejecutar() throws IOException;
+    }
+}
@@ -0,0 +1,57 @@
+package com.recepcion.recepcion.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HashPerceptualTest {
+
+    @Test
+    void mismaFotoReescaladaYRecomprimidaQuedaCerca() throws Exception {
+        BufferedImage original = escena(640, 480, false);
+        BufferedImage copia = ImageIO.read(new ByteArrayInputStream(jpeg(escalar(original, 320, 240))));
+
+        assertThat(HashPerceptual.distancia(HashPerceptual.calcular(original), HashPerceptual.calcular(copia)))
+                .isLessThanOrEqualTo(6);
+    }
+
+    @Test
+    void fotosDistintasQuedanLejos() {
+        long a = HashPerceptual.calcular(escena(640, 480, false));
+        long b = HashPerceptual.calcular(escena(640, 480, true));
+
+        assertThat(HashPerceptual.distancia(a, b)).isGreaterThan(10);
+    }
+
+    private static BufferedImage escena(int ancho, int alto, boolean invertida) {
+        BufferedImage imagen = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = imagen.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, invertida ? Color.WHITE : Color.BLACK,
+                ancho, 0, invertida ? Color.BLACK : Color.WHITE));
+        g.fillRect(0, 0, ancho, alto);
+        g.setColor(Color.RED);
+        g.fillOval(ancho / 4, alto / 4, ancho / 3, alto / 3);
+        g.dispose();
+        return imagen;
+    }
+
+    private static BufferedImage escalar(BufferedImage imagen, int ancho, int alto) {
+        BufferedImage escalada = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = escalada.createGraphics();
+        g.drawImage(imagen, 0, 0, ancho, alto, null);
+        g.dispose();
+        return escalada;
+    }
+
+    private static byte[] jpeg(BufferedImage imagen) throws Exception {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        ImageIO.write(imagen, "jpg", salida);
+        return salida.toByteArray();
+    }
+}
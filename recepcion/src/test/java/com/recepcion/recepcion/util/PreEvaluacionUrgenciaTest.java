@@ -0,0 +1,43 @@
+package com.recepcion.recepcion.util;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PreEvaluacionUrgenciaTest {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "Persona inconsciente en la calle, no respira | 1",
+            "Incendio en una casa, sin heridos por ahora  | 1",
+            "Choque entre dos autos, hay dos heridos      | 2",
+            "Motociclista atropellado, sangra mucho       | 2",
+            "Accidente sin heridos pero uno está sangrando | 2",
+            "Señora con dolor de pecho                    | 2",
+            "Choque en la esquina del mercado             | 2",
+            "Choque leve, no hay heridos, solo daños materiales | 4",
+            "accidente sin heridos                        | 4",
+            "Rayón a un auto estacionado                  | 4",
+            "Caída leve de una bicicleta                  | 4",
+            "Hay un perro suelto en el parque             | 3"
+    })
+    void asignaLaPrioridadPorPalabrasClave(String descripcion, int prioridad) {
+        assertThat(PreEvaluacionUrgencia.calcular(descripcion)).isEqualTo(prioridad);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"NO HAY HERIDOS", "No  hubo   heridos", "ningún herido"})
+    void reconoceLaNegacionSinImportarMayusculasTildesNiEspacios(String descripcion) {
+        assertThat(PreEvaluacionUrgencia.calcular("Choque de autos, " + descripcion)).isEqualTo(4);
+    }
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    @ValueSource(strings = "   ")
+    void sinDescripcionUsaLaPrioridadPorDefecto(String descripcion) {
+        assertThat(PreEvaluacionUrgencia.calcular(descripcion)).isEqualTo(PreEvaluacionUrgencia.PRIORIDAD_POR_DEFECTO);
+    }
+}
@@ -0,0 +1,114 @@
+package com.recepcion.recepcion.worker;
+
+import com.recepcion.recepcion.client.MlServicioNoDisponibleException;
+import com.recepcion.recepcion.entity.ReanalisisJob;
+import com.recepcion.recepcion.entity.TipoMlJob;
+import com.recepcion.recepcion.repository.FilaKeyset;
+import com.recepcion.recepcion.service.AnalisisMlOrchestrationService;
+import com.recepcion.recepcion.service.MlJobService;
+import com.recepcion.recepcion.service.ReanalisisService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReanalisisWorkerTest {
+
+    private final ReanalisisService reanalisisService = mock(ReanalisisService.class);
+    private final AnalisisMlOrchestrationService orquestador = mock(AnalisisMlOrchestrationService.class);
+    private final MlJobService mlJobService = mock(MlJobService.class);
+    private ReanalisisWorker worker;
+
+    @BeforeEach
+    void configurar() {
+        worker = new ReanalisisWorker(reanalisisService, orquestador, mlJobService,
+                mock(ThreadPoolTaskExecutor.class), "nodo-test");
+        ReflectionTestUtils.setField(worker, "lote", 5);
+        ReflectionTestUtils.setField(worker, "reservaSegundos", 300L);
+        ReflectionTestUtils.setField(worker, "maxPendientesEnVivo", 0L);
+    }
+
+    @Test
+    void respetaLaTasaYCompletaAlAgotarLasFilas() throws Exception {
+        ReanalisisJob job = job(20.0);
+        List<FilaKeyset> filas = List.of(fila(), fila(), fila());
+        when(reanalisisService.siguienteLote(job, 5)).thenReturn(filas);
+
+        long inicio = System.nanoTime();
+        worker.procesarLote(job);
+        long ms = (System.nanoTime() - inicio) / 1_000_000;
+
+        // 3 filas a 20/s: la segunda y la tercera esperan 50 ms cada una
+        assertThat(ms).isGreaterThanOrEqualTo(90);
+        verify(orquestador, times(3)).reanalizarTexto(any());
+        verify(reanalisisService).registrarAvance(eq(job.getId()), eq("nodo-test"), eq(filas.get(2)),
+                eq(3), eq(0), anyLong(), eq(true));
+    }
+
+    @Test
+    void conElServicioCaidoGuardaElCheckpointEnLaUltimaFilaProcesada() throws Exception {
+        ReanalisisJob job = job(1000.0);
+        List<FilaKeyset> filas = List.of(fila(), fila(), fila());
+        when(reanalisisService.siguienteLote(job, 5)).thenReturn(filas);
+        doNothing().doThrow(new MlServicioNoDisponibleException("caído"))
+                .when(orquestador).reanalizarTexto(any());
+
+        worker.procesarLote(job);
+
+        verify(reanalisisService).registrarAvance(eq(job.getId()), eq("nodo-test"), eq(filas.get(0)),
+                eq(1), eq(0), anyLong(), eq(false));
+    }
+
+    @Test
+    void cedeAnteLaColaEnVivo() throws Exception {
+        ReanalisisJob job = job(1000.0);
+        when(reanalisisService.siguienteLote(job, 5)).thenReturn(List.of(fila(), fila()));
+        when(mlJobService.contarDisponibles()).thenReturn(3L);
+
+        worker.procesarLote(job);
+
+        verify(orquestador, never()).reanalizarTexto(any());
+        verify(reanalisisService).registrarAvance(eq(job.getId()), eq("nodo-test"), isNull(),
+                eq(0), eq(0), anyLong(), eq(false));
+    }
+
+    @Test
+    void elLoteEntraEnLaReserva() {
+        assertThat(worker.tamanoLote(0.01)).isEqualTo(1);
+        assertThat(worker.tamanoLote(0.1)).isEqualTo(5);
+        ReflectionTestUtils.setField(worker, "reservaSegundos", 20L);
+        assertThat(worker.tamanoLote(0.2)).isEqualTo(2);
+    }
+
+    private ReanalisisJob job(double tasa) {
+        return ReanalisisJob.builder()
+                .id(UUID.randomUUID())
+                .tipo(TipoMlJob.ANALISIS_TEXTO)
+                .tasaPorSegundo(tasa)
+                .build();
+    }
+
+    private FilaKeyset fila() {
+        UUID id = UUID.randomUUID();
+        LocalDateTime fecha = LocalDateTime.now();
+        return new FilaKeyset() {
+            @Override
+            public UUID getId() {
+                return id;
+            }
+
+            @Override
+            public LocalDateTime getFecha() {
+                return fecha;
+            }
+        };
+    }
+}